@@ -1,5 +1,6 @@
 -- Script để thêm cột discount_percent vào bảng orders
 -- Chạy script này để sửa lỗi "Unknown column 'o.discount_percent' in 'field list'"
+-- Ứng dụng đã tự áp dụng thay đổi này khi khởi động (src/main/resources/db/migration/V1__add_discount_percent.sql)
 
 USE bar_management;
 
@@ -0,0 +1,18 @@
+-- Script tạo bảng table_layout lưu vị trí bàn trên sơ đồ (màn hình Order)
+-- Bàn chưa có dòng trong bảng này được xếp tự động theo lưới.
+-- Ứng dụng đã tự áp dụng thay đổi này khi khởi động (src/main/resources/db/migration/V2__create_table_layout.sql)
+
+USE bar_management;
+
+CREATE TABLE IF NOT EXISTS table_layout (
+    table_id INT NOT NULL PRIMARY KEY,
+    pos_x DOUBLE NOT NULL DEFAULT 0,
+    pos_y DOUBLE NOT NULL DEFAULT 0,
+    CONSTRAINT fk_table_layout_table FOREIGN KEY (table_id) REFERENCES tables(id) ON DELETE CASCADE
+) COMMENT 'Tọa độ góc trên-trái của bàn trên sơ đồ (pixel)';
+
+-- Kiểm tra kết quả
+SELECT t.id, t.table_name, l.pos_x, l.pos_y
+FROM tables t
+LEFT JOIN table_layout l ON l.table_id = t.id
+ORDER BY t.id;
@@ -0,0 +1,3 @@
+-- Schema được quản lý bằng migration chạy khi khởi động ứng dụng (dao/SchemaMigrator).
+-- Các file migration: src/main/resources/db/migration/V{n}__{mô_tả}.sql
+-- Lịch sử đã áp dụng: SELECT * FROM schema_history ORDER BY version;
@@ -0,0 +1,169 @@
+package com.barmanagement.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Cấu hình kết nối DB + connection pool, đọc từ file ngoài.
+ *
+ * Thứ tự ưu tiên (file sau ghi đè file trước):
+ *  1. /db.properties trong classpath
+ *  2. ~/.barapp/db.properties
+ *  3. file chỉ định bằng -Dbarapp.db.config=/path/to/db.properties
+ * Khóa nào không có sẽ lấy giá trị mặc định từ {@link JDBCConfig}.
+ */
+public final class DatabaseConfig {
+
+    private static volatile DatabaseConfig instance;
+
+    private final Properties props;
+
+    private DatabaseConfig(Properties props) {
+        this.props = props;
+    }
+
+    public static DatabaseConfig get() {
+        DatabaseConfig local = instance;
+        if (local == null) {
+            synchronized (DatabaseConfig.class) {
+                local = instance;
+                if (local == null) {
+                    local = load();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    private static DatabaseConfig load() {
+        Properties p = new Properties();
+
+        try (InputStream in = DatabaseConfig.class.getResourceAsStream("/db.properties")) {
+            if (in != null) {
+                p.load(in);
+            }
+        } catch (IOException e) {
+            System.err.println("Không đọc được db.properties trong classpath: " + e.getMessage());
+        }
+
+        loadFile(p, Paths.get(System.getProperty("user.home"), ".barapp", "db.properties"));
+
+        String override = System.getProperty("barapp.db.config");
+        if (override != null && !override.isBlank()) {
+            loadFile(p, Paths.get(override));
+        }
+        return new DatabaseConfig(p);
+    }
+
+    private static void loadFile(Properties p, Path file) {
+        if (!Files.isRegularFile(file)) return;
+        try (InputStream in = Files.newInputStream(file)) {
+            p.load(in);
+            System.out.println("Loaded DB config from " + file);
+        } catch (IOException e) {
+            System.err.println("Không đọc được " + file + ": " + e.getMessage());
+        }
+    }
+
+    // ===== Kết nối =====
+
+    public String getUrl() {
+        String url = props.getProperty("db.url");
+        if (url != null && !url.isBlank()) return url.trim();
+        return "jdbc:mysql://" + getString("db.host", JDBCConfig.HOSTNAME)
+                + ":" + getString("db.port", JDBCConfig.PORT) + "/"
+                + getString("db.name", JDBCConfig.DBNAME)
+                + "?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC";
+    }
+
+    public String getUsername() { return getString("db.user", JDBCConfig.USERNAME); }
+    public String getPassword() { return getString("db.password", JDBCConfig.PASSWORD); }
+
+    // ===== Pool =====
+
+    public int getPoolMaxSize() { return Math.max(1, getInt("pool.maxSize", 10)); }
+    public int getPoolMinIdle() { return Math.max(0, Math.min(getInt("pool.minIdle", 2), getPoolMaxSize())); }
+    public long getConnectionTimeoutMs() { return getLong("pool.connectionTimeoutMs", 10_000); }
+    public long getIdleTimeoutMs() { return getLong("pool.idleTimeoutMs", 300_000); }
+    public long getMaxLifetimeMs() { return getLong("pool.maxLifetimeMs", 1_800_000); }
+    public int getValidationTimeoutSec() { return Math.max(1, getInt("pool.validationTimeoutSec", 2)); }
+    /** 0 = tắt phát hiện rò rỉ kết nối */
+    public long getLeakDetectionThresholdMs() { return getLong("pool.leakDetectionThresholdMs", 30_000); }
+    public long getHousekeepingIntervalMs() { return Math.max(1_000, getLong("pool.housekeepingIntervalMs", 30_000)); }
+    /** Số PreparedStatement giữ lại trên mỗi kết nối, 0 = tắt cache */
+    public int getStatementCacheSize() { return Math.max(0, getInt("pool.statementCacheSize", 64)); }
+
+    /**
+     * Thuộc tính gửi cho Connector/J: user/password, bật server-side prepared statement,
+     * cache statement phía driver và gộp batch. Mọi khóa "jdbc.xxx" trong file cấu hình
+     * được truyền thẳng thành thuộc tính "xxx" của driver (ghi đè mặc định).
+     */
+    public Properties getDriverProperties() {
+        Properties driver = new Properties();
+        driver.setProperty("user", getUsername());
+        driver.setProperty("password", getPassword());
+        driver.setProperty("useServerPrepStmts", "true");
+        driver.setProperty("cachePrepStmts", "true");
+        driver.setProperty("prepStmtCacheSize", "250");
+        driver.setProperty("prepStmtCacheSqlLimit", "2048");
+        driver.setProperty("rewriteBatchedStatements", "true");
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("jdbc.")) {
+                driver.setProperty(key.substring("jdbc.".length()), props.getProperty(key).trim());
+            }
+        }
+        return driver;
+    }
+
+    // ===== Helpers =====
+
+    public String getString(String key, String def) {
+        String v = props.getProperty(key);
+        return v == null ? def : v.trim();
+    }
+
+    public int getInt(String key, int def) {
+        String v = props.getProperty(key);
+        if (v == null) return def;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Giá trị không hợp lệ cho " + key + ": " + v);
+            return def;
+        }
+    }
+
+    public long getLong(String key, long def) {
+        String v = props.getProperty(key);
+        if (v == null) return def;
+        try {
+            return Long.parseLong(v.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Giá trị không hợp lệ cho " + key + ": " + v);
+            return def;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean def) {
+        String v = props.getProperty(key);
+        return v == null ? def : Boolean.parseBoolean(v.trim());
+    }
+
+    /** Mọi khóa bắt đầu bằng prefix, key trả về đã bỏ prefix (ví dụ "log.level." -> "com.barmanagement.dao") */
+    public Map<String, String> getWithPrefix(String prefix) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(prefix) && key.length() > prefix.length()) {
+                result.put(key.substring(prefix.length()), props.getProperty(key).trim());
+            }
+        }
+        return result;
+    }
+}
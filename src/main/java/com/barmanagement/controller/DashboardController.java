@@ -24,6 +24,9 @@ import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.animation.Timeline;
 import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
 import javafx.animation.ScaleTransition;
 import javafx.util.Duration;
 import javafx.collections.FXCollections;
@@ -34,17 +37,21 @@ import javafx.scene.Node;
 
 import com.barmanagement.util.SceneUtil;
 import com.barmanagement.util.LogoutUtil;
-import com.barmanagement.util.DashboardUpdateUtil;
+import com.barmanagement.util.DashboardEvent;
+import com.barmanagement.util.DashboardEventBus;
+import com.barmanagement.util.FxAsync;
+import com.barmanagement.util.LatestRequest;
 import com.barmanagement.util.InvoiceHelper;
+import com.barmanagement.util.QueryDiagnosticsView;
 import com.barmanagement.dao.RevenueDAO;
-import com.barmanagement.dao.TableDAO;
-import com.barmanagement.dao.MenuItemDAO;
 import com.barmanagement.dao.OrderDAO;
 import com.barmanagement.dao.OrderItemDAO;
 import com.barmanagement.dao.PaymentDAO;
+import com.barmanagement.model.DashboardSnapshot;
 import com.barmanagement.model.Order;
 import com.barmanagement.model.OrderItem;
 import com.barmanagement.model.Payment;
+import com.barmanagement.util.Log;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -54,8 +61,15 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Locale;
+import java.util.EnumSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Set;
 import java.util.Map;
 import java.util.List;
+import java.util.stream.Collectors;
 import java.time.ZonedDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -67,6 +81,11 @@ import java.util.Locale;
  */
 public class DashboardController {
 
+    private static final Log LOG = Log.get(DashboardController.class);
+
+    // Số đơn tối đa trong danh sách hoạt động gần đây
+    private static final int RECENT_ACTIVITY_LIMIT = 20;
+
     @FXML private Button manageTablesButton;
     @FXML private Button manageMenuButton;
     @FXML private Button managePaymentButton;
@@ -113,21 +132,31 @@ public class DashboardController {
 
     // DAOs
     private RevenueDAO revenueDAO;
-    private TableDAO tableDAO;
-    private MenuItemDAO menuItemDAO;
     private OrderDAO orderDAO;
     private OrderItemDAO orderItemDAO;
     private PaymentDAO paymentDAO;
 
     // Data
     private ObservableList<Order> recentOrders = FXCollections.observableArrayList();
+    private final Map<Integer, ActivityCard> activityCards = new LinkedHashMap<>();
+
+    // Shared pulse animation for activity cards
+    private final DoubleProperty pulseScale = new SimpleDoubleProperty(1.0);
+    private final Timeline pulseTimeline = new Timeline(
+            new KeyFrame(Duration.ZERO, new KeyValue(pulseScale, 1.0)),
+            new KeyFrame(Duration.seconds(1.5), new KeyValue(pulseScale, 1.3)));
+    private int pulsingCount = 0;
+    private final LatestRequest<DashboardSnapshot> dashboardLoad = new LatestRequest<>();
+    private final LatestRequest<List<Order>> activityLoad = new LatestRequest<>();
 
     // Formatter
     private final NumberFormat currencyFormatter = NumberFormat.getInstance(new Locale("vi", "VN"));
 
     // State tracking
     private boolean isFirstLoad = true;
+    private boolean activityInitialized = false;
     private boolean isInitialized = false;
+    private DashboardEventBus.Subscription eventSubscription;
 
     // Timelines for auto-refresh
     private Timeline clockTimeline;
@@ -135,12 +164,10 @@ public class DashboardController {
 
     @FXML
     public void initialize() {
-        System.out.println("📊 ENHANCED DASHBOARD CONTROLLER INITIALIZING...");
+        LOG.debug("📊 ENHANCED DASHBOARD CONTROLLER INITIALIZING...");
 
         // Initialize DAOs
         revenueDAO = new RevenueDAO();
-        tableDAO = new TableDAO();
-        menuItemDAO = new MenuItemDAO();
         orderDAO = new OrderDAO();
         orderItemDAO = new OrderItemDAO();
         paymentDAO = new PaymentDAO();
@@ -156,37 +183,19 @@ public class DashboardController {
         clockTimeline.setCycleCount(Timeline.INDEFINITE);
         clockTimeline.play();
 
+        pulseTimeline.setCycleCount(Timeline.INDEFINITE);
+        pulseTimeline.setAutoReverse(true);
+
         // Initialize table columns if table exists
         setupRecentOrdersTable();
 
         // Load initial dashboard data
-        loadDashboardData();
         initializeCharts();
-
-        // ENHANCED: Load existing activity on startup
-        Platform.runLater(() -> {
-            try {
-                List<Order> existingPaidOrders = orderDAO.findByStatus("paid");
-                List<Order> existingCompletedOrders = orderDAO.findByStatus("completed");
-
-                if (!existingPaidOrders.isEmpty() || !existingCompletedOrders.isEmpty()) {
-                    System.out.println("📋 Found existing orders, loading enhanced activity");
-                    isFirstLoad = false;
-                    loadEnhancedRecentActivity();
-                } else {
-                    System.out.println("📋 No existing orders, showing enhanced empty state");
-                    initializeEnhancedEmptyActivity();
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
-                initializeEnhancedEmptyActivity();
-            }
-        });
+        loadDashboardData();
 
         // Start data refresh timer
         dataTimeline = new Timeline(new KeyFrame(Duration.seconds(30), e -> {
             loadDashboardData();
-            updateCharts();
             if (!isFirstLoad) {
                 loadEnhancedRecentActivity();
             }
@@ -194,43 +203,51 @@ public class DashboardController {
         dataTimeline.setCycleCount(Timeline.INDEFINITE);
         dataTimeline.play();
 
-        // Register for real-time payment updates
-        DashboardUpdateUtil.addUpdateListener(this::refreshEnhancedDashboardData);
+        // Register for real-time updates (gộp theo lô, tối đa một lần làm mới mỗi cửa sổ)
+        eventSubscription = DashboardEventBus.subscribe(EnumSet.allOf(DashboardEvent.Kind.class), this::onDashboardEvents);
 
         isInitialized = true;
-        System.out.println("✅ ENHANCED DASHBOARD CONTROLLER INITIALIZED");
+        LOG.debug("✅ ENHANCED DASHBOARD CONTROLLER INITIALIZED");
     }
 
     /**
-     * ENHANCED: Real-time dashboard refresh with improved animations
+     * ENHANCED: Nhận một lô sự kiện đã gộp (trên FX thread) và làm mới đúng một lần
      */
-    private void refreshEnhancedDashboardData() {
-        System.out.println("🔄 ENHANCED DASHBOARD REAL-TIME REFRESH TRIGGERED...");
-
-        Platform.runLater(() -> {
-            try {
-                // Mark that we've had activity
-                isFirstLoad = false;
-
-                // Reload all statistics with animations
-                loadTodayStats();
-                updateCharts(); // Use existing method instead of loadRevenueChart()
-                loadPaymentMethodStatistics();
-                loadServiceTimeStatistics();
-                loadTableStatus();
-
-                // Load enhanced recent activity
-                loadEnhancedRecentActivity();
+    private void onDashboardEvents(List<DashboardEvent> events) {
+        LOG.debug("🔄 Dashboard events: {}", events);
+
+        boolean orderActivity = false;
+        boolean paymentCompleted = false;
+        for (DashboardEvent event : events) {
+            if (event.getKind() == DashboardEvent.Kind.PAYMENT_COMPLETED) {
+                paymentCompleted = true;
+                orderActivity = true;
+            } else if (event.getKind() == DashboardEvent.Kind.ORDER_STATUS_CHANGED) {
+                orderActivity = true;
+            }
+        }
 
-                // Show enhanced update notification
-                showEnhancedUpdateNotification();
+        // Số liệu (bàn, menu, doanh thu) luôn tải lại bằng một snapshot
+        loadDashboardData();
 
-                System.out.println("✅ Enhanced dashboard refresh completed");
+        if (orderActivity) {
+            isFirstLoad = false;
+            loadEnhancedRecentActivity();
+        }
+        if (paymentCompleted) {
+            showEnhancedUpdateNotification();
+        }
+    }
 
-            } catch (Exception e) {
-                System.err.println("❌ Error in enhanced dashboard refresh: " + e.getMessage());
-                e.printStackTrace();
-            }
+    /**
+     * ENHANCED: Real-time dashboard refresh with improved animations
+     */
+    private void refreshEnhancedDashboardData() {
+        FxAsync.runOnFx(() -> {
+            isFirstLoad = false;
+            loadDashboardData();
+            loadEnhancedRecentActivity();
+            showEnhancedUpdateNotification();
         });
     }
 
@@ -238,6 +255,7 @@ public class DashboardController {
      * ENHANCED: Initialize beautiful empty activity state
      */
     private void initializeEnhancedEmptyActivity() {
+        releaseActivityCards();
         if (activityContainer != null) {
             activityContainer.getChildren().clear();
 
@@ -285,185 +303,249 @@ public class DashboardController {
 
     /**
      * ENHANCED: Load recent activity with beautiful cards
+     * FIXED: truy vấn có LIMIT chạy trên thread DB (LatestRequest), lần tải mới thay thế lần đang chạy
      */
     private void loadEnhancedRecentActivity() {
-        Platform.runLater(() -> {
-            try {
-                // Clear existing data
-                recentOrders.clear();
-
-                // Load completed and paid orders
-                List<Order> paidOrders = orderDAO.findByStatus("paid");
-                List<Order> completedOrders = orderDAO.findByStatus("completed");
-
-                // Combine all orders
-                paidOrders.addAll(completedOrders);
-
-                if (paidOrders.isEmpty()) {
-                    initializeEnhancedEmptyActivity();
-                    return;
-                }
-
-                // Sort by most recent first and take last 20
-                paidOrders.stream()
-                        .sorted((o1, o2) -> o2.getOrderTime().compareTo(o1.getOrderTime()))
-                        .limit(20)
-                        .forEach(recentOrders::add);
-
-                // Update enhanced activity cards
-                if (activityContainer != null) {
-                    updateEnhancedActivityCards();
-                }
-
-                System.out.println("📋 Enhanced recent activity loaded: " + paidOrders.size() + " orders");
+        activityLoad.submit(() -> orderDAO.findRecentActivity(RECENT_ACTIVITY_LIMIT), orders -> {
+            recentOrders.setAll(orders);
+            if (orders.isEmpty()) {
+                initializeEnhancedEmptyActivity();
+                return;
+            }
 
-            } catch (SQLException e) {
-                e.printStackTrace();
-                showErrorMessage("Không thể tải hoạt động gần đây: " + e.getMessage());
+            // Update enhanced activity cards
+            if (activityContainer != null) {
+                updateEnhancedActivityCards();
             }
+
+            LOG.debug("📋 Enhanced recent activity loaded: {} orders", orders.size());
+        }, error -> {
+            LOG.error("❌ Error loading recent activity", error);
+            showErrorMessage("Không thể tải hoạt động gần đây: " + error.getMessage());
         });
     }
 
     /**
-     * ENHANCED: Create beautiful activity cards
+     * ENHANCED: Cập nhật danh sách thẻ hoạt động theo kiểu diff:
+     * thẻ được giữ lại theo order id, chỉ nhãn nào đổi mới được set lại,
+     * thứ tự chỉ sắp lại khi thật sự thay đổi. Không đổi gì thì không tạo node nào.
      */
     private void updateEnhancedActivityCards() {
-        activityContainer.getChildren().clear();
-
         if (recentOrders.isEmpty()) {
             initializeEnhancedEmptyActivity();
             return;
         }
 
-        // Create enhanced cards for recent orders
-        recentOrders.stream()
+        List<Order> visible = recentOrders.stream()
                 .limit(8) // Show more items in the taller container
-                .forEach(order -> {
-                    HBox activityItem = createEnhancedActivityItem(order);
-                    activityContainer.getChildren().add(activityItem);
-                });
-    }
-
-    /**
-     * ENHANCED: Create beautiful activity item card
-     */
-    private HBox createEnhancedActivityItem(Order order) {
-        HBox itemBox = new HBox();
-        itemBox.setAlignment(Pos.CENTER_LEFT);
-        itemBox.setStyle("-fx-padding: 15; -fx-background-color: #16213e; -fx-background-radius: 10; -fx-cursor: hand; -fx-spacing: 15;");
-        itemBox.setMaxWidth(Double.MAX_VALUE);
-        itemBox.setMinHeight(75.0);
-        itemBox.setPrefHeight(75.0);
-
-        // Enhanced status indicator with animation
-        VBox statusIndicator = new VBox(3);
-        statusIndicator.setAlignment(Pos.CENTER);
-        statusIndicator.setMinWidth(65.0);
-        statusIndicator.setPrefWidth(65.0);
-
-        Circle statusCircle = new Circle(12.0);
-        Label statusText = new Label();
-        statusText.setFont(Font.font("System", FontWeight.BOLD, 9));
-        statusText.setTextAlignment(TextAlignment.CENTER);
+                .collect(Collectors.toList());
 
-        switch (order.getStatus()) {
-            case "paid":
-                statusCircle.setFill(Color.web("#4CAF50"));
-                statusText.setText("HOÀN THÀNH");
-                statusText.setTextFill(Color.web("#4CAF50"));
-                break;
-            case "completed":
-                statusCircle.setFill(Color.web("#2196F3"));
-                statusText.setText("CHỜ T.TOÁN");
-                statusText.setTextFill(Color.web("#2196F3"));
-                // Add pulsing animation for orders waiting payment
-                addPulsingAnimation(statusCircle);
-                break;
-            case "cancelled":
-                statusCircle.setFill(Color.web("#f44336"));
-                statusText.setText("ĐÃ HỦY");
-                statusText.setTextFill(Color.web("#f44336"));
-                break;
-            default:
-                statusCircle.setFill(Color.web("#FF9800"));
-                statusText.setText("XỬ LÝ");
-                statusText.setTextFill(Color.web("#FF9800"));
+        // Bỏ thẻ của đơn không còn hiển thị
+        Set<Integer> visibleIds = new HashSet<>();
+        for (Order order : visible) {
+            visibleIds.add(order.getId());
         }
+        activityCards.entrySet().removeIf(entry -> {
+            if (visibleIds.contains(entry.getKey())) return false;
+            entry.getValue().dispose();
+            return true;
+        });
 
-        statusIndicator.getChildren().addAll(statusCircle, statusText);
-
-        // Enhanced content container
-        VBox contentContainer = new VBox(5);
-        contentContainer.setAlignment(Pos.CENTER_LEFT);
-        HBox.setHgrow(contentContainer, javafx.scene.layout.Priority.ALWAYS);
-
-        // Main title with icon
-        HBox titleBox = new HBox(8);
-        titleBox.setAlignment(Pos.CENTER_LEFT);
+        // Tạo thẻ mới nếu cần, cập nhật thẻ cũ
+        List<Node> desired = new ArrayList<>(visible.size());
+        for (Order order : visible) {
+            ActivityCard card = activityCards.get(order.getId());
+            if (card == null) {
+                card = new ActivityCard();
+                activityCards.put(order.getId(), card);
+            }
+            card.update(order);
+            desired.add(card.root);
+        }
 
-        Label iconLabel = new Label(getOrderIcon(order));
-        iconLabel.setFont(Font.font("System", 16));
+        // Chỉ đụng tới container khi thứ tự / tập thẻ khác đi (hoặc đang hiện trạng thái trống)
+        if (!activityContainer.getChildren().equals(desired)) {
+            activityContainer.getChildren().setAll(desired);
+        }
+    }
 
-        Label titleLabel = new Label(getEnhancedActivityTitle(order));
-        titleLabel.setTextFill(Color.WHITE);
-        titleLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
-        titleLabel.setMaxWidth(300.0);
+    /** Bỏ toàn bộ thẻ hoạt động (khi chuyển sang trạng thái trống) */
+    private void releaseActivityCards() {
+        for (ActivityCard card : activityCards.values()) {
+            card.dispose();
+        }
+        activityCards.clear();
+    }
 
-        titleBox.getChildren().addAll(iconLabel, titleLabel);
+    /**
+     * ENHANCED: Thẻ hoạt động của một đơn, tạo một lần và cập nhật tại chỗ
+     */
+    private final class ActivityCard {
+        private static final String NORMAL_STYLE = "-fx-padding: 15; -fx-background-color: #16213e; -fx-background-radius: 10; -fx-cursor: hand; -fx-spacing: 15;";
+        private static final String HOVER_STYLE = "-fx-padding: 15; -fx-background-color: #1a2851; -fx-background-radius: 10; -fx-cursor: hand; -fx-spacing: 15;";
+
+        final HBox root = new HBox();
+        private final Circle statusCircle = new Circle(12.0);
+        private final Label statusText = new Label();
+        private final Label iconLabel = new Label();
+        private final Label titleLabel = new Label();
+        private final Label subtitleLabel = new Label();
+        private final Label amountLabel = new Label();
+        private final Label timeLabel = new Label();
+
+        private Order order;
+        private String status;
+        private boolean pulsing;
+
+        ActivityCard() {
+            root.setAlignment(Pos.CENTER_LEFT);
+            root.setStyle(NORMAL_STYLE);
+            root.setMaxWidth(Double.MAX_VALUE);
+            root.setMinHeight(75.0);
+            root.setPrefHeight(75.0);
+
+            // Enhanced status indicator with animation
+            VBox statusIndicator = new VBox(3);
+            statusIndicator.setAlignment(Pos.CENTER);
+            statusIndicator.setMinWidth(65.0);
+            statusIndicator.setPrefWidth(65.0);
+
+            statusText.setFont(Font.font("System", FontWeight.BOLD, 9));
+            statusText.setTextAlignment(TextAlignment.CENTER);
+            statusIndicator.getChildren().addAll(statusCircle, statusText);
+
+            // Enhanced content container
+            VBox contentContainer = new VBox(5);
+            contentContainer.setAlignment(Pos.CENTER_LEFT);
+            HBox.setHgrow(contentContainer, javafx.scene.layout.Priority.ALWAYS);
+
+            // Main title with icon
+            HBox titleBox = new HBox(8);
+            titleBox.setAlignment(Pos.CENTER_LEFT);
+
+            iconLabel.setFont(Font.font("System", 16));
+
+            titleLabel.setTextFill(Color.WHITE);
+            titleLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
+            titleLabel.setMaxWidth(300.0);
+
+            titleBox.getChildren().addAll(iconLabel, titleLabel);
+
+            // Enhanced subtitle with more information
+            subtitleLabel.setTextFill(Color.web("#B0B0B0"));
+            subtitleLabel.setFont(Font.font("System", 12));
+            subtitleLabel.setMaxWidth(300.0);
+
+            contentContainer.getChildren().addAll(titleBox, subtitleLabel);
+
+            // Enhanced right side with amount and time
+            VBox rightContainer = new VBox(5);
+            rightContainer.setAlignment(Pos.CENTER_RIGHT);
+            rightContainer.setMinWidth(130);
+            rightContainer.setPrefWidth(130);
+
+            amountLabel.setFont(Font.font("System", FontWeight.BOLD, 16));
+            amountLabel.setTextAlignment(TextAlignment.RIGHT);
+
+            timeLabel.setTextFill(Color.web("#808080"));
+            timeLabel.setFont(Font.font("System", 10));
+            timeLabel.setTextAlignment(TextAlignment.RIGHT);
+
+            rightContainer.getChildren().addAll(amountLabel, timeLabel);
+
+            root.getChildren().addAll(statusIndicator, contentContainer, rightContainer);
+
+            // Add enhanced hover effects (transition tạo một lần cho mỗi thẻ)
+            ScaleTransition hoverScale = new ScaleTransition(Duration.millis(150), root);
+            hoverScale.setToX(1.02);
+            hoverScale.setToY(1.02);
+            ScaleTransition exitScale = new ScaleTransition(Duration.millis(150), root);
+            exitScale.setToX(1.0);
+            exitScale.setToY(1.0);
 
-        // Enhanced subtitle with more information
-        Label subtitleLabel = new Label(getEnhancedActivitySubtitle(order));
-        subtitleLabel.setTextFill(Color.web("#B0B0B0"));
-        subtitleLabel.setFont(Font.font("System", 12));
-        subtitleLabel.setMaxWidth(300.0);
+            root.setOnMouseEntered(e -> {
+                root.setStyle(HOVER_STYLE);
+                exitScale.stop();
+                hoverScale.playFromStart();
+            });
 
-        contentContainer.getChildren().addAll(titleBox, subtitleLabel);
+            root.setOnMouseExited(e -> {
+                root.setStyle(NORMAL_STYLE);
+                hoverScale.stop();
+                exitScale.playFromStart();
+            });
 
-        // Enhanced right side with amount and time
-        VBox rightContainer = new VBox(5);
-        rightContainer.setAlignment(Pos.CENTER_RIGHT);
-        rightContainer.setMinWidth(130);
-        rightContainer.setPrefWidth(130);
+            // Add click handler for details - luôn mở đơn mới nhất của thẻ
+            root.setOnMouseClicked(e -> {
+                LOG.debug("🖱️ Clicked on order #{}", order.getId());
+                openOrderDetailsPopup(order);
+            });
+        }
 
-        Label amountLabel = new Label(getActivityAmount(order));
-        amountLabel.setTextFill(getActivityAmountColor(order));
-        amountLabel.setFont(Font.font("System", FontWeight.BOLD, 16));
-        amountLabel.setTextAlignment(TextAlignment.RIGHT);
+        void update(Order newOrder) {
+            this.order = newOrder;
 
-        Label timeLabel = new Label(getRelativeTime(order));
-        timeLabel.setTextFill(Color.web("#808080"));
-        timeLabel.setFont(Font.font("System", 10));
-        timeLabel.setTextAlignment(TextAlignment.RIGHT);
+            String newStatus = newOrder.getStatus() != null ? newOrder.getStatus() : "";
+            if (!newStatus.equals(status)) {
+                status = newStatus;
+                applyStatus(status);
+            }
 
-        rightContainer.getChildren().addAll(amountLabel, timeLabel);
+            setTextIfChanged(iconLabel, getOrderIcon(newOrder));
+            setTextIfChanged(titleLabel, getEnhancedActivityTitle(newOrder));
+            setTextIfChanged(subtitleLabel, getEnhancedActivitySubtitle(newOrder));
+            setTextIfChanged(amountLabel, getActivityAmount(newOrder));
+            setTextIfChanged(timeLabel, getRelativeTime(newOrder));
+        }
 
-        itemBox.getChildren().addAll(statusIndicator, contentContainer, rightContainer);
+        private void applyStatus(String status) {
+            Color color;
+            String text;
+            switch (status) {
+                case "paid":
+                    color = Color.web("#4CAF50");
+                    text = "HOÀN THÀNH";
+                    break;
+                case "completed":
+                    color = Color.web("#2196F3");
+                    text = "CHỜ T.TOÁN";
+                    break;
+                case "cancelled":
+                    color = Color.web("#f44336");
+                    text = "ĐÃ HỦY";
+                    break;
+                default:
+                    color = Color.web("#FF9800");
+                    text = "XỬ LÝ";
+            }
+            statusCircle.setFill(color);
+            statusText.setText(text);
+            statusText.setTextFill(color);
+            amountLabel.setTextFill(getActivityAmountColor(order));
 
-        // Add enhanced hover effects
-        itemBox.setOnMouseEntered(e -> {
-            itemBox.setStyle("-fx-padding: 15; -fx-background-color: #1a2851; -fx-background-radius: 10; -fx-cursor: hand; -fx-spacing: 15;");
-            // Add subtle scale animation on hover
-            ScaleTransition hoverScale = new ScaleTransition(Duration.millis(150), itemBox);
-            hoverScale.setToX(1.02);
-            hoverScale.setToY(1.02);
-            hoverScale.play();
-        });
+            // Pulsing for orders waiting payment
+            setPulsing("completed".equals(status));
+        }
 
-        itemBox.setOnMouseExited(e -> {
-            itemBox.setStyle("-fx-padding: 15; -fx-background-color: #16213e; -fx-background-radius: 10; -fx-cursor: hand; -fx-spacing: 15;");
-            ScaleTransition exitScale = new ScaleTransition(Duration.millis(150), itemBox);
-            exitScale.setToX(1.0);
-            exitScale.setToY(1.0);
-            exitScale.play();
-        });
+        private void setPulsing(boolean on) {
+            if (on == pulsing) return;
+            pulsing = on;
+            if (on) {
+                attachPulse(statusCircle);
+            } else {
+                detachPulse(statusCircle);
+            }
+        }
 
-        // Add click handler for details - FIXED VERSION
-        itemBox.setOnMouseClicked(e -> {
-            System.out.println("🖱️ Clicked on order #" + order.getId());
-            openOrderDetailsPopup(order);
-        });
+        void dispose() {
+            setPulsing(false);
+        }
+    }
 
-        return itemBox;
+    private static void setTextIfChanged(Label label, String text) {
+        if (!Objects.equals(label.getText(), text)) {
+            label.setText(text);
+        }
     }
 
     /**
@@ -471,7 +553,7 @@ public class DashboardController {
      */
     private void openOrderDetailsPopup(Order order) {
         try {
-            System.out.println("📋 Opening details for order #" + order.getId());
+            LOG.debug("📋 Opening details for order #{}", order.getId());
 
             // Create new stage for popup
             Stage detailStage = new Stage();
@@ -520,8 +602,7 @@ public class DashboardController {
                     showInfo("✅ Đã tạo hóa đơn thành công!\nFile hóa đơn đã được mở tự động.");
                     
                 } catch (Exception ex) {
-                    System.err.println("❌ Lỗi tạo hóa đơn: " + ex.getMessage());
-                    ex.printStackTrace();
+                    LOG.error("❌ Lỗi tạo hóa đơn", ex);
                     showInfo("❌ Lỗi tạo hóa đơn: " + ex.getMessage());
                 }
             });
@@ -574,7 +655,7 @@ public class DashboardController {
                     }
                 }
             } catch (SQLException e) {
-                System.err.println("Error loading order items: " + e.getMessage());
+                LOG.error("Error loading order items: {}", e.getMessage());
                 Label errorLabel = new Label("Lỗi khi tải chi tiết món ăn: " + e.getMessage());
                 errorLabel.setTextFill(Color.web("#f44336"));
                 errorLabel.setFont(Font.font(14));
@@ -619,7 +700,7 @@ public class DashboardController {
             // Hiển thị giảm giá nếu có
             if (order.getDiscountPercent() > 0) {
                 // Tổng cộng (trước giảm giá)
-                String originalAmount = String.format("%,.0f VNĐ", order.getOriginalAmount().doubleValue());
+                String originalAmount = order.getOriginalAmount().format();
                 Label originalTotalLabel = new Label("💰 Tổng cộng: " + originalAmount);
                 originalTotalLabel.setTextFill(Color.WHITE);
                 originalTotalLabel.setFont(Font.font("System", FontWeight.BOLD, 16));
@@ -673,11 +754,10 @@ public class DashboardController {
             // Center the stage on screen
             detailStage.centerOnScreen();
 
-            System.out.println("✅ Responsive order details popup opened - Items: " + itemCount + ", Scrolling: " + needsScrolling);
+            LOG.debug("✅ Responsive order details popup opened - Items: {}, Scrolling: {}", itemCount, needsScrolling);
 
         } catch (Exception e) {
-            System.err.println("❌ Error opening order details popup: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("❌ Error opening order details popup", e);
             showErrorMessage("Không thể mở chi tiết đơn hàng: " + e.getMessage());
         }
     }
@@ -809,17 +889,26 @@ public class DashboardController {
     }
 
     /**
-     * Add pulsing animation to status circle
+     * ENHANCED: Một animation nhịp đập dùng chung cho mọi chấm "chờ thanh toán".
+     * Các Circle bind scale vào pulseScale thay vì mỗi thẻ chạy một ScaleTransition riêng.
      */
-    private void addPulsingAnimation(Circle circle) {
-        ScaleTransition pulse = new ScaleTransition(Duration.seconds(1.5), circle);
-        pulse.setFromX(1.0);
-        pulse.setFromY(1.0);
-        pulse.setToX(1.3);
-        pulse.setToY(1.3);
-        pulse.setCycleCount(javafx.animation.Animation.INDEFINITE);
-        pulse.setAutoReverse(true);
-        pulse.play();
+    private void attachPulse(Circle circle) {
+        circle.scaleXProperty().bind(pulseScale);
+        circle.scaleYProperty().bind(pulseScale);
+        if (pulsingCount++ == 0) {
+            pulseTimeline.play();
+        }
+    }
+
+    private void detachPulse(Circle circle) {
+        circle.scaleXProperty().unbind();
+        circle.scaleYProperty().unbind();
+        circle.setScaleX(1.0);
+        circle.setScaleY(1.0);
+        if (--pulsingCount == 0) {
+            pulseTimeline.stop();
+            pulseScale.set(1.0);
+        }
     }
 
     /**
@@ -853,36 +942,24 @@ public class DashboardController {
     }
 
     /**
-     * Load today's statistics with enhanced animations
+     * Render today's statistics with enhanced animations
      */
-    private void loadTodayStats() {
-        try {
-            // Load today's revenue
-            BigDecimal todayRevenue = revenueDAO.getTodayRevenue();
-            if (lblTodayRevenue != null) {
-                lblTodayRevenue.setText(formatCurrency(todayRevenue.doubleValue()));
-                addEnhancedUpdateAnimation(lblTodayRevenue);
-            }
-
-            // Load today's orders count
-            int todayOrders = revenueDAO.getTodayOrders();
-            if (lblTodayOrders != null) {
-                lblTodayOrders.setText(String.valueOf(todayOrders));
-                addEnhancedUpdateAnimation(lblTodayOrders);
-            }
-
-            // Load average order value
-            BigDecimal avgOrderValue = revenueDAO.getAverageOrderValue();
-            if (lblAvgOrderValue != null) {
-                lblAvgOrderValue.setText(formatCurrency(avgOrderValue.doubleValue()));
-            }
+    private void renderTodayStats(DashboardSnapshot data) {
+        if (lblTodayRevenue != null) {
+            lblTodayRevenue.setText(formatCurrency(data.getTodayRevenue().doubleValue()));
+            addEnhancedUpdateAnimation(lblTodayRevenue);
+        }
 
-            System.out.println("📊 Enhanced stats updated - Revenue: " + todayRevenue + ", Orders: " + todayOrders);
+        if (lblTodayOrders != null) {
+            lblTodayOrders.setText(String.valueOf(data.getTodayOrders()));
+            addEnhancedUpdateAnimation(lblTodayOrders);
+        }
 
-        } catch (SQLException e) {
-            System.err.println("❌ Error loading today's stats: " + e.getMessage());
-            e.printStackTrace();
+        if (lblAvgOrderValue != null) {
+            lblAvgOrderValue.setText(formatCurrency(data.getAverageOrderValue().doubleValue()));
         }
+
+        LOG.debug("📊 Enhanced stats updated - Revenue: {}, Orders: {}", data.getTodayRevenue(), data.getTodayOrders());
     }
 
     /**
@@ -912,81 +989,43 @@ public class DashboardController {
         scale.play();
     }
 
-    private void loadServiceTimeStatistics() {
-        try {
-            // Average service time calculation
-            int avgServiceTime = calculateAverageServiceTime();
-            if (lblAvgServiceTime != null) {
-                lblAvgServiceTime.setText(avgServiceTime + " phút");
-            }
-
-            // Fastest service today
-            int fastestService = calculateFastestServiceTime();
-            if (lblFastestService != null) {
-                lblFastestService.setText(fastestService + " phút");
-            }
-
-            // Active orders count
-            int activeOrdersCount = getActiveOrdersCount();
-            if (lblActiveOrders != null) {
-                lblActiveOrders.setText(activeOrdersCount + " bàn");
-            }
-
-        } catch (SQLException e) {
-            System.err.println("Error loading service time statistics: " + e.getMessage());
-            // Set default values on error
-            if (lblAvgServiceTime != null) lblAvgServiceTime.setText("-- phút");
-            if (lblFastestService != null) lblFastestService.setText("-- phút");
-            if (lblActiveOrders != null) lblActiveOrders.setText("-- bàn");
+    private void renderServiceTimeStatistics(DashboardSnapshot data) {
+        // Average service time calculation
+        int avgServiceTime = data.getPaidOrders() == 0 ? 25 : 20 + (data.getPaidOrders() % 15);
+        if (lblAvgServiceTime != null) {
+            lblAvgServiceTime.setText(avgServiceTime + " phút");
         }
-    }
 
-    private int calculateAverageServiceTime() throws SQLException {
-        List<Order> completedOrders = orderDAO.findByStatus("paid");
-        if (completedOrders.isEmpty()) {
-            return 25;
+        // Fastest service today
+        int fastestService = data.getPaidOrders() == 0 ? 15 : 10 + (data.getPaidOrders() % 10);
+        if (lblFastestService != null) {
+            lblFastestService.setText(fastestService + " phút");
         }
-        return 20 + (completedOrders.size() % 15);
-    }
 
-    private int calculateFastestServiceTime() throws SQLException {
-        List<Order> paidOrders = orderDAO.findByStatus("paid");
-        if (paidOrders.isEmpty()) {
-            return 15;
+        // Active orders count
+        if (lblActiveOrders != null) {
+            lblActiveOrders.setText(data.getCompletedOrders() + " bàn");
         }
-        return 10 + (paidOrders.size() % 10);
-    }
-
-    private int getActiveOrdersCount() throws SQLException {
-        List<Order> activeOrders = orderDAO.findByStatus("completed");
-        return activeOrders.size();
     }
 
-    private void loadPaymentMethodStatistics() {
-        try {
-            Map<String, Integer> paymentStats = revenueDAO.getPaymentMethodStats();
-
-            if (lblCashPayments != null) {
-                int cashPayments = paymentStats.getOrDefault("Tiền mặt", 0);
-                lblCashPayments.setText(String.valueOf(cashPayments));
-            }
+    private void renderPaymentMethodStatistics(DashboardSnapshot data) {
+        Map<String, Integer> paymentStats = data.getPaymentMethodStats();
 
-            if (lblCardPayments != null) {
-                int cardPayments = paymentStats.getOrDefault("Thẻ tín dụng", 0) +
-                        paymentStats.getOrDefault("Chuyển khoản", 0) +
-                        paymentStats.getOrDefault("MOMO", 0) +
-                        paymentStats.getOrDefault("ZaloPay", 0);
-                lblCardPayments.setText(String.valueOf(cardPayments));
-            }
+        if (lblCashPayments != null) {
+            int cashPayments = paymentStats.getOrDefault("Tiền mặt", 0);
+            lblCashPayments.setText(String.valueOf(cashPayments));
+        }
 
-            if (lblPeakHour != null) {
-                Map<String, Object> peakData = revenueDAO.getPeakHoursAnalysis();
-                String peakHour = (String) peakData.get("peak_hour");
-                lblPeakHour.setText(peakHour);
-            }
+        if (lblCardPayments != null) {
+            int cardPayments = paymentStats.getOrDefault("Thẻ tín dụng", 0) +
+                    paymentStats.getOrDefault("Chuyển khoản", 0) +
+                    paymentStats.getOrDefault("MOMO", 0) +
+                    paymentStats.getOrDefault("ZaloPay", 0);
+            lblCardPayments.setText(String.valueOf(cardPayments));
+        }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+        if (lblPeakHour != null) {
+            lblPeakHour.setText(data.getPeakHour() != null ? data.getPeakHour() : "--");
         }
     }
 
@@ -1067,49 +1106,66 @@ public class DashboardController {
     }
 
 
+    /**
+     * ENHANCED: Tải toàn bộ số liệu bằng một DashboardSnapshot ở thread DB (không chặn UI),
+     * lần tải mới sẽ thay thế lần đang chạy
+     */
     private void loadDashboardData() {
-        Platform.runLater(() -> {
-            try {
-                loadTodayStats();
-                loadTableStatus();
-                loadMenuItemsCount();
-                loadPaymentMethodStatistics();
-                loadServiceTimeStatistics();
-
-            } catch (Exception e) {
-                e.printStackTrace();
-                showErrorMessage("Không thể tải dữ liệu dashboard: " + e.getMessage());
+        dashboardLoad.submit(revenueDAO::getDashboardSnapshot, this::renderDashboardData, error -> {
+            LOG.error("❌ Error loading dashboard data", error);
+            if (!activityInitialized) {
+                activityInitialized = true;
+                initializeEnhancedEmptyActivity();
             }
+            showErrorMessage("Không thể tải dữ liệu dashboard: " + error.getMessage());
         });
     }
 
-    private void loadTableStatus() throws SQLException {
-        var tables = tableDAO.findAll();
-        long activeTables = tables.stream()
-                .filter(t -> "occupied".equals(t.getStatus()) || "ordering".equals(t.getStatus()))
-                .count();
+    private void renderDashboardData(DashboardSnapshot snapshot) {
+        renderTodayStats(snapshot);
 
         if (lblActiveTables != null) {
-            lblActiveTables.setText(activeTables + "/" + tables.size());
+            lblActiveTables.setText(snapshot.getActiveTables() + "/" + snapshot.getTotalTables());
         }
-    }
-
-    private void loadMenuItemsCount() throws SQLException {
-        var menuItems = menuItemDAO.findAll();
         if (lblMenuItems != null) {
-            lblMenuItems.setText(String.valueOf(menuItems.size()));
+            lblMenuItems.setText(String.valueOf(snapshot.getMenuItemCount()));
+        }
+
+        renderPaymentMethodStatistics(snapshot);
+        renderServiceTimeStatistics(snapshot);
+        renderRevenueChart(snapshot.getWeeklyRevenue());
+        renderOrdersChart(snapshot.getWeeklyOrders());
+
+        // ENHANCED: Lần tải đầu quyết định hiển thị hoạt động gần đây hay trạng thái trống
+        if (!activityInitialized) {
+            activityInitialized = true;
+            if (snapshot.getPaidOrders() > 0 || snapshot.getCompletedOrders() > 0) {
+                LOG.debug("📋 Found existing orders, loading enhanced activity");
+                isFirstLoad = false;
+                loadEnhancedRecentActivity();
+            } else {
+                LOG.debug("📋 No existing orders, showing enhanced empty state");
+                initializeEnhancedEmptyActivity();
+            }
         }
     }
 
     @FXML
     private void refreshData() {
-        System.out.println("🔄 Manual enhanced dashboard refresh requested");
+        LOG.debug("🔄 Manual enhanced dashboard refresh requested");
         loadDashboardData();
-        updateCharts();
         if (!isFirstLoad) {
             loadEnhancedRecentActivity();
         }
-        System.out.println("✅ Manual enhanced dashboard refresh completed");
+        LOG.debug("✅ Manual enhanced dashboard refresh completed");
+    }
+
+    /**
+     * NEW: Mở cửa sổ chẩn đoán truy vấn (top câu SQL theo tổng thời gian)
+     */
+    @FXML
+    private void showQueryDiagnostics(ActionEvent event) {
+        QueryDiagnosticsView.show(event != null ? ((Node) event.getSource()).getScene().getWindow() : null);
     }
 
     private void initializeCharts() {
@@ -1127,28 +1183,13 @@ public class DashboardController {
             ordersChart.getStyleClass().add("orders-chart");
             ordersChart.setAnimated(true);
         }
-
-        updateCharts();
     }
 
-    private void updateCharts() {
-        Platform.runLater(() -> {
-            try {
-                updateRevenueChart();
-                updateOrdersChart();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
-        });
-    }
-
-    private void updateRevenueChart() throws SQLException {
+    private void renderRevenueChart(Map<String, BigDecimal> weeklyRevenue) {
         if (revenueChart == null) return;
 
         revenueChart.getData().clear();
 
-        Map<String, BigDecimal> weeklyRevenue = revenueDAO.getWeeklyRevenue();
-
         XYChart.Series<String, Number> revenueSeries = new XYChart.Series<>();
         revenueSeries.setName("Doanh thu");
 
@@ -1183,13 +1224,11 @@ public class DashboardController {
         });
     }
 
-    private void updateOrdersChart() throws SQLException {
+    private void renderOrdersChart(Map<String, Integer> weeklyOrders) {
         if (ordersChart == null) return;
 
         ordersChart.getData().clear();
 
-        Map<String, Integer> weeklyOrders = revenueDAO.getWeeklyOrders();
-
         XYChart.Series<String, Number> ordersSeries = new XYChart.Series<>();
         ordersSeries.setName("Số đơn hàng");
 
@@ -1221,8 +1260,8 @@ public class DashboardController {
     }
 
     private String getActivityAmount(Order order) {
-        if (order.getTotalAmount() != null && order.getTotalAmount().compareTo(BigDecimal.ZERO) > 0) {
-            return formatCurrency(order.getTotalAmount().doubleValue());
+        if (order.getTotalAmount() != null && order.getTotalAmount().isPositive()) {
+            return formatCurrency(order.getTotalAmount().toDouble());
         }
 
         switch (order.getStatus()) {
@@ -1278,7 +1317,7 @@ public class DashboardController {
      * PUBLIC: Enhanced method called after successful payment
      */
     public void onPaymentCompleted() {
-        System.out.println("🎉 Enhanced payment completion notification received");
+        LOG.debug("🎉 Enhanced payment completion notification received");
 
         isFirstLoad = false;
         refreshEnhancedDashboardData();
@@ -1360,7 +1399,7 @@ public class DashboardController {
             stage.setTitle(title);
             stage.show();
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.atError().with("fxml", fxmlPath).cause(e).log("❌ Cannot open window");
             showErrorMessage("Không thể mở " + title + ": " + e.getMessage());
         }
     }
@@ -1369,7 +1408,7 @@ public class DashboardController {
      * Enhanced cleanup when controller is destroyed
      */
     public void cleanup() {
-        System.out.println("🧹 Cleaning up Enhanced Dashboard Controller...");
+        LOG.debug("🧹 Cleaning up Enhanced Dashboard Controller...");
 
         if (clockTimeline != null) {
             clockTimeline.stop();
@@ -1377,9 +1416,14 @@ public class DashboardController {
         if (dataTimeline != null) {
             dataTimeline.stop();
         }
+        releaseActivityCards();
+        pulseTimeline.stop();
 
-        DashboardUpdateUtil.removeUpdateListener(this::refreshEnhancedDashboardData);
+        if (eventSubscription != null) {
+            eventSubscription.unsubscribe();
+            eventSubscription = null;
+        }
 
-        System.out.println("✅ Enhanced Dashboard Controller cleanup completed");
+        LOG.debug("✅ Enhanced Dashboard Controller cleanup completed");
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.barmanagement.controller;
 
-import com.barmanagement.dao.JDBCConnect;
+import com.barmanagement.dao.UserDAO;
+import com.barmanagement.util.FxStallWatchdog;
+import com.barmanagement.util.Log;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -14,15 +16,13 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.net.URL;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ResourceBundle;
 
 public class LoginController implements Initializable {
 
+    private static final Log LOG = Log.get(LoginController.class);
+
     @FXML
     private TextField usernameField;
 
@@ -41,6 +41,8 @@ public class LoginController implements Initializable {
     @FXML
     private Button closeButton2;
 
+    private final UserDAO userDAO = new UserDAO();
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         usernameField.requestFocus();
@@ -73,12 +75,13 @@ public class LoginController implements Initializable {
                 if (checkLogin(username, password)) {
                     // Đăng nhập thành công
                     javafx.application.Platform.runLater(() -> {
+                        FxStallWatchdog.get().startShift(username);
                         try {
                             openDashboard();
                         } catch (IOException e) {
                             showError("Không thể mở màn hình chính.");
                             resetLoginButton();
-                            e.printStackTrace();
+                            LOG.error("❌ Cannot open dashboard", e);
                         }
                     });
                 } else {
@@ -95,7 +98,7 @@ public class LoginController implements Initializable {
                 javafx.application.Platform.runLater(() -> {
                     showError("Lỗi kết nối cơ sở dữ liệu.");
                     resetLoginButton();
-                    e.printStackTrace();
+                    LOG.error("❌ Login failed", e);
                 });
             }
         }).start();
@@ -132,34 +135,18 @@ public class LoginController implements Initializable {
         });
     }
 
+    /**
+     * ENHANCED: Kiểm tra qua UserDAO / CredentialService (một đường băm mật khẩu duy nhất, tự nâng cấp hash cũ)
+     */
     private boolean checkLogin(String username, String password) {
-        String sql = "SELECT * FROM users WHERE username = ?";
-        try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                String storedHash = rs.getString("password");
-                // Verify password với hash đã lưu
-                return PasswordUtils.verifyPassword(password, storedHash);
-            }
-            return false;
-
-        } catch (Exception e) {
-            e.printStackTrace();
+        try {
+            return userDAO.checkLogin(username, password) != null;
+        } catch (SQLException e) {
+            LOG.error("❌ Login query failed", e);
             throw new RuntimeException("Database connection error", e);
         }
     }
 
-    // Method này không cần thiết nữa vì đã có PasswordUtils
-    // Giữ lại để tương thích với code cũ nếu cần
-    @Deprecated
-    private String hashPassword(String password) {
-        return PasswordUtils.hashPasswordSimple(password);
-    }
-
     private void openDashboard() throws IOException {
         try {
             // Load dashboard FXML
@@ -179,7 +166,7 @@ public class LoginController implements Initializable {
             stage.show();
 
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.error("❌ Cannot load dashboard.fxml", e);
             throw e; // Re-throw để handle ở caller
         }
     }
@@ -2,23 +2,30 @@ package com.barmanagement.controller;
 
 import com.barmanagement.dao.MenuItemDAO;
 import com.barmanagement.model.MenuItem;
+import com.barmanagement.model.Money;
 import com.barmanagement.util.SceneUtil;
 import com.barmanagement.util.LogoutUtil;
 import com.barmanagement.util.ImageStoreUtil;
+import com.barmanagement.util.ImageCache;
+import com.barmanagement.util.VirtualTileView;
+import com.barmanagement.util.DashboardEvent;
+import com.barmanagement.util.DashboardEventBus;
+import com.barmanagement.util.Log;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import com.barmanagement.util.TimeService;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.layout.FlowPane;
-import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
@@ -27,14 +34,19 @@ import javafx.stage.FileChooser;
 
 import java.io.File;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Quản lý thực đơn (menu_items) với hiển thị dạng Grid có ảnh
  */
 public class MenuManagementController {
 
+    private static final Log LOG = Log.get(MenuManagementController.class);
+
+    // Kích thước ảnh món (px) trên lưới quản lý menu
+    private static final int MENU_THUMB_SIZE = 80;
+    private static final double CARD_WIDTH = 200;
+    private static final double CARD_HEIGHT = 280;
+
     // Form controls
     @FXML private TextField txtName, txtPrice;
     @FXML private ComboBox<String> cbCategory;
@@ -49,11 +61,13 @@ public class MenuManagementController {
     @FXML private Label welcomeTimeLabel;   // label ngày (nếu có)
 
     // Menu display controls
-    @FXML private FlowPane menuGridContainer;
+    @FXML private StackPane menuGridContainer;
     @FXML private ComboBox<String> cbCategoryFilter;
 
     private final MenuItemDAO dao = new MenuItemDAO();
     private final ObservableList<MenuItem> data = FXCollections.observableArrayList();
+    private final FilteredList<MenuItem> filteredData = new FilteredList<>(data, item -> true);
+    private VirtualTileView<MenuItem> menuTileView;
     private MenuItem selectedMenuItem = null;
 
     // Ảnh vừa chọn (absolute path)
@@ -83,13 +97,6 @@ public class MenuManagementController {
             cbCategoryFilter.getItems().addAll("Tất cả", "Đồ uống", "Khai vị", "Món chính", "Tráng miệng");
             cbCategoryFilter.setValue("Tất cả");
         }
-
-        if (menuGridContainer != null) {
-            menuGridContainer.setHgap(15);
-            menuGridContainer.setVgap(15);
-            menuGridContainer.setPadding(new Insets(10));
-            menuGridContainer.setPrefWrapLength(900);
-        }
     }
 
     private void setupEventHandlers() {
@@ -140,7 +147,7 @@ public class MenuManagementController {
             MenuItem m = new MenuItem();
             m.setName(txtName.getText().trim());
             m.setCategory(cbCategory.getValue() == null ? "Đồ uống" : cbCategory.getValue());
-            m.setPrice(Double.parseDouble(txtPrice.getText().trim()));
+            m.setPrice(Money.parse(txtPrice.getText()));
 
             // set ảnh
             if (pickedImageAbsolutePath != null && !pickedImageAbsolutePath.isEmpty()) {
@@ -155,6 +162,7 @@ public class MenuManagementController {
             Integer id = dao.insert(m);
             if (id != null) {
                 m.setId(id);
+                DashboardEventBus.publish(DashboardEvent.menuChanged());
                 data.add(m);
                 pickedImageAbsolutePath = null;
                 if (imgPreview != null) imgPreview.setImage(null);
@@ -181,13 +189,17 @@ public class MenuManagementController {
         try {
             selectedMenuItem.setName(txtName.getText().trim());
             selectedMenuItem.setCategory(cbCategory.getValue() == null ? "Đồ uống" : cbCategory.getValue());
-            selectedMenuItem.setPrice(Double.parseDouble(txtPrice.getText().trim()));
+            selectedMenuItem.setPrice(Money.parse(txtPrice.getText()));
 
             if (pickedImageAbsolutePath != null && !pickedImageAbsolutePath.isEmpty()) {
+                // Bỏ ảnh cũ đã giải mã khỏi cache để lưới không giữ ảnh trước khi đổi
+                ImageCache.invalidate(selectedMenuItem.getImagePath());
+                ImageCache.invalidate(pickedImageAbsolutePath);
                 selectedMenuItem.setImagePath(pickedImageAbsolutePath);
             }
 
             dao.update(selectedMenuItem);
+            DashboardEventBus.publish(DashboardEvent.menuChanged());
             pickedImageAbsolutePath = null;
             if (imgPreview != null) imgPreview.setImage(null);
 
@@ -217,6 +229,7 @@ public class MenuManagementController {
             if (response == ButtonType.OK) {
                 try {
                     dao.delete(selectedMenuItem.getId());
+                    DashboardEventBus.publish(DashboardEvent.menuChanged());
                     data.remove(selectedMenuItem);
                     selectedMenuItem = null;
                     clear();
@@ -236,6 +249,7 @@ public class MenuManagementController {
         selectedMenuItem = null;
         try {
             data.addAll(dao.findAll());
+            ImageCache.prefetch(data, MENU_THUMB_SIZE);
             displayMenuItems();
             updateStatistics();
             clear();
@@ -244,118 +258,132 @@ public class MenuManagementController {
         }
     }
 
-    // Hiển thị menu items dạng grid
+    // Hiển thị menu items dạng grid - ENHANCED: lưới ảo hóa, lọc chỉ đổi predicate
     private void displayMenuItems() {
         if (menuGridContainer == null) return;
-        menuGridContainer.getChildren().clear();
+
+        if (menuTileView == null) {
+            menuTileView = new VirtualTileView<>(filteredData, CARD_WIDTH, CARD_HEIGHT, 15, 0,
+                    new VirtualTileView.TileFactory<MenuItem>() {
+                        @Override
+                        public Node create() {
+                            return createMenuCard();
+                        }
+
+                        @Override
+                        public void update(Node tile, MenuItem item) {
+                            ((MenuCard) tile).update(item);
+                        }
+                    });
+            menuTileView.setPadding(new Insets(10));
+
+            Label noItemsLabel = new Label("Không có món nào trong danh mục này");
+            noItemsLabel.setTextFill(Color.WHITE);
+            noItemsLabel.setFont(Font.font("System", 16));
+            noItemsLabel.setStyle("-fx-padding: 20; -fx-alignment: center;");
+            menuTileView.setPlaceholder(noItemsLabel);
+
+            menuGridContainer.getChildren().setAll(menuTileView);
+        }
 
         String selectedCategory = cbCategoryFilter != null ? cbCategoryFilter.getValue() : "Tất cả";
 
-        List<MenuItem> filteredItems;
-        if ("Tất cả".equals(selectedCategory)) {
-            filteredItems = data.stream().collect(Collectors.toList());
+        // Luôn gán predicate mới để lọc lại cả khi món bị sửa tại chỗ (đổi danh mục)
+        if (selectedCategory == null || "Tất cả".equals(selectedCategory)) {
+            filteredData.setPredicate(item -> true);
         } else {
-            filteredItems = data.stream()
-                    .filter(item -> item.getCategory().equals(selectedCategory))
-                    .collect(Collectors.toList());
+            filteredData.setPredicate(item -> selectedCategory.equals(item.getCategory()));
         }
+    }
 
-        for (MenuItem item : filteredItems) {
-            VBox menuCard = createMenuCard(item);
-            menuGridContainer.getChildren().add(menuCard);
+    /** Card món trên lưới, tạo một lần và đổ dữ liệu lại khi được tái sử dụng */
+    private final class MenuCard extends VBox {
+        final ImageView imageView = new ImageView();
+        final Label nameLabel = new Label();
+        final Label categoryLabel = new Label();
+        final Label priceLabel = new Label();
+        final Label statusLabel = new Label();
+        boolean hovered;
+
+        MenuCard() {
+            super(10);
         }
 
-        if (filteredItems.isEmpty()) {
-            Label noItemsLabel = new Label("Không có món nào trong danh mục này");
-            noItemsLabel.setTextFill(Color.WHITE);
-            noItemsLabel.setFont(Font.font("System", 16));
-            noItemsLabel.setStyle("-fx-padding: 20; -fx-alignment: center;");
-            menuGridContainer.getChildren().add(noItemsLabel);
+        void update(MenuItem item) {
+            ImageCache.load(imageView, item.getImagePath(), MENU_THUMB_SIZE);
+
+            nameLabel.setText(item.getName());
+            categoryLabel.setText(item.getCategory());
+            priceLabel.setText(item.getFormattedPrice());
+            statusLabel.setText(item.isAvailable() ? "✅ Có sẵn" : "❌ Hết món");
+            statusLabel.setTextFill(item.isAvailable() ? Color.web("#4CAF50") : Color.web("#f44336"));
+            applyStyle();
+        }
+
+        void applyStyle() {
+            String color;
+            if (getUserData() != null && getUserData() == selectedMenuItem) {
+                color = "#e16428";
+            } else {
+                color = hovered ? "#1a5490" : "#16213e";
+            }
+            setStyle("-fx-background-color: " + color + "; -fx-background-radius: 12; -fx-padding: 15; -fx-cursor: hand;");
         }
     }
 
-    // Tạo card cho từng menu item
-    private VBox createMenuCard(MenuItem item) {
-        VBox card = new VBox(10);
+    // Tạo card rỗng cho lưới menu
+    private MenuCard createMenuCard() {
+        MenuCard card = new MenuCard();
         card.setAlignment(Pos.CENTER);
-        card.setPrefWidth(200);
-        card.setPrefHeight(280);
-        card.setStyle("-fx-background-color: #16213e; -fx-background-radius: 12; -fx-padding: 15; -fx-cursor: hand;");
-        card.setUserData(item);
+        card.setPrefWidth(CARD_WIDTH);
+        card.setPrefHeight(CARD_HEIGHT);
+        card.setMinWidth(CARD_WIDTH);
+        card.setMaxWidth(CARD_WIDTH);
 
+        // Card được tái sử dụng nên món hiện tại luôn đọc từ userData
         card.setOnMouseEntered(e -> {
-            if (selectedMenuItem == item) {
-                card.setStyle("-fx-background-color: #e16428; -fx-background-radius: 12; -fx-padding: 15; -fx-cursor: hand;");
-            } else {
-                card.setStyle("-fx-background-color: #1a5490; -fx-background-radius: 12; -fx-padding: 15; -fx-cursor: hand;");
-            }
+            card.hovered = true;
+            card.applyStyle();
         });
         card.setOnMouseExited(e -> {
-            if (selectedMenuItem == item) {
-                card.setStyle("-fx-background-color: #e16428; -fx-background-radius: 12; -fx-padding: 15; -fx-cursor: hand;");
-            } else {
-                card.setStyle("-fx-background-color: #16213e; -fx-background-radius: 12; -fx-padding: 15; -fx-cursor: hand;");
+            card.hovered = false;
+            card.applyStyle();
+        });
+        card.setOnMouseClicked(e -> {
+            if (card.getUserData() instanceof MenuItem) {
+                selectMenuItem((MenuItem) card.getUserData());
             }
         });
-        card.setOnMouseClicked(e -> selectMenuItem(item));
 
         VBox imageContainer = new VBox();
         imageContainer.setAlignment(Pos.CENTER);
         imageContainer.setStyle("-fx-background-color: #0f3460; -fx-background-radius: 8;");
         imageContainer.setPadding(new Insets(8));
 
-        ImageView imageView = new ImageView();
+        ImageView imageView = card.imageView;
         imageView.setFitHeight(80);
         imageView.setFitWidth(80);
         imageView.setPreserveRatio(true);
 
-        try {
-            String rawPath = item.getImagePath();
-            Image image = null;
-
-            if (rawPath != null && !rawPath.isEmpty()) {
-                File asFile = new File(rawPath);
-                if (asFile.isAbsolute() && asFile.exists()) {
-                    image = new Image(asFile.toURI().toString());
-                } else {
-                    String resourcePath = rawPath.startsWith("/") ? rawPath : "/images/menu/" + rawPath;
-                    image = new Image(getClass().getResourceAsStream(resourcePath));
-                }
-            }
-
-            if (image == null || image.isError()) {
-                imageView.setImage(createPlaceholderImage());
-            } else {
-                imageView.setImage(image);
-            }
-        } catch (Exception e) {
-            imageView.setImage(createPlaceholderImage());
-        }
-
         imageContainer.getChildren().add(imageView);
 
         VBox infoContainer = new VBox(5);
         infoContainer.setAlignment(Pos.CENTER);
 
-        Label nameLabel = new Label(item.getName());
-        nameLabel.setTextFill(Color.WHITE);
-        nameLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
-        nameLabel.setWrapText(true);
-        nameLabel.setMaxWidth(180);
+        card.nameLabel.setTextFill(Color.WHITE);
+        card.nameLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
+        card.nameLabel.setWrapText(true);
+        card.nameLabel.setMaxWidth(180);
 
-        Label categoryLabel = new Label(item.getCategory());
-        categoryLabel.setTextFill(Color.web("#B0B0B0"));
-        categoryLabel.setFont(Font.font("System", 11));
+        card.categoryLabel.setTextFill(Color.web("#B0B0B0"));
+        card.categoryLabel.setFont(Font.font("System", 11));
 
-        Label priceLabel = new Label(item.getFormattedPrice());
-        priceLabel.setTextFill(Color.web("#4CAF50"));
-        priceLabel.setFont(Font.font("System", FontWeight.BOLD, 16));
+        card.priceLabel.setTextFill(Color.web("#4CAF50"));
+        card.priceLabel.setFont(Font.font("System", FontWeight.BOLD, 16));
 
-        Label statusLabel = new Label(item.isAvailable() ? "✅ Có sẵn" : "❌ Hết món");
-        statusLabel.setTextFill(item.isAvailable() ? Color.web("#4CAF50") : Color.web("#f44336"));
-        statusLabel.setFont(Font.font("System", 10));
+        card.statusLabel.setFont(Font.font("System", 10));
 
-        infoContainer.getChildren().addAll(nameLabel, categoryLabel, priceLabel, statusLabel);
+        infoContainer.getChildren().addAll(card.nameLabel, card.categoryLabel, card.priceLabel, card.statusLabel);
 
         card.getChildren().addAll(imageContainer, infoContainer);
 
@@ -364,42 +392,22 @@ public class MenuManagementController {
         dropShadow.setRadius(5);
         card.setEffect(dropShadow);
 
-        if (selectedMenuItem == item) {
-            card.setStyle("-fx-background-color: #e16428; -fx-background-radius: 12; -fx-padding: 15; -fx-cursor: hand;");
-        }
-
         return card;
     }
 
-    private Image createPlaceholderImage() {
-        try {
-            String[] fallbackImages = {
-                    "/images/menu/default.png",
-                    "/images/menu/Snack.png",
-                    "/images/menu/CocaCola.png"
-            };
-            for (String path : fallbackImages) {
-                try {
-                    Image img = new Image(getClass().getResourceAsStream(path));
-                    if (!img.isError()) {
-                        return img;
-                    }
-                } catch (Exception ignored) {}
-            }
-        } catch (Exception ignored) {}
-        return null;
-    }
-
     private void selectMenuItem(MenuItem item) {
         selectedMenuItem = item;
         fillForm(item);
-        displayMenuItems();
+        // Chỉ vẽ lại các card đang hiển thị để đổi màu chọn, không dựng lại lưới
+        if (menuTileView != null) {
+            menuTileView.refreshTiles();
+        }
     }
 
     private void fillForm(MenuItem m) {
         if (m == null) return;
         txtName.setText(m.getName());
-        txtPrice.setText(String.format(java.util.Locale.US, "%.0f", m.getPrice()));
+        txtPrice.setText(String.valueOf(m.getPrice().toVnd()));
         cbCategory.getSelectionModel().select(m.getCategory());
 
         if (m.getImagePath() != null) {
@@ -420,7 +428,8 @@ public class MenuManagementController {
                     "Khai vị".equals(m.getCategory()) ||
                             "Món chính".equals(m.getCategory()) ||
                             "Tráng miệng".equals(m.getCategory())).count();
-            double avgPrice = data.stream().mapToDouble(MenuItem::getPrice).average().orElse(0.0);
+            double avgPrice = data.stream().mapToLong(m -> m.getPrice().getMinor()).average().orElse(0.0)
+                    / Money.MINOR_PER_VND;
 
             lblTotalItems.setText(String.valueOf(total));
             lblDrinkCount.setText(String.valueOf(drinks));
@@ -453,7 +462,7 @@ public class MenuManagementController {
         alert.setHeaderText("Có lỗi xảy ra");
         alert.setContentText(e.getMessage());
         alert.showAndWait();
-        e.printStackTrace();
+        LOG.error("❌ Menu management error", e);
     }
 
     private void showInfo(String message) {
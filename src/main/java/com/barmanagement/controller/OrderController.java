@@ -1,18 +1,30 @@
 package com.barmanagement.controller;
 
-import com.barmanagement.dao.MenuItemDAO;
+import com.barmanagement.dao.MenuCatalog;
 import com.barmanagement.dao.OrderDAO;
+import com.barmanagement.dao.OrderSession;
 import com.barmanagement.dao.TableDAO;
+import com.barmanagement.dao.QueryInstrumentation;
 import com.barmanagement.dao.RevenueDAO;
 import com.barmanagement.model.MenuItem;
+import com.barmanagement.model.Money;
 import com.barmanagement.model.Order;
 import com.barmanagement.model.OrderItem;
 import com.barmanagement.model.Table;
 import com.barmanagement.util.SceneUtil;
 import com.barmanagement.util.LogoutUtil;
+import com.barmanagement.util.LatestRequest;
+import com.barmanagement.util.FxAsync;
+import com.barmanagement.util.ImageCache;
+import com.barmanagement.util.VirtualTileView;
+import com.barmanagement.util.FloorPlanCanvas;
+import com.barmanagement.util.DashboardEvent;
+import com.barmanagement.util.DashboardEventBus;
+import com.barmanagement.util.Log;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import com.barmanagement.util.TimeService;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
@@ -21,27 +33,22 @@ import javafx.scene.control.Label;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.effect.DropShadow;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import javafx.scene.layout.GridPane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 
 import javafx.application.Platform;
 
-import java.io.File;
-import java.math.BigDecimal;
 import java.sql.SQLException;
-import java.text.NumberFormat;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -53,11 +60,13 @@ import java.util.stream.Collectors;
  */
 public class OrderController {
 
+    private static final Log LOG = Log.get(OrderController.class);
+
     // ===== FXML Elements =====
     @FXML private ComboBox<Table> cbTable;
     @FXML private ComboBox<String> cbCategory;
     @FXML private Label selectedTableLabel;
-    @FXML private GridPane tableGrid;
+    @FXML private StackPane floorPlanContainer;
     @FXML private VBox menuContainer;
     @FXML private VBox orderContainer;
     @FXML private Label lblOrderId, lblTotal;
@@ -84,15 +93,27 @@ public class OrderController {
 
     // ===== Data và Services =====
     private final TableDAO tableDAO = new TableDAO();
-    private final MenuItemDAO menuDAO = new MenuItemDAO();
     private final OrderDAO orderDAO = new OrderDAO();
     private final RevenueDAO revenueDAO = new RevenueDAO();
 
     private final ObservableList<MenuItem> menuData = FXCollections.observableArrayList();
+    private final FilteredList<MenuItem> filteredMenu = new FilteredList<>(menuData, item -> true);
+    private VirtualTileView<MenuItem> menuTileView;
+    private final FloorPlanCanvas floorPlan = new FloorPlanCanvas();
     private final ObservableList<OrderItem> itemData = FXCollections.observableArrayList();
     private Map<Integer, MenuItem> menuMap = new HashMap<>();
 
     private Order current;
+    private final LatestRequest<List<OrderItem>> itemsLoad = new LatestRequest<>();
+    // ENHANCED: Món của đơn hiện tại sửa trong bộ nhớ, ghi xuống DB theo lô (write-behind)
+    private OrderSession session;
+    // Đang trả combobox về bàn cũ vì không đóng được phiên sửa
+    private boolean revertingTableSelection;
+
+    // Kích thước ảnh món (px) trên lưới menu và danh sách món đã gọi
+    private static final int MENU_THUMB_SIZE = 60;
+    private static final int ORDER_ITEM_THUMB_SIZE = 45;
+    private static final double MENU_TILE_HEIGHT = 90;
     private int selectedTableId = -1;
     private int popupTableId = -1;
     private MenuItem selectedMenuItem;
@@ -100,8 +121,6 @@ public class OrderController {
     // Payment flow state
     private boolean orderCompleted = false;
 
-    // Formatter cho tiền tệ
-    private final NumberFormat currencyFormatter = NumberFormat.getInstance(new Locale("vi", "VN"));
 
     @FXML
     public void initialize() {
@@ -114,12 +133,13 @@ public class OrderController {
             welcomeTimeLabel.textProperty().bind(TimeService.get().dateTextProperty());
         }
 
-        System.out.println("🚀 ORDER CONTROLLER INITIALIZING...");
+        LOG.debug("🚀 ORDER CONTROLLER INITIALIZING...");
         setupComponents();
+        setupFloorPlan();
         loadData();
         setupEventHandlers();
         setupPopupEvents();
-        System.out.println("✅ ORDER CONTROLLER INITIALIZED");
+        LOG.debug("✅ ORDER CONTROLLER INITIALIZED");
     }
 
     private void setupComponents() {
@@ -128,8 +148,6 @@ public class OrderController {
         cbCategory.getItems().addAll("Tất cả", "Đồ uống", "Khai vị", "Món chính", "Tráng miệng");
         cbCategory.setValue("Tất cả");
 
-        currencyFormatter.setMaximumFractionDigits(0);
-
         // Hide payment button initially
         if (btnPayment != null) {
             btnPayment.setVisible(false);
@@ -164,7 +182,7 @@ public class OrderController {
         try {
             revenueDAO.initTodayRevenue();
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.error("❌ Error initializing today's revenue", e);
         }
     }
 
@@ -175,17 +193,27 @@ public class OrderController {
         // Table selection listener - FIXED
         cbTable.getSelectionModel().selectedItemProperty()
                 .addListener((o, a, b) -> {
-                    if (b != null) {
-                        selectedTableId = b.getId();
-                        loadOrCreatePending(b);
+                    if (b == null || revertingTableSelection) return;
+                    // Chưa ghi được món của đơn đang mở thì ở lại bàn cũ
+                    if (!closeSession()) {
+                        revertingTableSelection = true;
+                        try {
+                            cbTable.getSelectionModel().select(a);
+                        } finally {
+                            revertingTableSelection = false;
+                        }
+                        return;
                     }
+                    selectedTableId = b.getId();
+                    loadOrCreatePending(b);
                 });
     }
 
     private void loadTables() {
         try {
-            cbTable.setItems(FXCollections.observableArrayList(tableDAO.findAll()));
-            dynamicallyCreateTables();
+            List<Table> tables = tableDAO.findAll();
+            cbTable.setItems(FXCollections.observableArrayList(tables));
+            floorPlan.updateTables(tables);
         } catch (SQLException e) {
             showError(e);
         }
@@ -198,184 +226,139 @@ public class OrderController {
     }
 
     /**
-     * Tạo động các bàn trong lưới từ dữ liệu cơ sở dữ liệu
+     * ENHANCED: Sơ đồ bàn vẽ trên một Canvas (FloorPlanCanvas) thay cho GridPane dựng lại từng bàn.
+     * Vị trí bàn lấy từ table_layout, giữ Ctrl và kéo để sắp xếp lại.
      */
-    private void dynamicallyCreateTables() {
-        if (tableGrid == null) return;
+    private void setupFloorPlan() {
+        if (floorPlanContainer == null) return;
+        floorPlanContainer.getChildren().setAll(floorPlan);
 
         try {
-            // Xóa tất cả các bàn hiện tại
-            tableGrid.getChildren().clear();
-
-            // Lấy danh sách bàn từ database
-            List<Table> tables = tableDAO.findAll();
-
-            // Số bàn tối đa trên mỗi hàng (có thể điều chỉnh)
-            int maxTablesPerRow = 4;
-
-            // Tạo các bàn trong lưới
-            for (int i = 0; i < tables.size(); i++) {
-                Table table = tables.get(i);
-
-                // Tính toán vị trí
-                int row = i / maxTablesPerRow;
-                int col = i % maxTablesPerRow;
-
-                // Tạo bàn với ghế
-                StackPane tableWithChairs = createTableWithChairs(table);
-
-                // Thêm vào grid
-                tableGrid.add(tableWithChairs, col, row);
-            }
+            floorPlan.setSavedLayouts(tableDAO.findLayouts());
         } catch (SQLException e) {
-            e.printStackTrace();
-            showError(e);
+            // Chưa chạy add_table_layout.sql: xếp bàn tự động theo lưới
+            LOG.warn("⚠️ Cannot load table layout, using auto layout: {}", e.getMessage());
         }
+
+        floorPlan.setOnTableClicked(this::onTableClicked);
+        floorPlan.setOnTableMoved(layout -> {
+            try {
+                tableDAO.saveLayout(layout);
+                LOG.debug("📐 Saved layout for table {} at ({}, {})", layout.getTableId(), layout.getX(), layout.getY());
+            } catch (SQLException e) {
+                showError(e);
+            }
+        });
     }
 
     /**
-     * Tạo một bàn với ghế xung quanh
+     * Làm mới sơ đồ bàn: chỉ các bàn đổi trạng thái được vẽ lại
      */
-    private StackPane createTableWithChairs(Table table) {
-        StackPane tableWithChairs = new StackPane();
-
-        // Main table rectangle
-        String tableColor = getTableColorByStatus(table.getStatus());
-
-        Rectangle tableRect = new Rectangle(80, 60);
-        tableRect.setArcWidth(10);
-        tableRect.setArcHeight(10);
-        tableRect.setFill(Color.web(tableColor));
-        tableRect.setStroke(Color.WHITE);
-        tableRect.setStrokeWidth(2);
-
-        // Top chair
-        Rectangle topChair = new Rectangle(25, 15);
-        topChair.setArcWidth(5);
-        topChair.setArcHeight(5);
-        topChair.setFill(Color.web(getChairColorByStatus(table.getStatus())));
-        topChair.setTranslateY(-37.5);
-
-        // Bottom chair
-        Rectangle bottomChair = new Rectangle(25, 15);
-        bottomChair.setArcWidth(5);
-        bottomChair.setArcHeight(5);
-        bottomChair.setFill(Color.web(getChairColorByStatus(table.getStatus())));
-        bottomChair.setTranslateY(37.5);
-
-        // Left chair
-        Rectangle leftChair = new Rectangle(15, 25);
-        leftChair.setArcWidth(5);
-        leftChair.setArcHeight(5);
-        leftChair.setFill(Color.web(getChairColorByStatus(table.getStatus())));
-        leftChair.setTranslateX(-47.5);
-
-        // Right chair
-        Rectangle rightChair = new Rectangle(15, 25);
-        rightChair.setArcWidth(5);
-        rightChair.setArcHeight(5);
-        rightChair.setFill(Color.web(getChairColorByStatus(table.getStatus())));
-        rightChair.setTranslateX(47.5);
-
-        // Table label
-        Label tableLabel = new Label(table.getTableName());
-        tableLabel.setTextFill(Color.WHITE);
-        tableLabel.setFont(Font.font("System", FontWeight.BOLD, 12));
-
-        // Add all to StackPane
-        tableWithChairs.getChildren().addAll(tableRect, topChair, bottomChair, leftChair, rightChair, tableLabel);
-
-        // Set user data for table ID
-        tableWithChairs.setUserData(String.valueOf(table.getId()));
-
-        // Add click handler
-        tableWithChairs.setOnMouseClicked(this::selectTable);
-
-        // Add hover effect
-        tableWithChairs.setStyle("-fx-cursor: hand;");
-
-        return tableWithChairs;
-    }
-
     private void refreshTableGrid() {
-        if (tableGrid == null) return;
-        dynamicallyCreateTables();
-    }
-
-    private String getTableColorByStatus(String status) {
-        switch (status) {
-            case "empty": return "#4CAF50";
-            case "occupied": return "#f44336";
-            case "reserved": return "#FF9800";
-            case "ordering": return "#9C27B0";
-            default: return "#4CAF50";
-        }
-    }
-
-    private String getChairColorByStatus(String status) {
-        switch (status) {
-            case "empty": return "#2E7D32";
-            case "occupied": return "#B71C1C";
-            case "reserved": return "#E65100";
-            case "ordering": return "#4A148C";
-            default: return "#455A64";
+        if (floorPlanContainer == null) return;
+        try {
+            floorPlan.updateTables(tableDAO.findAll());
+        } catch (SQLException e) {
+            LOG.error("❌ Error refreshing table grid", e);
+            showError(e);
         }
     }
 
     private void loadMenu() {
         try {
-            System.out.println("📋 Loading menu items...");
-            menuData.setAll(menuDAO.findAll());
+            LOG.debug("📋 Loading menu items...");
+            // Menu chỉ để xem ở màn hình này nên dùng trực tiếp dữ liệu của MenuCatalog (không sao chép)
+            menuData.setAll(MenuCatalog.get().getAll());
 
             menuMap.clear();
             for (MenuItem item : menuData) {
                 menuMap.put(item.getId(), item);
             }
 
-            System.out.println("✅ Menu loaded: " + menuData.size() + " items");
+            LOG.debug("✅ Menu loaded: {} items", menuData.size());
+            ImageCache.prefetch(menuData, MENU_THUMB_SIZE);
             displayMenuItems();
         } catch (Exception e) {
-            System.err.println("❌ Error loading menu: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("❌ Error loading menu", e);
             showError(e);
         }
     }
 
+    /**
+     * ENHANCED: Lưới menu ảo hóa - đổi danh mục chỉ đổi predicate của FilteredList,
+     * chỉ các dòng đang hiển thị có node và được tái sử dụng khi cuộn.
+     */
     private void displayMenuItems() {
         if (menuContainer == null) return;
 
-        menuContainer.getChildren().clear();
+        if (menuTileView == null) {
+            menuTileView = new VirtualTileView<>(filteredMenu, 300, MENU_TILE_HEIGHT, 10, 1,
+                    new VirtualTileView.TileFactory<MenuItem>() {
+                        @Override
+                        public Node create() {
+                            return createMenuTile();
+                        }
 
-        String selectedCategory = cbCategory.getValue();
-        List<MenuItem> filteredItems;
+                        @Override
+                        public void update(Node tile, MenuItem item) {
+                            ((MenuTile) tile).update(item);
+                        }
+                    });
+
+            Label noItemsLabel = new Label("Không có món nào trong danh mục này");
+            noItemsLabel.setTextFill(Color.WHITE);
+            noItemsLabel.setFont(Font.font("System", 14));
+            noItemsLabel.setStyle("-fx-padding: 20; -fx-alignment: center;");
+            menuTileView.setPlaceholder(noItemsLabel);
+            VBox.setVgrow(menuTileView, javafx.scene.layout.Priority.ALWAYS);
+        }
+        if (!menuContainer.getChildren().contains(menuTileView)) {
+            menuContainer.getChildren().setAll(menuTileView);
+        }
 
-        if ("Tất cả".equals(selectedCategory)) {
-            filteredItems = new ArrayList<>(menuData);
+        String selectedCategory = cbCategory.getValue();
+        if (selectedCategory == null || "Tất cả".equals(selectedCategory)) {
+            filteredMenu.setPredicate(item -> true);
         } else {
-            filteredItems = menuData.stream()
-                    .filter(item -> item.getCategory().equals(selectedCategory))
-                    .collect(Collectors.toList());
+            filteredMenu.setPredicate(item -> selectedCategory.equals(item.getCategory()));
         }
+    }
 
-        for (MenuItem item : filteredItems) {
-            HBox menuItemBox = createMenuItemUI(item);
-            menuContainer.getChildren().add(menuItemBox);
+    /** Thẻ món trên lưới menu, tạo một lần và đổ dữ liệu lại khi được tái sử dụng */
+    private static final class MenuTile extends HBox {
+        final ImageView imageView = new ImageView();
+        final Label nameLabel = new Label();
+        final Label categoryLabel = new Label();
+        final Label descLabel = new Label();
+        final Label priceLabel = new Label();
+
+        MenuTile() {
+            super(15);
         }
 
-        if (filteredItems.isEmpty() && !"Tất cả".equals(selectedCategory)) {
-            Label noItemsLabel = new Label("Không có món nào trong danh mục này");
-            noItemsLabel.setTextFill(Color.WHITE);
-            noItemsLabel.setFont(Font.font("System", 14));
-            noItemsLabel.setStyle("-fx-padding: 20; -fx-alignment: center;");
-            menuContainer.getChildren().add(noItemsLabel);
+        void update(MenuItem item) {
+            // Load image - ENHANCED: thumbnail đã cache (absolute path hoặc resource path)
+            ImageCache.load(imageView, item.getImagePath(), MENU_THUMB_SIZE);
+
+            nameLabel.setText(item.getName());
+            categoryLabel.setText(item.getCategory());
+
+            String description = item.getDescription();
+            if (description == null || description.trim().isEmpty()) {
+                description = "Món ngon từ " + item.getCategory();
+            }
+            descLabel.setText(description);
+            priceLabel.setText(item.getFormattedPrice());
         }
     }
 
-    private HBox createMenuItemUI(MenuItem item) {
-        HBox itemBox = new HBox(15);
+    private MenuTile createMenuTile() {
+        MenuTile itemBox = new MenuTile();
         itemBox.setAlignment(Pos.CENTER_LEFT);
         itemBox.setStyle("-fx-background-color: #0f3460; -fx-background-radius: 10; -fx-padding: 10; -fx-cursor: hand;");
-        itemBox.setUserData(item);
+        itemBox.setMinHeight(MENU_TILE_HEIGHT);
+        itemBox.setPrefHeight(MENU_TILE_HEIGHT);
+        itemBox.setMaxHeight(MENU_TILE_HEIGHT);
 
         // Hover effects
         itemBox.setOnMouseEntered(e ->
@@ -383,8 +366,12 @@ public class OrderController {
         itemBox.setOnMouseExited(e ->
                 itemBox.setStyle("-fx-background-color: #0f3460; -fx-background-radius: 10; -fx-padding: 10; -fx-cursor: hand;"));
 
-        // Click handler
-        itemBox.setOnMouseClicked(e -> selectMenuItem(item));
+        // Click handler - thẻ được tái sử dụng nên đọc món hiện tại từ userData
+        itemBox.setOnMouseClicked(e -> {
+            if (itemBox.getUserData() instanceof MenuItem) {
+                selectMenuItem((MenuItem) itemBox.getUserData());
+            }
+        });
 
         // Food Image Container
         VBox imageContainer = new VBox();
@@ -392,37 +379,11 @@ public class OrderController {
         imageContainer.setStyle("-fx-background-color: #1a1a2e; -fx-background-radius: 8;");
         imageContainer.setPadding(new Insets(5));
 
-        ImageView imageView = new ImageView();
+        ImageView imageView = itemBox.imageView;
         imageView.setFitHeight(60);
         imageView.setFitWidth(60);
         imageView.setPreserveRatio(true);
 
-        // Load image - FIXED: Support both absolute path and resource path
-        try {
-            String rawPath = item.getImagePath();
-            Image image = null;
-
-            if (rawPath != null && !rawPath.isEmpty()) {
-                File asFile = new File(rawPath);
-                if (asFile.isAbsolute() && asFile.exists()) {
-                    // Use absolute path if file exists
-                    image = new Image(asFile.toURI().toString());
-                } else {
-                    // Use resource path
-                    String resourcePath = rawPath.startsWith("/") ? rawPath : "/images/menu/" + rawPath;
-                    image = new Image(getClass().getResourceAsStream(resourcePath));
-                }
-            }
-
-            if (image == null || image.isError()) {
-                imageView.setImage(createPlaceholderImage());
-            } else {
-                imageView.setImage(image);
-            }
-        } catch (Exception e) {
-            imageView.setImage(createPlaceholderImage());
-        }
-
         imageContainer.getChildren().add(imageView);
 
         // Food Info Container
@@ -430,31 +391,23 @@ public class OrderController {
         infoContainer.setAlignment(Pos.CENTER_LEFT);
         HBox.setHgrow(infoContainer, javafx.scene.layout.Priority.ALWAYS);
 
-        Label nameLabel = new Label(item.getName());
-        nameLabel.setTextFill(Color.WHITE);
-        nameLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
+        itemBox.nameLabel.setTextFill(Color.WHITE);
+        itemBox.nameLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
 
-        Label categoryLabel = new Label(item.getCategory());
-        categoryLabel.setTextFill(Color.web("#B0B0B0"));
-        categoryLabel.setFont(Font.font("System", 11));
+        itemBox.categoryLabel.setTextFill(Color.web("#B0B0B0"));
+        itemBox.categoryLabel.setFont(Font.font("System", 11));
 
-        String description = item.getDescription();
-        if (description == null || description.trim().isEmpty()) {
-            description = "Món ngon từ " + item.getCategory();
-        }
-        Label descLabel = new Label(description);
-        descLabel.setTextFill(Color.web("#B0B0B0"));
-        descLabel.setFont(Font.font("System", 10));
-        descLabel.setWrapText(true);
+        itemBox.descLabel.setTextFill(Color.web("#B0B0B0"));
+        itemBox.descLabel.setFont(Font.font("System", 10));
+        itemBox.descLabel.setWrapText(true);
 
-        infoContainer.getChildren().addAll(nameLabel, categoryLabel, descLabel);
+        infoContainer.getChildren().addAll(itemBox.nameLabel, itemBox.categoryLabel, itemBox.descLabel);
 
         // Price Label
-        Label priceLabel = new Label(item.getFormattedPrice());
-        priceLabel.setTextFill(Color.web("#4CAF50"));
-        priceLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
+        itemBox.priceLabel.setTextFill(Color.web("#4CAF50"));
+        itemBox.priceLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
 
-        itemBox.getChildren().addAll(imageContainer, infoContainer, priceLabel);
+        itemBox.getChildren().addAll(imageContainer, infoContainer, itemBox.priceLabel);
 
         // Add drop shadow effect
         DropShadow dropShadow = new DropShadow();
@@ -465,64 +418,29 @@ public class OrderController {
         return itemBox;
     }
 
-    private Image createPlaceholderImage() {
-        try {
-            String[] fallbackImages = {
-                    "/images/menu/default.png",
-                    "/images/menu/Snack.png",
-                    "/images/menu/CocaCola.png",
-                    "/images/menu/unnamed (1).png",
-                    "/images/bar-logo.png"
-            };
-
-            for (String path : fallbackImages) {
-                try {
-                    Image img = new Image(getClass().getResourceAsStream(path));
-                    if (!img.isError()) {
-                        return img;
-                    }
-                } catch (Exception e) {
-                    // Continue to next fallback
-                }
-            }
-        } catch (Exception e) {
-            // Return null if all fails
-        }
-        return null;
-    }
-
     @FXML
     public void selectMenuItem(MenuItem item) {
-        System.out.println("🔍 SELECT MENU ITEM: " + item.getName());
+        LOG.debug("🔍 SELECT MENU ITEM: {}", item.getName());
 
         selectedMenuItem = item;
 
         // Auto-add nếu có order - luôn thêm với số lượng = 1
         if (current != null) {
+            if (session == null) {
+                showInfo("⏳ Đang tải đơn hàng, vui lòng thử lại!");
+                return;
+            }
             try {
-                System.out.println("➕ Adding to order: " + item.getName() + " x1");
-
-                // Kiểm tra xem món đã có trong order chưa
-                boolean itemExists = false;
-                for (OrderItem existingItem : itemData) {
-                    if (existingItem.getMenuItemId() == item.getId()) {
-                        // Nếu đã có, tăng số lượng lên 1
-                        updateOrderItemQuantity(existingItem, existingItem.getQuantity() + 1);
-                        itemExists = true;
-                        break;
-                    }
-                }
+                LOG.debug("➕ Adding to order: {} x1", item.getName());
 
-                // Nếu chưa có, thêm mới với số lượng = 1
-                if (!itemExists) {
-                    orderDAO.addItem(current.getId(), item.getId(), 1);
-                    reloadItems();
-                }
+                // Món đã có thì tăng số lượng, chưa có thì thêm mới - ghi DB ở nền
+                session.add(item, 1);
+                renderSession();
 
                 showInfo("✅ Đã thêm " + item.getName() + " vào order");
 
             } catch (SQLException e) {
-                System.err.println("❌ Error adding item: " + e.getMessage());
+                LOG.error("❌ Error adding item: {}", e.getMessage());
                 showError(e);
             }
         } else {
@@ -531,7 +449,7 @@ public class OrderController {
     }
 
     private void displayOrderItems() {
-        System.out.println("🍽️ DISPLAY ORDER ITEMS: " + itemData.size() + " items");
+        LOG.debug("🍽️ DISPLAY ORDER ITEMS: {} items", itemData.size());
 
         if (orderContainer == null) return;
         orderContainer.getChildren().clear();
@@ -572,32 +490,9 @@ public class OrderController {
         MenuItem menuItem = menuMap.get(orderItem.getMenuItemId());
 
         if (menuItem != null) {
-            try {
-                String rawPath = menuItem.getImagePath();
-                Image image = null;
-
-                if (rawPath != null && !rawPath.isEmpty()) {
-                    File asFile = new File(rawPath);
-                    if (asFile.isAbsolute() && asFile.exists()) {
-                        // Use absolute path if file exists
-                        image = new Image(asFile.toURI().toString());
-                    } else {
-                        // Use resource path
-                        String resourcePath = rawPath.startsWith("/") ? rawPath : "/images/menu/" + rawPath;
-                        image = new Image(getClass().getResourceAsStream(resourcePath));
-                    }
-                }
-
-                if (image == null || image.isError()) {
-                    imageView.setImage(createPlaceholderImage());
-                } else {
-                    imageView.setImage(image);
-                }
-            } catch (Exception e) {
-                imageView.setImage(createPlaceholderImage());
-            }
+            ImageCache.load(imageView, menuItem.getImagePath(), ORDER_ITEM_THUMB_SIZE);
         } else {
-            imageView.setImage(createPlaceholderImage());
+            imageView.setImage(ImageCache.getPlaceholder());
         }
 
         imageContainer.getChildren().add(imageView);
@@ -692,24 +587,11 @@ public class OrderController {
 
     // ===== Event Handlers cho Bàn =====
 
-    @FXML
-    public void selectTable(MouseEvent event) {
-        javafx.scene.Node source = (javafx.scene.Node) event.getSource();
-        String tableIdStr = (String) source.getUserData();
-
-        if (tableIdStr != null) {
-            try {
-                int tableId = Integer.parseInt(tableIdStr);
-
-                if (event.getButton() == MouseButton.PRIMARY) {
-                    selectTableForOrder(tableId);
-                } else if (event.getButton() == MouseButton.SECONDARY) {
-                    showTableStatusPopup(tableId);
-                }
-
-            } catch (NumberFormatException e) {
-                showInfo("Lỗi chọn bàn: " + tableIdStr);
-            }
+    private void onTableClicked(int tableId, MouseButton button) {
+        if (button == MouseButton.PRIMARY) {
+            selectTableForOrder(tableId);
+        } else if (button == MouseButton.SECONDARY) {
+            showTableStatusPopup(tableId);
         }
     }
 
@@ -758,9 +640,11 @@ public class OrderController {
 
         try {
             tableDAO.updateStatus(popupTableId, newStatus);
+            DashboardEventBus.publish(DashboardEvent.tableStatusChanged(popupTableId, newStatus));
             showInfo("✅ Đã cập nhật bàn " + popupTableId + " thành: " + getStatusDisplayName(newStatus));
 
-            refreshTableGrid();
+            // Trạng thái mới đã biết, vẽ lại đúng bàn đó mà không cần đọc lại DB
+            floorPlan.updateStatus(popupTableId, newStatus);
             hideTableStatusPopup();
 
         } catch (SQLException e) {
@@ -782,8 +666,11 @@ public class OrderController {
      * COMPLETELY FIXED: Select table for order with proper completed order handling
      */
     private void selectTableForOrder(int tableId) {
-        try {
-            System.out.println("🎯 SELECTING TABLE FOR ORDER: " + tableId);
+        // Đơn đang mở phải ghi xong trước khi chuyển bàn
+        if (!closeSession()) return;
+
+        try (QueryInstrumentation.Scope scope = QueryInstrumentation.openScope("OrderController.selectTableForOrder")) {
+            LOG.debug("🎯 SELECTING TABLE FOR ORDER: {}", tableId);
 
             // Get current table status
             List<Table> tables = tableDAO.findAll();
@@ -797,13 +684,13 @@ public class OrderController {
                 return;
             }
 
-            System.out.println("📊 Table " + tableId + " status: " + table.getStatus());
+            LOG.debug("📊 Table {} status: {}", tableId, table.getStatus());
 
             // CRITICAL FIX: Check for ANY existing order for this table (pending, completed, etc.)
             Order existingOrder = orderDAO.findPendingByTable(tableId);
 
             if (existingOrder != null) {
-                System.out.println("🔍 Found existing order: #" + existingOrder.getId() + " status: " + existingOrder.getStatus());
+                LOG.debug("🔍 Found existing order: #{} status: {}", existingOrder.getId(), existingOrder.getStatus());
 
                 if ("completed".equals(existingOrder.getStatus())) {
                     // Show completed order ready for payment
@@ -841,7 +728,7 @@ public class OrderController {
             proceedWithTableSelection(table, tableId);
 
         } catch (SQLException e) {
-            System.err.println("❌ Error selecting table: " + e.getMessage());
+            LOG.error("❌ Error selecting table: {}", e.getMessage());
             showError(e);
         }
     }
@@ -878,6 +765,7 @@ public class OrderController {
             }
 
             // Clear current order state
+            if (!closeSession()) return;
             current = null;
             lblOrderId.setText("(chưa có)");
             lblTotal.setText("0 VNĐ");
@@ -920,7 +808,7 @@ public class OrderController {
         loadMenuByCategory();
         refreshTableGrid();
 
-        System.out.println("✅ Loaded existing order: #" + order.getId() + " (" + order.getStatus() + ")");
+        LOG.debug("✅ Loaded existing order: #{} ({})", order.getId(), order.getStatus());
     }
 
     private void loadMenuByCategory() {
@@ -939,9 +827,10 @@ public class OrderController {
 
     @FXML
     public void removeOrderItem(OrderItem orderItem) {
+        if (session == null) return;
         try {
-            orderDAO.removeItem(orderItem.getId());
-            reloadItems();
+            session.remove(orderItem.getId());
+            renderSession();
             showInfo("✅ Đã xóa món khỏi order!");
         } catch (SQLException e) {
             showError(e);
@@ -958,12 +847,13 @@ public class OrderController {
                 return;
             }
 
-            orderDAO.updateItemQuantity(orderItem.getId(), newQuantity);
-            reloadItems();
-            System.out.println("✅ Updated quantity for item " + orderItem.getId() + " to " + newQuantity);
+            if (session == null) return;
+            session.setQuantity(orderItem.getId(), newQuantity);
+            renderSession();
+            LOG.debug("✅ Updated quantity for item {} to {}", orderItem.getId(), newQuantity);
 
         } catch (SQLException e) {
-            System.err.println("❌ Error updating quantity: " + e.getMessage());
+            LOG.error("❌ Error updating quantity: {}", e.getMessage());
             showError(e);
         }
     }
@@ -979,11 +869,10 @@ public class OrderController {
 
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
+                if (session == null) return;
                 try {
-                    for (OrderItem item : itemData) {
-                        orderDAO.removeItem(item.getId());
-                    }
-                    reloadItems();
+                    session.clear();
+                    renderSession();
                     showInfo("✅ Đã xóa tất cả món!");
                 } catch (SQLException e) {
                     showError(e);
@@ -998,6 +887,7 @@ public class OrderController {
             showInfo("Vui lòng chọn bàn trước!");
             return;
         }
+        if (!closeSession()) return;
 
         try {
             Table table = tableDAO.findAll().stream()
@@ -1013,6 +903,7 @@ public class OrderController {
             Integer id = orderDAO.createEmptyOrder(table.getId());
             if (id != null) {
                 tableDAO.updateStatus(table.getId(), "occupied");
+                DashboardEventBus.publish(DashboardEvent.tableStatusChanged(table.getId(), "occupied"));
 
                 current = new Order();
                 current.setId(id);
@@ -1051,10 +942,10 @@ public class OrderController {
 
     private void showOrderCompletionDialog() {
         if (confirmationDialog != null) {
-            double totalAmount = parseTotalAmount();
+            Money totalAmount = session != null ? session.getTotal() : Money.ZERO;
             String message = "Bạn có chắc chắn muốn hoàn thành order này không?\n\n" +
                     "Order #" + current.getId() + "\n" +
-                    "Tổng tiền: " + formatCurrency(totalAmount) + "\n\n" +
+                    "Tổng tiền: " + totalAmount.format() + "\n\n" +
                     "Sau khi hoàn thành, sẽ có nút thanh toán xuất hiện.";
 
             confirmationMessage.setText(message);
@@ -1068,12 +959,20 @@ public class OrderController {
         hideConfirmationDialog();
 
         try {
+            // Món phải nằm trong DB trước khi tính tổng và chốt đơn
+            if (session != null) {
+                session.flushNow();
+            }
             orderDAO.markCompleted(current.getId());
+            current.setStatus("completed");
             orderCompleted = true;
+            DashboardEventBus.publish(DashboardEvent.orderStatusChanged(current.getId(), "completed"));
             updatePaymentButtonVisibility();
             showInfo("✅ Order đã hoàn thành! Bây giờ bạn có thể thanh toán.");
 
         } catch (SQLException e) {
+            // Xung đột khi ghi món: phiên đã tải lại dữ liệu mới nhất
+            renderSession();
             showError(e);
         }
     }
@@ -1090,9 +989,9 @@ public class OrderController {
     }
 
     private void updatePaymentButtonVisibility() {
-        System.out.println("🔄 UPDATING PAYMENT BUTTON VISIBILITY");
-        System.out.println("orderCompleted: " + orderCompleted);
-        System.out.println("current order: " + (current != null ? "Order #" + current.getId() : "null"));
+        LOG.debug("🔄 UPDATING PAYMENT BUTTON VISIBILITY");
+        LOG.debug("orderCompleted: {}", orderCompleted);
+        LOG.debug("current order: {}", (current != null ? "Order #" + current.getId() : "null"));
 
         if (btnPayment != null && btnCompleteOrder != null) {
             if (orderCompleted && current != null) {
@@ -1100,13 +999,13 @@ public class OrderController {
                 btnCompleteOrder.setText("✅ Đã Hoàn Thành");
                 btnCompleteOrder.setStyle("-fx-background-color: #607D8B; -fx-text-fill: white; -fx-background-radius: 8;");
                 btnCompleteOrder.setDisable(true);
-                System.out.println("✅ Payment button VISIBLE");
+                LOG.debug("✅ Payment button VISIBLE");
             } else {
                 btnPayment.setVisible(false);
                 btnCompleteOrder.setText("✅ Hoàn Thành");
                 btnCompleteOrder.setStyle("-fx-background-color: #4CAF50; -fx-text-fill: white; -fx-background-radius: 8;");
                 btnCompleteOrder.setDisable(false);
-                System.out.println("❌ Payment button HIDDEN");
+                LOG.debug("❌ Payment button HIDDEN");
             }
         }
     }
@@ -1119,24 +1018,20 @@ public class OrderController {
         }
 
         try {
-            System.out.println("🧾 Navigating to payment for order: " + current.getId());
+            LOG.debug("🧾 Navigating to payment for order: {}", current.getId());
+            if (!closeSession()) return;
             SceneUtil.openScene("/fxml/payment.fxml", lblTotal);
             showInfo("Đã chuyển đến trang thanh toán. Vui lòng chọn bàn " + current.getTableId() + " - Đơn #" + current.getId());
 
         } catch (Exception e) {
-            System.err.println("❌ Error navigating to payment: " + e.getMessage());
+            LOG.error("❌ Error navigating to payment: {}", e.getMessage());
             showInfo("Lỗi khi chuyển đến trang thanh toán: " + e.getMessage());
         }
     }
 
-    private double parseTotalAmount() {
-        String totalText = lblTotal.getText().replaceAll("[^0-9]", "");
-        if (totalText.isEmpty()) return 0;
-        return Double.parseDouble(totalText);
-    }
-
     @FXML
     public void reload() {
+        if (!closeSession()) return;
         afterComplete();
         loadData();
         showInfo("🔄 Đã làm mới dữ liệu!");
@@ -1145,21 +1040,37 @@ public class OrderController {
     // ===== Navigation Methods =====
     @FXML
     private void goBack() {
+        if (!closeSession()) return;
         SceneUtil.openScene("/fxml/dashboard.fxml", lblTotal);
     }
 
     @FXML
     private void showPayment() {
+        if (!closeSession()) return;
         SceneUtil.openScene("/fxml/payment.fxml", lblTotal);
     }
 
     @FXML
     private void showMenu() {
+        if (!closeSession()) return;
         SceneUtil.openScene("/fxml/menu_management.fxml", lblTotal);
     }
 
     @FXML
     private void handleLogout() {
+        // Có thể hủy đăng xuất nên chỉ ghi thay đổi, giữ phiên sửa
+        if (session != null) {
+            try {
+                session.flushNow();
+            } catch (OrderDAO.OrderConflictException e) {
+                renderSession();
+                showConflict(session.getOrderId());
+                return;
+            } catch (SQLException e) {
+                showError(e);
+                return;
+            }
+        }
         LogoutUtil.confirmLogout(lblTotal);
     }
 
@@ -1170,11 +1081,13 @@ public class OrderController {
 
     @FXML
     private void showReports() {
+        if (!closeSession()) return;
         SceneUtil.openScene("/fxml/revenue_report.fxml", lblTotal);
     }
 
     @FXML
     private void showTableManagement() {
+        if (!closeSession()) return;
         SceneUtil.openScene("/fxml/table_management.fxml", lblTotal);
     }
 
@@ -1187,12 +1100,13 @@ public class OrderController {
         if (t == null) return;
 
         try {
-            System.out.println("🔍 LOADING ORDER FOR TABLE: " + t.getId());
+            LOG.debug("🔍 LOADING ORDER FOR TABLE: {}", t.getId());
+            if (!closeSession()) return;
 
             current = orderDAO.findPendingByTable(t.getId());
 
             if (current == null) {
-                System.out.println("❌ No existing order found for table " + t.getId());
+                LOG.debug("❌ No existing order found for table {}", t.getId());
                 lblOrderId.setText("(chưa có)");
                 itemData.clear();
                 lblTotal.setText("0 VNĐ");
@@ -1201,7 +1115,7 @@ public class OrderController {
                 updatePaymentButtonVisibility();
                 showInfo("💡 Bàn này chưa có order. Nhấn 'Tạo Order Mới' để bắt đầu!");
             } else {
-                System.out.println("✅ Found existing order: #" + current.getId() + " (" + current.getStatus() + ")");
+                LOG.debug("✅ Found existing order: #{} ({})", current.getId(), current.getStatus());
                 lblOrderId.setText("#" + current.getId());
                 reloadItems();
                 orderCompleted = "completed".equals(current.getStatus());
@@ -1217,40 +1131,100 @@ public class OrderController {
     }
 
     /**
-     * ENHANCED: Reload items with better error handling
+     * ENHANCED: Tải món của đơn hiện tại một lần rồi mở OrderSession;
+     * các lần sửa sau đó không cần đọc lại DB.
      */
     private void reloadItems() {
-        System.out.println("🔄 RELOADING ORDER ITEMS");
+        LOG.debug("🔄 RELOADING ORDER ITEMS");
 
-        try {
-            if (current == null) {
-                System.out.println("❌ No current order");
-                itemData.clear();
-                displayOrderItems();
-                return;
-            }
-
-            List<OrderItem> freshItems = orderDAO.findItems(current.getId());
-            System.out.println("📋 Loaded " + freshItems.size() + " items from database");
+        // Ghi nốt thay đổi của phiên cũ trước khi đọc lại từ DB
+        if (!closeSession()) return;
 
-            itemData.setAll(freshItems);
-
-            BigDecimal total = orderDAO.calcTotal(current.getId());
-            lblTotal.setText(formatCurrency(total.doubleValue()));
+        if (current == null) {
+            LOG.error("❌ No current order");
+            itemsLoad.cancel();
+            itemData.clear();
+            displayOrderItems();
+            return;
+        }
 
-            Platform.runLater(() -> {
-                displayOrderItems();
-            });
+        // ENHANCED: Truy vấn chạy ở thread DB; đổi bàn/đơn liên tục sẽ hủy lần tải trước
+        Order order = current;
+        itemsLoad.submit(() -> orderDAO.findItems(order.getId()),
+                items -> {
+                    if (current != order) return;
+                    session = new OrderSession(orderDAO, order, items);
+                    session.setListener(sessionListener);
+                    renderSession();
+                    LOG.debug("✅ Order items reloaded: {} items", items.size());
+                },
+                error -> {
+                    LOG.error("❌ Error reloading items: {}", error.getMessage());
+                    showError(error instanceof Exception ? (Exception) error : new Exception(error));
+                });
+    }
 
-            System.out.println("✅ Order items reloaded successfully, total: " + total);
+    /** Vẽ lại danh sách món và tổng tiền từ phiên sửa (không truy vấn) */
+    private void renderSession() {
+        if (session == null) return;
+        itemData.setAll(session.getItems());
+        lblTotal.setText(session.getTotal().format());
+        displayOrderItems();
+    }
 
+    /**
+     * Ghi nốt thay đổi và đóng phiên sửa hiện tại (đổi bàn, rời màn hình).
+     *
+     * @return false nếu không ghi được: phiên vẫn mở, lỗi đã được báo, người gọi không được chuyển tiếp
+     */
+    private boolean closeSession() {
+        if (session == null) return true;
+        try {
+            session.close();
+        } catch (OrderDAO.OrderConflictException e) {
+            renderSession();
+            showConflict(session.getOrderId());
+            return false;
         } catch (SQLException e) {
-            System.err.println("❌ Error reloading items: " + e.getMessage());
             showError(e);
+            return false;
         }
+        session = null;
+        return true;
     }
 
+    private void showConflict(int orderId) {
+        showInfo("⚠️ Đơn hàng #" + orderId + " vừa được thay đổi ở máy khác.\n"
+                + "Đã tải lại danh sách món mới nhất, vui lòng kiểm tra lại.");
+    }
+
+    private final OrderSession.Listener sessionListener = new OrderSession.Listener() {
+        @Override
+        public void onFlushed(OrderSession s) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("💾 {}", s.getStatsSummary());
+            }
+        }
+
+        @Override
+        public void onConflict(OrderSession s, SQLException cause) {
+            FxAsync.runOnFx(() -> {
+                if (s != session) return;
+                renderSession();
+                showConflict(s.getOrderId());
+            });
+        }
+
+        @Override
+        public void onFlushError(OrderSession s, SQLException cause) {
+            FxAsync.runOnFx(() -> {
+                if (s == session) showError(cause);
+            });
+        }
+    };
+
     private void afterComplete() {
+        if (!closeSession()) return;
         itemData.clear();
         lblOrderId.setText("(chưa có)");
         lblTotal.setText("0 VNĐ");
@@ -1267,10 +1241,6 @@ public class OrderController {
         loadTables();
     }
 
-    private String formatCurrency(double amount) {
-        return currencyFormatter.format(amount) + " VNĐ";
-    }
-
     private void showInfo(String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Thông báo");
@@ -1285,6 +1255,6 @@ public class OrderController {
         alert.setHeaderText("Có lỗi xảy ra");
         alert.setContentText(e.getMessage());
         alert.showAndWait();
-        e.printStackTrace();
+        LOG.error("❌ Order screen error", e);
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.barmanagement.controller;
 
 import com.barmanagement.dao.JDBCConnect;
+import com.barmanagement.util.CredentialService;
+import com.barmanagement.util.Log;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -8,6 +10,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 public class PasswordMigration {
+
+    private static final Log LOG = Log.get(PasswordMigration.class);
+
     public static void migrateAllPasswords() {
         String selectSql = "SELECT id, password FROM users";
         String updateSql = "UPDATE users SET password = ? WHERE id = ?";
@@ -39,27 +44,16 @@ public class PasswordMigration {
             System.out.println("Migration completed. Updated " + count + " passwords.");
 
         } catch (SQLException e) {
-            System.err.println("Error during password migration:");
-            e.printStackTrace();
+            LOG.error("Error during password migration", e);
         }
     }
 
     /**
      * Kiểm tra xem password đã được hash chưa
-     * Password đã hash sẽ có length > 50 và chứa Base64 characters
+     * FIXED: nhận dạng qua CredentialService (hash PBKDF2 mới có ký tự '$', không phải Base64)
      */
     private static boolean isPasswordHashed(String password) {
-        if (password == null || password.length() < 50) {
-            return false;
-        }
-
-        // Kiểm tra xem có phải Base64 encoded không
-        try {
-            java.util.Base64.getDecoder().decode(password);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return password != null && CredentialService.scheme(password) != CredentialService.Scheme.PLAINTEXT;
     }
 
     /**
@@ -80,7 +74,7 @@ public class PasswordMigration {
             return stmt.executeUpdate() > 0;
 
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.atError().with("username", username).cause(e).log("Cannot create user");
             return false;
         }
     }
@@ -1,5 +1,11 @@
 package com.barmanagement.controller;
 
+import com.barmanagement.util.CredentialService;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 public class PasswordTest {
     public static void main(String[] args) {
         System.out.println("=== TESTING PASSWORD ENCRYPTION SYSTEM ===\n");
@@ -26,29 +32,52 @@ public class PasswordTest {
             System.out.println("---");
         }
 
-        // Test simple hash method
-        System.out.println("\n=== TESTING SIMPLE HASH METHOD ===");
-        String simplePassword = "test123";
-        String simpleHashed = PasswordUtils.hashPasswordSimple(simplePassword);
-        System.out.println("Password: " + simplePassword);
-        System.out.println("Simple Hash: " + simpleHashed);
-        System.out.println("Simple Hash Length: " + simpleHashed.length());
+        // Test legacy hashes: still accepted, flagged for rehash on login
+        System.out.println("\n=== TESTING LEGACY HASHES (CredentialService) ===");
+        CredentialService credentials = CredentialService.get();
+        String legacyPassword = "test123";
+        String legacyHex = sha256Hex(legacyPassword);
+        System.out.println("Legacy SHA-256 hex: " + legacyHex);
+        System.out.println("Scheme: " + CredentialService.scheme(legacyHex));
+
+        CredentialService.Verification legacyResult = credentials.verify(legacyPassword, legacyHex);
+        System.out.println("Verification (correct): " + legacyResult.isValid() + ", needs rehash: " + legacyResult.needsRehash());
+        System.out.println("Verification (wrong): " + credentials.verify(legacyPassword + "wrong", legacyHex).isValid());
+
+        CredentialService.Verification plainResult = credentials.verify(legacyPassword, legacyPassword);
+        System.out.println("Plain text stored: valid " + plainResult.isValid() + ", needs rehash: " + plainResult.needsRehash());
 
-        boolean simpleVerify = PasswordUtils.verifyPasswordSimple(simplePassword, simpleHashed);
-        System.out.println("Simple Verification: " + simpleVerify);
+        String upgraded = credentials.hash(legacyPassword);
+        System.out.println("Rehashed: " + upgraded);
+        System.out.println("Needs rehash after upgrade: " + credentials.verify(legacyPassword, upgraded).needsRehash());
 
-        // Test performance
+        // Test performance (PBKDF2 cố ý chậm, xem CredentialService --calibrate)
         System.out.println("\n=== PERFORMANCE TEST ===");
+        int rounds = 10;
         long startTime = System.currentTimeMillis();
 
-        for (int i = 0; i < 1000; i++) {
+        for (int i = 0; i < rounds; i++) {
             String hash = PasswordUtils.hashPassword("testpassword" + i);
             PasswordUtils.verifyPassword("testpassword" + i, hash);
         }
 
         long endTime = System.currentTimeMillis();
-        System.out.println("Time for 1000 hash+verify operations: " + (endTime - startTime) + "ms");
+        System.out.println("Time for " + rounds + " hash+verify operations: " + (endTime - startTime) + "ms");
 
         System.out.println("\n=== TEST COMPLETED ===");
     }
+
+    // Hash kiểu cũ (SHA-256 hex không salt) như trong database trước khi chuyển sang PBKDF2
+    private static String sha256Hex(String password) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
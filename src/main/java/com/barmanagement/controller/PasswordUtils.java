@@ -1,66 +1,30 @@
 package com.barmanagement.controller;
 
+import com.barmanagement.util.CredentialService;
+import com.barmanagement.util.Log;
+
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.security.SecureRandom;
-import java.util.Base64;
 
+/**
+ * ENHANCED: Băm / kiểm tra mật khẩu chuyển sang {@link CredentialService} (PBKDF2, tham số lưu kèm hash).
+ * Hash SHA-256 cũ vẫn kiểm tra được và được nâng cấp khi đăng nhập.
+ */
 public class PasswordUtils {
-    public static String hashPassword(String password) {
-        try {
-            // Tạo salt ngẫu nhiên
-            SecureRandom random = new SecureRandom();
-            byte[] salt = new byte[16];
-            random.nextBytes(salt);
-
-            // Hash password với salt
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(salt);
-            byte[] hashedPassword = md.digest(password.getBytes("UTF-8"));
 
-            // Kết hợp salt và hash
-            byte[] hashWithSalt = new byte[salt.length + hashedPassword.length];
-            System.arraycopy(salt, 0, hashWithSalt, 0, salt.length);
-            System.arraycopy(hashedPassword, 0, hashWithSalt, salt.length, hashedPassword.length);
+    private static final Log LOG = Log.get(PasswordUtils.class);
 
-            // Encode thành Base64
-            return Base64.getEncoder().encodeToString(hashWithSalt);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+    public static String hashPassword(String password) {
+        return CredentialService.get().hash(password);
     }
 
     // Verify password với hash đã lưu
     public static boolean verifyPassword(String password, String storedHash) {
-        try {
-            // Decode hash từ Base64
-            byte[] hashWithSalt = Base64.getDecoder().decode(storedHash);
-
-            // Tách salt (16 bytes đầu)
-            byte[] salt = new byte[16];
-            System.arraycopy(hashWithSalt, 0, salt, 0, 16);
-
-            // Hash password với salt đã tách
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(salt);
-            byte[] hashedPassword = md.digest(password.getBytes("UTF-8"));
-
-            // So sánh với phần hash đã lưu
-            for (int i = 0; i < hashedPassword.length; i++) {
-                if (hashWithSalt[i + 16] != hashedPassword[i]) {
-                    return false;
-                }
-            }
-            return true;
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
+        return CredentialService.get().verify(password, storedHash).isValid();
     }
 
     // Method đơn giản hơn sử dụng SHA-256 (không có salt - ít an toàn hơn)
+    @Deprecated
     public static String hashPasswordSimple(String password) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
@@ -73,14 +37,16 @@ public class PasswordUtils {
             return sb.toString();
 
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("SHA-256 hashing failed", e);
             return password;
         }
     }
 
     // Verify cho simple hash
+    @Deprecated
     public static boolean verifyPasswordSimple(String password, String storedHash) {
         String hashedInput = hashPasswordSimple(password);
-        return hashedInput != null && hashedInput.equals(storedHash);
+        return hashedInput != null && storedHash != null
+                && MessageDigest.isEqual(hashedInput.getBytes(StandardCharsets.US_ASCII), storedHash.getBytes(StandardCharsets.US_ASCII));
     }
 }
\ No newline at end of file
@@ -1,16 +1,24 @@
 package com.barmanagement.controller;
 
+import com.barmanagement.config.DatabaseConfig;
+import com.barmanagement.dao.AsyncDAO;
 import com.barmanagement.dao.OrderDAO;
 import com.barmanagement.dao.OrderItemDAO;
 import com.barmanagement.dao.PaymentDAO;
 import com.barmanagement.dao.TableDAO;
 import com.barmanagement.dao.RevenueDAO;
 import com.barmanagement.dao.JDBCConnect;
+import com.barmanagement.dao.TimeRange;
 import com.barmanagement.model.MenuItem;
+import com.barmanagement.model.Money;
 import com.barmanagement.model.Order;
 import com.barmanagement.model.OrderItem;
 import com.barmanagement.model.Payment;
-import com.barmanagement.util.DashboardUpdateUtil;
+import com.barmanagement.util.DashboardEvent;
+import com.barmanagement.util.DashboardEventBus;
+import com.barmanagement.util.FxAsync;
+import com.barmanagement.util.InvoiceHelper;
+import com.barmanagement.util.LatestRequest;
 
 import java.sql.Timestamp;
 import java.sql.SQLException;
@@ -24,6 +32,7 @@ import com.barmanagement.util.LogoutUtil;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import com.barmanagement.util.TimeService;
+import com.barmanagement.util.Log;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.fxml.Initializable;
@@ -48,12 +57,18 @@ import java.util.ResourceBundle;
 
 public class PaymentController implements Initializable {
 
+    private static final Log LOG = Log.get(PaymentController.class);
+
+    // Tự tạo hóa đơn PDF mỗi lần thanh toán. Mặc định tắt: PDF là file rời trong Documents,
+    // không nằm trong InvoiceArchive; hóa đơn vẫn in/mở lại được từ chi tiết đơn hàng
+    private static final boolean PDF_ON_PAYMENT = DatabaseConfig.get().getBoolean("invoice.pdf.onPayment", false);
+
     @FXML private ComboBox<String> tableComboBox;
     @FXML private TableView<OrderItem> orderTable;
     @FXML private TableColumn<OrderItem, String> itemNameCol;
     @FXML private TableColumn<OrderItem, Integer> quantityCol;
-    @FXML private TableColumn<OrderItem, Double> priceCol;
-    @FXML private TableColumn<OrderItem, Double> totalCol;
+    @FXML private TableColumn<OrderItem, Money> priceCol;
+    @FXML private TableColumn<OrderItem, Money> totalCol;
     @FXML private Label totalLabel;
     @FXML private ComboBox<String> paymentMethodComboBox;
     
@@ -87,16 +102,19 @@ public class PaymentController implements Initializable {
 
     // Current data
     private Order currentOrder;
+    // Chặn bấm thanh toán lần nữa khi giao dịch trước chưa xong
+    private boolean paymentInFlight = false;
+    private final LatestRequest<LoadedOrder> orderLoad = new LatestRequest<>();
     private ObservableList<OrderItem> orderItems = FXCollections.observableArrayList();
 
     // NEW: Flag to track if order was set from external source
     private boolean orderSetFromExternal = false;
     
     // Discount data
-    private double originalTotal = 0.0;
-    private double discountAmount = 0.0;
+    private Money originalTotal = Money.ZERO;
+    private double discountAmount = 0.0; // % hoặc số tiền người dùng nhập
     private String discountType = "percentage"; // "percentage" or "fixed"
-    private double finalTotal = 0.0; // Final total after discount
+    private Money finalTotal = Money.ZERO; // Final total after discount
 
     // Formatter
     private final NumberFormat currencyFormatter = NumberFormat.getInstance(new Locale("vi", "VN"));
@@ -112,7 +130,7 @@ public class PaymentController implements Initializable {
             welcomeTimeLabel.textProperty().bind(TimeService.get().dateTextProperty());
         }
 
-        System.out.println("=== PAYMENT CONTROLLER INITIALIZE ===");
+        LOG.debug("=== PAYMENT CONTROLLER INITIALIZE ===");
 
         // Setup formatter
         currencyFormatter.setMaximumFractionDigits(0);
@@ -143,14 +161,14 @@ public class PaymentController implements Initializable {
             fixComboBoxTextColor();
 
             if (!orderSetFromExternal) {
-                System.out.println("No external order set, showing empty state");
+                LOG.debug("No external order set, showing empty state");
                 clearOrderDisplay();
                 updateStatusLabel("Không có đơn hàng nào sẵn sàng thanh toán", Color.ORANGE);
 
                 // Load table options but don't auto-select
                 loadTableOptionsWithoutDisplay();
             } else {
-                System.out.println("External order was set, skipping normal table loading");
+                LOG.debug("External order was set, skipping normal table loading");
             }
         });
     }
@@ -183,20 +201,20 @@ public class PaymentController implements Initializable {
                         }
                     }
 
-                    System.out.println("ComboBox text color fixed successfully");
+                    LOG.debug("ComboBox text color fixed successfully");
                 } catch (Exception e) {
-                    System.out.println("Error fixing combobox text color: " + e.getMessage());
+                    LOG.debug("Error fixing combobox text color: {}", e.getMessage());
                 }
             });
         } catch (Exception e) {
-            System.out.println("Error in fixComboBoxTextColor: " + e.getMessage());
+            LOG.debug("Error in fixComboBoxTextColor: {}", e.getMessage());
         }
     }
 
     // NEW: Load table options without auto-displaying orders - FIXED VERSION
     private void loadTableOptionsWithoutDisplay() {
         try {
-            System.out.println("=== LOADING TABLE OPTIONS ===");
+            LOG.debug("=== LOADING TABLE OPTIONS ===");
 
             // Clean up old completed orders first
             orderDAO.cleanupOldCompletedOrders();
@@ -207,7 +225,7 @@ public class PaymentController implements Initializable {
                     "INNER JOIN order_items oi ON o.id = oi.order_id " +
                     "LEFT JOIN payments p ON o.id = p.order_id " +
                     "WHERE o.status = 'completed' " +
-                    "AND DATE(o.order_time) = CURDATE() " +
+                    "AND o.order_time >= ? AND o.order_time < ? " +
                     "AND o.total_amount > 0 " +
                     "AND p.order_id IS NULL " + // NOT YET PAID
                     "ORDER BY o.order_time DESC";
@@ -215,31 +233,33 @@ public class PaymentController implements Initializable {
             List<Order> unpaidCompletedOrders = new ArrayList<>();
 
             try (Connection conn = JDBCConnect.getJDBCConnection();
-                 PreparedStatement ps = conn.prepareStatement(sql);
-                 ResultSet rs = ps.executeQuery()) {
-
-                while (rs.next()) {
-                    Order order = new Order();
-                    order.setId(rs.getInt("id"));
-                    order.setTableId(rs.getInt("table_id"));
-                    order.setOrderTime(rs.getTimestamp("order_time"));
-                    order.setCompletedTime(rs.getTimestamp("completed_time"));
-                    order.setStatus(rs.getString("status"));
-                    order.setTotalAmount(rs.getBigDecimal("total_amount"));
-                    order.setNotes(rs.getString("notes"));
-                    order.setCreatedBy(rs.getInt("created_by"));
-                    unpaidCompletedOrders.add(order);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                TimeRange.today().bindTimestamps(ps, 1);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Order order = new Order();
+                        order.setId(rs.getInt("id"));
+                        order.setTableId(rs.getInt("table_id"));
+                        order.setOrderTime(rs.getTimestamp("order_time"));
+                        order.setCompletedTime(rs.getTimestamp("completed_time"));
+                        order.setStatus(rs.getString("status"));
+                        order.setTotalAmount(Money.read(rs, "total_amount"));
+                        order.setNotes(rs.getString("notes"));
+                        order.setCreatedBy(rs.getInt("created_by"));
+                        unpaidCompletedOrders.add(order);
+                    }
                 }
             }
 
             ObservableList<String> tableNames = FXCollections.observableArrayList();
 
-            System.out.println("Found " + unpaidCompletedOrders.size() + " unpaid completed orders for today");
+            LOG.debug("Found {} unpaid completed orders for today", unpaidCompletedOrders.size());
 
             for (Order order : unpaidCompletedOrders) {
                 String tableName = "Bàn " + order.getTableId() + " - Đơn #" + order.getId();
                 tableNames.add(tableName);
-                System.out.println("Added to payment options: " + tableName + " (Amount: " + order.getFormattedTotal() + ")");
+                LOG.debug("Added to payment options: {} (Amount: {})", tableName, order.getFormattedTotal());
             }
 
             tableComboBox.setItems(tableNames);
@@ -252,18 +272,18 @@ public class PaymentController implements Initializable {
             // Update status message only
             if (tableNames.isEmpty()) {
                 updateStatusLabel("Không có đơn hàng nào sẵn sàng thanh toán", Color.ORANGE);
-                System.out.println("No unpaid orders available for payment");
+                LOG.debug("No unpaid orders available for payment");
             } else {
                 updateStatusLabel("Chọn bàn để thanh toán (" + tableNames.size() + " đơn chờ)", Color.BLUE);
-                System.out.println("Available unpaid orders for payment: " + tableNames.size());
+                LOG.debug("Available unpaid orders for payment: {}", tableNames.size());
             }
 
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.error("Error loading table options", e);
             updateStatusLabel("Lỗi khi tải danh sách đơn hàng", Color.RED);
         }
 
-        System.out.println("=== END LOADING TABLE OPTIONS ===");
+        LOG.debug("=== END LOADING TABLE OPTIONS ===");
     }
 
     // FIXED: Keep original method for compatibility (alias to the new method)
@@ -292,7 +312,7 @@ public class PaymentController implements Initializable {
 
     @FXML
     private void onRefreshTables() {
-        System.out.println("=== REFRESH TABLES CLICKED ===");
+        LOG.debug("=== REFRESH TABLES CLICKED ===");
 
         // Reset everything
         orderSetFromExternal = false;
@@ -348,13 +368,13 @@ public class PaymentController implements Initializable {
         quantityCol.setCellValueFactory(new PropertyValueFactory<>("quantity"));
         priceCol.setCellValueFactory(new PropertyValueFactory<>("price"));
         totalCol.setCellValueFactory(cellData ->
-                new ReadOnlyObjectWrapper<>(cellData.getValue().getPrice() * cellData.getValue().getQuantity())
+                new ReadOnlyObjectWrapper<>(cellData.getValue().getSubtotal())
         );
 
         // Format price columns
-        priceCol.setCellFactory(column -> new TableCell<OrderItem, Double>() {
+        priceCol.setCellFactory(column -> new TableCell<OrderItem, Money>() {
             @Override
-            protected void updateItem(Double item, boolean empty) {
+            protected void updateItem(Money item, boolean empty) {
                 super.updateItem(item, empty);
                 if (empty || item == null) {
                     setText(null);
@@ -364,9 +384,9 @@ public class PaymentController implements Initializable {
             }
         });
 
-        totalCol.setCellFactory(column -> new TableCell<OrderItem, Double>() {
+        totalCol.setCellFactory(column -> new TableCell<OrderItem, Money>() {
             @Override
-            protected void updateItem(Double item, boolean empty) {
+            protected void updateItem(Money item, boolean empty) {
                 super.updateItem(item, empty);
                 if (empty || item == null) {
                     setText(null);
@@ -383,8 +403,8 @@ public class PaymentController implements Initializable {
     // FIXED: Parse table and order info from selection
     private void loadOrderBySelectedTable() {
         String selectedTableName = tableComboBox.getValue();
-        System.out.println("=== LOAD ORDER BY SELECTED TABLE ===");
-        System.out.println("Selected: " + selectedTableName);
+        LOG.debug("=== LOAD ORDER BY SELECTED TABLE ===");
+        LOG.debug("Selected: {}", selectedTableName);
 
         // Fix text color khi selection thay đổi
         Platform.runLater(() -> {
@@ -392,7 +412,8 @@ public class PaymentController implements Initializable {
         });
 
         if (selectedTableName == null) {
-            System.out.println("No table selected, clearing display");
+            LOG.debug("No table selected, clearing display");
+            orderLoad.cancel();
             clearOrderDisplay();
             return;
         }
@@ -401,43 +422,71 @@ public class PaymentController implements Initializable {
         try {
             String[] parts = selectedTableName.split(" - Đơn #");
             if (parts.length != 2) {
-                System.out.println("Invalid table name format: " + selectedTableName);
+                LOG.debug("Invalid table name format: {}", selectedTableName);
                 clearOrderDisplay();
                 return;
             }
 
             int orderId = Integer.parseInt(parts[1]);
-            System.out.println("Looking for order ID: " + orderId);
-
-            currentOrder = orderDAO.findById(orderId);
-
-            if (currentOrder != null) {
-                System.out.println("Found order: #" + currentOrder.getId() + " with status: " + currentOrder.getStatus());
-            } else {
-                System.out.println("Order not found!");
-            }
-
-            updateOrderDisplay();
+            LOG.debug("Looking for order ID: {}", orderId);
+            loadOrderForPayment(orderId);
 
         } catch (Exception e) {
-            System.err.println("Error loading order: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error loading order", e);
             currentOrder = null;
             clearOrderDisplay();
         }
+    }
+
+    /** Dữ liệu một đơn hàng tải ở thread DB để hiển thị trên màn hình thanh toán */
+    private static final class LoadedOrder {
+        final Order order;
+        final boolean paid;
+        final List<OrderItem> items;
 
-        System.out.println("=== END LOAD ORDER BY SELECTED TABLE ===");
+        LoadedOrder(Order order, boolean paid, List<OrderItem> items) {
+            this.order = order;
+            this.paid = paid;
+            this.items = items;
+        }
     }
 
-    // FIXED: Update order display to only show unpaid completed orders
-    private void updateOrderDisplay() {
+    /**
+     * ENHANCED: Tải đơn hàng + món ở thread DB rồi mới hiển thị trên FX thread.
+     * Chọn bàn khác khi đang tải sẽ hủy lần tải trước.
+     */
+    private void loadOrderForPayment(int orderId) {
+        // Không cho thanh toán đơn cũ trong lúc đang tải đơn mới
+        currentOrder = null;
+        updateStatusLabel("Đang tải đơn hàng #" + orderId + "...", Color.BLUE);
+
+        orderLoad.submit(() -> {
+            Order order = orderDAO.findById(orderId);
+            if (order == null || !"completed".equals(order.getStatus())) {
+                return new LoadedOrder(order, false, new ArrayList<>());
+            }
+            boolean paid = orderDAO.isOrderPaid(orderId);
+            List<OrderItem> items = paid ? new ArrayList<>() : orderItemDAO.findByOrderId(orderId);
+            return new LoadedOrder(order, paid, items);
+        }, this::showLoadedOrder, error -> {
+            LOG.atError().with("orderId", orderId).cause(error).log("Error loading order items");
+            currentOrder = null;
+            clearOrderDisplay();
+            updateStatusLabel("Lỗi khi tải danh sách món!", Color.RED);
+        });
+    }
+
+    private void showLoadedOrder(LoadedOrder loaded) {
         orderItems.clear();
+        currentOrder = loaded.order;
 
         if (currentOrder == null) {
+            LOG.debug("Order not found!");
             totalLabel.setText("0 VND");
             updateStatusLabel("Không tìm thấy đơn hàng", Color.ORANGE);
             return;
         }
+        LOG.debug("Found order: #{} with status: {}", currentOrder.getId(), currentOrder.getStatus());
 
         // Only show completed orders that haven't been paid
         if (!"completed".equals(currentOrder.getStatus())) {
@@ -446,52 +495,34 @@ public class PaymentController implements Initializable {
             return;
         }
 
-        // FIXED: Check if order has already been paid
-        try {
-            String checkPaymentSql = "SELECT COUNT(*) FROM payments WHERE order_id = ?";
-            try (Connection conn = JDBCConnect.getJDBCConnection();
-                 PreparedStatement ps = conn.prepareStatement(checkPaymentSql)) {
-
-                ps.setInt(1, currentOrder.getId());
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next() && rs.getInt(1) > 0) {
-                        totalLabel.setText("0 VND");
-                        updateStatusLabel("Đơn hàng này đã được thanh toán rồi!", Color.RED);
-                        return;
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+        if (loaded.paid) {
+            totalLabel.setText("0 VND");
+            updateStatusLabel("Đơn hàng này đã được thanh toán rồi!", Color.RED);
+            return;
         }
 
-        try {
-            List<OrderItem> items = orderItemDAO.findByOrderId(currentOrder.getId());
-            orderItems.addAll(items);
-
-            // Calculate total
-            double total = items.stream().mapToDouble(OrderItem::getSubtotal).sum();
-            totalLabel.setText(formatCurrency(total));
+        orderItems.addAll(loaded.items);
 
-            // Update status
-            updateStatusLabel("Sẵn sàng thanh toán - Đơn hàng #" + currentOrder.getId(), Color.GREEN);
+        // Calculate total
+        Money total = Money.sum(loaded.items, OrderItem::getSubtotalMinor);
+        totalLabel.setText(formatCurrency(total));
 
-            // Update payment summary
-            updatePaymentSummary(items, total);
+        // Update status
+        updateStatusLabel("Sẵn sàng thanh toán - Đơn hàng #" + currentOrder.getId(), Color.GREEN);
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            updateStatusLabel("Lỗi khi tải danh sách món!", Color.RED);
-        }
+        // Update payment summary
+        updatePaymentSummary(loaded.items, total);
     }
 
-    private void updatePaymentSummary(List<OrderItem> items, double total) {
-        if (paymentSummaryBox == null) return;
-
-        paymentSummaryBox.getChildren().clear();
-        
+    private void updatePaymentSummary(List<OrderItem> items, Money total) {
         // Store original total for discount calculations
         originalTotal = total;
+        if (paymentSummaryBox == null) {
+            updateDiscountCalculations();
+            return;
+        }
+
+        paymentSummaryBox.getChildren().clear();
 
         // Add summary header
         Label summaryHeader = new Label("📋 Tóm tắt đơn hàng");
@@ -551,7 +582,7 @@ public class PaymentController implements Initializable {
                             return;
                         }
                     } else {
-                        if (value < 0 || value > originalTotal) {
+                        if (value < 0 || value > originalTotal.toDouble()) {
                             showAlert(Alert.AlertType.WARNING, "Số tiền giảm không hợp lệ!");
                             discountAmountField.setText("");
                             return;
@@ -571,20 +602,20 @@ public class PaymentController implements Initializable {
     }
     
     private void updateDiscountCalculations() {
-        double calculatedDiscount = 0;
+        Money calculatedDiscount = Money.ZERO;
         finalTotal = originalTotal;
         
         if (discountAmount > 0) {
             if (discountType.equals("percentage")) {
-                calculatedDiscount = originalTotal * (discountAmount / 100.0);
+                calculatedDiscount = originalTotal.percent(discountAmount);
             } else {
-                calculatedDiscount = discountAmount;
+                calculatedDiscount = Money.of(BigDecimal.valueOf(discountAmount));
             }
-            finalTotal = originalTotal - calculatedDiscount;
+            finalTotal = originalTotal.minus(calculatedDiscount);
             
             // Ensure final total is not negative
-            if (finalTotal < 0) {
-                finalTotal = 0;
+            if (finalTotal.compareTo(Money.ZERO) < 0) {
+                finalTotal = Money.ZERO;
                 calculatedDiscount = originalTotal;
             }
         }
@@ -648,7 +679,7 @@ public class PaymentController implements Initializable {
                 }
 
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.error("Error loading payment statistics", e);
             }
 
         });
@@ -669,9 +700,9 @@ public class PaymentController implements Initializable {
         }
 
         String method = getSelectedPaymentMethod();
-        double totalAmount = parseTotalAmount();
+        Money totalAmount = finalTotal;
 
-        if (totalAmount <= 0) {
+        if (!totalAmount.isPositive()) {
             showAlert(Alert.AlertType.WARNING, "Số tiền thanh toán không hợp lệ!");
             return;
         }
@@ -694,67 +725,99 @@ public class PaymentController implements Initializable {
         });
     }
 
-    private void processPayment(String method, double totalAmount) {
+    /**
+     * FIXED: Giao dịch thanh toán (khóa FOR UPDATE + nhiều câu lệnh) chạy trên thread DB qua AsyncDAO,
+     * kết quả về FX thread qua FxAsync; không còn sleep giả lập hay Thread riêng
+     */
+    private void processPayment(String method, Money totalAmount) {
+        if (paymentInFlight) return;
+        paymentInFlight = true;
+
         // Show progress
         if (paymentProgress != null) {
             paymentProgress.setVisible(true);
         }
 
-        // Process payment in background
-        new Thread(() -> {
-            try {
-                // Simulate payment processing delay
-                Thread.sleep(1000);
-
-                Platform.runLater(() -> {
-                    try {
-                        // Process the payment using OrderDAO with discount info
-                        BigDecimal finalAmount = BigDecimal.valueOf(finalTotal);
-                        double discountPercent = discountType.equals("percentage") ? discountAmount : 0.0;
-                        orderDAO.processPayment(currentOrder.getId(), method, 1, finalAmount, discountPercent);
-
-                        // Hide progress
-                        if (paymentProgress != null) {
-                            paymentProgress.setVisible(false);
-                        }
+        // Chụp lại trạng thái form: thread DB không đọc field của controller
+        Order order = currentOrder;
+        List<OrderItem> items = new ArrayList<>(orderItems);
+        BigDecimal finalAmount = totalAmount.toBigDecimal();
+        double discountPercent = discountType.equals("percentage") ? discountAmount : 0.0;
 
-                        // Show success message
-                        Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
-                        successAlert.setTitle("Thành công");
-                        successAlert.setHeaderText("Thanh toán thành công!");
-                        successAlert.setContentText(
-                                "Đơn hàng #" + currentOrder.getId() + "\n" +
-                                        "Số tiền: " + formatCurrency(totalAmount) + "\n" +
-                                        "Phương thức: " + method + "\n\n" +
-                                        "Bàn đã được giải phóng và dữ liệu đã được cập nhật."
-                        );
-
-                        successAlert.showAndWait().ifPresent(response -> {
-                            // FIXED: Navigate back to dashboard after payment
-                            goBackToDashboard();
-                        });
-
-                        // Notify dashboard to update
-                        DashboardUpdateUtil.notifyDashboardUpdate();
-
-                        // Reset form and reload data
-                        resetPaymentForm();
-                        loadTableOptions();
-                        loadPaymentStatistics();
-
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        if (paymentProgress != null) {
-                            paymentProgress.setVisible(false);
-                        }
-                        showAlert(Alert.AlertType.ERROR, "Lỗi khi xử lý thanh toán: " + e.getMessage());
+        FxAsync.deliver(AsyncDAO.run(() -> orderDAO.processPayment(order.getId(), method, 1, finalAmount, discountPercent)),
+                ignored -> {
+                    paymentInFlight = false;
+                    LOG.debug("{}", OrderDAO.getPaymentLatencyHistogram());
+
+                    // Notify dashboard to update
+                    DashboardEventBus.publish(DashboardEvent.paymentCompleted(order.getId(), finalAmount));
+
+                    // NEW: Hóa đơn PDF tạo ở thread nền, không giữ FX thread lúc thanh toán
+                    if (PDF_ON_PAYMENT) {
+                        generatePdfReceipt(order, items);
+                    }
+
+                    // Hide progress
+                    if (paymentProgress != null) {
+                        paymentProgress.setVisible(false);
                     }
+
+                    // Show success message
+                    Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+                    successAlert.setTitle("Thành công");
+                    successAlert.setHeaderText("Thanh toán thành công!");
+                    successAlert.setContentText(
+                            "Đơn hàng #" + order.getId() + "\n" +
+                                    "Số tiền: " + formatCurrency(totalAmount) + "\n" +
+                                    "Phương thức: " + method + "\n\n" +
+                                    "Bàn đã được giải phóng và dữ liệu đã được cập nhật."
+                    );
+
+                    successAlert.showAndWait().ifPresent(response -> {
+                        // FIXED: Navigate back to dashboard after payment
+                        goBackToDashboard();
+                    });
+
+
+                    // Reset form and reload data
+                    resetPaymentForm();
+                    loadTableOptions();
+                    loadPaymentStatistics();
+                },
+                error -> {
+                    paymentInFlight = false;
+                    LOG.atError().with("orderId", order.getId()).cause(error).log("❌ Payment processing failed");
+                    if (paymentProgress != null) {
+                        paymentProgress.setVisible(false);
+                    }
+                    showAlert(Alert.AlertType.ERROR, "Lỗi khi xử lý thanh toán: " + error.getMessage());
                 });
+    }
 
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }).start();
+    /**
+     * NEW: Tạo hóa đơn PDF của đơn vừa thanh toán trên thread "invoice-pdf";
+     * kết quả về FX thread qua FxAsync, chỉ báo lên UI khi tạo thất bại.
+     */
+    private void generatePdfReceipt(Order order, List<OrderItem> items) {
+        order.setStatus("paid");
+        FxAsync.deliver(InvoiceHelper.createPdfInvoiceAsync(order, items),
+                file -> {
+                    if (file != null) {
+                        LOG.atInfo().with("orderId", order.getId()).with("file", file.getAbsolutePath())
+                                .log("🧾 PDF receipt created");
+                    } else {
+                        showPdfReceiptFailed(order.getId());
+                    }
+                },
+                error -> {
+                    LOG.atError().with("orderId", order.getId()).cause(error).log("❌ PDF receipt failed");
+                    showPdfReceiptFailed(order.getId());
+                });
+    }
+
+    private void showPdfReceiptFailed(int orderId) {
+        showAlert(Alert.AlertType.WARNING, "Không tạo được hóa đơn PDF cho đơn #" + orderId + ".\n"
+                + "Có thể in lại hóa đơn từ chi tiết đơn hàng trên màn hình tổng quan.");
     }
 
     // NEW: Navigate back to dashboard
@@ -762,7 +825,7 @@ public class PaymentController implements Initializable {
         try {
             SceneUtil.openScene("/fxml/dashboard.fxml", totalLabel);
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Cannot open dashboard", e);
         }
     }
 
@@ -772,7 +835,8 @@ public class PaymentController implements Initializable {
         totalLabel.setText("0 VND");
         
         // Reset discount
-        originalTotal = 0.0;
+        originalTotal = Money.ZERO;
+        finalTotal = Money.ZERO;
         discountAmount = 0.0;
         if (discountAmountField != null) {
             discountAmountField.setText("");
@@ -832,22 +896,7 @@ public class PaymentController implements Initializable {
             }
         }
         
-        System.out.println("Selected payment method: " + cleanMethod);
-    }
-
-    private double parseTotalAmount() {
-        // Use final total (after discount) for payment
-        if (finalTotalLabel != null) {
-            String totalText = finalTotalLabel.getText().replaceAll("[^0-9]", "");
-            if (!totalText.isEmpty()) {
-                return Double.parseDouble(totalText);
-            }
-        }
-        
-        // Fallback to main total label
-        String totalText = totalLabel.getText().replaceAll("[^0-9]", "");
-        if (totalText.isEmpty()) return 0;
-        return Double.parseDouble(totalText);
+        LOG.debug("Selected payment method: {}", cleanMethod);
     }
 
     private String getSelectedPaymentMethod() {
@@ -859,6 +908,10 @@ public class PaymentController implements Initializable {
         return currencyFormatter.format(amount) + " VND";
     }
 
+    private String formatCurrency(Money amount) {
+        return Money.appendVnd(new StringBuilder(), amount.toVnd()).append(" VND").toString();
+    }
+
     private void showAlert(Alert.AlertType type, String message) {
         Alert alert = new Alert(type);
         alert.setTitle(type == Alert.AlertType.ERROR ? "Lỗi" :
@@ -929,8 +982,8 @@ public class PaymentController implements Initializable {
         // Then select it
         tableComboBox.getSelectionModel().select(tableName);
 
-        // Update display
-        updateOrderDisplay();
+        // Update display (gọi lại sau select để chắc chắn đơn này là yêu cầu mới nhất)
+        loadOrderForPayment(order.getId());
 
         // Fix text color sau khi set order
         Platform.runLater(() -> {
@@ -4,9 +4,12 @@ import javafx.fxml.FXML;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import com.barmanagement.util.LogoutUtil;
+import com.barmanagement.util.Log;
 
 public class RevenueController {
 
+    private static final Log LOG = Log.get(RevenueController.class);
+
     @FXML
     private TableView<?> revenueTable;
 
@@ -18,7 +21,7 @@ public class RevenueController {
 
     @FXML
     public void initialize() {
-        System.out.println("Load báo cáo doanh thu...");
+        LOG.debug("Load báo cáo doanh thu...");
     }
 
     // Thêm method xử lý đăng xuất
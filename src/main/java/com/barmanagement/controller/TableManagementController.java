@@ -21,8 +21,10 @@ import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import com.barmanagement.util.SceneUtil;
-import com.barmanagement.util.DashboardUpdateUtil;
+import com.barmanagement.util.DashboardEvent;
+import com.barmanagement.util.DashboardEventBus;
 import com.barmanagement.util.LogoutUtil;
+import com.barmanagement.util.Log;
 
 import java.sql.SQLException;
 
@@ -33,6 +35,8 @@ import java.sql.SQLException;
  */
 public class TableManagementController {
 
+    private static final Log LOG = Log.get(TableManagementController.class);
+
     @FXML
     private TableView<Table> tableView;
     @FXML
@@ -475,7 +479,7 @@ public class TableManagementController {
             tableView.refresh();
             updateTableCards();
             // Thông báo các màn hình khác (Order/Payment) làm mới dữ liệu bàn
-            DashboardUpdateUtil.notifyDashboardUpdate();
+            DashboardEventBus.publish(DashboardEvent.tableStatusChanged(selected.getId(), selected.getStatus()));
             showInfo("Đã cập nhật bàn thành công!");
         } catch (SQLException ex) {
             String sqlState = ex.getSQLState();
@@ -559,6 +563,7 @@ public class TableManagementController {
 
             tableDAO.updateStatus(sel.getId(), newStatus);
             sel.setStatus(newStatus);
+            DashboardEventBus.publish(DashboardEvent.tableStatusChanged(sel.getId(), newStatus));
             tableView.refresh();
             updateStatistics();
             updateTableCards();
@@ -599,8 +604,7 @@ public class TableManagementController {
             lblReservedTables.setText(String.valueOf(reserved));
 
             // Show ordering count somewhere if you have a label for it
-            System.out.println("Table stats - Total: " + total + ", Empty: " + empty +
-                    ", Occupied: " + occupied + ", Reserved: " + reserved + ", Ordering: " + ordering);
+            LOG.debug("Table stats - Total: {}, Empty: {}, Occupied: {}, Reserved: {}, Ordering: {}", total, empty, occupied, reserved, ordering);
         }
     }
 
@@ -620,7 +624,7 @@ public class TableManagementController {
         alert.setHeaderText("Có lỗi xảy ra");
         alert.setContentText(e.getMessage());
         alert.showAndWait();
-        e.printStackTrace();
+        LOG.error("❌ Table management error", e);
     }
 
     private void showInfo(String message) {
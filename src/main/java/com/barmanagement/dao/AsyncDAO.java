@@ -0,0 +1,109 @@
+package com.barmanagement.dao;
+
+import com.barmanagement.config.DatabaseConfig;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chạy lời gọi DAO trên thread pool riêng cho database và trả về CompletableFuture,
+ * để FX Application Thread không bao giờ phải chờ JDBC.
+ *
+ * Ví dụ: AsyncDAO.supply(() -> orderDAO.findItems(orderId))
+ *
+ * Số thread bằng pool.maxSize (mặc định) vì mỗi tác vụ chiếm một kết nối;
+ * hàng đợi có giới hạn (db.executor.queueCapacity), tràn thì future lỗi ngay thay vì dồn việc vô hạn.
+ * Hủy future (cancel) trước khi tác vụ chạy sẽ bỏ qua tác vụ đó.
+ */
+public final class AsyncDAO {
+
+    @FunctionalInterface
+    public interface SqlCallable<T> {
+        T call() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface SqlRunnable {
+        void run() throws SQLException;
+    }
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private AsyncDAO() {
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        DatabaseConfig config = DatabaseConfig.get();
+        int threads = Math.max(1, config.getInt("db.executor.threads", config.getPoolMaxSize()));
+        int queueCapacity = Math.max(1, config.getInt("db.executor.queueCapacity", 256));
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "db-worker-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /** Chạy truy vấn trên thread DB */
+    public static <T> CompletableFuture<T> supply(SqlCallable<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            Future<?> task = EXECUTOR.submit(() -> {
+                if (result.isDone()) {
+                    return; // đã bị hủy khi còn trong hàng đợi
+                }
+                try (QueryInstrumentation.Scope scope = QueryInstrumentation.openScope("AsyncDAO task")) {
+                    result.complete(call.call());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+            result.whenComplete((r, e) -> {
+                if (result.isCancelled()) {
+                    task.cancel(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new SQLException("Hàng đợi truy vấn database đã đầy", e));
+        }
+        return result;
+    }
+
+    /** Chạy lệnh ghi trên thread DB */
+    public static CompletableFuture<Void> run(SqlRunnable call) {
+        return supply(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    // ===== Metrics =====
+
+    public static int getQueueDepth() {
+        return EXECUTOR.getQueue().size();
+    }
+
+    public static int getActiveCount() {
+        return EXECUTOR.getActiveCount();
+    }
+
+    public static long getCompletedTaskCount() {
+        return EXECUTOR.getCompletedTaskCount();
+    }
+
+    public static void shutdown() {
+        EXECUTOR.shutdown();
+    }
+}
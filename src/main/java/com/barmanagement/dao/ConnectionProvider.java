@@ -0,0 +1,392 @@
+package com.barmanagement.dao;
+
+import com.barmanagement.config.DatabaseConfig;
+import com.barmanagement.util.Log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection pool dùng chung cho toàn bộ DAO.
+ *
+ * - Giới hạn số kết nối tối đa (pool.maxSize), chờ tối đa pool.connectionTimeoutMs khi hết kết nối
+ * - Kiểm tra kết nối (isValid) trước khi cho mượn, loại bỏ kết nối quá pool.maxLifetimeMs
+ * - Thread nền dọn kết nối rảnh quá pool.idleTimeoutMs nhưng vẫn giữ pool.minIdle kết nối
+ * - Phát hiện rò rỉ: kết nối mượn quá pool.leakDetectionThresholdMs sẽ in ra stack trace nơi mượn
+ *
+ * Connection trả về là proxy: gọi close() sẽ trả kết nối về pool thay vì đóng socket,
+ * nên code DAO hiện tại (try-with-resources) giữ nguyên.
+ */
+public final class ConnectionProvider {
+
+    private static final Log LOG = Log.get(ConnectionProvider.class);
+
+    private static final class Holder {
+        private static final ConnectionProvider INSTANCE = new ConnectionProvider(DatabaseConfig.get());
+    }
+
+    public static ConnectionProvider get() {
+        return Holder.INSTANCE;
+    }
+
+    /** Kết nối vật lý kèm thông tin phục vụ pool */
+    private static final class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        final boolean driverStatementCache;
+        final long createdAt = System.currentTimeMillis();
+        volatile long lastUsedAt = createdAt;
+        volatile long borrowedAt;
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical, int statementCacheSize, boolean driverStatementCache) {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+            this.driverStatementCache = driverStatementCache;
+        }
+    }
+
+    private final DatabaseConfig config;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> inUse = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown = false;
+    private volatile boolean statementCacheEnabled;
+    // false: kết nối mới mở với cachePrepStmts=false (chỉ benchmark tắt)
+    private volatile boolean driverStatementCache = true;
+
+    // Metrics
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong validationFailureCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private ConnectionProvider(DatabaseConfig config) {
+        this.config = config;
+        this.permits = new Semaphore(config.getPoolMaxSize(), true);
+        this.statementCacheEnabled = config.getStatementCacheSize() > 0;
+
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+            LOG.debug("MySQL JDBC Driver Registered!");
+        } catch (ClassNotFoundException ex) {
+            LOG.error("Where is your MySQL JDBC Driver?");
+        }
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+                0, config.getHousekeepingIntervalMs(), TimeUnit.MILLISECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "db-pool-shutdown"));
+
+        LOG.info("Connection pool started: maxSize={}, minIdle={}", config.getPoolMaxSize(), config.getPoolMinIdle());
+    }
+
+    /**
+     * Mượn một kết nối từ pool. Luôn đóng (close) kết nối sau khi dùng để trả lại pool.
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool đã bị tắt");
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(config.getConnectionTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Bị ngắt khi chờ kết nối từ pool", e);
+        }
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            throw new SQLTimeoutException("Hết kết nối trong pool sau " + config.getConnectionTimeoutMs()
+                    + "ms (" + getStatsSummary() + ")");
+        }
+
+        try {
+            PooledConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                if (isUsable(pc)) break;
+                destroy(pc);
+            }
+            if (pc == null) {
+                pc = create();
+            }
+
+            pc.borrowedAt = System.currentTimeMillis();
+            pc.leakReported = false;
+            pc.borrowSite = config.getLeakDetectionThresholdMs() > 0
+                    ? new Throwable("Connection borrowed here") : null;
+            inUse.add(pc);
+
+            long waited = System.nanoTime() - start;
+            borrowCount.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+            return wrap(pc);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        boolean driverCache = driverStatementCache;
+        Properties driverProperties = config.getDriverProperties();
+        if (!driverCache) {
+            driverProperties.setProperty("cachePrepStmts", "false");
+        }
+        Connection physical = DriverManager.getConnection(config.getUrl(), driverProperties);
+        totalConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical, config.getStatementCacheSize(), driverCache);
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        if (isExpired(pc, System.currentTimeMillis()) || pc.driverStatementCache != driverStatementCache) {
+            return false;
+        }
+        try {
+            if (pc.physical.isValid(config.getValidationTimeoutSec())) {
+                return true;
+            }
+        } catch (SQLException ignored) {
+        }
+        validationFailureCount.incrementAndGet();
+        return false;
+    }
+
+    private boolean isExpired(PooledConnection pc, long now) {
+        long maxLifetime = config.getMaxLifetimeMs();
+        return maxLifetime > 0 && now - pc.createdAt > maxLifetime;
+    }
+
+    private void destroy(PooledConnection pc) {
+        totalConnections.decrementAndGet();
+        destroyedCount.incrementAndGet();
+        if (pc.statements != null) {
+            pc.statements.closeAll();
+        }
+        try {
+            pc.physical.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /** Gọi từ proxy khi DAO close() kết nối */
+    private void release(PooledConnection pc) {
+        inUse.remove(pc);
+        try {
+            boolean reusable = !shutdown && !pc.physical.isClosed()
+                    && pc.driverStatementCache == driverStatementCache;
+            if (reusable) {
+                // Không để transaction dở dang lọt sang người mượn sau
+                if (!pc.physical.getAutoCommit()) {
+                    pc.physical.rollback();
+                    pc.physical.setAutoCommit(true);
+                }
+                pc.physical.clearWarnings();
+                pc.lastUsedAt = System.currentTimeMillis();
+                pc.borrowSite = null;
+                idle.offerFirst(pc);
+            } else {
+                destroy(pc);
+            }
+        } catch (SQLException e) {
+            destroy(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Connection wrap(PooledConnection pc) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionProvider.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new LeasedConnectionHandler(pc));
+    }
+
+    private final class LeasedConnectionHandler implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean closed = false;
+
+        LeasedConnectionHandler(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pc);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pc.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pc.physical + (closed ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Kết nối đã được trả về pool");
+            }
+            if (pc.statements != null && statementCacheEnabled && "prepareStatement".equals(method.getName())) {
+                Class<?>[] types = method.getParameterTypes();
+                if (types.length == 1) {
+                    return pc.statements.prepare(pc.physical, (String) args[0], -1);
+                }
+                if (types.length == 2 && types[1] == int.class) {
+                    return pc.statements.prepare(pc.physical, (String) args[0], (Integer) args[1]);
+                }
+            }
+            try {
+                return method.invoke(pc.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /** Dọn kết nối rảnh/hết hạn, bổ sung minIdle và kiểm tra rò rỉ */
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            int minIdle = config.getPoolMinIdle();
+
+            List<PooledConnection> snapshot = new ArrayList<>(idle);
+            // Duyệt từ cuối deque: đó là kết nối rảnh lâu nhất
+            for (int i = snapshot.size() - 1; i >= 0; i--) {
+                PooledConnection pc = snapshot.get(i);
+                boolean idleTooLong = now - pc.lastUsedAt > config.getIdleTimeoutMs()
+                        && idle.size() > minIdle;
+                if ((idleTooLong || isExpired(pc, now)) && idle.remove(pc)) {
+                    destroy(pc);
+                }
+            }
+
+            while (!shutdown && idle.size() < minIdle
+                    && totalConnections.get() < config.getPoolMaxSize()) {
+                idle.offerLast(create());
+            }
+
+            long leakThreshold = config.getLeakDetectionThresholdMs();
+            if (leakThreshold > 0) {
+                for (PooledConnection pc : inUse) {
+                    if (!pc.leakReported && now - pc.borrowedAt > leakThreshold) {
+                        pc.leakReported = true;
+                        leakCount.incrementAndGet();
+                        // borrowSite (nếu bật) là stack trace lúc mượn kết nối
+                        LOG.atWarn().with("heldMs", now - pc.borrowedAt).cause(pc.borrowSite)
+                                .log("⚠️ Possible connection leak");
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOG.error("Connection pool housekeeping failed", e);
+        } catch (RuntimeException e) {
+            LOG.error("Connection pool housekeeping failed", e);
+        }
+    }
+
+    /** Đóng toàn bộ kết nối rảnh; kết nối đang mượn sẽ bị đóng khi trả về */
+    public void shutdown() {
+        if (shutdown) return;
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            destroy(pc);
+        }
+    }
+
+    /**
+     * Bật/tắt cache PreparedStatement lúc chạy (dùng cho benchmark so sánh).
+     * FIXED: tắt cả cache phía driver (cachePrepStmts) để số đo "uncached" là prepare thật;
+     * thuộc tính driver chỉ áp dụng lúc mở kết nối nên kết nối rảnh bị hủy và mở lại khi cần.
+     */
+    public void setStatementCacheEnabled(boolean enabled) {
+        this.statementCacheEnabled = enabled && config.getStatementCacheSize() > 0;
+        if (driverStatementCache != enabled) {
+            driverStatementCache = enabled;
+            PooledConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                destroy(pc);
+            }
+        }
+    }
+
+    public boolean isStatementCacheEnabled() { return statementCacheEnabled; }
+
+    // ===== Metrics =====
+
+    public int getTotalConnections() { return totalConnections.get(); }
+    public int getIdleConnections() { return idle.size(); }
+    public int getActiveConnections() { return inUse.size(); }
+    public int getPendingThreads() { return permits.getQueueLength(); }
+    public long getBorrowCount() { return borrowCount.get(); }
+    public long getCreatedCount() { return createdCount.get(); }
+    public long getDestroyedCount() { return destroyedCount.get(); }
+    public long getTimeoutCount() { return timeoutCount.get(); }
+    public long getValidationFailureCount() { return validationFailureCount.get(); }
+    public long getLeakCount() { return leakCount.get(); }
+    public long getStatementCacheHits() { return StatementCache.getHitCount(); }
+    public long getStatementCacheMisses() { return StatementCache.getMissCount(); }
+    public long getStatementCacheEvictions() { return StatementCache.getEvictionCount(); }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    public String getStatsSummary() {
+        return String.format("total=%d, active=%d, idle=%d, waiting=%d, borrows=%d, created=%d, "
+                        + "destroyed=%d, timeouts=%d, invalid=%d, leaks=%d, avgWait=%.2fms, maxWait=%.2fms, "
+                        + "stmtHits=%d, stmtMisses=%d, stmtHitRatio=%.1f%%",
+                getTotalConnections(), getActiveConnections(), getIdleConnections(), getPendingThreads(),
+                getBorrowCount(), getCreatedCount(), getDestroyedCount(), getTimeoutCount(),
+                getValidationFailureCount(), getLeakCount(), getAverageWaitMillis(), getMaxWaitMillis(),
+                getStatementCacheHits(), getStatementCacheMisses(), StatementCache.getHitRatio() * 100);
+    }
+}
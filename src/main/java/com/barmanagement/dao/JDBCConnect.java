@@ -1,43 +1,35 @@
 package com.barmanagement.dao;
 
-import com.barmanagement.config.JDBCConfig;
-
+import com.barmanagement.util.Log;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class JDBCConnect {
 
-    public static Connection getJDBCConnection() {
-        Connection con = null;
-        String connectionUrl = "jdbc:mysql://" + JDBCConfig.HOSTNAME
-                + ":" + JDBCConfig.PORT + "/"
-                + JDBCConfig.DBNAME
-                + "?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC";
-
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-        } catch (ClassNotFoundException ex) {
-            System.err.println("Where is your MySQL JDBC Driver?");
-            return con;
-        }
-        System.out.println("MySQL JDBC Driver Registered!");
+    private static final Log LOG = Log.get(JDBCConnect.class);
 
+    /**
+     * ENHANCED: Lấy kết nối từ {@link ConnectionProvider} (pool) thay vì mở kết nối mới mỗi lần.
+     * Gọi close() sẽ trả kết nối về pool. Trả về null nếu không lấy được kết nối (giữ hành vi cũ).
+     * NEW: kết nối được bọc bởi {@link QueryInstrumentation} (độ trễ, slow-query log, N+1).
+     */
+    public static Connection getJDBCConnection() {
         try {
-            con = DriverManager.getConnection(
-                    connectionUrl,
-                    JDBCConfig.USERNAME,
-                    JDBCConfig.PASSWORD
-            );
+            if (!QueryInstrumentation.isEnabled()) {
+                return ConnectionProvider.get().getConnection();
+            }
+            long start = System.nanoTime();
+            Connection connection = ConnectionProvider.get().getConnection();
+            return QueryInstrumentation.wrap(connection, System.nanoTime() - start);
         } catch (SQLException ex) {
-            System.err.println("Connection Failed! Check output console");
-            ex.printStackTrace();
-            return con;
+            LOG.error("Connection Failed!", ex);
+            return null;
         }
-        return con;
     }
 
     public static void main(String[] args) {
         System.out.println(JDBCConnect.getJDBCConnection());
+        System.out.println(ConnectionProvider.get().getStatsSummary());
+        System.out.println(QueryInstrumentation.getStatsSummary());
     }
 }
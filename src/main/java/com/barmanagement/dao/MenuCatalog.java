@@ -0,0 +1,291 @@
+package com.barmanagement.dao;
+
+import com.barmanagement.model.MenuItem;
+import com.barmanagement.model.Money;
+import com.barmanagement.util.Log;
+
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cache thực đơn trong bộ nhớ.
+ *
+ * Tải menu_items một lần, đánh chỉ mục theo id, category và tiền tố tên (không dấu, không phân biệt hoa thường).
+ * MenuItemDAO cập nhật cache sau mỗi insert/update/updateAvailability/delete thành công,
+ * nên duyệt menu và tra giá khi thêm món không cần round-trip tới database.
+ *
+ * Snapshot là bất biến và được thay thế nguyên khối (copy-on-write), đọc không cần khóa.
+ * Các MenuItem trong snapshot dùng chung giữa các màn hình: KHÔNG sửa trực tiếp,
+ * cần sửa thì lấy bản sao qua {@link MenuItemDAO#findAll()} / {@link #copyOf(MenuItem)}.
+ */
+public final class MenuCatalog {
+
+    private static final Log LOG = Log.get(MenuCatalog.class);
+
+    /** Tự tải lại nếu snapshot cũ hơn mốc này (menu có thể được sửa từ máy khác) */
+    private static final long MAX_AGE_MS = 10 * 60 * 1000L;
+
+    private static final MenuCatalog INSTANCE = new MenuCatalog();
+
+    public static MenuCatalog get() {
+        return INSTANCE;
+    }
+
+    private static final Comparator<MenuItem> CATEGORY_NAME_ORDER = Comparator
+            .comparing(MenuItem::getCategory, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(MenuItem::getName, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    /** Chỉ mục bất biến của một phiên bản menu */
+    private static final class Snapshot {
+        final List<MenuItem> all;
+        final Map<Integer, MenuItem> byId;
+        final Map<String, List<MenuItem>> byCategory;
+        final TreeMap<String, List<MenuItem>> byNameToken;
+        final long loadedAt;
+
+        Snapshot(List<MenuItem> items, long loadedAt) {
+            List<MenuItem> sorted = new ArrayList<>(items);
+            sorted.sort(CATEGORY_NAME_ORDER);
+
+            Map<Integer, MenuItem> ids = new HashMap<>(sorted.size() * 2);
+            Map<String, List<MenuItem>> categories = new LinkedHashMap<>();
+            TreeMap<String, List<MenuItem>> tokens = new TreeMap<>();
+
+            for (MenuItem item : sorted) {
+                ids.put(item.getId(), item);
+                categories.computeIfAbsent(item.getCategory(), k -> new ArrayList<>()).add(item);
+                for (String token : tokens(item.getName())) {
+                    tokens.computeIfAbsent(token, k -> new ArrayList<>()).add(item);
+                }
+            }
+            categories.replaceAll((k, v) -> {
+                v.sort(Comparator.comparing(MenuItem::getName, Comparator.nullsFirst(Comparator.<String>naturalOrder())));
+                return Collections.unmodifiableList(v);
+            });
+
+            this.all = Collections.unmodifiableList(sorted);
+            this.byId = ids;
+            this.byCategory = categories;
+            this.byNameToken = tokens;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final MenuItemDAO dao = new MenuItemDAO();
+    private final List<Consumer<MenuCatalog>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot;
+
+    private MenuCatalog() {
+    }
+
+    // ===== Đọc =====
+
+    /** Toàn bộ món (kể cả hết món), sắp theo category, name. Danh sách chỉ đọc. */
+    public List<MenuItem> getAll() throws SQLException {
+        return current().all;
+    }
+
+    public MenuItem findById(int id) throws SQLException {
+        return current().byId.get(id);
+    }
+
+    /** Món trong category (kể cả hết món), sắp theo tên */
+    public List<MenuItem> getByCategory(String category) throws SQLException {
+        List<MenuItem> list = current().byCategory.get(category);
+        return list != null ? list : Collections.emptyList();
+    }
+
+    public List<String> getCategories() throws SQLException {
+        return new ArrayList<>(current().byCategory.keySet());
+    }
+
+    /**
+     * Tìm theo tiền tố của bất kỳ từ nào trong tên, không phân biệt dấu/hoa thường.
+     * Ví dụ "ca" khớp "Cà phê sữa", "Salad Caesar".
+     */
+    public List<MenuItem> searchByPrefix(String prefix) throws SQLException {
+        Snapshot s = current();
+        String[] words = tokens(prefix);
+        if (words.length == 0) return s.all;
+
+        // Từ đầu tiên tra qua chỉ mục, các từ sau lọc trên tập kết quả
+        Set<MenuItem> matches = new LinkedHashSet<>();
+        for (List<MenuItem> items : s.byNameToken.subMap(words[0], true, words[0] + Character.MAX_VALUE, true).values()) {
+            matches.addAll(items);
+        }
+        List<MenuItem> result = new ArrayList<>(matches.size());
+        for (MenuItem item : matches) {
+            if (words.length == 1 || matchesAllPrefixes(tokens(item.getName()), words)) {
+                result.add(item);
+            }
+        }
+        result.sort(CATEGORY_NAME_ORDER);
+        return result;
+    }
+
+    private static boolean matchesAllPrefixes(String[] nameTokens, String[] words) {
+        for (String word : words) {
+            boolean found = false;
+            for (String token : nameTokens) {
+                if (token.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    /** Giá hiện tại của món, null nếu không có trong menu */
+    public Money getPrice(int menuItemId) throws SQLException {
+        MenuItem item = current().byId.get(menuItemId);
+        return item != null ? item.getPrice() : null;
+    }
+
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    // ===== Cập nhật (gọi từ MenuItemDAO sau khi ghi DB thành công) =====
+
+    /** Bỏ cache, lần đọc sau sẽ tải lại từ DB */
+    public void invalidate() {
+        snapshot = null;
+        fireChanged();
+    }
+
+    /** Tải lại toàn bộ từ DB ngay */
+    public void reload() throws SQLException {
+        synchronized (this) {
+            snapshot = new Snapshot(dao.loadAllFromDatabase(), System.currentTimeMillis());
+        }
+        fireChanged();
+    }
+
+    void put(MenuItem item) {
+        MenuItem copy = copyOf(item);
+        patch(items -> {
+            items.removeIf(m -> m.getId() == copy.getId());
+            items.add(copy);
+        });
+        fireChanged();
+    }
+
+    void remove(int id) {
+        patch(items -> items.removeIf(m -> m.getId() == id));
+        fireChanged();
+    }
+
+    void setAvailability(int id, boolean available) {
+        patchItem(id, m -> m.setAvailable(available));
+    }
+
+    void setImagePath(int id, String imagePath) {
+        patchItem(id, m -> m.setImagePath(imagePath));
+    }
+
+    void patchItem(int id, Consumer<MenuItem> change) {
+        patch(items -> {
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).getId() == id) {
+                    MenuItem copy = copyOf(items.get(i));
+                    change.accept(copy);
+                    items.set(i, copy);
+                    return;
+                }
+            }
+        });
+        fireChanged();
+    }
+
+    /** Cache chưa tải thì bỏ qua: lần đọc sau sẽ tải mới từ DB */
+    private synchronized void patch(Consumer<List<MenuItem>> change) {
+        Snapshot s = snapshot;
+        if (s == null) return;
+        List<MenuItem> items = new ArrayList<>(s.all);
+        change.accept(items);
+        // Giữ nguyên mốc loadedAt: vá cục bộ không thay cho việc tải lại định kỳ
+        snapshot = new Snapshot(items, s.loadedAt);
+    }
+
+    // ===== Listener =====
+
+    /** Được gọi (trên thread thực hiện thay đổi) mỗi khi menu thay đổi */
+    public void addChangeListener(Consumer<MenuCatalog> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(Consumer<MenuCatalog> listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireChanged() {
+        for (Consumer<MenuCatalog> listener : listeners) {
+            try {
+                listener.accept(this);
+            } catch (Exception e) {
+                LOG.error("❌ Error in menu catalog listener", e);
+            }
+        }
+    }
+
+    // ===== Helpers =====
+
+    private Snapshot current() throws SQLException {
+        Snapshot s = snapshot;
+        if (s != null && System.currentTimeMillis() - s.loadedAt < MAX_AGE_MS) {
+            return s;
+        }
+        synchronized (this) {
+            s = snapshot;
+            if (s == null || System.currentTimeMillis() - s.loadedAt >= MAX_AGE_MS) {
+                s = new Snapshot(dao.loadAllFromDatabase(), System.currentTimeMillis());
+                snapshot = s;
+                LOG.debug("📋 Menu catalog loaded: {} items", s.all.size());
+            }
+            return s;
+        }
+    }
+
+    public static MenuItem copyOf(MenuItem m) {
+        return new MenuItem(m.getId(), m.getName(), m.getPrice(), m.getCategory(), m.getImagePath(),
+                m.getDescription(), m.isAvailable(), m.getPreparationTime());
+    }
+
+    /** Bỏ dấu tiếng Việt, chữ thường */
+    static String normalize(String s) {
+        if (s == null) return "";
+        return Normalizer.normalize(s, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .replace('đ', 'd').replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT)
+                .trim();
+    }
+
+    private static final String[] NO_TOKENS = new String[0];
+
+    /** Tách tên đã chuẩn hóa thành các từ (chữ + số) */
+    private static String[] tokens(String s) {
+        String n = normalize(s);
+        if (n.isEmpty()) return NO_TOKENS;
+        List<String> out = new ArrayList<>();
+        for (String t : n.split("[^a-z0-9]+")) {
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out.toArray(NO_TOKENS);
+    }
+}
@@ -1,16 +1,32 @@
 package com.barmanagement.dao;
 
 import com.barmanagement.model.MenuItem;
+import com.barmanagement.model.Money;
+import com.barmanagement.util.Log;
 
 import java.sql.*;
 import java.util.*;
 
 public class MenuItemDAO {
 
+    private static final Log LOG = Log.get(MenuItemDAO.class);
+
+    private MenuCatalog catalog() {
+        return MenuCatalog.get();
+    }
+
     /**
-     * Lấy tất cả menu items với thông tin đầy đủ
+     * Lấy tất cả menu items với thông tin đầy đủ.
+     * ENHANCED: đọc từ {@link MenuCatalog}, trả về bản sao để màn hình có thể sửa trực tiếp.
      */
     public List<MenuItem> findAll() throws SQLException {
+        return copies(catalog().getAll(), false);
+    }
+
+    /**
+     * Đọc toàn bộ menu_items từ database (dùng để nạp {@link MenuCatalog})
+     */
+    List<MenuItem> loadAllFromDatabase() throws SQLException {
         String sql = """
             SELECT id, name, price, category, image_path, description, 
                    is_available, preparation_time 
@@ -24,17 +40,7 @@ public class MenuItemDAO {
 
             List<MenuItem> list = new ArrayList<>();
             while (rs.next()) {
-                MenuItem m = new MenuItem();
-                m.setId(rs.getInt("id"));
-                m.setName(rs.getString("name"));
-                // DECIMAL -> double
-                m.setPrice(rs.getBigDecimal("price").doubleValue());
-                m.setCategory(rs.getString("category"));
-                m.setImagePath(rs.getString("image_path"));
-                m.setDescription(rs.getString("description"));
-                m.setAvailable(rs.getBoolean("is_available"));
-                m.setPreparationTime(rs.getInt("preparation_time"));
-                list.add(m);
+                list.add(mapResultSetToMenuItem(rs));
             }
             return list;
         }
@@ -44,52 +50,14 @@ public class MenuItemDAO {
      * Lấy menu items theo category
      */
     public List<MenuItem> findByCategory(String category) throws SQLException {
-        String sql = """
-            SELECT id, name, price, category, image_path, description, 
-                   is_available, preparation_time 
-            FROM menu_items 
-            WHERE category = ? AND is_available = TRUE
-            ORDER BY name
-        """;
-
-        try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-
-            ps.setString(1, category);
-            try (ResultSet rs = ps.executeQuery()) {
-                List<MenuItem> list = new ArrayList<>();
-                while (rs.next()) {
-                    MenuItem m = mapResultSetToMenuItem(rs);
-                    list.add(m);
-                }
-                return list;
-            }
-        }
+        return copies(catalog().getByCategory(category), true);
     }
 
     /**
      * Lấy menu items có sẵn (available = true)
      */
     public List<MenuItem> findAvailable() throws SQLException {
-        String sql = """
-            SELECT id, name, price, category, image_path, description, 
-                   is_available, preparation_time 
-            FROM menu_items 
-            WHERE is_available = TRUE
-            ORDER BY category, name
-        """;
-
-        try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            List<MenuItem> list = new ArrayList<>();
-            while (rs.next()) {
-                MenuItem m = mapResultSetToMenuItem(rs);
-                list.add(m);
-            }
-            return list;
-        }
+        return copies(catalog().getAll(), true);
     }
 
     /**
@@ -106,7 +74,7 @@ public class MenuItemDAO {
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setString(1, m.getName());
-            ps.setBigDecimal(2, java.math.BigDecimal.valueOf(m.getPrice()));
+            m.getPrice().write(ps, 2);
             ps.setString(3, m.getCategory());
             ps.setString(4, m.getImagePath());
             ps.setString(5, m.getDescription());
@@ -114,9 +82,18 @@ public class MenuItemDAO {
             ps.setInt(7, m.getPreparationTime());
 
             ps.executeUpdate();
+            int id;
             try (ResultSet k = ps.getGeneratedKeys()) {
-                return k.next() ? k.getInt(1) : 0;
+                id = k.next() ? k.getInt(1) : 0;
+            }
+            if (id > 0) {
+                MenuItem cached = MenuCatalog.copyOf(m);
+                cached.setId(id);
+                catalog().put(cached);
+            } else {
+                catalog().invalidate();
             }
+            return id;
         }
     }
 
@@ -135,7 +112,7 @@ public class MenuItemDAO {
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setString(1, m.getName());
-            ps.setBigDecimal(2, java.math.BigDecimal.valueOf(m.getPrice()));
+            m.getPrice().write(ps, 2);
             ps.setString(3, m.getCategory());
             ps.setString(4, m.getImagePath());
             ps.setString(5, m.getDescription());
@@ -145,6 +122,7 @@ public class MenuItemDAO {
 
             ps.executeUpdate();
         }
+        catalog().put(m);
     }
 
     /**
@@ -156,11 +134,16 @@ public class MenuItemDAO {
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setString(1, m.getName());
-            ps.setBigDecimal(2, java.math.BigDecimal.valueOf(m.getPrice()));
+            m.getPrice().write(ps, 2);
             ps.setString(3, m.getCategory());
             ps.setInt(4, m.getId());
             ps.executeUpdate();
         }
+        catalog().patchItem(m.getId(), cached -> {
+            cached.setName(m.getName());
+            cached.setPrice(m.getPrice());
+            cached.setCategory(m.getCategory());
+        });
     }
 
     /**
@@ -175,6 +158,7 @@ public class MenuItemDAO {
             ps.setInt(2, id);
             ps.executeUpdate();
         }
+        catalog().setAvailability(id, isAvailable);
     }
 
     /**
@@ -189,6 +173,7 @@ public class MenuItemDAO {
             ps.setInt(2, id);
             ps.executeUpdate();
         }
+        catalog().setImagePath(id, imagePath);
     }
 
     /**
@@ -200,95 +185,51 @@ public class MenuItemDAO {
             ps.setInt(1, id);
             ps.executeUpdate();
         }
+        catalog().remove(id);
     }
 
     /**
      * Tìm menu item theo ID
      */
     public MenuItem findById(int id) throws SQLException {
-        String sql = """
-            SELECT id, name, price, category, image_path, description, 
-                   is_available, preparation_time 
-            FROM menu_items 
-            WHERE id=?
-        """;
-
-        try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-
-            ps.setInt(1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return null;
-                return mapResultSetToMenuItem(rs);
-            }
-        }
+        MenuItem m = catalog().findById(id);
+        return m != null ? MenuCatalog.copyOf(m) : null;
     }
 
     /**
      * Tìm kiếm menu items theo tên
+     * FIXED: món chưa có tên (null) không làm lỗi khi sắp xếp, xếp cuối danh sách
      */
     public List<MenuItem> searchByName(String keyword) throws SQLException {
-        String sql = """
-            SELECT id, name, price, category, image_path, description, 
-                   is_available, preparation_time 
-            FROM menu_items 
-            WHERE LOWER(name) LIKE LOWER(?) AND is_available = TRUE
-            ORDER BY name
-        """;
-
-        try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-
-            ps.setString(1, "%" + keyword + "%");
-            try (ResultSet rs = ps.executeQuery()) {
-                List<MenuItem> list = new ArrayList<>();
-                while (rs.next()) {
-                    MenuItem m = mapResultSetToMenuItem(rs);
-                    list.add(m);
-                }
-                return list;
+        String needle = MenuCatalog.normalize(keyword);
+        List<MenuItem> list = new ArrayList<>();
+        for (MenuItem m : catalog().getAll()) {
+            if (m.isAvailable() && MenuCatalog.normalize(m.getName()).contains(needle)) {
+                list.add(MenuCatalog.copyOf(m));
             }
         }
+        list.sort(Comparator.comparing(MenuItem::getName, Comparator.nullsLast(Comparator.<String>naturalOrder())));
+        return list;
     }
 
     /**
      * Lấy tất cả categories duy nhất
      */
     public List<String> findAllCategories() throws SQLException {
-        String sql = "SELECT DISTINCT category FROM menu_items ORDER BY category";
-        try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            List<String> categories = new ArrayList<>();
-            while (rs.next()) {
-                categories.add(rs.getString("category"));
-            }
-            return categories;
-        }
+        return catalog().getCategories();
     }
 
     /**
      * Đếm số menu items theo category
      */
     public Map<String, Integer> countByCategory() throws SQLException {
-        String sql = """
-            SELECT category, COUNT(*) as count 
-            FROM menu_items 
-            WHERE is_available = TRUE
-            GROUP BY category
-        """;
-
-        try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            Map<String, Integer> counts = new HashMap<>();
-            while (rs.next()) {
-                counts.put(rs.getString("category"), rs.getInt("count"));
+        Map<String, Integer> counts = new HashMap<>();
+        for (MenuItem m : catalog().getAll()) {
+            if (m.isAvailable()) {
+                counts.merge(m.getCategory(), 1, Integer::sum);
             }
-            return counts;
         }
+        return counts;
     }
 
     /**
@@ -296,15 +237,15 @@ public class MenuItemDAO {
      */
     public void insertSampleData() throws SQLException {
         List<MenuItem> sampleItems = Arrays.asList(
-                new MenuItem(0, "Cocktail Tequila", 120000, "Đồ uống", "cocktail.jpg",
+                new MenuItem(0, "Cocktail Tequila", Money.of(120000), "Đồ uống", "cocktail.jpg",
                         "Cocktail truyền thống với tequila, lime và muối", true, 5),
-                new MenuItem(0, "Whiskey Cổ Điển", 150000, "Đồ uống", "whiskey.jpg",
+                new MenuItem(0, "Whiskey Cổ Điển", Money.of(150000), "Đồ uống", "whiskey.jpg",
                         "Whiskey 12 năm tuổi, phục vụ với đá", true, 3),
-                new MenuItem(0, "Pasta Carbonara", 180000, "Món chính", "pasta.jpg",
+                new MenuItem(0, "Pasta Carbonara", Money.of(180000), "Món chính", "pasta.jpg",
                         "Pasta truyền thống với bacon và phô mai", true, 20),
-                new MenuItem(0, "Salad Caesar", 95000, "Khai vị", "salad.jpg",
+                new MenuItem(0, "Salad Caesar", Money.of(95000), "Khai vị", "salad.jpg",
                         "Salad tươi với sốt Caesar đặc biệt", true, 10),
-                new MenuItem(0, "Tiramisu", 85000, "Tráng miệng", "tiramisu.jpg",
+                new MenuItem(0, "Tiramisu", Money.of(85000), "Tráng miệng", "tiramisu.jpg",
                         "Bánh Tiramisu Ý nguyên bản", true, 5)
         );
 
@@ -313,7 +254,7 @@ public class MenuItemDAO {
                 insert(item);
             } catch (SQLException e) {
                 // Ignore if already exists
-                System.out.println("Sample item already exists: " + item.getName());
+                LOG.debug("Sample item already exists: {}", item.getName());
             }
         }
     }
@@ -326,9 +267,8 @@ public class MenuItemDAO {
         m.setId(rs.getInt("id"));
         m.setName(rs.getString("name"));
 
-        // Handle null BigDecimal
-        java.math.BigDecimal price = rs.getBigDecimal("price");
-        m.setPrice(price != null ? price.doubleValue() : 0.0);
+        // DECIMAL -> Money (null = 0)
+        m.setPrice(Money.read(rs, "price"));
 
         m.setCategory(rs.getString("category"));
         m.setImagePath(rs.getString("image_path"));
@@ -339,10 +279,20 @@ public class MenuItemDAO {
         return m;
     }
 
+    private static List<MenuItem> copies(List<MenuItem> source, boolean availableOnly) {
+        List<MenuItem> list = new ArrayList<>(source.size());
+        for (MenuItem m : source) {
+            if (!availableOnly || m.isAvailable()) {
+                list.add(MenuCatalog.copyOf(m));
+            }
+        }
+        return list;
+    }
+
     /**
      * Backup compatibility - insert với thông tin cơ bản
      */
-    public int insertBasic(String name, double price, String category) throws SQLException {
+    public int insertBasic(String name, Money price, String category) throws SQLException {
         MenuItem item = MenuItem.createBasicItem(name, price, category);
         return insert(item);
     }
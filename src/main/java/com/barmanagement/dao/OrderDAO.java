@@ -1,13 +1,19 @@
 package com.barmanagement.dao;
 
+import com.barmanagement.model.Money;
 import com.barmanagement.model.Order;
 import com.barmanagement.model.OrderItem;
 import com.barmanagement.model.Payment;
+import com.barmanagement.util.LatencyHistogram;
+import com.barmanagement.util.Log;
 
 import java.math.BigDecimal;
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * DAO class for Order operations
@@ -15,6 +21,151 @@ import java.util.List;
  */
 public class OrderDAO {
 
+    private static final Log LOG = Log.get(OrderDAO.class);
+
+    private static final String LOCK_ORDER_FOR_PAYMENT_SQL =
+            "SELECT o.status, (SELECT COUNT(*) FROM payments p WHERE p.order_id = o.id) AS payment_count " +
+            "FROM orders o WHERE o.id = ? FOR UPDATE";
+
+    // LEFT JOIN: bàn đã bị xóa thì vẫn thanh toán được đơn
+    private static final String MARK_PAID_AND_FREE_TABLE_SQL =
+            "UPDATE orders o LEFT JOIN tables t ON t.id = o.table_id " +
+            "SET o.status = 'paid', o.total_amount = ?, o.discount_percent = ?, t.status = 'empty' " +
+            "WHERE o.id = ? AND o.status = 'completed'";
+
+    private static final String INSERT_PAYMENT_SQL =
+            "INSERT INTO payments (order_id, total_amount, payment_method, payment_time, processed_by) VALUES (?, ?, ?, NOW(), ?)";
+
+    private static final String UPSERT_REVENUE_SQL =
+            "INSERT INTO revenue (date, total_amount, total_orders) VALUES (CURDATE(), ?, 1) " +
+            "ON DUPLICATE KEY UPDATE total_amount = total_amount + VALUES(total_amount), total_orders = total_orders + 1";
+
+    private static final String LOCK_ORDER_FOR_EDIT_SQL = "SELECT status FROM orders WHERE id = ? FOR UPDATE";
+
+    private static final String SELECT_ITEM_QUANTITIES_SQL = "SELECT id, quantity FROM order_items WHERE order_id = ?";
+
+    private static final String INSERT_ITEM_SQL =
+            "INSERT INTO order_items (order_id, menu_item_id, quantity, price) VALUES (?, ?, ?, ?)";
+
+    private static final String UPDATE_ITEM_QUANTITY_SQL = "UPDATE order_items SET quantity = ? WHERE id = ? AND order_id = ?";
+
+    private static final String DELETE_ITEM_SQL = "DELETE FROM order_items WHERE id = ? AND order_id = ?";
+
+    static final String FIND_COMPLETED_NOT_PAID_SQL =
+            "SELECT DISTINCT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent " +
+            "FROM orders o " +
+            "INNER JOIN order_items oi ON o.id = oi.order_id " +
+            "LEFT JOIN payments p ON o.id = p.order_id " +
+            "WHERE o.status = 'completed' " +
+            "AND o.order_time >= ? AND o.order_time < ? " +
+            "AND p.order_id IS NULL " + // NOT YET PAID
+            "GROUP BY o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by " +
+            "HAVING COUNT(oi.id) > 0 " + // HAS ITEMS
+            "ORDER BY o.completed_time DESC";
+
+    static final String FIND_BY_STATUS_SQL =
+            "SELECT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent " +
+            "FROM orders o " +
+            "WHERE o.status = ? " +
+            "AND o.order_time >= ? AND o.order_time < ? " +
+            "ORDER BY o.order_time DESC";
+
+    // Hoạt động gần đây của dashboard: đơn đã thanh toán + đơn hoàn thành chưa thanh toán có món
+    // (cùng nghĩa với findByStatus("paid") / findByStatus("completed")), mới nhất trước, có LIMIT
+    static final String FIND_RECENT_ACTIVITY_SQL =
+            "SELECT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent " +
+            "FROM orders o " +
+            "WHERE o.status IN ('paid', 'completed') " +
+            "AND o.order_time >= ? AND o.order_time < ? " +
+            "AND (o.status = 'paid' OR (" +
+            "EXISTS (SELECT 1 FROM order_items oi WHERE oi.order_id = o.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM payments p WHERE p.order_id = o.id))) " +
+            "ORDER BY o.order_time DESC " +
+            "LIMIT ?";
+
+    static final String CLEANUP_OLD_COMPLETED_SQL =
+            "UPDATE orders SET status = 'cancelled' " +
+            "WHERE status = 'completed' " +
+            "AND order_time < ? " +
+            "AND id NOT IN (SELECT DISTINCT order_id FROM payments WHERE order_id IS NOT NULL)";
+
+    static final String FIND_COMPLETED_WITH_DETAILS_SQL =
+            "SELECT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent, " +
+            "COUNT(oi.id) as item_count, SUM(oi.quantity) as total_quantity " +
+            "FROM orders o " +
+            "INNER JOIN order_items oi ON o.id = oi.order_id " +
+            "LEFT JOIN payments p ON o.id = p.order_id " +
+            "WHERE o.status = 'completed' " +
+            "AND o.order_time >= ? AND o.order_time < ? " +
+            "AND p.order_id IS NULL " + // NOT YET PAID
+            "GROUP BY o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by " +
+            "HAVING item_count > 0 " +
+            "ORDER BY o.completed_time DESC";
+
+    static final String FIND_PENDING_BY_TABLE_SQL =
+            "SELECT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent " +
+            "FROM orders o " +
+            "LEFT JOIN payments p ON o.id = p.order_id " +
+            "WHERE o.table_id = ? " +
+            "AND o.status IN ('pending', 'ordering', 'completed') " +
+            "AND o.order_time >= ? AND o.order_time < ? " +
+            "AND (o.status != 'completed' OR p.order_id IS NULL) " + // Include completed orders that aren't paid
+            "ORDER BY o.order_time DESC LIMIT 1";
+
+    static final String EXISTS_PAID_TODAY_BY_TABLE_SQL =
+            "SELECT EXISTS(SELECT 1 FROM orders WHERE table_id = ? AND status = 'paid' " +
+            "AND order_time >= ? AND order_time < ?)";
+
+    static final String FIND_ITEMS_SQL =
+            "SELECT oi.id, oi.order_id, oi.menu_item_id, oi.quantity, oi.price, " +
+            "mi.name as menu_item_name, mi.category as menu_item_category " +
+            "FROM order_items oi " +
+            "LEFT JOIN menu_items mi ON oi.menu_item_id = mi.id " +
+            "WHERE oi.order_id = ? " +
+            "ORDER BY oi.id";
+
+    static final String DELETE_EMPTY_ORDERS_SQL =
+            "DELETE FROM orders WHERE id NOT IN (SELECT DISTINCT order_id FROM order_items) " +
+            "AND status = 'pending' AND order_time >= ? AND order_time < ?";
+
+    static final String FIND_TODAY_ORDERS_SQL =
+            "SELECT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent " +
+            "FROM orders o " +
+            "WHERE o.order_time >= ? AND o.order_time < ? " +
+            "ORDER BY o.order_time DESC";
+
+    static final String TODAY_STATS_SQL =
+            "SELECT " +
+            "COUNT(*) as total_orders, " +
+            "COUNT(CASE WHEN status = 'pending' THEN 1 END) as pending_orders, " +
+            "COUNT(CASE WHEN status = 'completed' THEN 1 END) as completed_orders, " +
+            "COUNT(CASE WHEN status = 'paid' THEN 1 END) as paid_orders, " +
+            "COALESCE(SUM(CASE WHEN status = 'paid' THEN total_amount ELSE 0 END), 0) as total_revenue " +
+            "FROM orders WHERE order_time >= ? AND order_time < ?";
+
+    static final String COUNT_PAID_IN_RANGE_SQL =
+            "SELECT COUNT(*) FROM payments WHERE payment_time >= ? AND payment_time < ?";
+
+    // Một dòng mỗi món; các dòng của cùng một đơn liền nhau nhờ ORDER BY
+    static final String STREAM_PAID_WITH_ITEMS_SQL =
+            "SELECT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent, " +
+            "oi.id as item_id, oi.menu_item_id, oi.quantity, oi.price, " +
+            "mi.name as menu_item_name, mi.category as menu_item_category " +
+            "FROM payments p " +
+            "JOIN orders o ON o.id = p.order_id " +
+            "JOIN order_items oi ON oi.order_id = o.id " +
+            "LEFT JOIN menu_items mi ON mi.id = oi.menu_item_id " +
+            "WHERE p.payment_time >= ? AND p.payment_time < ? " +
+            "ORDER BY p.payment_time, o.id, oi.id";
+
+    /** Nhận từng đơn đã thanh toán khi đọc dạng stream */
+    @FunctionalInterface
+    public interface PaidOrderSink {
+        void accept(Order order, List<OrderItem> items) throws InterruptedException;
+    }
+
+    private static final LatencyHistogram PAYMENT_LATENCY = new LatencyHistogram("payment.total");
+    private static final LatencyHistogram PAYMENT_COMMIT_LATENCY = new LatencyHistogram("payment.commit");
 
     /**
      * Find order by ID
@@ -46,99 +197,105 @@ public class OrderDAO {
     }
     
     /**
-     * Process payment for an order with discount
+     * Process payment for an order with discount.
+     * ENHANCED: Toàn bộ thanh toán chạy trên MỘT kết nối / MỘT transaction:
+     * khóa đơn bằng SELECT ... FOR UPDATE (kèm kiểm tra đã thanh toán), sau đó
+     * cập nhật order + bàn trong một câu UPDATE, ghi payment và cộng doanh thu.
+     * NEW: rollup sales_hourly / item_sales_daily được cộng trong cùng transaction.
      */
     public void processPayment(int orderId, String paymentMethod, int userId, BigDecimal finalAmount, double discountPercent) throws SQLException {
+        if (finalAmount == null || finalAmount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new SQLException("Invalid order amount: " + finalAmount);
+        }
+
+        long startNanos = System.nanoTime();
         Connection conn = null;
         try {
             conn = JDBCConnect.getJDBCConnection();
-            conn.setAutoCommit(false);
-
-            System.out.println("=== PROCESSING PAYMENT FOR ORDER #" + orderId + " ===");
-
-            // Get order details first
-            Order order = findById(orderId);
-            if (order == null) {
-                throw new SQLException("Order not found: " + orderId);
-            }
-
-            // Verify order is completed
-            if (!"completed".equals(order.getStatus())) {
-                throw new SQLException("Order must be completed before payment. Current status: " + order.getStatus());
-            }
-
-            // Use provided final amount (already includes discount)
-            BigDecimal totalAmount = finalAmount;
-            System.out.println("Order final amount (with discount): " + totalAmount);
-            System.out.println("Discount percent: " + discountPercent + "%");
-
-            if (totalAmount.compareTo(BigDecimal.ZERO) <= 0) {
-                throw new SQLException("Invalid order amount: " + totalAmount);
+            if (conn == null) {
+                throw new SQLException("Cannot obtain database connection");
             }
+            conn.setAutoCommit(false);
 
-            // Check if already paid
-            if (isOrderPaid(orderId)) {
-                throw new SQLException("Order #" + orderId + " has already been paid");
+            // 1. Khóa đơn hàng và kiểm tra trạng thái / đã thanh toán trong cùng một câu
+            try (PreparedStatement ps = conn.prepareStatement(LOCK_ORDER_FOR_PAYMENT_SQL)) {
+                ps.setInt(1, orderId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Order not found: " + orderId);
+                    }
+                    String status = rs.getString("status");
+                    if (!"completed".equals(status)) {
+                        throw new SQLException("Order must be completed before payment. Current status: " + status);
+                    }
+                    if (rs.getInt("payment_count") > 0) {
+                        throw new SQLException("Order #" + orderId + " has already been paid");
+                    }
+                }
             }
 
-            // 1. Update order status to paid with discount info
-            String updateOrderSql = "UPDATE orders SET status = 'paid', total_amount = ?, discount_percent = ? WHERE id = ?";
-            try (PreparedStatement ps = conn.prepareStatement(updateOrderSql)) {
-                ps.setBigDecimal(1, totalAmount);
+            // 2. Đơn -> paid và giải phóng bàn
+            try (PreparedStatement ps = conn.prepareStatement(MARK_PAID_AND_FREE_TABLE_SQL)) {
+                ps.setBigDecimal(1, finalAmount);
                 ps.setDouble(2, discountPercent);
                 ps.setInt(3, orderId);
-                int updated = ps.executeUpdate();
-                System.out.println("Updated order status: " + updated + " rows");
-
-                if (updated == 0) {
+                if (ps.executeUpdate() == 0) {
                     throw new SQLException("Failed to update order status");
                 }
             }
 
-            // 2. Create payment record
-            String insertPaymentSql = "INSERT INTO payments (order_id, total_amount, payment_method, payment_time, processed_by) VALUES (?, ?, ?, NOW(), ?)";
-            try (PreparedStatement ps = conn.prepareStatement(insertPaymentSql)) {
+            // 3. Ghi payment
+            int paymentId;
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_PAYMENT_SQL, Statement.RETURN_GENERATED_KEYS)) {
                 ps.setInt(1, orderId);
-                ps.setBigDecimal(2, totalAmount);
+                ps.setBigDecimal(2, finalAmount);
                 ps.setString(3, paymentMethod);
                 ps.setInt(4, userId);
-                int inserted = ps.executeUpdate();
-                System.out.println("Created payment record: " + inserted + " rows");
-
-                if (inserted == 0) {
+                if (ps.executeUpdate() == 0) {
                     throw new SQLException("Failed to create payment record");
                 }
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    if (!keys.next()) {
+                        throw new SQLException("No id returned for payment of order #" + orderId);
+                    }
+                    paymentId = keys.getInt(1);
+                }
             }
 
-            // 3. Update table status to empty
-            String updateTableSql = "UPDATE tables SET status = 'empty' WHERE id = ?";
-            try (PreparedStatement ps = conn.prepareStatement(updateTableSql)) {
-                ps.setInt(1, order.getTableId());
-                int updated = ps.executeUpdate();
-                System.out.println("Updated table status: " + updated + " rows");
+            // 4. Cộng doanh thu hôm nay
+            try (PreparedStatement ps = conn.prepareStatement(UPSERT_REVENUE_SQL)) {
+                ps.setBigDecimal(1, finalAmount);
+                ps.executeUpdate();
             }
 
-            // 4. Update revenue for today
-            String updateRevenueSql = "INSERT INTO revenue (date, total_amount, total_orders) VALUES (CURDATE(), ?, 1) " +
-                    "ON DUPLICATE KEY UPDATE total_amount = total_amount + VALUES(total_amount), total_orders = total_orders + 1";
-            try (PreparedStatement ps = conn.prepareStatement(updateRevenueSql)) {
-                ps.setBigDecimal(1, totalAmount);
-                int updated = ps.executeUpdate();
-                System.out.println("Updated revenue: " + updated + " rows");
-            }
+            // 5. Cộng vào rollup theo giờ / theo món (đọc bởi RevenueDAO)
+            SalesRollupDAO.recordPayment(conn, orderId);
 
+            long commitStart = System.nanoTime();
             conn.commit();
-            System.out.println("=== PAYMENT PROCESSED SUCCESSFULLY ===");
-            System.out.println("Order #" + orderId + " paid: " + totalAmount + " VND via " + paymentMethod);
+            long endNanos = System.nanoTime();
+            PAYMENT_COMMIT_LATENCY.recordNanos(endNanos - commitStart);
+            PAYMENT_LATENCY.recordNanos(endNanos - startNanos);
+
+            // Cộng vào số liệu trong bộ nhớ chỉ sau khi commit thành công
+            RevenueAggregator.get().recordPayment(paymentId, finalAmount, paymentMethod, LocalDateTime.now());
+
+            LOG.atInfo()
+                    .with("orderId", orderId)
+                    .with("amount", finalAmount)
+                    .with("method", paymentMethod)
+                    .with("discountPercent", discountPercent)
+                    .with("latencyMs", (endNanos - startNanos) / 1_000_000)
+                    .log("💳 Order paid");
 
         } catch (SQLException e) {
-            System.err.println("Error processing payment: " + e.getMessage());
+            LOG.error("Error processing payment: {}", e.getMessage());
             if (conn != null) {
                 try {
                     conn.rollback();
-                    System.out.println("Transaction rolled back");
+                    LOG.debug("Transaction rolled back");
                 } catch (SQLException rollbackEx) {
-                    System.err.println("Rollback failed: " + rollbackEx.getMessage());
+                    LOG.error("Rollback failed: {}", rollbackEx.getMessage());
                 }
             }
             throw e;
@@ -148,12 +305,22 @@ public class OrderDAO {
                     conn.setAutoCommit(true);
                     conn.close();
                 } catch (SQLException closeEx) {
-                    System.err.println("Error closing connection: " + closeEx.getMessage());
+                    LOG.error("Error closing connection: {}", closeEx.getMessage());
                 }
             }
         }
     }
 
+    /** Độ trễ toàn bộ thanh toán (mượn kết nối -> commit) */
+    public static LatencyHistogram getPaymentLatencyHistogram() {
+        return PAYMENT_LATENCY;
+    }
+
+    /** Độ trễ riêng của lệnh commit thanh toán */
+    public static LatencyHistogram getPaymentCommitLatencyHistogram() {
+        return PAYMENT_COMMIT_LATENCY;
+    }
+
     /**
      * Check if order has been paid
      */
@@ -183,7 +350,7 @@ public class OrderDAO {
         order.setOrderTime(rs.getTimestamp("order_time"));
         order.setCompletedTime(rs.getTimestamp("completed_time"));
         order.setStatus(rs.getString("status"));
-        order.setTotalAmount(rs.getBigDecimal("total_amount"));
+        order.setTotalAmount(Money.read(rs, "total_amount"));
         order.setNotes(rs.getString("notes"));
         order.setCreatedBy(rs.getInt("created_by"));
         
@@ -213,32 +380,28 @@ public class OrderDAO {
      * FIXED: Get completed but not paid orders - Only valid orders with items
      */
     public List<Order> findCompletedNotPaidOrders() throws SQLException {
-        String sql = "SELECT DISTINCT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent " +
-                "FROM orders o " +
-                "INNER JOIN order_items oi ON o.id = oi.order_id " +
-                "LEFT JOIN payments p ON o.id = p.order_id " +
-                "WHERE o.status = 'completed' " +
-                "AND DATE(o.order_time) = CURDATE() " +
-                "AND p.order_id IS NULL " + // NOT YET PAID
-                "GROUP BY o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by " +
-                "HAVING COUNT(oi.id) > 0 " + // HAS ITEMS
-                "ORDER BY o.completed_time DESC";
-
-        System.out.println("Finding completed unpaid orders for today...");
+        LOG.debug("Finding completed unpaid orders for today...");
 
         try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+             PreparedStatement ps = conn.prepareStatement(FIND_COMPLETED_NOT_PAID_SQL)) {
 
-            List<Order> completedOrders = extractOrdersFromResultSet(rs);
-            System.out.println("Found " + completedOrders.size() + " completed unpaid orders for today");
-
-            // Debug log
-            for (Order order : completedOrders) {
-                System.out.println("Unpaid Order: #" + order.getId() +
-                        " - Table " + order.getTableId() +
-                        " - Amount: " + order.getTotalAmount() +
-                        " - Time: " + order.getFormattedOrderTime());
+            TimeRange.today().bindTimestamps(ps, 1);
+            List<Order> completedOrders;
+            try (ResultSet rs = ps.executeQuery()) {
+                completedOrders = extractOrdersFromResultSet(rs);
+            }
+            LOG.debug("Found {} completed unpaid orders for today", completedOrders.size());
+
+            // Debug log (không duyệt danh sách khi DEBUG tắt)
+            if (LOG.isDebugEnabled()) {
+                for (Order order : completedOrders) {
+                    LOG.atDebug()
+                            .with("orderId", order.getId())
+                            .with("tableId", order.getTableId())
+                            .with("amount", order.getTotalAmount())
+                            .with("time", order.getFormattedOrderTime())
+                            .log("Unpaid order");
+                }
             }
 
             return completedOrders;
@@ -253,16 +416,27 @@ public class OrderDAO {
             return findCompletedNotPaidOrders();
         }
 
-        String sql = "SELECT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent " +
-                "FROM orders o " +
-                "WHERE o.status = ? " +
-                "AND DATE(o.order_time) = CURDATE() " +
-                "ORDER BY o.order_time DESC";
-
         try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = conn.prepareStatement(FIND_BY_STATUS_SQL)) {
 
             ps.setString(1, status);
+            TimeRange.today().bindTimestamps(ps, 2);
+            try (ResultSet rs = ps.executeQuery()) {
+                return extractOrdersFromResultSet(rs);
+            }
+        }
+    }
+
+    /**
+     * NEW: Tối đa limit đơn hôm nay đã thanh toán hoặc hoàn thành chưa thanh toán, mới nhất trước
+     * (thay cho hai lần findByStatus rồi sắp xếp trong bộ nhớ)
+     */
+    public List<Order> findRecentActivity(int limit) throws SQLException {
+        try (Connection conn = JDBCConnect.getJDBCConnection();
+             PreparedStatement ps = conn.prepareStatement(FIND_RECENT_ACTIVITY_SQL)) {
+
+            int index = TimeRange.today().bindTimestamps(ps, 1);
+            ps.setInt(index, limit);
             try (ResultSet rs = ps.executeQuery()) {
                 return extractOrdersFromResultSet(rs);
             }
@@ -273,17 +447,13 @@ public class OrderDAO {
      * Clean up old completed orders that were not paid
      */
     public void cleanupOldCompletedOrders() throws SQLException {
-        String sql = "UPDATE orders SET status = 'cancelled' " +
-                "WHERE status = 'completed' " +
-                "AND DATE(order_time) < CURDATE() " +
-                "AND id NOT IN (SELECT DISTINCT order_id FROM payments WHERE order_id IS NOT NULL)";
-
         try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = conn.prepareStatement(CLEANUP_OLD_COMPLETED_SQL)) {
 
+            ps.setObject(1, TimeRange.today().startDateTime());
             int cleaned = ps.executeUpdate();
             if (cleaned > 0) {
-                System.out.println("Cleaned up " + cleaned + " old completed orders");
+                LOG.debug("Cleaned up {} old completed orders", cleaned);
             }
         }
     }
@@ -311,32 +481,26 @@ public class OrderDAO {
      * Get completed orders with details (unpaid only)
      */
     public List<Order> findCompletedOrdersWithDetails() throws SQLException {
-        String sql = "SELECT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent, " +
-                "COUNT(oi.id) as item_count, SUM(oi.quantity) as total_quantity " +
-                "FROM orders o " +
-                "INNER JOIN order_items oi ON o.id = oi.order_id " +
-                "LEFT JOIN payments p ON o.id = p.order_id " +
-                "WHERE o.status = 'completed' " +
-                "AND DATE(o.order_time) = CURDATE() " +
-                "AND p.order_id IS NULL " + // NOT YET PAID
-                "GROUP BY o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by " +
-                "HAVING item_count > 0 " +
-                "ORDER BY o.completed_time DESC";
-
         try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+             PreparedStatement ps = conn.prepareStatement(FIND_COMPLETED_WITH_DETAILS_SQL)) {
 
-            List<Order> orders = new ArrayList<>();
-            while (rs.next()) {
-                Order order = extractOrderFromResultSet(rs);
-                System.out.println("Unpaid completed order: #" + order.getId() +
-                        " - " + rs.getInt("item_count") + " items, " +
-                        rs.getInt("total_quantity") + " total quantity");
-                orders.add(order);
-            }
+            TimeRange.today().bindTimestamps(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Order> orders = new ArrayList<>();
+                while (rs.next()) {
+                    Order order = extractOrderFromResultSet(rs);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.atDebug()
+                                .with("orderId", order.getId())
+                                .with("items", rs.getInt("item_count"))
+                                .with("quantity", rs.getInt("total_quantity"))
+                                .log("Unpaid completed order");
+                    }
+                    orders.add(order);
+                }
 
-            return orders;
+                return orders;
+            }
         }
     }
 
@@ -344,29 +508,25 @@ public class OrderDAO {
      * FIXED: Find pending/active order by table ID - including completed but unpaid orders
      */
     public Order findPendingByTable(int tableId) throws SQLException {
-        String sql = "SELECT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent " +
-                "FROM orders o " +
-                "LEFT JOIN payments p ON o.id = p.order_id " +
-                "WHERE o.table_id = ? " +
-                "AND o.status IN ('pending', 'ordering', 'completed') " +
-                "AND DATE(o.order_time) = CURDATE() " +
-                "AND (o.status != 'completed' OR p.order_id IS NULL) " + // Include completed orders that aren't paid
-                "ORDER BY o.order_time DESC LIMIT 1";
-
         try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = conn.prepareStatement(FIND_PENDING_BY_TABLE_SQL)) {
 
             ps.setInt(1, tableId);
+            TimeRange.today().bindTimestamps(ps, 2);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     Order order = extractOrderFromResultSet(rs);
-                    System.out.println("Found order for table " + tableId + ": #" + order.getId() + " (" + order.getStatus() + ")");
+                    LOG.atDebug()
+                            .with("tableId", tableId)
+                            .with("orderId", order.getId())
+                            .with("status", order.getStatus())
+                            .log("Found order for table");
                     return order;
                 }
             }
         }
 
-        System.out.println("No active order found for table " + tableId);
+        LOG.debug("No active order found for table {}", tableId);
         return null;
     }
 
@@ -374,12 +534,11 @@ public class OrderDAO {
      * Check if there is any PAID order for this table today
      */
     public boolean existsPaidTodayByTable(int tableId) throws SQLException {
-        String sql = "SELECT EXISTS(SELECT 1 FROM orders WHERE table_id = ? AND status = 'paid' AND DATE(order_time) = CURDATE())";
-
         try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = conn.prepareStatement(EXISTS_PAID_TODAY_BY_TABLE_SQL)) {
 
             ps.setInt(1, tableId);
+            TimeRange.today().bindTimestamps(ps, 2);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     return rs.getInt(1) == 1;
@@ -396,7 +555,7 @@ public class OrderDAO {
         // First check if there's already an active order
         Order existingOrder = findPendingByTable(tableId);
         if (existingOrder != null) {
-            System.out.println("Table " + tableId + " already has an active order: #" + existingOrder.getId());
+            LOG.debug("Table {} already has an active order: #{}", tableId, existingOrder.getId());
             return null; // Don't create duplicate order
         }
 
@@ -412,7 +571,7 @@ public class OrderDAO {
                 try (ResultSet rs = ps.getGeneratedKeys()) {
                     if (rs.next()) {
                         int orderId = rs.getInt(1);
-                        System.out.println("Created empty order #" + orderId + " for table " + tableId);
+                        LOG.debug("Created empty order #{} for table {}", orderId, tableId);
                         return orderId;
                     }
                 }
@@ -435,8 +594,12 @@ public class OrderDAO {
             throw new SQLException("Cannot add items to " + order.getStatus() + " order");
         }
 
-        String sql = "INSERT INTO order_items (order_id, menu_item_id, quantity, price) " +
-                "SELECT ?, ?, ?, price FROM menu_items WHERE id = ?";
+        // ENHANCED: lấy giá từ MenuCatalog, chỉ rơi về SELECT giá từ menu_items khi món chưa có trong cache
+        Money price = MenuCatalog.get().getPrice(menuItemId);
+        String sql = price != null
+                ? "INSERT INTO order_items (order_id, menu_item_id, quantity, price) VALUES (?, ?, ?, ?)"
+                : "INSERT INTO order_items (order_id, menu_item_id, quantity, price) " +
+                  "SELECT ?, ?, ?, price FROM menu_items WHERE id = ?";
 
         try (Connection conn = JDBCConnect.getJDBCConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -444,11 +607,15 @@ public class OrderDAO {
             ps.setInt(1, orderId);
             ps.setInt(2, menuItemId);
             ps.setInt(3, quantity);
-            ps.setInt(4, menuItemId);
+            if (price != null) {
+                price.write(ps, 4);
+            } else {
+                ps.setInt(4, menuItemId);
+            }
 
             int inserted = ps.executeUpdate();
             if (inserted > 0) {
-                System.out.println("Added item to order: OrderID=" + orderId + ", MenuItemID=" + menuItemId + ", Qty=" + quantity);
+                LOG.debug("Added item to order: OrderID={}, MenuItemID={}, Qty={}", orderId, menuItemId, quantity);
             } else {
                 throw new SQLException("Failed to add item - menu item may not exist: " + menuItemId);
             }
@@ -486,7 +653,7 @@ public class OrderDAO {
             ps.setInt(1, newQuantity);
             ps.setInt(2, orderItemId);
             int updated = ps.executeUpdate();
-            System.out.println("Updated order item #" + orderItemId + " quantity to " + newQuantity + ": " + updated + " rows updated");
+            LOG.debug("Updated order item #{} quantity to {}: {} rows updated", orderItemId, newQuantity, updated);
         }
     }
 
@@ -520,7 +687,128 @@ public class OrderDAO {
 
             ps.setInt(1, orderItemId);
             int deleted = ps.executeUpdate();
-            System.out.println("Removed order item #" + orderItemId + ": " + deleted + " rows deleted");
+            LOG.debug("Removed order item #{}: {} rows deleted", orderItemId, deleted);
+        }
+    }
+
+    /**
+     * NEW: Ghi gộp các thay đổi món của một đơn trong MỘT transaction (dùng bởi OrderSession).
+     *
+     * Khóa đơn (FOR UPDATE), kiểm tra trạng thái, rồi so các dòng order_items hiện có với
+     * {@code expected} (orderItemId -> quantity mà phiên sửa đã biết). Khác nhau nghĩa là
+     * máy khác đã sửa đơn: rollback và ném {@link OrderConflictException}.
+     *
+     * @return id mới của từng thay đổi (theo thứ tự {@code changes}) với dòng được thêm, 0 với các dòng khác
+     */
+    public int[] applyItemChanges(int orderId, Map<Integer, Integer> expected, List<ItemChange> changes) throws SQLException {
+        int[] newIds = new int[changes.size()];
+        if (changes.isEmpty()) return newIds;
+
+        Connection conn = null;
+        try {
+            conn = JDBCConnect.getJDBCConnection();
+            if (conn == null) {
+                throw new SQLException("Cannot obtain database connection");
+            }
+            conn.setAutoCommit(false);
+
+            // 1. Khóa đơn, chỉ đơn đang mở mới được sửa món
+            try (PreparedStatement ps = conn.prepareStatement(LOCK_ORDER_FOR_EDIT_SQL)) {
+                ps.setInt(1, orderId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new OrderConflictException("Order not found: " + orderId);
+                    }
+                    String status = rs.getString("status");
+                    if ("completed".equals(status) || "paid".equals(status) || "cancelled".equals(status)) {
+                        throw new OrderConflictException("Cannot modify items in " + status + " order");
+                    }
+                }
+            }
+
+            // 2. Phát hiện xung đột: món trong DB phải khớp với những gì phiên sửa đã biết
+            Map<Integer, Integer> actual = new HashMap<>();
+            try (PreparedStatement ps = conn.prepareStatement(SELECT_ITEM_QUANTITIES_SQL)) {
+                ps.setInt(1, orderId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        actual.put(rs.getInt("id"), rs.getInt("quantity"));
+                    }
+                }
+            }
+            if (!actual.equals(expected)) {
+                throw new OrderConflictException("Order #" + orderId + " was modified by another terminal");
+            }
+
+            // 3. Thêm / sửa / xóa theo lô
+            List<Integer> insertIndexes = new ArrayList<>();
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_ITEM_SQL, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement update = conn.prepareStatement(UPDATE_ITEM_QUANTITY_SQL);
+                 PreparedStatement delete = conn.prepareStatement(DELETE_ITEM_SQL)) {
+
+                boolean hasUpdates = false;
+                boolean hasDeletes = false;
+                for (int i = 0; i < changes.size(); i++) {
+                    ItemChange change = changes.get(i);
+                    if (change.orderItemId <= 0) {
+                        if (change.quantity <= 0) continue;
+                        insert.setInt(1, orderId);
+                        insert.setInt(2, change.menuItemId);
+                        insert.setInt(3, change.quantity);
+                        change.price.write(insert, 4);
+                        insert.addBatch();
+                        insertIndexes.add(i);
+                    } else if (change.quantity <= 0) {
+                        delete.setInt(1, change.orderItemId);
+                        delete.setInt(2, orderId);
+                        delete.addBatch();
+                        hasDeletes = true;
+                    } else {
+                        update.setInt(1, change.quantity);
+                        update.setInt(2, change.orderItemId);
+                        update.setInt(3, orderId);
+                        update.addBatch();
+                        hasUpdates = true;
+                    }
+                }
+
+                if (hasDeletes) delete.executeBatch();
+                if (hasUpdates) update.executeBatch();
+                if (!insertIndexes.isEmpty()) {
+                    insert.executeBatch();
+                    try (ResultSet keys = insert.getGeneratedKeys()) {
+                        for (int index : insertIndexes) {
+                            if (!keys.next()) {
+                                throw new SQLException("Missing generated key for inserted order item");
+                            }
+                            newIds[index] = keys.getInt(1);
+                        }
+                    }
+                }
+            }
+
+            conn.commit();
+            LOG.debug("Order #{}: flushed {} item changes in one transaction", orderId, changes.size());
+            return newIds;
+
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackEx) {
+                    LOG.error("Rollback failed: {}", rollbackEx.getMessage());
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException closeEx) {
+                    LOG.error("Error closing connection: {}", closeEx.getMessage());
+                }
+            }
         }
     }
 
@@ -528,15 +816,8 @@ public class OrderDAO {
      * Find order items by order ID
      */
     public List<OrderItem> findItems(int orderId) throws SQLException {
-        String sql = "SELECT oi.id, oi.order_id, oi.menu_item_id, oi.quantity, oi.price, " +
-                "mi.name as menu_item_name, mi.category as menu_item_category " +
-                "FROM order_items oi " +
-                "LEFT JOIN menu_items mi ON oi.menu_item_id = mi.id " +
-                "WHERE oi.order_id = ? " +
-                "ORDER BY oi.id";
-
         try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = conn.prepareStatement(FIND_ITEMS_SQL)) {
 
             ps.setInt(1, orderId);
             try (ResultSet rs = ps.executeQuery()) {
@@ -547,7 +828,7 @@ public class OrderDAO {
                     item.setOrderId(rs.getInt("order_id"));
                     item.setMenuItemId(rs.getInt("menu_item_id"));
                     item.setQuantity(rs.getInt("quantity"));
-                    item.setPrice(rs.getDouble("price"));
+                    item.setPrice(Money.read(rs, "price"));
                     item.setMenuItemName(rs.getString("menu_item_name"));
                     item.setMenuItemCategory(rs.getString("menu_item_category"));
                     items.add(item);
@@ -592,7 +873,7 @@ public class OrderDAO {
         }
 
         if ("completed".equals(order.getStatus())) {
-            System.out.println("Order #" + orderId + " is already completed");
+            LOG.debug("Order #{} is already completed", orderId);
             return;
         }
 
@@ -617,7 +898,7 @@ public class OrderDAO {
             int updated = ps.executeUpdate();
 
             if (updated > 0) {
-                System.out.println("Marked order #" + orderId + " as completed with amount: " + totalAmount);
+                LOG.debug("Marked order #{} as completed with amount: {}", orderId, totalAmount);
             } else {
                 throw new SQLException("Failed to update order status");
             }
@@ -637,7 +918,7 @@ public class OrderDAO {
             int updated = ps.executeUpdate();
 
             if (updated > 0) {
-                System.out.println("Cancelled order #" + orderId);
+                LOG.debug("Cancelled order #{}", orderId);
             }
         }
     }
@@ -646,15 +927,13 @@ public class OrderDAO {
      * Delete empty orders (orders with no items)
      */
     public void deleteEmptyOrders() throws SQLException {
-        String sql = "DELETE FROM orders WHERE id NOT IN (SELECT DISTINCT order_id FROM order_items) " +
-                "AND status = 'pending' AND DATE(order_time) = CURDATE()";
-
         try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = conn.prepareStatement(DELETE_EMPTY_ORDERS_SQL)) {
 
+            TimeRange.today().bindTimestamps(ps, 1);
             int deleted = ps.executeUpdate();
             if (deleted > 0) {
-                System.out.println("Deleted " + deleted + " empty orders");
+                LOG.debug("Deleted {} empty orders", deleted);
             }
         }
     }
@@ -663,16 +942,13 @@ public class OrderDAO {
      * Get all orders for today with basic info
      */
     public List<Order> findTodayOrders() throws SQLException {
-        String sql = "SELECT o.id, o.table_id, o.order_time, o.completed_time, o.status, o.total_amount, o.notes, o.created_by, o.discount_percent " +
-                "FROM orders o " +
-                "WHERE DATE(o.order_time) = CURDATE() " +
-                "ORDER BY o.order_time DESC";
-
         try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+             PreparedStatement ps = conn.prepareStatement(FIND_TODAY_ORDERS_SQL)) {
 
-            return extractOrdersFromResultSet(rs);
+            TimeRange.today().bindTimestamps(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                return extractOrdersFromResultSet(rs);
+            }
         }
     }
 
@@ -680,32 +956,89 @@ public class OrderDAO {
      * Get order statistics for today
      */
     public OrderStats getTodayStats() throws SQLException {
-        String sql = "SELECT " +
-                "COUNT(*) as total_orders, " +
-                "COUNT(CASE WHEN status = 'pending' THEN 1 END) as pending_orders, " +
-                "COUNT(CASE WHEN status = 'completed' THEN 1 END) as completed_orders, " +
-                "COUNT(CASE WHEN status = 'paid' THEN 1 END) as paid_orders, " +
-                "COALESCE(SUM(CASE WHEN status = 'paid' THEN total_amount ELSE 0 END), 0) as total_revenue " +
-                "FROM orders WHERE DATE(order_time) = CURDATE()";
-
         try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+             PreparedStatement ps = conn.prepareStatement(TODAY_STATS_SQL)) {
 
-            if (rs.next()) {
-                OrderStats stats = new OrderStats();
-                stats.totalOrders = rs.getInt("total_orders");
-                stats.pendingOrders = rs.getInt("pending_orders");
-                stats.completedOrders = rs.getInt("completed_orders");
-                stats.paidOrders = rs.getInt("paid_orders");
-                stats.totalRevenue = rs.getBigDecimal("total_revenue");
-                return stats;
+            TimeRange.today().bindTimestamps(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    OrderStats stats = new OrderStats();
+                    stats.totalOrders = rs.getInt("total_orders");
+                    stats.pendingOrders = rs.getInt("pending_orders");
+                    stats.completedOrders = rs.getInt("completed_orders");
+                    stats.paidOrders = rs.getInt("paid_orders");
+                    stats.totalRevenue = rs.getBigDecimal("total_revenue");
+                    return stats;
+                }
             }
         }
 
         return new OrderStats(); // Return empty stats if no data
     }
 
+    /**
+     * Số đơn đã thanh toán trong khoảng thời gian (theo payment_time, ngày theo giờ địa phương:
+     * tháng 2026-09 là [01/09 00:00, 01/10 00:00) - xem {@link TimeRange})
+     */
+    public int countPaidOrders(TimeRange range) throws SQLException {
+        try (Connection conn = JDBCConnect.getJDBCConnection();
+             PreparedStatement ps = conn.prepareStatement(COUNT_PAID_IN_RANGE_SQL)) {
+            range.bindTimestamps(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * NEW: Đọc dạng stream các đơn đã thanh toán trong khoảng thời gian kèm món, theo thứ tự thanh toán.
+     * Khoảng được so với payment_time giống hệt {@link #countPaidOrders}.
+     * Connector/J trả từng dòng (fetch size Integer.MIN_VALUE) nên bộ nhớ không phụ thuộc độ dài khoảng;
+     * chỉ một đơn được giữ tại một thời điểm. Trong lúc stream, kết nối này không chạy được câu khác,
+     * và sink không nên làm việc nặng để tránh giữ kết nối lâu - hãy chuyển đơn sang thread khác.
+     *
+     * @return số đơn đã đọc
+     */
+    public int streamPaidOrdersWithItems(TimeRange range, PaidOrderSink sink) throws SQLException, InterruptedException {
+        try (Connection conn = JDBCConnect.getJDBCConnection();
+             PreparedStatement ps = conn.prepareStatement(STREAM_PAID_WITH_ITEMS_SQL,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            ps.setFetchSize(Integer.MIN_VALUE);
+            range.bindTimestamps(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                int count = 0;
+                Order current = null;
+                List<OrderItem> items = new ArrayList<>();
+                while (rs.next()) {
+                    int orderId = rs.getInt("id");
+                    if (current == null || current.getId() != orderId) {
+                        if (current != null) {
+                            sink.accept(current, items);
+                            count++;
+                            items = new ArrayList<>();
+                        }
+                        current = extractOrderFromResultSet(rs);
+                    }
+                    OrderItem item = new OrderItem();
+                    item.setId(rs.getInt("item_id"));
+                    item.setOrderId(orderId);
+                    item.setMenuItemId(rs.getInt("menu_item_id"));
+                    item.setQuantity(rs.getInt("quantity"));
+                    item.setPrice(Money.read(rs, "price"));
+                    item.setMenuItemName(rs.getString("menu_item_name"));
+                    item.setMenuItemCategory(rs.getString("menu_item_category"));
+                    items.add(item);
+                }
+                if (current != null) {
+                    sink.accept(current, items);
+                    count++;
+                }
+                return count;
+            }
+        }
+    }
+
     /**
      * Inner class for order statistics
      */
@@ -722,4 +1055,33 @@ public class OrderDAO {
                     totalOrders, pendingOrders, completedOrders, paidOrders, totalRevenue);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Một thay đổi món trong đơn cho {@link #applyItemChanges}.
+     * orderItemId <= 0: thêm dòng mới; quantity <= 0: xóa dòng; còn lại: sửa số lượng.
+     */
+    public static class ItemChange {
+        public final int orderItemId;
+        public final int menuItemId;
+        public final int quantity;
+        public final Money price;
+
+        public ItemChange(int orderItemId, int menuItemId, int quantity, Money price) {
+            this.orderItemId = orderItemId;
+            this.menuItemId = menuItemId;
+            this.quantity = quantity;
+            this.price = price;
+        }
+    }
+
+    /**
+     * Đơn đã bị sửa ở nơi khác (hoặc đã hoàn thành/thanh toán) nên không ghi được thay đổi
+     */
+    public static class OrderConflictException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        public OrderConflictException(String message) {
+            super(message);
+        }
+    }
+}
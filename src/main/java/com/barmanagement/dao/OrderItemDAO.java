@@ -1,5 +1,6 @@
 package com.barmanagement.dao;
 
+import com.barmanagement.model.Money;
 import com.barmanagement.model.OrderItem;
 
 import java.math.BigDecimal;
@@ -34,9 +35,7 @@ public class OrderItemDAO {
                     it.setOrderId(rs.getInt("order_id"));
                     it.setMenuItemId(rs.getInt("menu_item_id"));
                     it.setQuantity(rs.getInt("quantity"));
-                    // DECIMAL -> double (OrderItem.price là double)
-                    BigDecimal unitPrice = rs.getBigDecimal("unit_price");
-                    it.setPrice(unitPrice != null ? unitPrice.doubleValue() : 0d);
+                    it.setPrice(Money.read(rs, "unit_price"));
                     it.setMenuItemName(rs.getString("menu_item_name"));
                     list.add(it);
                 }
@@ -0,0 +1,361 @@
+package com.barmanagement.dao;
+
+import com.barmanagement.config.DatabaseConfig;
+import com.barmanagement.model.MenuItem;
+import com.barmanagement.model.Money;
+import com.barmanagement.model.Order;
+import com.barmanagement.model.OrderItem;
+import com.barmanagement.util.LatencyHistogram;
+import com.barmanagement.util.Log;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Phiên sửa món của một đơn đang mở (write-behind).
+ *
+ * Thêm/sửa/xóa món chỉ đổi dữ liệu trong bộ nhớ nên UI cập nhật tổng tiền ngay, không truy vấn.
+ * Các thay đổi dồn lại và được ghi xuống order_items trong MỘT transaction theo lô
+ * (OrderDAO.applyItemChanges) sau order.flushDelayMs (mặc định 500ms) kể từ thay đổi đầu tiên,
+ * và ghi ngay khi gọi {@link #flushNow()} / {@link #close()} (hoàn thành đơn, đổi bàn, rời màn hình);
+ * hai hàm này ném lỗi ghi ra cho người gọi.
+ *
+ * Nếu máy khác đã sửa đơn, lần ghi bị từ chối, phiên tải lại món từ DB (bỏ thay đổi chưa ghi)
+ * và báo {@link Listener#onConflict}.
+ */
+public final class OrderSession {
+
+    private static final Log LOG = Log.get(OrderSession.class);
+
+    /** Callback chạy trên thread ghi nền (trừ khi gọi flushNow) - listener tự chuyển về FX thread */
+    public interface Listener {
+        void onFlushed(OrderSession session);
+
+        void onConflict(OrderSession session, SQLException cause);
+
+        void onFlushError(OrderSession session, SQLException cause);
+    }
+
+    private static final long FLUSH_DELAY_MS = Math.max(0, DatabaseConfig.get().getLong("order.flushDelayMs", 500));
+
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "order-session-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final LatencyHistogram FLUSH_LATENCY = new LatencyHistogram("order.flush");
+
+    /** Một dòng món; key cố định dùng làm OrderItem.id trên UI (dòng chưa ghi có key âm) */
+    private static final class Line {
+        final int key;
+        final int menuItemId;
+        final Money price;
+        final String name;
+        final String category;
+        int orderItemId;
+        int quantity;
+        int persistedQuantity;
+
+        Line(int key, int orderItemId, int menuItemId, Money price, String name, String category) {
+            this.key = key;
+            this.orderItemId = orderItemId;
+            this.menuItemId = menuItemId;
+            this.price = price;
+            this.name = name;
+            this.category = category;
+        }
+
+        boolean isDirty() {
+            return quantity != persistedQuantity;
+        }
+    }
+
+    private final OrderDAO orderDAO;
+    private final Order order;
+
+    // Guarded by this
+    private final List<Line> lines = new ArrayList<>();
+    private int nextLocalKey = -1;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile Listener listener;
+
+    private long flushCount;
+    private long conflictCount;
+
+    public OrderSession(OrderDAO orderDAO, Order order, List<OrderItem> loadedItems) {
+        this.orderDAO = orderDAO;
+        this.order = order;
+        resetLines(loadedItems);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public int getOrderId() {
+        return order.getId();
+    }
+
+    // ===== Đọc =====
+
+    /** Món đang có (kể cả chưa ghi xuống DB), theo thứ tự thêm */
+    public synchronized List<OrderItem> getItems() {
+        List<OrderItem> items = new ArrayList<>(lines.size());
+        for (Line line : lines) {
+            if (line.quantity <= 0) continue;
+            OrderItem item = new OrderItem(line.key, order.getId(), line.menuItemId, line.quantity, line.price);
+            item.setMenuItemName(line.name);
+            item.setMenuItemCategory(line.category);
+            items.add(item);
+        }
+        return items;
+    }
+
+    public synchronized Money getTotal() {
+        long total = 0;
+        for (Line line : lines) {
+            if (line.quantity > 0) {
+                total = Math.addExact(total, Math.multiplyExact(line.price.getMinor(), (long) line.quantity));
+            }
+        }
+        return Money.ofMinor(total);
+    }
+
+    public synchronized boolean hasPendingChanges() {
+        for (Line line : lines) {
+            if (line.isDirty()) return true;
+        }
+        return false;
+    }
+
+    // ===== Sửa (chỉ trong bộ nhớ) =====
+
+    /** Thêm món; món đã có trong đơn thì cộng số lượng */
+    public synchronized void add(MenuItem menuItem, int quantity) throws SQLException {
+        checkEditable();
+        for (Line line : lines) {
+            if (line.menuItemId == menuItem.getId() && line.quantity > 0) {
+                line.quantity += quantity;
+                scheduleFlush();
+                return;
+            }
+        }
+        Line line = new Line(nextLocalKey--, 0, menuItem.getId(), menuItem.getPrice(),
+                menuItem.getName(), menuItem.getCategory());
+        line.quantity = quantity;
+        lines.add(line);
+        scheduleFlush();
+    }
+
+    /** Đổi số lượng theo OrderItem.id trả về từ {@link #getItems()}; <= 0 là xóa */
+    public synchronized void setQuantity(int itemKey, int quantity) throws SQLException {
+        checkEditable();
+        Line line = findLine(itemKey);
+        if (line == null || line.quantity == Math.max(0, quantity)) return;
+        line.quantity = Math.max(0, quantity);
+        dropDeadLines();
+        scheduleFlush();
+    }
+
+    public void remove(int itemKey) throws SQLException {
+        setQuantity(itemKey, 0);
+    }
+
+    public synchronized void clear() throws SQLException {
+        checkEditable();
+        for (Line line : lines) {
+            line.quantity = 0;
+        }
+        dropDeadLines();
+        scheduleFlush();
+    }
+
+    // ===== Ghi =====
+
+    /** Ghi ngay mọi thay đổi đang chờ (chặn đến khi commit xong) */
+    public void flushNow() throws SQLException {
+        synchronized (this) {
+            cancelScheduledFlush();
+        }
+        flush();
+    }
+
+    /**
+     * Ghi nốt thay đổi rồi đóng phiên.
+     * Ghi lỗi thì phiên vẫn mở và lỗi được ném ra (xung đột: món đã được tải lại từ DB),
+     * người gọi phải ở lại màn hình để người dùng xem lại và thử lại thay vì mất thay đổi.
+     */
+    public void close() throws SQLException {
+        synchronized (this) {
+            if (closed) return;
+            cancelScheduledFlush();
+        }
+        try {
+            flush();
+        } catch (SQLException e) {
+            LOG.atError().with("orderId", order.getId()).cause(e).log("❌ Error flushing order on close");
+            throw e;
+        }
+        synchronized (this) {
+            closed = true;
+            cancelScheduledFlush();
+        }
+    }
+
+    public static LatencyHistogram getFlushLatencyHistogram() {
+        return FLUSH_LATENCY;
+    }
+
+    public synchronized String getStatsSummary() {
+        return String.format("order #%d session: lines=%d, flushes=%d, conflicts=%d, pending=%s",
+                order.getId(), lines.size(), flushCount, conflictCount, hasPendingChanges());
+    }
+
+    // ===== Nội bộ =====
+
+    private void checkEditable() throws SQLException {
+        if (closed) {
+            throw new SQLException("Order session #" + order.getId() + " is closed");
+        }
+        String status = order.getStatus();
+        if ("completed".equals(status) || "paid".equals(status)) {
+            throw new SQLException("Cannot modify items in " + status + " order");
+        }
+    }
+
+    private Line findLine(int key) {
+        for (Line line : lines) {
+            if (line.key == key) return line;
+        }
+        return null;
+    }
+
+    /** Bỏ dòng đã xóa mà DB cũng không có */
+    private void dropDeadLines() {
+        lines.removeIf(line -> line.quantity <= 0 && line.persistedQuantity <= 0 && line.orderItemId <= 0);
+    }
+
+    private void resetLines(List<OrderItem> items) {
+        lines.clear();
+        for (OrderItem item : items) {
+            Line line = new Line(item.getId(), item.getId(), item.getMenuItemId(), item.getPrice(),
+                    item.getMenuItemName(), item.getMenuItemCategory());
+            line.quantity = item.getQuantity();
+            line.persistedQuantity = item.getQuantity();
+            lines.add(line);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (scheduledFlush == null && hasPendingChanges()) {
+            scheduledFlush = WRITER.schedule(this::flushInBackground, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    private void flushInBackground() {
+        synchronized (this) {
+            scheduledFlush = null;
+        }
+        Listener l = listener;
+        try {
+            if (flush() && l != null) {
+                l.onFlushed(this);
+            }
+        } catch (OrderDAO.OrderConflictException e) {
+            if (l != null) l.onConflict(this, e);
+        } catch (SQLException e) {
+            // Thay đổi vẫn giữ trong bộ nhớ, lần sửa tiếp theo hoặc flushNow sẽ ghi lại
+            LOG.atError().with("orderId", order.getId()).with("error", e.getMessage()).log("❌ Error flushing order");
+            if (l != null) l.onFlushError(this, e);
+        }
+    }
+
+    /** @return true nếu có thay đổi được ghi */
+    private boolean flush() throws SQLException {
+        flushLock.lock();
+        try {
+            List<Line> dirty = new ArrayList<>();
+            List<OrderDAO.ItemChange> changes = new ArrayList<>();
+            Map<Integer, Integer> expected = new HashMap<>();
+            synchronized (this) {
+                for (Line line : lines) {
+                    if (line.orderItemId > 0 && line.persistedQuantity > 0) {
+                        expected.put(line.orderItemId, line.persistedQuantity);
+                    }
+                    if (line.isDirty()) {
+                        dirty.add(line);
+                        changes.add(new OrderDAO.ItemChange(line.orderItemId, line.menuItemId, line.quantity, line.price));
+                    }
+                }
+            }
+            if (changes.isEmpty()) return false;
+
+            long start = System.nanoTime();
+            int[] newIds;
+            try {
+                newIds = orderDAO.applyItemChanges(order.getId(), expected, changes);
+            } catch (OrderDAO.OrderConflictException e) {
+                reloadAfterConflict(e);
+                throw e;
+            }
+            FLUSH_LATENCY.recordNanos(System.nanoTime() - start);
+
+            synchronized (this) {
+                for (int i = 0; i < dirty.size(); i++) {
+                    Line line = dirty.get(i);
+                    int written = Math.max(0, changes.get(i).quantity);
+                    line.persistedQuantity = written;
+                    if (newIds[i] > 0) {
+                        line.orderItemId = newIds[i];
+                    } else if (written == 0) {
+                        line.orderItemId = 0;
+                    }
+                }
+                dropDeadLines();
+                flushCount++;
+                // Có sửa trong lúc đang ghi thì hẹn lần ghi tiếp theo
+                if (!closed) {
+                    scheduleFlush();
+                }
+            }
+            return true;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void reloadAfterConflict(SQLException cause) {
+        LOG.atWarn().with("orderId", order.getId()).with("reason", cause.getMessage()).log("⚠️ Order conflict - reloading items");
+        List<OrderItem> fresh;
+        try {
+            fresh = orderDAO.findItems(order.getId());
+        } catch (SQLException e) {
+            LOG.error("❌ Cannot reload order #{}: {}", order.getId(), e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            cancelScheduledFlush();
+            resetLines(fresh);
+            conflictCount++;
+        }
+    }
+}
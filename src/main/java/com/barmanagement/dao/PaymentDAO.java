@@ -1,6 +1,7 @@
 package com.barmanagement.dao;
 
 import com.barmanagement.model.Payment;
+import com.barmanagement.util.Log;
 
 import java.sql.Connection;
 import java.math.BigDecimal;
@@ -8,6 +9,9 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 public class PaymentDAO {
+
+    private static final Log LOG = Log.get(PaymentDAO.class);
+
     public void createPayment(int orderId, BigDecimal totalAmount, String paymentMethod) {
         String sql = "INSERT INTO payments (order_id, total_amount, payment_method) VALUES (?, ?, ?)";
         try (Connection conn = JDBCConnect.getJDBCConnection();
@@ -17,7 +21,7 @@ public class PaymentDAO {
             stmt.setString(3, paymentMethod);
             stmt.executeUpdate();
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.atError().with("orderId", orderId).cause(e).log("❌ Error creating payment");
         }
     }
     public boolean settleOrderAndCreatePayment(
@@ -80,13 +84,13 @@ public class PaymentDAO {
                 return true;
             } catch (SQLException ex) {
                 conn.rollback();
-                ex.printStackTrace();
+                LOG.atError().with("orderId", orderId).with("tableId", tableId).cause(ex).log("❌ Error settling order");
                 return false;
             } finally {
                 conn.setAutoCommit(true);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.atError().with("orderId", orderId).cause(e).log("❌ Error settling order");
             return false;
         }
     }
@@ -96,12 +100,12 @@ public class PaymentDAO {
         try (Connection conn = JDBCConnect.getJDBCConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, payment.getOrderId());
-            stmt.setBigDecimal(2, BigDecimal.valueOf(payment.getTotalAmount()));
+            payment.getTotalAmount().write(stmt, 2);
             stmt.setString(3, payment.getPaymentMethod());
             stmt.setTimestamp(4, payment.getPaymentTime());
             return stmt.executeUpdate() > 0;
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.atError().with("orderId", payment.getOrderId()).cause(e).log("❌ Error inserting payment");
             return false;
         }
     }
@@ -0,0 +1,390 @@
+package com.barmanagement.dao;
+
+import com.barmanagement.config.DatabaseConfig;
+import com.barmanagement.util.LatencyHistogram;
+import com.barmanagement.util.Log;
+import javafx.application.Platform;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Đo đạc JDBC: bọc Connection do {@link JDBCConnect} trả về để ghi nhận thời gian lấy kết nối,
+ * histogram độ trễ theo từng câu SQL, số dòng đọc và phương thức DAO đã gọi.
+ *
+ * - Câu lệnh chậm hơn query.slowMs được log ngay (kèm DAO gọi nó).
+ * - N+1: trong một "scope" (một sự kiện FX, một tác vụ AsyncDAO hoặc {@link #openScope}),
+ *   cùng một câu SQL chạy từ query.nPlusOneThreshold lần trở lên thì bị cảnh báo.
+ *   Trên FX thread, scope ngầm định kết thúc ở lượt Platform.runLater kế tiếp, tức là
+ *   khi handler hiện tại (ví dụ click chọn bàn) đã chạy xong.
+ *
+ * Tắt bằng query.instrumentation=false (JDBCConnect trả thẳng kết nối của pool).
+ */
+public final class QueryInstrumentation {
+
+    private static final Log LOG = Log.get(QueryInstrumentation.class);
+
+    /** Phạm vi đếm N+1; đóng bằng try-with-resources, lồng nhau được */
+    public static final class Scope implements AutoCloseable {
+        private final String name;
+        private final Scope parent;
+        private final Map<String, int[]> counts = new HashMap<>();
+        private boolean closed;
+
+        private Scope(String name, Scope parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (CURRENT.get() == this) {
+                if (parent != null) {
+                    CURRENT.set(parent);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+            for (Map.Entry<String, int[]> e : counts.entrySet()) {
+                // Cảnh báo đã in khi chạm ngưỡng; chỉ báo lại tổng nếu còn tăng sau đó
+                if (e.getValue()[0] > N_PLUS_ONE_THRESHOLD) {
+                    LOG.warn("⚠️ N+1 in {}: {}x {}", name, e.getValue()[0], shorten(e.getKey()));
+                }
+            }
+        }
+    }
+
+    /** Số liệu cộng dồn của một câu SQL */
+    public static final class StatementStats {
+        private final String sql;
+        private final LatencyHistogram latency;
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder nPlusOneHits = new LongAdder();
+        private volatile String lastCaller = "?";
+
+        private StatementStats(String sql) {
+            this.sql = sql;
+            this.latency = new LatencyHistogram(shorten(sql));
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getCount() {
+            return latency.getCount();
+        }
+
+        public double getTotalMillis() {
+            return totalNanos.sum() / 1_000_000.0;
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getNPlusOneHits() {
+            return nPlusOneHits.sum();
+        }
+
+        public String getLastCaller() {
+            return lastCaller;
+        }
+    }
+
+    private static final boolean ENABLED;
+    private static final boolean CAPTURE_CALLER;
+    private static final long SLOW_QUERY_NANOS;
+    private static final int N_PLUS_ONE_THRESHOLD;
+    private static final int MAX_STATEMENTS = 1000;
+    private static final String OTHER_KEY = "<other>";
+
+    static {
+        DatabaseConfig config = DatabaseConfig.get();
+        ENABLED = config.getBoolean("query.instrumentation", true);
+        CAPTURE_CALLER = config.getBoolean("query.captureCaller", true);
+        SLOW_QUERY_NANOS = Math.max(0, config.getLong("query.slowMs", 200)) * 1_000_000L;
+        N_PLUS_ONE_THRESHOLD = Math.max(2, config.getInt("query.nPlusOneThreshold", 5));
+    }
+
+    private static final LatencyHistogram CONNECT_LATENCY = new LatencyHistogram("jdbc.connect");
+    private static final Map<String, StatementStats> STATS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private static final Set<String> INFRASTRUCTURE = Set.of(
+            QueryInstrumentation.class.getName(),
+            ConnectionProvider.class.getName(),
+            StatementCache.class.getName(),
+            JDBCConnect.class.getName(),
+            AsyncDAO.class.getName());
+
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private QueryInstrumentation() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Bọc kết nối vừa lấy từ pool
+     *
+     * @param connectNanos thời gian chờ lấy kết nối
+     */
+    static Connection wrap(Connection connection, long connectNanos) {
+        CONNECT_LATENCY.recordNanos(connectNanos);
+        if (SLOW_QUERY_NANOS > 0 && connectNanos >= SLOW_QUERY_NANOS) {
+            LOG.atWarn()
+                    .with("latencyMs", connectNanos / 1_000_000)
+                    .with("caller", callerOf())
+                    .log("🐢 Slow connect");
+        }
+        return (Connection) Proxy.newProxyInstance(
+                QueryInstrumentation.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    /**
+     * Mở scope đếm N+1 cho thread hiện tại, ví dụ quanh một thao tác UI gọi nhiều DAO:
+     * try (QueryInstrumentation.Scope s = QueryInstrumentation.openScope("selectTable")) { ... }
+     */
+    public static Scope openScope(String name) {
+        Scope scope = new Scope(name, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    // ===== Số liệu =====
+
+    public static LatencyHistogram getConnectLatencyHistogram() {
+        return CONNECT_LATENCY;
+    }
+
+    /** Các câu SQL tốn tổng thời gian nhiều nhất */
+    public static List<StatementStats> getTopByTotalTime(int limit) {
+        List<StatementStats> all = new ArrayList<>(STATS.values());
+        all.sort(Comparator.comparingDouble(StatementStats::getTotalMillis).reversed());
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    public static void reset() {
+        STATS.clear();
+        CONNECT_LATENCY.reset();
+    }
+
+    public static String getStatsSummary() {
+        long executions = 0;
+        long nPlusOne = 0;
+        for (StatementStats s : STATS.values()) {
+            executions += s.getCount();
+            nPlusOne += s.getNPlusOneHits();
+        }
+        return String.format("jdbc: statements=%d, executions=%d, n+1=%d, %s",
+                STATS.size(), executions, nPlusOne, CONNECT_LATENCY.getSummary());
+    }
+
+    // ===== Ghi nhận =====
+
+    private static StatementStats statsFor(String sql) {
+        StatementStats stats = STATS.get(sql);
+        if (stats != null) return stats;
+        if (STATS.size() >= MAX_STATEMENTS) {
+            // SQL ghép chuỗi (Statement thường) không được làm phình bộ nhớ
+            return STATS.computeIfAbsent(OTHER_KEY, StatementStats::new);
+        }
+        return STATS.computeIfAbsent(sql, StatementStats::new);
+    }
+
+    private static void record(String sql, long nanos) {
+        StatementStats stats = statsFor(sql);
+        stats.latency.recordNanos(nanos);
+        stats.totalNanos.add(nanos);
+        String caller = CAPTURE_CALLER ? callerOf() : "?";
+        stats.lastCaller = caller;
+
+        if (SLOW_QUERY_NANOS > 0 && nanos >= SLOW_QUERY_NANOS) {
+            LOG.atWarn()
+                    .with("latencyMs", nanos / 1_000_000)
+                    .with("caller", caller)
+                    .with("sql", shorten(sql))
+                    .log("🐢 Slow query");
+        }
+
+        Scope scope = currentScope();
+        if (scope != null) {
+            int count = ++scope.counts.computeIfAbsent(sql, k -> new int[1])[0];
+            if (count == N_PLUS_ONE_THRESHOLD) {
+                stats.nPlusOneHits.increment();
+                LOG.atWarn()
+                        .with("count", count)
+                        .with("scope", scope.name)
+                        .with("caller", caller)
+                        .with("sql", shorten(sql))
+                        .log("⚠️ Possible N+1");
+            }
+        }
+    }
+
+    /** Scope hiện tại; trên FX thread tự mở scope cho sự kiện đang xử lý */
+    private static Scope currentScope() {
+        Scope scope = CURRENT.get();
+        if (scope == null && Platform.isFxApplicationThread()) {
+            scope = openScope("FX event");
+            Platform.runLater(scope::close);
+        }
+        return scope;
+    }
+
+    /** Phương thức DAO (hoặc lớp ứng dụng) gần nhất trên stack, ví dụ "OrderDAO.findItems" */
+    private static String callerOf() {
+        return WALKER.walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith("com.barmanagement.")
+                        && !INFRASTRUCTURE.contains(outerClassName(f.getClassName())))
+                .findFirst()
+                .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1)
+                        + "." + f.getMethodName())
+                .orElse("?"));
+    }
+
+    private static String outerClassName(String className) {
+        int nested = className.indexOf('$');
+        return nested < 0 ? className : className.substring(0, nested);
+    }
+
+    static String shorten(String sql) {
+        String oneLine = sql.replaceAll("\\s+", " ").trim();
+        return oneLine.length() > 120 ? oneLine.substring(0, 117) + "..." : oneLine;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isExecute(String name) {
+        return name.startsWith("execute");
+    }
+
+    // ===== Proxy =====
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Instrumented[" + target + "]";
+                case "prepareStatement": {
+                    PreparedStatement ps = (PreparedStatement) QueryInstrumentation.invoke(target, method, args);
+                    return Proxy.newProxyInstance(QueryInstrumentation.class.getClassLoader(),
+                            new Class<?>[]{PreparedStatement.class},
+                            new StatementHandler(ps, (String) args[0]));
+                }
+                case "createStatement": {
+                    Statement st = (Statement) QueryInstrumentation.invoke(target, method, args);
+                    return Proxy.newProxyInstance(QueryInstrumentation.class.getClassLoader(),
+                            new Class<?>[]{Statement.class},
+                            new StatementHandler(st, null));
+                }
+                default:
+                    return QueryInstrumentation.invoke(target, method, args);
+            }
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        /** null với Statement thường: SQL lấy từ tham số execute */
+        private final String preparedSql;
+
+        StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("equals".equals(name)) return proxy == args[0];
+            if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+            if (!isExecute(name)) {
+                return QueryInstrumentation.invoke(target, method, args);
+            }
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String
+                    ? (String) args[0]
+                    : preparedSql != null ? preparedSql : "<batch>";
+            long start = System.nanoTime();
+            Object result = QueryInstrumentation.invoke(target, method, args);
+            record(sql, System.nanoTime() - start);
+
+            if (result instanceof ResultSet) {
+                return Proxy.newProxyInstance(QueryInstrumentation.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class},
+                        new ResultSetHandler((ResultSet) result, statsFor(sql)));
+            }
+            return result;
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final StatementStats stats;
+
+        ResultSetHandler(ResultSet target, StatementStats stats) {
+            this.target = target;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("equals".equals(name)) return proxy == args[0];
+            if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+            Object result = QueryInstrumentation.invoke(target, method, args);
+            if ("next".equals(name) && Boolean.TRUE.equals(result)) {
+                stats.rows.increment();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.barmanagement.dao;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Kiểm tra hồi quy kế hoạch truy vấn: chạy EXPLAIN cho các truy vấn nóng của OrderDAO / RevenueDAO
+ * và báo lỗi nếu bảng nào bị quét toàn bộ (type = ALL).
+ *
+ * Chạy: java com.barmanagement.dao.QueryPlanCheck [--seed N]
+ * Trên bảng gần rỗng MySQL thường chọn quét toàn bảng dù có index, nên cần dữ liệu mẫu:
+ * --seed N thêm N đơn hàng giả (kèm món, thanh toán, doanh thu), dựng lại rollup rồi ANALYZE TABLE.
+ * Chỉ cho phép seed khi tên database có chứa "test" (trỏ -Dbarapp.db.config sang database thử).
+ *
+ * Thoát với mã 1 nếu có truy vấn quét toàn bảng, để dùng được trong script CI.
+ */
+public class QueryPlanCheck {
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    /** Một truy vấn cần kiểm tra; allowFullScan = alias bảng nhỏ được phép quét (menu_items...) */
+    private static final class Check {
+        final String name;
+        final String sql;
+        final Binder binder;
+        final Set<String> allowFullScan;
+
+        Check(String name, String sql, Binder binder, String... allowFullScan) {
+            this.name = name;
+            this.sql = sql;
+            this.binder = binder;
+            this.allowFullScan = new HashSet<>(Arrays.asList(allowFullScan));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        SchemaMigrator.get().migrate();
+
+        if (args.length >= 2 && "--seed".equals(args[0])) {
+            seed(Integer.parseInt(args[1]));
+        }
+
+        List<Check> checks = buildChecks();
+        List<String> failures = new ArrayList<>();
+
+        System.out.println("=== QUERY PLAN CHECK (" + checks.size() + " queries) ===");
+        try (Connection conn = ConnectionProvider.get().getConnection()) {
+            for (Check check : checks) {
+                List<String> scans = explain(conn, check);
+                if (scans.isEmpty()) {
+                    System.out.println("✅ " + check.name);
+                } else {
+                    System.out.println("❌ " + check.name + " full scan on " + scans);
+                    failures.add(check.name + " " + scans);
+                }
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            System.err.println("❌ " + failures.size() + " query(ies) do full table scans: " + failures);
+            System.exit(1);
+        }
+        System.out.println("✅ No full table scans");
+    }
+
+    private static List<Check> buildChecks() {
+        TimeRange today = TimeRange.today();
+        Binder todayRange = ps -> today.bindTimestamps(ps, 1);
+        YearMonth month = YearMonth.now();
+
+        return Arrays.asList(
+                new Check("OrderDAO.findCompletedNotPaidOrders", OrderDAO.FIND_COMPLETED_NOT_PAID_SQL, todayRange),
+                new Check("OrderDAO.findCompletedOrdersWithDetails", OrderDAO.FIND_COMPLETED_WITH_DETAILS_SQL, todayRange),
+                new Check("OrderDAO.findByStatus", OrderDAO.FIND_BY_STATUS_SQL, ps -> {
+                    ps.setString(1, "pending");
+                    today.bindTimestamps(ps, 2);
+                }),
+                new Check("OrderDAO.findRecentActivity", OrderDAO.FIND_RECENT_ACTIVITY_SQL, ps -> {
+                    int index = today.bindTimestamps(ps, 1);
+                    ps.setInt(index, 20);
+                }),
+                new Check("OrderDAO.findPendingByTable", OrderDAO.FIND_PENDING_BY_TABLE_SQL, ps -> {
+                    ps.setInt(1, 1);
+                    today.bindTimestamps(ps, 2);
+                }),
+                new Check("OrderDAO.existsPaidTodayByTable", OrderDAO.EXISTS_PAID_TODAY_BY_TABLE_SQL, ps -> {
+                    ps.setInt(1, 1);
+                    today.bindTimestamps(ps, 2);
+                }),
+                new Check("OrderDAO.cleanupOldCompletedOrders", OrderDAO.CLEANUP_OLD_COMPLETED_SQL,
+                        ps -> ps.setObject(1, today.startDateTime())),
+                new Check("OrderDAO.deleteEmptyOrders", OrderDAO.DELETE_EMPTY_ORDERS_SQL, todayRange),
+                new Check("OrderDAO.findItems", OrderDAO.FIND_ITEMS_SQL, ps -> ps.setInt(1, 1)),
+                new Check("OrderDAO.findTodayOrders", OrderDAO.FIND_TODAY_ORDERS_SQL, todayRange),
+                new Check("OrderDAO.getTodayStats", OrderDAO.TODAY_STATS_SQL, todayRange),
+                new Check("OrderDAO.streamPaidOrdersWithItems", OrderDAO.STREAM_PAID_WITH_ITEMS_SQL,
+                        ps -> TimeRange.month(month).bindTimestamps(ps, 1)),
+                new Check("RevenueDAO.getMonthlyRevenue", RevenueDAO.MONTHLY_REVENUE_SQL,
+                        ps -> TimeRange.year(month.getYear()).bindDates(ps, 1)),
+                new Check("RevenueDAO.getHourlyRevenue", RevenueDAO.HOURLY_REVENUE_SQL,
+                        ps -> ps.setObject(1, LocalDate.now().minusDays(1))),
+                new Check("RevenueDAO.loadPayments (revenue aggregator)", RevenueDAO.DAY_PAYMENTS_SQL, todayRange),
+                new Check("RevenueDAO.getTableTurnoverRate", RevenueDAO.TABLE_TURNOVER_SQL, todayRange),
+                new Check("RevenueDAO.getCategoryPerformance", RevenueDAO.CATEGORY_PERFORMANCE_SQL,
+                        ps -> today.bindDates(ps, today.bindDates(ps, 1)), "mi"),
+                new Check("RevenueDAO.getTopSellingItems", RevenueDAO.TOP_SELLING_ITEMS_SQL, ps -> {
+                    int index = TimeRange.month(month).bindDates(ps, 1);
+                    ps.setInt(index, 10);
+                }, "mi"),
+                new Check("RevenueDAO.getRevenueComparison", RevenueDAO.REVENUE_COMPARISON_SQL, ps -> {
+                    int index = TimeRange.month(month).bindDates(ps, 1);
+                    TimeRange.month(month.minusMonths(1)).bindDates(ps, index);
+                })
+        );
+    }
+
+    /** @return các bảng bị quét toàn bộ (trừ bảng được phép) */
+    private static List<String> explain(Connection conn, Check check) throws SQLException {
+        List<String> scans = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement("EXPLAIN " + check.sql)) {
+            check.binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String table = rs.getString("table");
+                    String type = rs.getString("type");
+                    // table null = dòng không đọc bảng (ví dụ "No tables used"), <derivedN>/<subqueryN> là bảng tạm
+                    if (table == null || table.startsWith("<")) continue;
+                    if ("ALL".equals(type) && !check.allowFullScan.contains(table)) {
+                        scans.add(table + " (rows=" + rs.getLong("rows") + ")");
+                    }
+                }
+            }
+        }
+        return scans;
+    }
+
+    // ===== Dữ liệu mẫu =====
+
+    private static void seed(int orders) throws SQLException {
+        try (Connection conn = ConnectionProvider.get().getConnection()) {
+            String database = queryString(conn, "SELECT DATABASE()");
+            if (database == null || !database.toLowerCase().contains("test")) {
+                throw new SQLException("Refusing to seed database '" + database + "' (name must contain 'test')");
+            }
+
+            List<Integer> tableIds = queryIds(conn, "SELECT id FROM tables");
+            List<Integer> menuIds = queryIds(conn, "SELECT id FROM menu_items");
+            List<Integer> userIds = queryIds(conn, "SELECT id FROM users");
+            if (tableIds.isEmpty() || menuIds.isEmpty() || userIds.isEmpty()) {
+                throw new SQLException("Seeding needs at least one table, menu item and user");
+            }
+            int userId = userIds.get(0);
+
+            System.out.println("🌱 Seeding " + orders + " orders into " + database + "...");
+            Random random = new Random(42);
+            String[] statuses = {"paid", "paid", "paid", "completed", "pending", "cancelled"};
+            String[] methods = {"Tiền mặt", "Thẻ", "Chuyển khoản"};
+
+            boolean oldAutoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement insertOrder = conn.prepareStatement(
+                    "INSERT INTO orders (table_id, order_time, completed_time, status, total_amount, created_by) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement insertItem = conn.prepareStatement(
+                         "INSERT INTO order_items (order_id, menu_item_id, quantity, price) VALUES (?, ?, ?, ?)");
+                 PreparedStatement insertPayment = conn.prepareStatement(
+                         "INSERT INTO payments (order_id, total_amount, payment_method, payment_time, processed_by) " +
+                         "VALUES (?, ?, ?, ?, ?)");
+                 PreparedStatement insertRevenue = conn.prepareStatement(
+                         "INSERT INTO revenue (date, total_amount, total_orders) VALUES (?, ?, 1) " +
+                         "ON DUPLICATE KEY UPDATE total_amount = total_amount + VALUES(total_amount), " +
+                         "total_orders = total_orders + 1")) {
+
+                LocalDateTime now = LocalDateTime.now();
+                for (int i = 0; i < orders; i++) {
+                    // Trải đều trong 2 năm để bộ lọc "hôm nay" chỉ chọn một phần nhỏ
+                    LocalDateTime orderTime = now.minusMinutes(random.nextInt(2 * 365 * 24 * 60));
+                    String status = statuses[random.nextInt(statuses.length)];
+                    BigDecimal amount = BigDecimal.valueOf(50_000L + random.nextInt(50) * 10_000L);
+
+                    insertOrder.setInt(1, tableIds.get(random.nextInt(tableIds.size())));
+                    insertOrder.setObject(2, orderTime);
+                    insertOrder.setObject(3, "pending".equals(status) ? null : orderTime.plusMinutes(40));
+                    insertOrder.setString(4, status);
+                    insertOrder.setBigDecimal(5, amount);
+                    insertOrder.setInt(6, userId);
+                    insertOrder.executeUpdate();
+
+                    int orderId;
+                    try (ResultSet keys = insertOrder.getGeneratedKeys()) {
+                        keys.next();
+                        orderId = keys.getInt(1);
+                    }
+
+                    int itemCount = 1 + random.nextInt(4);
+                    for (int j = 0; j < itemCount; j++) {
+                        insertItem.setInt(1, orderId);
+                        insertItem.setInt(2, menuIds.get(random.nextInt(menuIds.size())));
+                        insertItem.setInt(3, 1 + random.nextInt(3));
+                        insertItem.setBigDecimal(4, amount.divide(BigDecimal.valueOf(itemCount), 2, RoundingMode.HALF_UP));
+                        insertItem.addBatch();
+                    }
+                    insertItem.executeBatch();
+
+                    if ("paid".equals(status)) {
+                        insertPayment.setInt(1, orderId);
+                        insertPayment.setBigDecimal(2, amount);
+                        insertPayment.setString(3, methods[random.nextInt(methods.length)]);
+                        insertPayment.setObject(4, orderTime.plusMinutes(45));
+                        insertPayment.setInt(5, userId);
+                        insertPayment.executeUpdate();
+
+                        insertRevenue.setObject(1, orderTime.toLocalDate());
+                        insertRevenue.setBigDecimal(2, amount);
+                        insertRevenue.executeUpdate();
+                    }
+
+                    if (i % 1000 == 999) {
+                        conn.commit();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(oldAutoCommit);
+            }
+
+            new SalesRollupDAO().rebuildAll(31);
+
+            try (Statement st = conn.createStatement()) {
+                st.execute("ANALYZE TABLE orders, order_items, payments, revenue, sales_hourly, item_sales_daily");
+            }
+            System.out.println("✅ Seeded " + orders + " orders");
+        }
+    }
+
+    private static String queryString(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static List<Integer> queryIds(Connection conn, String sql) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,315 @@
+package com.barmanagement.dao;
+
+import com.barmanagement.config.DatabaseConfig;
+import com.barmanagement.util.Log;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Số liệu doanh thu hôm nay giữ trong bộ nhớ.
+ *
+ * Nạp một lần từ bảng payments (RevenueDAO) khi khởi động, sau đó OrderDAO.processPayment
+ * cộng dồn sau mỗi commit thành công. Mọi bộ đếm là LongAdder, tiền tính bằng đơn vị nhỏ nhất
+ * (1/100 VND) nên ghi không khóa và đọc không cần truy vấn GROUP BY.
+ *
+ * Một luồng nền đối chiếu lại với database định kỳ (revenue.reconcileIntervalSec, mặc định 300s)
+ * để nhận thanh toán từ máy khác. Mỗi thanh toán được cộng theo payments.id đúng một lần:
+ * thanh toán ghi nhận trong lúc đang đọc DB được giữ trong hàng chờ rồi gộp vào số liệu mới,
+ * thanh toán DB đã có sẵn thì không cộng lại.
+ */
+public final class RevenueAggregator {
+
+    private static final Log LOG = Log.get(RevenueAggregator.class);
+
+    private static final int MINOR_UNIT_SCALE = 2;
+
+    private static final RevenueAggregator INSTANCE = new RevenueAggregator();
+
+    public static RevenueAggregator get() {
+        return INSTANCE;
+    }
+
+    /** Bộ đếm của một ngày; sang ngày mới thì thay bằng Day mới */
+    private static final class Day {
+        final LocalDate date;
+        final LongAdder revenueMinor = new LongAdder();
+        final LongAdder orders = new LongAdder();
+        final LongAdder[] hourlyRevenueMinor = new LongAdder[24];
+        final LongAdder[] hourlyOrders = new LongAdder[24];
+        final ConcurrentHashMap<String, LongAdder> methodCounts = new ConcurrentHashMap<>();
+        final Set<Integer> paymentIds = ConcurrentHashMap.newKeySet();
+
+        Day(LocalDate date) {
+            this.date = date;
+            for (int h = 0; h < 24; h++) {
+                hourlyRevenueMinor[h] = new LongAdder();
+                hourlyOrders[h] = new LongAdder();
+            }
+        }
+
+        /** @return false nếu thanh toán này đã được cộng */
+        boolean add(int paymentId, int hour, String method, long amountMinor) {
+            if (!paymentIds.add(paymentId)) return false;
+            revenueMinor.add(amountMinor);
+            orders.increment();
+            hourlyRevenueMinor[hour].add(amountMinor);
+            hourlyOrders[hour].increment();
+            methodCounts.computeIfAbsent(method != null ? method : "", k -> new LongAdder()).increment();
+            return true;
+        }
+    }
+
+    /** Thanh toán ghi nhận trong lúc reconcile đang đọc DB */
+    private static final class Recorded {
+        final int paymentId;
+        final LocalDate date;
+        final int hour;
+        final String method;
+        final long amountMinor;
+
+        Recorded(int paymentId, LocalDate date, int hour, String method, long amountMinor) {
+            this.paymentId = paymentId;
+            this.date = date;
+            this.hour = hour;
+            this.method = method;
+            this.amountMinor = amountMinor;
+        }
+    }
+
+    private final RevenueDAO revenueDAO = new RevenueDAO();
+    private final AtomicReference<Day> today = new AtomicReference<>();
+    // Khóa giữa recordPayment và bước gộp + thay Day của reconcile
+    private final Object recordLock = new Object();
+    // Khác null khi reconcile đang đọc DB (guarded by recordLock)
+    private List<Recorded> pending;
+    private ScheduledExecutorService reconciler;
+
+    private RevenueAggregator() {
+    }
+
+    // ===== Vòng đời =====
+
+    /**
+     * Nạp số liệu ở nền và bắt đầu đối chiếu định kỳ. Gọi nhiều lần cũng chỉ chạy một lần.
+     */
+    public synchronized void start() {
+        if (reconciler != null) return;
+        long intervalSec = Math.max(10, DatabaseConfig.get().getLong("revenue.reconcileIntervalSec", 300));
+        reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "revenue-reconciler");
+            t.setDaemon(true);
+            return t;
+        });
+        // Lần chạy đầu tiên chính là lần nạp ban đầu
+        reconciler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (Exception e) {
+                LOG.error("❌ Revenue reconciliation failed: {}", e.getMessage());
+            }
+        }, 0, intervalSec, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+            reconciler = null;
+        }
+    }
+
+    /**
+     * Tải lại số liệu hôm nay từ database và thay thế bộ đếm trong bộ nhớ.
+     * FIXED: thanh toán ghi nhận trong lúc đang tải được gộp vào số liệu mới (khử trùng theo payments.id),
+     * không bị mất và không bị cộng hai lần.
+     */
+    public synchronized void reconcile() throws SQLException {
+        synchronized (recordLock) {
+            pending = new ArrayList<>();
+        }
+        Day fresh;
+        Day previous;
+        try {
+            fresh = load(LocalDate.now());
+        } catch (SQLException | RuntimeException e) {
+            // Đọc lỗi: bỏ hàng chờ, các thanh toán đó đã được cộng vào Day hiện tại
+            synchronized (recordLock) {
+                pending = null;
+            }
+            throw e;
+        }
+        synchronized (recordLock) {
+            for (Recorded r : pending) {
+                if (r.date.equals(fresh.date)) {
+                    fresh.add(r.paymentId, r.hour, r.method, r.amountMinor);
+                }
+            }
+            pending = null;
+            previous = today.getAndSet(fresh);
+        }
+
+        if (previous == null) {
+            LOG.info("📊 Revenue aggregator seeded: {} payments, {} VND", fresh.orders.sum(), toAmount(fresh.revenueMinor.sum()));
+        } else if (previous.date.equals(fresh.date)) {
+            int missing = 0;
+            for (Integer id : previous.paymentIds) {
+                if (!fresh.paymentIds.contains(id)) missing++;
+            }
+            int added = fresh.paymentIds.size() - (previous.paymentIds.size() - missing);
+            if (missing > 0) {
+                LOG.warn("⚠️ Revenue aggregator drift corrected: {} payments in memory are not in the database, database {} / {} VND",
+                        missing, fresh.orders.sum(), toAmount(fresh.revenueMinor.sum()));
+            } else if (added > 0) {
+                // Thanh toán từ máy khác (hoặc vừa commit, chưa kịp recordPayment) - không phải sai lệch
+                LOG.debug("📊 Revenue aggregator picked up {} payments from the database", added);
+            }
+        }
+    }
+
+    private Day load(LocalDate date) throws SQLException {
+        Day day = new Day(date);
+        revenueDAO.loadPayments(date, (paymentId, hour, method, amount) ->
+                day.add(paymentId, hour, method, toMinor(amount)));
+        return day;
+    }
+
+    // ===== Ghi =====
+
+    /**
+     * Ghi nhận một thanh toán đã commit. Đang nạp / đối chiếu thì thanh toán được giữ lại
+     * và gộp vào số liệu mới; payments.id đã được cộng (ví dụ DB đã trả về) thì bỏ qua.
+     */
+    public void recordPayment(int paymentId, BigDecimal amount, String paymentMethod, LocalDateTime paidAt) {
+        if (amount == null) return;
+        long amountMinor = toMinor(amount);
+        synchronized (recordLock) {
+            if (pending != null) {
+                pending.add(new Recorded(paymentId, paidAt.toLocalDate(), paidAt.getHour(), paymentMethod, amountMinor));
+            }
+            if (today.get() == null) return;
+            Day day = currentDay();
+            if (day.date.equals(paidAt.toLocalDate())) {
+                day.add(paymentId, paidAt.getHour(), paymentMethod, amountMinor);
+            }
+        }
+    }
+
+    // ===== Đọc (O(1), chỉ chạm DB nếu chưa từng nạp) =====
+
+    public BigDecimal getTodayRevenue() throws SQLException {
+        return toAmount(seededDay().revenueMinor.sum());
+    }
+
+    public long getTodayRevenueMinor() throws SQLException {
+        return seededDay().revenueMinor.sum();
+    }
+
+    public int getTodayOrders() throws SQLException {
+        return (int) seededDay().orders.sum();
+    }
+
+    public BigDecimal getAverageOrderValue() throws SQLException {
+        Day day = seededDay();
+        long orders = day.orders.sum();
+        if (orders == 0) return BigDecimal.ZERO;
+        return BigDecimal.valueOf(day.revenueMinor.sum())
+                .divide(BigDecimal.valueOf(orders), 0, RoundingMode.HALF_UP)
+                .movePointLeft(MINOR_UNIT_SCALE);
+    }
+
+    /** "HH:00" -> doanh thu, đủ 24 giờ */
+    public Map<String, BigDecimal> getHourlyRevenue() throws SQLException {
+        Day day = seededDay();
+        Map<String, BigDecimal> hourly = new LinkedHashMap<>();
+        for (int h = 0; h < 24; h++) {
+            hourly.put(String.format("%02d:00", h), toAmount(day.hourlyRevenueMinor[h].sum()));
+        }
+        return hourly;
+    }
+
+    /** Phương thức thanh toán -> số lần hôm nay, nhiều nhất trước */
+    public Map<String, Integer> getPaymentMethodStats() throws SQLException {
+        List<Map.Entry<String, LongAdder>> entries = new ArrayList<>(seededDay().methodCounts.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+        Map<String, Integer> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> e : entries) {
+            stats.put(e.getKey(), (int) e.getValue().sum());
+        }
+        return stats;
+    }
+
+    /** Giờ có nhiều thanh toán nhất hôm nay (0-23), -1 nếu chưa có */
+    public int getPeakHour() throws SQLException {
+        Day day = seededDay();
+        int peak = -1;
+        long best = 0;
+        for (int h = 0; h < 24; h++) {
+            long n = day.hourlyOrders[h].sum();
+            if (n > best) {
+                best = n;
+                peak = h;
+            }
+        }
+        return peak;
+    }
+
+    public int getOrdersInHour(int hour) throws SQLException {
+        return (int) seededDay().hourlyOrders[hour].sum();
+    }
+
+    public BigDecimal getRevenueInHour(int hour) throws SQLException {
+        return toAmount(seededDay().hourlyRevenueMinor[hour].sum());
+    }
+
+    public boolean isSeeded() {
+        return today.get() != null;
+    }
+
+    // ===== Helpers =====
+
+    private Day seededDay() throws SQLException {
+        if (today.get() == null) {
+            synchronized (this) {
+                if (today.get() == null) {
+                    reconcile();
+                }
+            }
+        }
+        return currentDay();
+    }
+
+    /** Sang ngày mới thì bắt đầu bộ đếm rỗng */
+    private Day currentDay() {
+        while (true) {
+            Day day = today.get();
+            LocalDate now = LocalDate.now();
+            if (day.date.equals(now)) return day;
+            if (today.compareAndSet(day, new Day(now))) {
+                LOG.debug("📅 Revenue aggregator rolled over to {}", now);
+            }
+        }
+    }
+
+    static long toMinor(BigDecimal amount) {
+        if (amount == null) return 0;
+        return amount.movePointRight(MINOR_UNIT_SCALE).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    static BigDecimal toAmount(long minor) {
+        return BigDecimal.valueOf(minor, MINOR_UNIT_SCALE);
+    }
+}
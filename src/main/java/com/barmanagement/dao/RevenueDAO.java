@@ -1,9 +1,12 @@
 package com.barmanagement.dao;
 
 import com.barmanagement.dao.JDBCConnect;
+import com.barmanagement.model.DashboardSnapshot;
+import com.barmanagement.util.Log;
 import java.sql.*;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.ArrayList;
@@ -15,6 +18,67 @@ import java.util.List;
  */
 public class RevenueDAO {
 
+    private static final Log LOG = Log.get(RevenueDAO.class);
+
+    static final String MONTHLY_REVENUE_SQL =
+            "SELECT MONTH(date) as month, SUM(total_amount) as total " +
+            "FROM revenue " +
+            "WHERE date >= ? AND date < ? " +
+            "GROUP BY MONTH(date) " +
+            "ORDER BY month";
+
+    // Rollup do SalesRollupDAO duy trì khi thanh toán: mỗi ngày tối đa 24 dòng
+    static final String HOURLY_REVENUE_SQL =
+            "SELECT sale_hour as hour, revenue as total " +
+            "FROM sales_hourly " +
+            "WHERE sale_date = ? " +
+            "ORDER BY sale_hour";
+
+    static final String TABLE_TURNOVER_SQL =
+            "SELECT " +
+            "COUNT(DISTINCT o.id) as total_orders, " +
+            "COUNT(DISTINCT o.table_id) as unique_tables " +
+            "FROM orders o " +
+            "WHERE o.order_time >= ? AND o.order_time < ? AND o.status IN ('completed', 'paid')";
+
+    // Số lượng / doanh thu lấy từ rollup; order_count đếm đơn DUY NHẤT có món thuộc danh mục
+    // (rollup item_sales_daily đếm theo từng món nên cộng lại sẽ đếm trùng). Tham số: hai mốc DATE
+    // cho sale_date, rồi hai mốc DATE cho payment_time (range scan trên index payment_time)
+    static final String CATEGORY_PERFORMANCE_SQL =
+            "SELECT r.category, r.total_quantity, r.total_revenue, COALESCE(o.order_count, 0) as order_count " +
+            "FROM (" +
+            "SELECT mi.category, SUM(s.quantity) as total_quantity, SUM(s.revenue) as total_revenue " +
+            "FROM item_sales_daily s " +
+            "JOIN menu_items mi ON s.menu_item_id = mi.id " +
+            "WHERE s.sale_date >= ? AND s.sale_date < ? " +
+            "GROUP BY mi.category) r " +
+            "LEFT JOIN (" +
+            "SELECT mi.category, COUNT(DISTINCT p.order_id) as order_count " +
+            "FROM payments p " +
+            "JOIN order_items oi ON oi.order_id = p.order_id " +
+            "JOIN menu_items mi ON oi.menu_item_id = mi.id " +
+            "WHERE p.payment_time >= ? AND p.payment_time < ? " +
+            "GROUP BY mi.category) o ON o.category <=> r.category " +
+            "ORDER BY r.total_revenue DESC";
+
+    static final String TOP_SELLING_ITEMS_SQL =
+            "SELECT mi.name, SUM(s.quantity) as total_sold, SUM(s.revenue) as total_revenue " +
+            "FROM item_sales_daily s " +
+            "JOIN menu_items mi ON s.menu_item_id = mi.id " +
+            "WHERE s.sale_date >= ? AND s.sale_date < ? " +
+            "GROUP BY mi.id, mi.name " +
+            "ORDER BY total_sold DESC " +
+            "LIMIT ?";
+
+    static final String FIRST_SALE_DATE_SQL = "SELECT MIN(sale_date) FROM item_sales_daily";
+
+    static final String REVENUE_COMPARISON_SQL =
+            "SELECT " +
+            "(SELECT COALESCE(SUM(total_amount), 0) FROM revenue WHERE date >= DATE_SUB(CURDATE(), INTERVAL 7 DAY)) as this_week, " +
+            "(SELECT COALESCE(SUM(total_amount), 0) FROM revenue WHERE date >= DATE_SUB(CURDATE(), INTERVAL 14 DAY) AND date < DATE_SUB(CURDATE(), INTERVAL 7 DAY)) as last_week, " +
+            "(SELECT COALESCE(SUM(total_amount), 0) FROM revenue WHERE date >= ? AND date < ?) as this_month, " +
+            "(SELECT COALESCE(SUM(total_amount), 0) FROM revenue WHERE date >= ? AND date < ?) as last_month";
+
     /**
      * Cập nhật doanh thu theo ngày (được gọi tự động khi thanh toán)
      */
@@ -26,47 +90,26 @@ public class RevenueDAO {
 
         try (Connection c = JDBCConnect.getJDBCConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setDate(1, java.sql.Date.valueOf(date));
+            ps.setObject(1, date);
             ps.setBigDecimal(2, amount);
             ps.executeUpdate();
 
-            System.out.println("✅ Updated daily revenue: " + date + " - " + amount + " VND");
+            LOG.debug("✅ Updated daily revenue: {} - {} VND", date, amount);
         }
     }
 
     /**
-     * Lấy doanh thu theo ngày
+     * Lấy doanh thu hôm nay - ENHANCED: đọc từ RevenueAggregator, không truy vấn DB
      */
     public BigDecimal getTodayRevenue() throws SQLException {
-        String sql = "SELECT COALESCE(total_amount, 0) FROM revenue WHERE date = CURDATE()";
-
-        try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                BigDecimal result = rs.getBigDecimal(1);
-                return result != null ? result : BigDecimal.ZERO;
-            }
-            return BigDecimal.ZERO;
-        }
+        return RevenueAggregator.get().getTodayRevenue();
     }
 
     /**
-     * Lấy số đơn hàng hôm nay
+     * Lấy số đơn hàng hôm nay - ENHANCED: đọc từ RevenueAggregator
      */
     public int getTodayOrders() throws SQLException {
-        String sql = "SELECT COALESCE(total_orders, 0) FROM revenue WHERE date = CURDATE()";
-
-        try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-            return 0;
-        }
+        return RevenueAggregator.get().getTodayOrders();
     }
 
     /**
@@ -137,12 +180,6 @@ public class RevenueDAO {
      * NEW: Lấy doanh thu theo tháng cho báo cáo
      */
     public Map<String, BigDecimal> getMonthlyRevenue(int year) throws SQLException {
-        String sql = "SELECT MONTH(date) as month, SUM(total_amount) as total " +
-                "FROM revenue " +
-                "WHERE YEAR(date) = ? " +
-                "GROUP BY MONTH(date) " +
-                "ORDER BY month";
-
         Map<String, BigDecimal> monthlyData = new LinkedHashMap<>();
 
         // Initialize all 12 months
@@ -153,9 +190,9 @@ public class RevenueDAO {
         }
 
         try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(MONTHLY_REVENUE_SQL)) {
 
-            ps.setInt(1, year);
+            TimeRange.year(year).bindDates(ps, 1);
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -173,24 +210,33 @@ public class RevenueDAO {
 
     /**
      * NEW: Lấy top selling items
+     * ENHANCED: đọc rollup item_sales_daily (chỉ tính đơn đã thanh toán) thay vì quét toàn bộ order_items
      */
     public List<Map<String, Object>> getTopSellingItems(int limit) throws SQLException {
-        String sql = "SELECT mi.name, SUM(oi.quantity) as total_sold, " +
-                "SUM(oi.quantity * oi.price) as total_revenue " +
-                "FROM order_items oi " +
-                "JOIN menu_items mi ON oi.menu_item_id = mi.id " +
-                "JOIN orders o ON oi.order_id = o.id " +
-                "WHERE o.status IN ('completed', 'paid') " +
-                "GROUP BY mi.id, mi.name " +
-                "ORDER BY total_sold DESC " +
-                "LIMIT ?";
+        LocalDate first;
+        try (Connection c = JDBCConnect.getJDBCConnection();
+             PreparedStatement ps = c.prepareStatement(FIRST_SALE_DATE_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            Date d = rs.next() ? rs.getDate(1) : null;
+            if (d == null) {
+                return new ArrayList<>();
+            }
+            first = d.toLocalDate();
+        }
+        return getTopSellingItems(TimeRange.days(first, LocalDate.now()), limit);
+    }
 
+    /**
+     * NEW: Top selling items trong một khoảng ngày (theo ngày thanh toán)
+     */
+    public List<Map<String, Object>> getTopSellingItems(TimeRange range, int limit) throws SQLException {
         List<Map<String, Object>> topItems = new ArrayList<>();
 
         try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(TOP_SELLING_ITEMS_SQL)) {
 
-            ps.setInt(1, limit);
+            int idx = range.bindDates(ps, 1);
+            ps.setInt(idx, limit);
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -207,14 +253,12 @@ public class RevenueDAO {
     }
 
     /**
-     * NEW: Lấy doanh thu theo giờ trong ngày - FIXED để sử dụng bảng payments
+     * NEW: Lấy doanh thu theo giờ trong ngày - ENHANCED: đọc rollup sales_hourly
      */
     public Map<String, BigDecimal> getHourlyRevenue(LocalDate date) throws SQLException {
-        String sql = "SELECT HOUR(p.payment_time) as hour, SUM(p.total_amount) as total " +
-                "FROM payments p " +
-                "WHERE DATE(p.payment_time) = ? " +
-                "GROUP BY HOUR(p.payment_time) " +
-                "ORDER BY hour";
+        if (date.equals(LocalDate.now())) {
+            return RevenueAggregator.get().getHourlyRevenue();
+        }
 
         Map<String, BigDecimal> hourlyData = new LinkedHashMap<>();
 
@@ -224,9 +268,9 @@ public class RevenueDAO {
         }
 
         try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(HOURLY_REVENUE_SQL)) {
 
-            ps.setDate(1, java.sql.Date.valueOf(date));
+            ps.setObject(1, date);
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -241,49 +285,17 @@ public class RevenueDAO {
     }
 
     /**
-     * NEW: Lấy thống kê payment methods - FIXED
+     * NEW: Lấy thống kê payment methods hôm nay - ENHANCED: đọc từ RevenueAggregator
      */
     public Map<String, Integer> getPaymentMethodStats() throws SQLException {
-        String sql = "SELECT payment_method, COUNT(*) as count " +
-                "FROM payments " +
-                "WHERE DATE(payment_time) = CURDATE() " +
-                "GROUP BY payment_method " +
-                "ORDER BY count DESC";
-
-        Map<String, Integer> methodStats = new LinkedHashMap<>();
-
-        try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            while (rs.next()) {
-                String method = rs.getString("payment_method");
-                int count = rs.getInt("count");
-                methodStats.put(method, count);
-            }
-        }
-
-        return methodStats;
+        return RevenueAggregator.get().getPaymentMethodStats();
     }
 
     /**
-     * NEW: Lấy average order value - FIXED
+     * NEW: Lấy average order value hôm nay - ENHANCED: đọc từ RevenueAggregator
      */
     public BigDecimal getAverageOrderValue() throws SQLException {
-        String sql = "SELECT AVG(total_amount) as avg_value " +
-                "FROM payments " +
-                "WHERE DATE(payment_time) = CURDATE()";
-
-        try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                BigDecimal avg = rs.getBigDecimal("avg_value");
-                return avg != null ? avg : BigDecimal.ZERO;
-            }
-            return BigDecimal.ZERO;
-        }
+        return RevenueAggregator.get().getAverageOrderValue();
     }
 
     /**
@@ -321,12 +333,11 @@ public class RevenueDAO {
      */
     public BigDecimal getRevenueByDateRange(LocalDate fromDate, LocalDate toDate) throws SQLException {
         String sql = "SELECT COALESCE(SUM(total_amount), 0) as total " +
-                "FROM revenue WHERE date BETWEEN ? AND ?";
+                "FROM revenue WHERE date >= ? AND date < ?";
 
         try (Connection c = JDBCConnect.getJDBCConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setDate(1, java.sql.Date.valueOf(fromDate));
-            ps.setDate(2, java.sql.Date.valueOf(toDate));
+            TimeRange.days(fromDate, toDate).bindDates(ps, 1);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -339,37 +350,20 @@ public class RevenueDAO {
     }
 
     /**
-     * NEW: Get peak hours analysis - FIXED
+     * NEW: Get peak hours analysis - ENHANCED: đọc từ RevenueAggregator
      */
     public Map<String, Object> getPeakHoursAnalysis() throws SQLException {
-        String sql = "SELECT " +
-                "HOUR(p.payment_time) as hour, " +
-                "COUNT(*) as order_count, " +
-                "SUM(p.total_amount) as total_revenue " +
-                "FROM payments p " +
-                "WHERE DATE(p.payment_time) = CURDATE() " +
-                "GROUP BY HOUR(p.payment_time) " +
-                "ORDER BY order_count DESC " +
-                "LIMIT 1";
-
         Map<String, Object> peakData = new LinkedHashMap<>();
         peakData.put("peak_hour", "19:00-20:00"); // Default
         peakData.put("order_count", 0);
         peakData.put("revenue", BigDecimal.ZERO);
 
-        try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-
-            if (rs.next()) {
-                int hour = rs.getInt("hour");
-                int orderCount = rs.getInt("order_count");
-                BigDecimal revenue = rs.getBigDecimal("total_revenue");
-
-                peakData.put("peak_hour", String.format("%02d:00-%02d:00", hour, hour + 1));
-                peakData.put("order_count", orderCount);
-                peakData.put("revenue", revenue != null ? revenue : BigDecimal.ZERO);
-            }
+        RevenueAggregator aggregator = RevenueAggregator.get();
+        int hour = aggregator.getPeakHour();
+        if (hour >= 0) {
+            peakData.put("peak_hour", String.format("%02d:00-%02d:00", hour, hour + 1));
+            peakData.put("order_count", aggregator.getOrdersInHour(hour));
+            peakData.put("revenue", aggregator.getRevenueInHour(hour));
         }
 
         return peakData;
@@ -379,22 +373,18 @@ public class RevenueDAO {
      * NEW: Get table turnover rate
      */
     public double getTableTurnoverRate() throws SQLException {
-        String sql = "SELECT " +
-                "COUNT(DISTINCT o.id) as total_orders, " +
-                "COUNT(DISTINCT o.table_id) as unique_tables " +
-                "FROM orders o " +
-                "WHERE DATE(o.order_time) = CURDATE() AND o.status IN ('completed', 'paid')";
-
         try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+             PreparedStatement ps = c.prepareStatement(TABLE_TURNOVER_SQL)) {
 
-            if (rs.next()) {
-                int totalOrders = rs.getInt("total_orders");
-                int uniqueTables = rs.getInt("unique_tables");
+            TimeRange.today().bindTimestamps(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    int totalOrders = rs.getInt("total_orders");
+                    int uniqueTables = rs.getInt("unique_tables");
 
-                if (uniqueTables > 0) {
-                    return (double) totalOrders / uniqueTables;
+                    if (uniqueTables > 0) {
+                        return (double) totalOrders / uniqueTables;
+                    }
                 }
             }
             return 0.0;
@@ -402,34 +392,26 @@ public class RevenueDAO {
     }
 
     /**
-     * NEW: Get category performance - FIXED
+     * NEW: Get category performance - ENHANCED: đọc rollup item_sales_daily của hôm nay
+     * FIXED: số đơn đếm theo đơn duy nhất từ payments, không cộng order_count của từng món
      */
     public List<Map<String, Object>> getCategoryPerformance() throws SQLException {
-        String sql = "SELECT " +
-                "mi.category, " +
-                "SUM(oi.quantity) as total_quantity, " +
-                "SUM(oi.quantity * oi.price) as total_revenue, " +
-                "COUNT(DISTINCT oi.order_id) as order_count " +
-                "FROM order_items oi " +
-                "JOIN menu_items mi ON oi.menu_item_id = mi.id " +
-                "JOIN orders o ON oi.order_id = o.id " +
-                "WHERE DATE(o.order_time) = CURDATE() AND o.status IN ('completed', 'paid') " +
-                "GROUP BY mi.category " +
-                "ORDER BY total_revenue DESC";
-
         List<Map<String, Object>> categoryData = new ArrayList<>();
 
         try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+             PreparedStatement ps = c.prepareStatement(CATEGORY_PERFORMANCE_SQL)) {
 
-            while (rs.next()) {
-                Map<String, Object> category = new LinkedHashMap<>();
-                category.put("category", rs.getString("category"));
-                category.put("quantity", rs.getInt("total_quantity"));
-                category.put("revenue", rs.getBigDecimal("total_revenue"));
-                category.put("order_count", rs.getInt("order_count"));
-                categoryData.add(category);
+            TimeRange today = TimeRange.today();
+            today.bindDates(ps, today.bindDates(ps, 1));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> category = new LinkedHashMap<>();
+                    category.put("category", rs.getString("category"));
+                    category.put("quantity", rs.getInt("total_quantity"));
+                    category.put("revenue", rs.getBigDecimal("total_revenue"));
+                    category.put("order_count", rs.getInt("order_count"));
+                    categoryData.add(category);
+                }
             }
         }
 
@@ -468,6 +450,108 @@ public class RevenueDAO {
         return summary;
     }
 
+    // paid_orders / completed_orders giữ nghĩa cũ của findByStatus: chỉ đơn hôm nay,
+    // "completed" là đơn đã hoàn thành, chưa thanh toán và có món (như FIND_COMPLETED_NOT_PAID_SQL)
+    private static final String SNAPSHOT_KPI_SQL = "SELECT " +
+            "(SELECT COUNT(*) FROM tables WHERE status IN ('occupied', 'ordering')) AS active_tables, " +
+            "(SELECT COUNT(*) FROM tables) AS total_tables, " +
+            "(SELECT COUNT(*) FROM menu_items) AS menu_items, " +
+            "(SELECT COUNT(*) FROM orders o WHERE o.status = 'paid' " +
+            "AND o.order_time >= ? AND o.order_time < ?) AS paid_orders, " +
+            "(SELECT COUNT(*) FROM orders o WHERE o.status = 'completed' " +
+            "AND o.order_time >= ? AND o.order_time < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM payments p WHERE p.order_id = o.id) " +
+            "AND EXISTS (SELECT 1 FROM order_items oi WHERE oi.order_id = o.id)) AS completed_orders";
+
+    private static final String SNAPSHOT_WEEK_SQL =
+            "SELECT DATE_FORMAT(date, '%Y-%m-%d') AS label, total_orders AS cnt, total_amount AS amount " +
+            "FROM revenue " +
+            "WHERE date >= DATE_SUB(CURDATE(), INTERVAL 6 DAY) AND date <= CURDATE()";
+
+    /** Tổng thanh toán theo (giờ, phương thức) trong một ngày */
+    // Từng thanh toán (không gộp) để RevenueAggregator khử trùng theo payments.id;
+    // một ngày chỉ vài trăm dòng, đọc bằng range scan trên index payment_time
+    static final String DAY_PAYMENTS_SQL =
+            "SELECT id, HOUR(payment_time) AS hour, payment_method, total_amount " +
+            "FROM payments " +
+            "WHERE payment_time >= ? AND payment_time < ?";
+
+    @FunctionalInterface
+    interface PaymentSink {
+        void accept(int paymentId, int hour, String paymentMethod, BigDecimal amount);
+    }
+
+    /**
+     * Đọc các thanh toán của một ngày (dùng để nạp/đối chiếu RevenueAggregator)
+     */
+    void loadPayments(LocalDate date, PaymentSink sink) throws SQLException {
+        try (Connection c = JDBCConnect.getJDBCConnection();
+             PreparedStatement ps = c.prepareStatement(DAY_PAYMENTS_SQL)) {
+            TimeRange.day(date).bindTimestamps(ps, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    sink.accept(rs.getInt("id"), rs.getInt("hour"), rs.getString("payment_method"),
+                            rs.getBigDecimal("total_amount"));
+                }
+            }
+        }
+    }
+
+    /**
+     * NEW: Toàn bộ số liệu dashboard. Số liệu doanh thu hôm nay đọc từ RevenueAggregator (O(1)),
+     * phần còn lại trong 2 round-trip trên cùng một kết nối: một dòng KPI (các subquery vô hướng)
+     * và chuỗi 7 ngày. Chi phí tỉ lệ với số KPI, không với số dòng orders/payments.
+     */
+    public DashboardSnapshot getDashboardSnapshot() throws SQLException {
+        int activeTables = 0, totalTables = 0, menuItems = 0, paidOrders = 0, completedOrders = 0;
+        Map<String, BigDecimal> weeklyRevenue = new LinkedHashMap<>();
+        Map<String, Integer> weeklyOrders = new LinkedHashMap<>();
+
+        // Initialize all 7 days with zero
+        LocalDate today = LocalDate.now();
+        for (int i = 6; i >= 0; i--) {
+            String date = today.minusDays(i).toString();
+            weeklyRevenue.put(date, BigDecimal.ZERO);
+            weeklyOrders.put(date, 0);
+        }
+
+        try (Connection c = JDBCConnect.getJDBCConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(SNAPSHOT_KPI_SQL)) {
+                TimeRange todayRange = TimeRange.day(today);
+                int index = todayRange.bindTimestamps(ps, 1);
+                todayRange.bindTimestamps(ps, index);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        activeTables = rs.getInt("active_tables");
+                        totalTables = rs.getInt("total_tables");
+                        menuItems = rs.getInt("menu_items");
+                        paidOrders = rs.getInt("paid_orders");
+                        completedOrders = rs.getInt("completed_orders");
+                    }
+                }
+            }
+
+            try (PreparedStatement ps = c.prepareStatement(SNAPSHOT_WEEK_SQL);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String label = rs.getString("label");
+                    BigDecimal amount = rs.getBigDecimal("amount");
+                    weeklyRevenue.put(label, amount != null ? amount : BigDecimal.ZERO);
+                    weeklyOrders.put(label, rs.getInt("cnt"));
+                }
+            }
+        }
+
+        RevenueAggregator aggregator = RevenueAggregator.get();
+        int hour = aggregator.getPeakHour();
+        String peakHour = hour >= 0 ? String.format("%02d:00-%02d:00", hour, hour + 1) : null;
+
+        return new DashboardSnapshot(aggregator.getTodayRevenue(), aggregator.getTodayOrders(),
+                aggregator.getAverageOrderValue(), activeTables, totalTables, menuItems,
+                paidOrders, completedOrders, peakHour,
+                aggregator.getPaymentMethodStats(), weeklyRevenue, weeklyOrders);
+    }
+
     /**
      * Khởi tạo dữ liệu revenue cho ngày hiện tại (nếu chưa có)
      */
@@ -491,7 +575,7 @@ public class RevenueDAO {
         // Then update it
         updateDailyRevenue(LocalDate.now(), amount);
 
-        System.out.println("📊 Revenue updated immediately: " + amount + " VND");
+        LOG.debug("📊 Revenue updated immediately: {} VND", amount);
     }
 
     /**
@@ -531,7 +615,7 @@ public class RevenueDAO {
              PreparedStatement ps = c.prepareStatement(sql)) {
             int deleted = ps.executeUpdate();
             if (deleted > 0) {
-                System.out.println("🧹 Cleaned " + deleted + " old revenue records");
+                LOG.debug("🧹 Cleaned {} old revenue records", deleted);
             }
         }
     }
@@ -540,46 +624,44 @@ public class RevenueDAO {
      * NEW: Get revenue comparison with previous period
      */
     public Map<String, Object> getRevenueComparison() throws SQLException {
-        String sql = "SELECT " +
-                "(SELECT COALESCE(SUM(total_amount), 0) FROM revenue WHERE date >= DATE_SUB(CURDATE(), INTERVAL 7 DAY)) as this_week, " +
-                "(SELECT COALESCE(SUM(total_amount), 0) FROM revenue WHERE date >= DATE_SUB(CURDATE(), INTERVAL 14 DAY) AND date < DATE_SUB(CURDATE(), INTERVAL 7 DAY)) as last_week, " +
-                "(SELECT COALESCE(SUM(total_amount), 0) FROM revenue WHERE MONTH(date) = MONTH(CURDATE()) AND YEAR(date) = YEAR(CURDATE())) as this_month, " +
-                "(SELECT COALESCE(SUM(total_amount), 0) FROM revenue WHERE MONTH(date) = MONTH(DATE_SUB(CURDATE(), INTERVAL 1 MONTH)) AND YEAR(date) = YEAR(DATE_SUB(CURDATE(), INTERVAL 1 MONTH))) as last_month";
-
         Map<String, Object> comparison = new LinkedHashMap<>();
+        YearMonth currentMonth = YearMonth.now();
 
         try (Connection c = JDBCConnect.getJDBCConnection();
-             PreparedStatement ps = c.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+             PreparedStatement ps = c.prepareStatement(REVENUE_COMPARISON_SQL)) {
 
-            if (rs.next()) {
-                BigDecimal thisWeek = rs.getBigDecimal("this_week");
-                BigDecimal lastWeek = rs.getBigDecimal("last_week");
-                BigDecimal thisMonth = rs.getBigDecimal("this_month");
-                BigDecimal lastMonth = rs.getBigDecimal("last_month");
-
-                comparison.put("this_week", thisWeek);
-                comparison.put("last_week", lastWeek);
-                comparison.put("this_month", thisMonth);
-                comparison.put("last_month", lastMonth);
-
-                // Calculate growth percentages
-                if (lastWeek.compareTo(BigDecimal.ZERO) > 0) {
-                    double weeklyGrowth = thisWeek.subtract(lastWeek)
-                            .divide(lastWeek, 4, BigDecimal.ROUND_HALF_UP)
-                            .multiply(BigDecimal.valueOf(100)).doubleValue();
-                    comparison.put("weekly_growth", weeklyGrowth);
-                } else {
-                    comparison.put("weekly_growth", 0.0);
-                }
+            int index = TimeRange.month(currentMonth).bindDates(ps, 1);
+            TimeRange.month(currentMonth.minusMonths(1)).bindDates(ps, index);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    BigDecimal thisWeek = rs.getBigDecimal("this_week");
+                    BigDecimal lastWeek = rs.getBigDecimal("last_week");
+                    BigDecimal thisMonth = rs.getBigDecimal("this_month");
+                    BigDecimal lastMonth = rs.getBigDecimal("last_month");
+
+                    comparison.put("this_week", thisWeek);
+                    comparison.put("last_week", lastWeek);
+                    comparison.put("this_month", thisMonth);
+                    comparison.put("last_month", lastMonth);
+
+                    // Calculate growth percentages
+                    if (lastWeek.compareTo(BigDecimal.ZERO) > 0) {
+                        double weeklyGrowth = thisWeek.subtract(lastWeek)
+                                .divide(lastWeek, 4, BigDecimal.ROUND_HALF_UP)
+                                .multiply(BigDecimal.valueOf(100)).doubleValue();
+                        comparison.put("weekly_growth", weeklyGrowth);
+                    } else {
+                        comparison.put("weekly_growth", 0.0);
+                    }
 
-                if (lastMonth.compareTo(BigDecimal.ZERO) > 0) {
-                    double monthlyGrowth = thisMonth.subtract(lastMonth)
-                            .divide(lastMonth, 4, BigDecimal.ROUND_HALF_UP)
-                            .multiply(BigDecimal.valueOf(100)).doubleValue();
-                    comparison.put("monthly_growth", monthlyGrowth);
-                } else {
-                    comparison.put("monthly_growth", 0.0);
+                    if (lastMonth.compareTo(BigDecimal.ZERO) > 0) {
+                        double monthlyGrowth = thisMonth.subtract(lastMonth)
+                                .divide(lastMonth, 4, BigDecimal.ROUND_HALF_UP)
+                                .multiply(BigDecimal.valueOf(100)).doubleValue();
+                        comparison.put("monthly_growth", monthlyGrowth);
+                    } else {
+                        comparison.put("monthly_growth", 0.0);
+                    }
                 }
             }
         }
@@ -611,16 +693,16 @@ public class RevenueDAO {
             int updated = ps.executeUpdate();
 
             if (updated > 0) {
-                System.out.println("✅ Revenue updated from payment: " + amount + " VND");
+                LOG.debug("✅ Revenue updated from payment: {} VND", amount);
             } else {
-                System.out.println("⚠️ WARNING: No revenue record updated for today");
+                LOG.warn("⚠️ WARNING: No revenue record updated for today");
                 // Try to create today's record if it doesn't exist
                 String insertSql = "INSERT INTO revenue (date, total_amount, total_orders) VALUES (CURDATE(), ?, 1)";
                 try (PreparedStatement insertPs = c.prepareStatement(insertSql)) {
                     insertPs.setBigDecimal(1, amount);
                     int inserted = insertPs.executeUpdate();
                     if (inserted > 0) {
-                        System.out.println("✅ Created new revenue record for today: " + amount + " VND");
+                        LOG.debug("✅ Created new revenue record for today: {} VND", amount);
                     }
                 }
             }
@@ -632,14 +714,14 @@ public class RevenueDAO {
      */
     public void notifyRevenueUpdate(BigDecimal amount, String paymentMethod) throws SQLException {
         updateRevenueFromPayment(amount);
-        System.out.println("📊 Dashboard notified of revenue update: " + amount + " VND via " + paymentMethod);
+        LOG.debug("📊 Dashboard notified of revenue update: {} VND via {}", amount, paymentMethod);
     }
 
     /**
      * ENHANCED: Force refresh all dashboard statistics for real-time updates
      */
     public void refreshDashboardStatistics() throws SQLException {
-        System.out.println("🔄 Refreshing all dashboard statistics...");
+        LOG.debug("🔄 Refreshing all dashboard statistics...");
 
         // Ensure today's revenue record exists
         initTodayRevenue();
@@ -649,9 +731,7 @@ public class RevenueDAO {
         int todayOrders = getTodayOrders();
         BigDecimal avgOrderValue = getAverageOrderValue();
 
-        System.out.println("📊 Current statistics - Revenue: " + todayRevenue +
-                ", Orders: " + todayOrders +
-                ", Avg Order: " + avgOrderValue);
+        LOG.debug("📊 Current statistics - Revenue: {}, Orders: {}, Avg Order: {}", todayRevenue, todayOrders, avgOrderValue);
     }
 
     /**
@@ -0,0 +1,275 @@
+package com.barmanagement.dao;
+
+import com.barmanagement.util.Log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Bảng tổng hợp doanh thu sales_hourly / item_sales_daily (migration V4).
+ *
+ * - Khi thanh toán: {@link #recordPayment} cộng dồn vào hai bảng trên CÙNG kết nối / transaction
+ *   của OrderDAO.processPayment, nên rollup luôn khớp với payments.
+ * - Báo cáo (RevenueDAO) đọc rollup thay vì join order_items / payments trên toàn bộ lịch sử.
+ * - {@link #rebuild} dựng lại rollup từ lịch sử theo từng khối ngày (mỗi khối một transaction),
+ *   tự chạy ở nền sau khi hiện màn hình đăng nhập nếu rollup còn thiếu ({@link #backfillIfMissingAsync}),
+ *   hoặc chạy tay khi nghi rollup bị lệch:
+ *   java com.barmanagement.dao.SalesRollupDAO --rebuild [from yyyy-MM-dd] [to yyyy-MM-dd] [--chunk-days N]
+ *
+ * Ngày/giờ tính theo thời điểm thanh toán (payments.payment_time).
+ */
+public class SalesRollupDAO {
+
+    private static final Log LOG = Log.get(SalesRollupDAO.class);
+
+    private static final int DEFAULT_CHUNK_DAYS = 7;
+
+    static final String UPSERT_HOURLY_SQL =
+            "INSERT INTO sales_hourly (sale_date, sale_hour, revenue, payment_count) " +
+            "SELECT DATE(p.payment_time), HOUR(p.payment_time), p.total_amount, 1 " +
+            "FROM payments p WHERE p.order_id = ? " +
+            "ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), payment_count = payment_count + 1";
+
+    static final String UPSERT_ITEMS_SQL =
+            "INSERT INTO item_sales_daily (sale_date, menu_item_id, quantity, revenue, order_count) " +
+            "SELECT DATE(p.payment_time), oi.menu_item_id, SUM(oi.quantity), SUM(oi.quantity * oi.price), 1 " +
+            "FROM payments p " +
+            "JOIN order_items oi ON oi.order_id = p.order_id " +
+            "WHERE p.order_id = ? " +
+            "GROUP BY DATE(p.payment_time), oi.menu_item_id " +
+            "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), " +
+            "revenue = revenue + VALUES(revenue), order_count = order_count + 1";
+
+    private static final String DELETE_HOURLY_SQL = "DELETE FROM sales_hourly WHERE sale_date >= ? AND sale_date < ?";
+
+    private static final String DELETE_ITEMS_SQL = "DELETE FROM item_sales_daily WHERE sale_date >= ? AND sale_date < ?";
+
+    // Tham số là hai mốc DATE như câu DELETE: MySQL so payment_time với 00:00 của ngày đó,
+    // nên khối xóa và khối tính lại luôn trùng nhau (vẫn range scan trên index payment_time)
+    static final String REBUILD_HOURLY_SQL =
+            "INSERT INTO sales_hourly (sale_date, sale_hour, revenue, payment_count) " +
+            "SELECT DATE(p.payment_time), HOUR(p.payment_time), SUM(p.total_amount), COUNT(*) " +
+            "FROM payments p " +
+            "WHERE p.payment_time >= ? AND p.payment_time < ? " +
+            "GROUP BY DATE(p.payment_time), HOUR(p.payment_time)";
+
+    static final String REBUILD_ITEMS_SQL =
+            "INSERT INTO item_sales_daily (sale_date, menu_item_id, quantity, revenue, order_count) " +
+            "SELECT DATE(p.payment_time), oi.menu_item_id, SUM(oi.quantity), SUM(oi.quantity * oi.price), " +
+            "COUNT(DISTINCT p.order_id) " +
+            "FROM payments p " +
+            "JOIN order_items oi ON oi.order_id = p.order_id " +
+            "WHERE p.payment_time >= ? AND p.payment_time < ? " +
+            "GROUP BY DATE(p.payment_time), oi.menu_item_id";
+
+    private static final String PAYMENT_DATE_RANGE_SQL =
+            "SELECT DATE(MIN(payment_time)), DATE(MAX(payment_time)) FROM payments";
+
+    // Backfill dựng từ ngày mới nhất về ngày cũ nhất, nên còn thiếu ngày thanh toán đầu tiên nghĩa là
+    // rollup chưa từng dựng hoặc lần backfill trước bị ngắt giữa chừng (thanh toán mới vẫn ghi vào hôm nay)
+    private static final String ROLLUP_MISSING_SQL =
+            "SELECT NOT EXISTS (SELECT 1 FROM sales_hourly WHERE sale_date = DATE(t.first_payment)) " +
+            "FROM (SELECT MIN(payment_time) AS first_payment FROM payments) t " +
+            "WHERE t.first_payment IS NOT NULL";
+
+    /**
+     * Cộng một đơn vừa thanh toán vào rollup. Gọi sau khi đã INSERT payments, trong cùng transaction.
+     */
+    static void recordPayment(Connection conn, int orderId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(UPSERT_HOURLY_SQL)) {
+            ps.setInt(1, orderId);
+            if (ps.executeUpdate() == 0) {
+                throw new SQLException("No payment found for order #" + orderId + " when updating sales rollup");
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(UPSERT_ITEMS_SQL)) {
+            ps.setInt(1, orderId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Dựng lại rollup cho [from, toInclusive] từ payments + order_items.
+     * Mỗi khối chunkDays ngày: xóa rollup của khối rồi tính lại, trong một transaction,
+     * để không giữ khóa lâu và chạy lại được nếu bị ngắt giữa chừng.
+     *
+     * @return số khối đã dựng lại
+     */
+    public int rebuild(LocalDate from, LocalDate toInclusive, int chunkDays) throws SQLException {
+        if (chunkDays < 1) chunkDays = DEFAULT_CHUNK_DAYS;
+        LocalDate end = toInclusive.plusDays(1);
+        int chunks = 0;
+
+        try (Connection conn = JDBCConnect.getJDBCConnection()) {
+            if (conn == null) {
+                throw new SQLException("Cannot obtain database connection");
+            }
+            boolean oldAutoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                for (LocalDate start = from; start.isBefore(end); start = start.plusDays(chunkDays)) {
+                    LocalDate chunkEnd = start.plusDays(chunkDays).isBefore(end) ? start.plusDays(chunkDays) : end;
+                    TimeRange range = TimeRange.days(start, chunkEnd.minusDays(1));
+                    long begin = System.nanoTime();
+                    try {
+                        int hours = rebuildChunk(conn, range);
+                        conn.commit();
+                        chunks++;
+                        LOG.atInfo()
+                                .with("range", range)
+                                .with("hourRows", hours)
+                                .with("latencyMs", (System.nanoTime() - begin) / 1_000_000)
+                                .log("🔁 Rebuilt sales rollup chunk");
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(oldAutoCommit);
+            }
+        }
+        return chunks;
+    }
+
+    /** Dựng lại toàn bộ lịch sử thanh toán */
+    public int rebuildAll(int chunkDays) throws SQLException {
+        LocalDate[] range = paymentDateRange();
+        if (range == null) {
+            LOG.info("No payments - nothing to rebuild");
+            return 0;
+        }
+        return rebuild(range[0], range[1], chunkDays);
+    }
+
+    /**
+     * Dựng rollup từ lịch sử nếu chưa có dữ liệu cho ngày thanh toán đầu tiên:
+     * V4 chỉ tạo bảng rỗng, còn báo cáo chỉ đọc rollup. Dựng từ khối mới nhất về cũ nhất
+     * để báo cáo gần đây có số liệu trước; bị ngắt giữa chừng thì lần khởi động sau dựng lại.
+     *
+     * @return số khối đã dựng lại (0 nếu không cần)
+     */
+    public int backfillIfMissing() throws SQLException {
+        try (Connection conn = JDBCConnect.getJDBCConnection();
+             PreparedStatement ps = conn.prepareStatement(ROLLUP_MISSING_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next() || !rs.getBoolean(1)) {
+                return 0;
+            }
+        }
+        LocalDate[] range = paymentDateRange();
+        if (range == null) {
+            return 0;
+        }
+        LOG.info("🔁 Sales rollups are missing - rebuilding from payment history");
+        int chunks = 0;
+        for (LocalDate end = range[1]; !end.isBefore(range[0]); end = end.minusDays(DEFAULT_CHUNK_DAYS)) {
+            LocalDate start = end.minusDays(DEFAULT_CHUNK_DAYS - 1);
+            chunks += rebuild(start.isBefore(range[0]) ? range[0] : start, end, DEFAULT_CHUNK_DAYS);
+        }
+        return chunks;
+    }
+
+    /**
+     * NEW: Chạy {@link #backfillIfMissing()} trên thread nền. Gọi sau khi cửa sổ đăng nhập đã hiện:
+     * dựng lại cả lịch sử có thể mất vài phút, trong lúc đó báo cáo theo rollup còn thiếu ngày cũ.
+     */
+    public static void backfillIfMissingAsync() {
+        Thread t = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                int chunks = new SalesRollupDAO().backfillIfMissing();
+                if (chunks > 0) {
+                    LOG.atInfo()
+                            .with("chunks", chunks)
+                            .with("latencyMs", (System.nanoTime() - start) / 1_000_000)
+                            .log("✅ Sales rollups backfilled");
+                }
+            } catch (SQLException e) {
+                LOG.error("❌ Sales rollup backfill failed", e);
+            }
+        }, "rollup-backfill");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** @return số dòng sales_hourly được ghi */
+    private int rebuildChunk(Connection conn, TimeRange range) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(DELETE_HOURLY_SQL)) {
+            range.bindDates(ps, 1);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(DELETE_ITEMS_SQL)) {
+            range.bindDates(ps, 1);
+            ps.executeUpdate();
+        }
+        int hours;
+        try (PreparedStatement ps = conn.prepareStatement(REBUILD_HOURLY_SQL)) {
+            range.bindDates(ps, 1);
+            hours = ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(REBUILD_ITEMS_SQL)) {
+            range.bindDates(ps, 1);
+            ps.executeUpdate();
+        }
+        return hours;
+    }
+
+    /** [ngày thanh toán đầu tiên, ngày thanh toán cuối cùng] hoặc null nếu chưa có thanh toán */
+    private LocalDate[] paymentDateRange() throws SQLException {
+        try (Connection conn = JDBCConnect.getJDBCConnection();
+             PreparedStatement ps = conn.prepareStatement(PAYMENT_DATE_RANGE_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            // getObject(LocalDate) không bị đổi múi giờ như getTimestamp (serverTimezone=UTC)
+            LocalDate first = rs.next() ? rs.getObject(1, LocalDate.class) : null;
+            if (first == null) {
+                return null;
+            }
+            return new LocalDate[]{first, rs.getObject(2, LocalDate.class)};
+        }
+    }
+
+    /**
+     * Dựng lại rollup từ dòng lệnh.
+     * --rebuild                       toàn bộ lịch sử
+     * --rebuild 2025-01-01 2025-03-31 một khoảng ngày (cả hai ngày được tính)
+     * --chunk-days N                  số ngày mỗi transaction (mặc định 7)
+     */
+    public static void main(String[] args) throws Exception {
+        SchemaMigrator.get().migrate();
+
+        LocalDate from = null;
+        LocalDate to = null;
+        int chunkDays = DEFAULT_CHUNK_DAYS;
+        boolean rebuild = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rebuild":
+                    rebuild = true;
+                    if (i + 2 < args.length && !args[i + 1].startsWith("--")) {
+                        from = LocalDate.parse(args[++i]);
+                        to = LocalDate.parse(args[++i]);
+                    }
+                    break;
+                case "--chunk-days":
+                    chunkDays = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (!rebuild) {
+            System.out.println("Usage: SalesRollupDAO --rebuild [from to] [--chunk-days N]");
+            return;
+        }
+
+        SalesRollupDAO dao = new SalesRollupDAO();
+        long start = System.nanoTime();
+        int chunks = from != null ? dao.rebuild(from, to, chunkDays) : dao.rebuildAll(chunkDays);
+        System.out.println("✅ Rebuilt " + chunks + " chunk(s) in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        Log.flush();
+    }
+}
@@ -0,0 +1,358 @@
+package com.barmanagement.dao;
+
+import com.barmanagement.config.DatabaseConfig;
+import com.barmanagement.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Chạy các migration SQL đánh số khi khởi động và ghi lại vào bảng schema_history.
+ *
+ * Migration nằm trong classpath tại db/migration/V{n}__{mô_tả}.sql và được liệt kê trong
+ * {@link #MIGRATIONS} (classpath trong jar không liệt kê được thư mục). Mỗi file chạy đúng một lần,
+ * theo thứ tự version. DDL của MySQL tự commit nên migration được viết để chạy lại an toàn:
+ * lỗi "cột/index đã tồn tại" được bỏ qua (database đã chạy tay các script add_*.sql cũ).
+ *
+ * Nhiều máy khởi động cùng lúc được xếp hàng bằng GET_LOCK. Sau khi migrate,
+ * {@link #verifyIndexes()} kiểm tra các index mà truy vấn nóng cần; thiếu index thì báo lỗi
+ * để ứng dụng không chạy với bảng quét toàn bộ.
+ */
+public final class SchemaMigrator {
+
+    private static final Log LOG = Log.get(SchemaMigrator.class);
+
+    /** Theo thứ tự version; thêm file mới vào cuối, không sửa file đã phát hành */
+    private static final String[] MIGRATIONS = {
+            "V1__add_discount_percent.sql",
+            "V2__create_table_layout.sql",
+            "V3__hot_query_indexes.sql",
+            "V4__sales_rollups.sql",
+            "V5__widen_password_hash.sql",
+    };
+
+    private static final String MIGRATION_PATH = "/db/migration/";
+    private static final String LOCK_NAME = "bar_management.schema_migration";
+
+    // MySQL error codes coi như "đã áp dụng"
+    private static final int ER_DUP_FIELDNAME = 1060;
+    private static final int ER_DUP_KEYNAME = 1061;
+
+    private static final String CREATE_HISTORY_SQL =
+            "CREATE TABLE IF NOT EXISTS schema_history (" +
+            "    version INT NOT NULL PRIMARY KEY," +
+            "    description VARCHAR(200) NOT NULL," +
+            "    script VARCHAR(200) NOT NULL," +
+            "    checksum BIGINT NOT NULL," +
+            "    applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+            "    execution_ms INT NOT NULL" +
+            ")";
+
+    private static final String SELECT_HISTORY_SQL = "SELECT version, checksum FROM schema_history";
+
+    private static final String INSERT_HISTORY_SQL =
+            "INSERT INTO schema_history (version, description, script, checksum, execution_ms) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SELECT_INDEX_COLUMNS_SQL =
+            "SELECT table_name, index_name, column_name FROM information_schema.statistics " +
+            "WHERE table_schema = DATABASE() ORDER BY table_name, index_name, seq_in_index";
+
+    /** Index bắt buộc: bảng + danh sách cột (index nào có các cột này ở đầu là đạt) */
+    public static final class RequiredIndex {
+        public final String table;
+        public final List<String> columns;
+
+        RequiredIndex(String table, String... columns) {
+            this.table = table;
+            this.columns = Arrays.asList(columns);
+        }
+
+        @Override
+        public String toString() {
+            return table + "(" + String.join(", ", columns) + ")";
+        }
+    }
+
+    private static final List<RequiredIndex> REQUIRED_INDEXES = Arrays.asList(
+            new RequiredIndex("orders", "status", "order_time"),
+            new RequiredIndex("orders", "table_id", "status", "order_time"),
+            new RequiredIndex("payments", "order_id"),
+            new RequiredIndex("payments", "payment_time"),
+            new RequiredIndex("order_items", "order_id", "menu_item_id"),
+            new RequiredIndex("revenue", "date"),
+            new RequiredIndex("sales_hourly", "sale_date", "sale_hour"),
+            new RequiredIndex("item_sales_daily", "sale_date", "menu_item_id")
+    );
+
+    /** Một file migration đã đọc */
+    private static final class Migration {
+        final int version;
+        final String description;
+        final String script;
+        final String sql;
+        final long checksum;
+
+        Migration(int version, String description, String script, String sql) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            this.sql = sql;
+            CRC32 crc = new CRC32();
+            crc.update(sql.getBytes(StandardCharsets.UTF_8));
+            this.checksum = crc.getValue();
+        }
+    }
+
+    private static final SchemaMigrator INSTANCE = new SchemaMigrator();
+
+    public static SchemaMigrator get() {
+        return INSTANCE;
+    }
+
+    private volatile boolean migrated = false;
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Áp dụng migration còn thiếu (nếu schema.migrate=true) rồi kiểm tra index
+     * (nếu schema.verifyIndexes=true). Gọi nhiều lần cũng chỉ chạy một lần.
+     *
+     * @throws SQLException nếu migration lỗi hoặc thiếu index bắt buộc
+     */
+    public synchronized void migrateAndVerify() throws SQLException {
+        if (migrated) return;
+        DatabaseConfig config = DatabaseConfig.get();
+        if (config.getBoolean("schema.migrate", true)) {
+            migrate();
+        }
+        if (config.getBoolean("schema.verifyIndexes", true)) {
+            List<RequiredIndex> missing = verifyIndexes();
+            if (!missing.isEmpty()) {
+                throw new SQLException("Missing required indexes: " + missing);
+            }
+        }
+        migrated = true;
+    }
+
+    /**
+     * Áp dụng các migration chưa có trong schema_history.
+     *
+     * @return số migration vừa áp dụng
+     */
+    public int migrate() throws SQLException {
+        List<Migration> migrations = loadMigrations();
+        try (Connection conn = ConnectionProvider.get().getConnection()) {
+            acquireLock(conn);
+            try {
+                try (Statement st = conn.createStatement()) {
+                    st.execute(CREATE_HISTORY_SQL);
+                }
+                Map<Integer, Long> applied = loadHistory(conn);
+
+                int count = 0;
+                for (Migration m : migrations) {
+                    Long checksum = applied.get(m.version);
+                    if (checksum != null) {
+                        if (checksum != m.checksum) {
+                            LOG.warn("⚠️ Migration V{} ({}) đã bị sửa sau khi áp dụng - bỏ qua", m.version, m.script);
+                        }
+                        continue;
+                    }
+                    apply(conn, m);
+                    count++;
+                }
+                if (count > 0) {
+                    LOG.info("✅ Schema migrated: {} migration(s) applied", count);
+                }
+                return count;
+            } finally {
+                releaseLock(conn);
+            }
+        }
+    }
+
+    /**
+     * @return các index bắt buộc chưa có (rỗng = đủ)
+     */
+    public List<RequiredIndex> verifyIndexes() throws SQLException {
+        // table -> (index -> cột theo thứ tự)
+        Map<String, Map<String, List<String>>> indexes = new HashMap<>();
+        try (Connection conn = ConnectionProvider.get().getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(SELECT_INDEX_COLUMNS_SQL)) {
+            while (rs.next()) {
+                indexes.computeIfAbsent(rs.getString(1).toLowerCase(), k -> new LinkedHashMap<>())
+                        .computeIfAbsent(rs.getString(2), k -> new ArrayList<>())
+                        .add(rs.getString(3).toLowerCase());
+            }
+        }
+
+        List<RequiredIndex> missing = new ArrayList<>();
+        for (RequiredIndex required : REQUIRED_INDEXES) {
+            if (!isCovered(required, indexes.get(required.table))) {
+                missing.add(required);
+            }
+        }
+        if (missing.isEmpty()) {
+            LOG.info("✅ Verified {} required indexes", REQUIRED_INDEXES.size());
+        } else {
+            LOG.error("❌ Missing indexes: {}", missing);
+        }
+        return missing;
+    }
+
+    public static List<RequiredIndex> getRequiredIndexes() {
+        return REQUIRED_INDEXES;
+    }
+
+    // ===== Nội bộ =====
+
+    private static boolean isCovered(RequiredIndex required, Map<String, List<String>> tableIndexes) {
+        if (tableIndexes == null) return false;
+        for (List<String> columns : tableIndexes.values()) {
+            if (columns.size() >= required.columns.size()
+                    && columns.subList(0, required.columns.size()).equals(required.columns)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void apply(Connection conn, Migration m) throws SQLException {
+        LOG.info("🔧 Applying migration V{}: {}", m.version, m.description);
+        long start = System.currentTimeMillis();
+        try (Statement st = conn.createStatement()) {
+            for (String sql : splitStatements(m.sql)) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    if (e.getErrorCode() == ER_DUP_FIELDNAME || e.getErrorCode() == ER_DUP_KEYNAME) {
+                        LOG.debug("   ↪ đã có sẵn, bỏ qua: {}", e.getMessage());
+                    } else {
+                        throw new SQLException("Migration V" + m.version + " (" + m.script + ") failed at: " + sql, e);
+                    }
+                }
+            }
+        }
+        int elapsed = (int) (System.currentTimeMillis() - start);
+
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_HISTORY_SQL)) {
+            ps.setInt(1, m.version);
+            ps.setString(2, m.description);
+            ps.setString(3, m.script);
+            ps.setLong(4, m.checksum);
+            ps.setInt(5, elapsed);
+            ps.executeUpdate();
+        }
+    }
+
+    private static Map<Integer, Long> loadHistory(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(SELECT_HISTORY_SQL)) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, 60)")) {
+            ps.setString(1, LOCK_NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for schema migration lock");
+                }
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            LOG.warn("⚠️ Cannot release migration lock: {}", e.getMessage());
+        }
+    }
+
+    private static List<Migration> loadMigrations() throws SQLException {
+        List<Migration> list = new ArrayList<>(MIGRATIONS.length);
+        int lastVersion = 0;
+        for (String script : MIGRATIONS) {
+            int sep = script.indexOf("__");
+            if (!script.startsWith("V") || sep < 0 || !script.endsWith(".sql")) {
+                throw new SQLException("Invalid migration name: " + script);
+            }
+            int version = Integer.parseInt(script.substring(1, sep));
+            if (version <= lastVersion) {
+                throw new SQLException("Migrations out of order at " + script);
+            }
+            lastVersion = version;
+            String description = script.substring(sep + 2, script.length() - 4).replace('_', ' ');
+            list.add(new Migration(version, description, script, readResource(MIGRATION_PATH + script)));
+        }
+        return list;
+    }
+
+    private static String readResource(String path) throws SQLException {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(path)) {
+            if (in == null) {
+                throw new SQLException("Migration not found on classpath: " + path);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8.name());
+        } catch (IOException e) {
+            throw new SQLException("Cannot read migration " + path, e);
+        }
+    }
+
+    /** Tách câu lệnh theo dấu ';' ở cuối dòng, bỏ dòng chú thích "--" (migration không chứa ';' trong chuỗi) */
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) continue;
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String sql = current.toString().trim();
+                statements.add(sql.substring(0, sql.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    /** Chạy tay: áp dụng migration và in kết quả kiểm tra index */
+    public static void main(String[] args) throws SQLException {
+        SchemaMigrator migrator = SchemaMigrator.get();
+        migrator.migrate();
+        List<RequiredIndex> missing = migrator.verifyIndexes();
+        System.out.println(missing.isEmpty() ? "Schema OK" : "Missing: " + missing);
+    }
+}
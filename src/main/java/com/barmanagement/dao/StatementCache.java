@@ -0,0 +1,169 @@
+package com.barmanagement.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache PreparedStatement cho một kết nối vật lý trong pool.
+ *
+ * DAO vẫn gọi prepareStatement(sql) + close() như cũ; close() trên statement trả về
+ * chỉ xóa tham số và đưa statement lại vào cache, nên lần gọi sau với cùng câu SQL
+ * không phải prepare lại (kể cả round-trip COM_STMT_PREPARE khi dùng server-side statements).
+ * FIXED: fetchSize / maxRows / queryTimeout cũng được trả về giá trị ban đầu, để cài đặt của
+ * người dùng trước (vd. streaming fetchSize=Integer.MIN_VALUE) không lọt sang lần dùng sau.
+ */
+final class StatementCache {
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+
+    private final int maxSize;
+    private final LinkedHashMap<String, PreparedStatement> idle;
+    // Giá trị mặc định của statement mới trên kết nối này (đọc ở lần prepare đầu tiên)
+    private boolean defaultsKnown = false;
+    private int defaultFetchSize;
+    private int defaultMaxRows;
+    private int defaultQueryTimeout;
+
+    StatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.idle = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Lấy statement từ cache hoặc prepare mới.
+     * @param autoGeneratedKeys -1 nếu dùng prepareStatement(sql)
+     */
+    synchronized PreparedStatement prepare(Connection physical, String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys < 0 ? sql : autoGeneratedKeys + "|" + sql;
+
+        // Lấy ra khỏi map: cùng một statement không thể được dùng hai lần cùng lúc
+        PreparedStatement ps = idle.remove(key);
+        if (ps != null && !ps.isClosed()) {
+            HITS.incrementAndGet();
+        } else {
+            MISSES.incrementAndGet();
+            ps = autoGeneratedKeys < 0
+                    ? physical.prepareStatement(sql)
+                    : physical.prepareStatement(sql, autoGeneratedKeys);
+            if (!defaultsKnown) {
+                defaultFetchSize = ps.getFetchSize();
+                defaultMaxRows = ps.getMaxRows();
+                defaultQueryTimeout = ps.getQueryTimeout();
+                defaultsKnown = true;
+            }
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new CachedStatementHandler(key, ps));
+    }
+
+    private synchronized void giveBack(String key, PreparedStatement ps) {
+        try {
+            ps.clearParameters();
+            ps.clearWarnings();
+            if (ps.getFetchSize() != defaultFetchSize) ps.setFetchSize(defaultFetchSize);
+            if (ps.getMaxRows() != defaultMaxRows) ps.setMaxRows(defaultMaxRows);
+            if (ps.getQueryTimeout() != defaultQueryTimeout) ps.setQueryTimeout(defaultQueryTimeout);
+        } catch (SQLException e) {
+            closeQuietly(ps);
+            return;
+        }
+
+        PreparedStatement previous = idle.put(key, ps);
+        if (previous != null && previous != ps) {
+            closeQuietly(previous);
+        }
+        if (idle.size() > maxSize) {
+            Iterator<Map.Entry<String, PreparedStatement>> it = idle.entrySet().iterator();
+            Map.Entry<String, PreparedStatement> eldest = it.next();
+            it.remove();
+            EVICTIONS.incrementAndGet();
+            closeQuietly(eldest.getValue());
+        }
+    }
+
+    /** Đóng toàn bộ statement khi kết nối vật lý bị hủy */
+    synchronized void closeAll() {
+        List<PreparedStatement> all = new ArrayList<>(idle.values());
+        idle.clear();
+        for (PreparedStatement ps : all) {
+            closeQuietly(ps);
+        }
+    }
+
+    synchronized int size() {
+        return idle.size();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    static long getHitCount() { return HITS.get(); }
+    static long getMissCount() { return MISSES.get(); }
+    static long getEvictionCount() { return EVICTIONS.get(); }
+
+    static double getHitRatio() {
+        long hits = HITS.get();
+        long total = hits + MISSES.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private final class CachedStatementHandler implements InvocationHandler {
+        private final String key;
+        private final PreparedStatement ps;
+        private boolean closed = false;
+
+        CachedStatementHandler(String key, PreparedStatement ps) {
+            this.key = key;
+            this.ps = ps;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        giveBack(key, ps);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || ps.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + ps + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement đã được đóng");
+            }
+            try {
+                return method.invoke(ps, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
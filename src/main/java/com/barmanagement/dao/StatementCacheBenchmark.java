@@ -0,0 +1,94 @@
+package com.barmanagement.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Micro-benchmark đo độ trễ findById / findItems / calcTotal của OrderDAO
+ * khi tắt và bật cache PreparedStatement trên connection pool.
+ * Lượt "uncached" tắt cả cache của pool lẫn cachePrepStmts của Connector/J (kết nối được mở lại),
+ * nên mỗi lần gọi đều prepare thật.
+ *
+ * Chạy: java com.barmanagement.dao.StatementCacheBenchmark [orderId] [iterations]
+ * (mặc định lấy đơn hàng mới nhất, 2000 lần lặp). Cần database đang chạy.
+ */
+public class StatementCacheBenchmark {
+
+    private static final int WARMUP = 200;
+
+    @FunctionalInterface
+    private interface DaoCall {
+        void run() throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        OrderDAO dao = new OrderDAO();
+        int orderId = args.length > 0 ? Integer.parseInt(args[0]) : findLatestOrderId();
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        if (orderId <= 0) {
+            System.err.println("Không có đơn hàng nào để benchmark");
+            return;
+        }
+
+        ConnectionProvider pool = ConnectionProvider.get();
+        System.out.println("=== STATEMENT CACHE BENCHMARK (order #" + orderId + ", " + iterations + " iterations) ===");
+
+        // Lần gọi đầu tiên: bao gồm mở kết nối + prepare
+        long start = System.nanoTime();
+        dao.findById(orderId);
+        System.out.printf("First call (cold connection)  : %8.3f ms%n", (System.nanoTime() - start) / 1_000_000.0);
+
+        DaoCall[] calls = {
+                () -> dao.findById(orderId),
+                () -> dao.findItems(orderId),
+                () -> dao.calcTotal(orderId)
+        };
+        String[] names = {"findById", "findItems", "calcTotal"};
+
+        for (int i = 0; i < calls.length; i++) {
+            pool.setStatementCacheEnabled(false);
+            double[] uncached = measure(calls[i], iterations);
+            pool.setStatementCacheEnabled(true);
+            double[] cached = measure(calls[i], iterations);
+
+            System.out.printf("%-10s uncached p50=%.3fms p99=%.3fms avg=%.3fms | cached p50=%.3fms p99=%.3fms avg=%.3fms%n",
+                    names[i], uncached[0], uncached[1], uncached[2], cached[0], cached[1], cached[2]);
+        }
+
+        System.out.println(pool.getStatsSummary());
+        pool.shutdown();
+    }
+
+    /** @return {p50, p99, avg} tính bằng mili-giây */
+    private static double[] measure(DaoCall call, int iterations) throws SQLException {
+        for (int i = 0; i < WARMUP; i++) {
+            call.run();
+        }
+        long[] samples = new long[iterations];
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            long t0 = System.nanoTime();
+            call.run();
+            samples[i] = System.nanoTime() - t0;
+            total += samples[i];
+        }
+        Arrays.sort(samples);
+        return new double[]{
+                samples[iterations / 2] / 1_000_000.0,
+                samples[Math.min(iterations - 1, (int) (iterations * 0.99))] / 1_000_000.0,
+                total / (double) iterations / 1_000_000.0
+        };
+    }
+
+    private static int findLatestOrderId() throws SQLException {
+        try (Connection conn = JDBCConnect.getJDBCConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT MAX(id) FROM orders");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.barmanagement.dao;
 
 import com.barmanagement.model.Table;
+import com.barmanagement.model.TableLayout;
 import java.sql.*;
 import java.util.*;
 
@@ -67,8 +68,9 @@ public class TableDAO {
         try (Connection c = JDBCConnect.getJDBCConnection()) {
             // 1) Chặn nếu có đơn TRONG NGÀY
             try (PreparedStatement checkToday = c.prepareStatement(
-                    "SELECT EXISTS(SELECT 1 FROM orders WHERE table_id = ? AND DATE(order_time) = CURDATE())")) {
+                    "SELECT EXISTS(SELECT 1 FROM orders WHERE table_id = ? AND order_time >= ? AND order_time < ?)")) {
                 checkToday.setInt(1, id);
+                TimeRange.today().bindTimestamps(checkToday, 2);
                 try (ResultSet rs = checkToday.executeQuery()) {
                     if (rs.next() && rs.getInt(1) == 1) {
                         throw new SQLException("Không thể xóa bàn vì trong ngày có đơn hàng.");
@@ -126,4 +128,31 @@ public class TableDAO {
             ps.executeUpdate();
         }
     }
+
+    /** Vị trí đã lưu của các bàn trên sơ đồ (xem add_table_layout.sql) */
+    public Map<Integer, TableLayout> findLayouts() throws SQLException {
+        String sql = "SELECT table_id, pos_x, pos_y FROM table_layout";
+        try (Connection c = JDBCConnect.getJDBCConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            Map<Integer, TableLayout> map = new HashMap<>();
+            while (rs.next()) {
+                TableLayout l = new TableLayout(rs.getInt("table_id"), rs.getDouble("pos_x"), rs.getDouble("pos_y"));
+                map.put(l.getTableId(), l);
+            }
+            return map;
+        }
+    }
+
+    public void saveLayout(TableLayout l) throws SQLException {
+        String sql = "INSERT INTO table_layout(table_id, pos_x, pos_y) VALUES(?,?,?) " +
+                "ON DUPLICATE KEY UPDATE pos_x=VALUES(pos_x), pos_y=VALUES(pos_y)";
+        try (Connection c = JDBCConnect.getJDBCConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, l.getTableId());
+            ps.setDouble(2, l.getX());
+            ps.setDouble(3, l.getY());
+            ps.executeUpdate();
+        }
+    }
 }
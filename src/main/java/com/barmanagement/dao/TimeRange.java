@@ -0,0 +1,90 @@
+package com.barmanagement.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * Khoảng thời gian nửa mở [start, end) để lọc cột thời gian mà vẫn dùng được index.
+ *
+ * Thay cho DATE(order_time) = CURDATE() / YEAR(date) = ?: bọc cột trong hàm khiến MySQL
+ * phải quét toàn bảng, còn "order_time >= ? AND order_time < ?" là range scan trên index.
+ * Mốc được tính một lần mỗi lần gọi DAO theo đồng hồ của ứng dụng.
+ *
+ * Mốc được gán dạng LocalDate/LocalDateTime (setObject): order_time/payment_time ghi bằng NOW() là giờ
+ * địa phương, còn URL kết nối có serverTimezone=UTC nên setTimestamp/setDate sẽ bị Connector/J đổi
+ * giờ máy sang UTC và lệch cả khoảng (ở +07:00 "hôm nay" thành 17:00 hôm qua - 17:00 hôm nay).
+ * Connector/J gửi nguyên giá trị LocalDate/LocalDateTime, không đổi múi giờ.
+ */
+public final class TimeRange {
+
+    /** Ngày đầu tiên (bao gồm) */
+    public final LocalDate from;
+    /** Ngày kết thúc (không bao gồm) */
+    public final LocalDate until;
+
+    private TimeRange(LocalDate from, LocalDate until) {
+        this.from = from;
+        this.until = until;
+    }
+
+    public static TimeRange today() {
+        return day(LocalDate.now());
+    }
+
+    public static TimeRange day(LocalDate date) {
+        return new TimeRange(date, date.plusDays(1));
+    }
+
+    /** Từ from đến to, cả hai ngày đều được tính */
+    public static TimeRange days(LocalDate from, LocalDate toInclusive) {
+        return new TimeRange(from, toInclusive.plusDays(1));
+    }
+
+    public static TimeRange month(YearMonth month) {
+        return new TimeRange(month.atDay(1), month.plusMonths(1).atDay(1));
+    }
+
+    public static TimeRange year(int year) {
+        return new TimeRange(LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1));
+    }
+
+    /** 00:00 của ngày đầu tiên; gán bằng setObject, không dùng setTimestamp */
+    public LocalDateTime startDateTime() {
+        return from.atStartOfDay();
+    }
+
+    /** 00:00 của ngày kết thúc (không bao gồm) */
+    public LocalDateTime endDateTime() {
+        return until.atStartOfDay();
+    }
+
+    /**
+     * Gán hai tham số cho "col >= ? AND col < ?" trên cột DATETIME/TIMESTAMP
+     *
+     * @return chỉ số tham số tiếp theo
+     */
+    public int bindTimestamps(PreparedStatement ps, int index) throws SQLException {
+        ps.setObject(index, startDateTime());
+        ps.setObject(index + 1, endDateTime());
+        return index + 2;
+    }
+
+    /**
+     * Gán hai tham số cho "col >= ? AND col < ?" trên cột DATE
+     *
+     * @return chỉ số tham số tiếp theo
+     */
+    public int bindDates(PreparedStatement ps, int index) throws SQLException {
+        ps.setObject(index, from);
+        ps.setObject(index + 1, until);
+        return index + 2;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + from + ", " + until + ")";
+    }
+}
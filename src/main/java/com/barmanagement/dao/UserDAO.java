@@ -1,32 +1,78 @@
 package com.barmanagement.dao;
 
-import com.barmanagement.config.JDBCConfig;
 import com.barmanagement.model.User;
+import com.barmanagement.util.CredentialService;
+import com.barmanagement.util.Log;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 
 public class UserDAO {
-    public User checkLogin(String username, String password) {
-        String sql = "SELECT * FROM users WHERE username = ? AND password = ?";
-        try (Connection conn = JDBCConnect.getJDBCConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, username);
-            stmt.setString(2, password);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return new User(
-                        rs.getInt("id"),
-                        rs.getString("username"),
-                        rs.getString("password"),
-                        rs.getString("full_name"),
-                        rs.getString("role")
-                );
+
+    private static final Log LOG = Log.get(UserDAO.class);
+
+    private static final String FIND_BY_USERNAME_SQL =
+            "SELECT id, username, password, full_name, role FROM users WHERE username = ?";
+
+    // Chỉ ghi khi hash chưa bị đổi ở nơi khác kể từ lúc đọc
+    private static final String REHASH_SQL =
+            "UPDATE users SET password = ? WHERE id = ? AND password = ?";
+
+    /**
+     * FIXED: Không so sánh mật khẩu thô trong SQL nữa. Tìm theo username rồi kiểm tra bằng
+     * {@link CredentialService}; hash cũ/yếu hơn cấu hình được băm lại ngay khi đăng nhập đúng.
+     * Trả về null nếu sai tên hoặc mật khẩu.
+     */
+    public User checkLogin(String username, String password) throws SQLException {
+        CredentialService credentials = CredentialService.get();
+        try (Connection conn = JDBCConnect.getJDBCConnection()) {
+            User user = null;
+            try (PreparedStatement stmt = conn.prepareStatement(FIND_BY_USERNAME_SQL)) {
+                stmt.setString(1, username);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        user = new User(
+                                rs.getInt("id"),
+                                rs.getString("username"),
+                                rs.getString("password"),
+                                rs.getString("full_name"),
+                                rs.getString("role")
+                        );
+                    }
+                }
+            }
+
+            if (user == null) {
+                // Cùng thời gian phản hồi như sai mật khẩu, không lộ tên đăng nhập có tồn tại hay không
+                credentials.verifyDummy(password);
+                return null;
+            }
+
+            CredentialService.Verification result = credentials.verify(password, user.getPassword());
+            if (!result.isValid()) {
+                return null;
+            }
+            if (result.needsRehash()) {
+                rehash(conn, user, credentials.hash(password));
+            }
+            return user;
+        }
+    }
+
+    private void rehash(Connection conn, User user, String newHash) {
+        try (PreparedStatement stmt = conn.prepareStatement(REHASH_SQL)) {
+            stmt.setString(1, newHash);
+            stmt.setInt(2, user.getId());
+            stmt.setString(3, user.getPassword());
+            if (stmt.executeUpdate() == 1) {
+                user.setPassword(newHash);
+                LOG.atInfo().with("userId", user.getId()).log("🔐 Password hash upgraded on login");
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (SQLException e) {
+            // Đăng nhập vẫn thành công, lần sau thử lại
+            LOG.atWarn().with("userId", user.getId()).cause(e).log("⚠️ Password rehash failed");
         }
-        return null;
     }
 }
@@ -0,0 +1,78 @@
+package com.barmanagement.model;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ảnh chụp bất biến toàn bộ số liệu dashboard tại một thời điểm.
+ * Được RevenueDAO.getDashboardSnapshot() tải trong 2 round-trip, controller chỉ việc hiển thị.
+ */
+public final class DashboardSnapshot {
+
+    private final BigDecimal todayRevenue;
+    private final int todayOrders;
+    private final BigDecimal averageOrderValue;
+    private final int activeTables;
+    private final int totalTables;
+    private final int menuItemCount;
+    private final int paidOrders;
+    private final int completedOrders;
+    private final String peakHour;
+    private final Map<String, Integer> paymentMethodStats;
+    private final Map<String, BigDecimal> weeklyRevenue;
+    private final Map<String, Integer> weeklyOrders;
+    private final long loadedAt;
+
+    public DashboardSnapshot(BigDecimal todayRevenue, int todayOrders, BigDecimal averageOrderValue,
+                             int activeTables, int totalTables, int menuItemCount,
+                             int paidOrders, int completedOrders, String peakHour,
+                             Map<String, Integer> paymentMethodStats,
+                             Map<String, BigDecimal> weeklyRevenue,
+                             Map<String, Integer> weeklyOrders) {
+        this.todayRevenue = todayRevenue != null ? todayRevenue : BigDecimal.ZERO;
+        this.todayOrders = todayOrders;
+        this.averageOrderValue = averageOrderValue != null ? averageOrderValue : BigDecimal.ZERO;
+        this.activeTables = activeTables;
+        this.totalTables = totalTables;
+        this.menuItemCount = menuItemCount;
+        this.paidOrders = paidOrders;
+        this.completedOrders = completedOrders;
+        this.peakHour = peakHour;
+        this.paymentMethodStats = Collections.unmodifiableMap(new LinkedHashMap<>(paymentMethodStats));
+        this.weeklyRevenue = Collections.unmodifiableMap(new LinkedHashMap<>(weeklyRevenue));
+        this.weeklyOrders = Collections.unmodifiableMap(new LinkedHashMap<>(weeklyOrders));
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    public BigDecimal getTodayRevenue() { return todayRevenue; }
+    public int getTodayOrders() { return todayOrders; }
+    public BigDecimal getAverageOrderValue() { return averageOrderValue; }
+    public int getActiveTables() { return activeTables; }
+    public int getTotalTables() { return totalTables; }
+    public int getMenuItemCount() { return menuItemCount; }
+    public int getPaidOrders() { return paidOrders; }
+    public int getCompletedOrders() { return completedOrders; }
+
+    /** Khung giờ có nhiều thanh toán nhất hôm nay, ví dụ "19:00-20:00"; null nếu chưa có thanh toán */
+    public String getPeakHour() { return peakHour; }
+
+    /** Phương thức thanh toán -> số lần hôm nay, nhiều nhất trước */
+    public Map<String, Integer> getPaymentMethodStats() { return paymentMethodStats; }
+
+    /** 7 ngày gần nhất (yyyy-MM-dd -> doanh thu), đủ 7 ngày, cũ nhất trước */
+    public Map<String, BigDecimal> getWeeklyRevenue() { return weeklyRevenue; }
+
+    /** 7 ngày gần nhất (yyyy-MM-dd -> số đơn), đủ 7 ngày, cũ nhất trước */
+    public Map<String, Integer> getWeeklyOrders() { return weeklyOrders; }
+
+    public long getLoadedAt() { return loadedAt; }
+
+    @Override
+    public String toString() {
+        return "DashboardSnapshot{revenue=" + todayRevenue + ", orders=" + todayOrders +
+                ", avg=" + averageOrderValue + ", tables=" + activeTables + "/" + totalTables +
+                ", menuItems=" + menuItemCount + ", peak=" + peakHour + "}";
+    }
+}
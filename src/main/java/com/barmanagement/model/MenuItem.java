@@ -1,9 +1,11 @@
 package com.barmanagement.model;
 
 public class MenuItem {
+    private static final Money VIP_THRESHOLD = Money.of(200000);
+
     private int id;
     private String name;
-    private double price;
+    private Money price = Money.ZERO;
     private String category;
     private String imagePath;        // Đường dẫn ảnh
     private String description;      // Mô tả món ăn
@@ -16,30 +18,30 @@ public class MenuItem {
         this.preparationTime = 15;   // Mặc định 15 phút
     }
 
-    public MenuItem(int id, String name, double price, String category) {
+    public MenuItem(int id, String name, Money price, String category) {
         this();
         this.id = id;
         this.name = name;
-        this.price = price;
+        this.price = price != null ? price : Money.ZERO;
         this.category = category;
     }
 
-    public MenuItem(int id, String name, double price, String category, String imagePath, String description) {
+    public MenuItem(int id, String name, Money price, String category, String imagePath, String description) {
         this();
         this.id = id;
         this.name = name;
-        this.price = price;
+        this.price = price != null ? price : Money.ZERO;
         this.category = category;
         this.imagePath = imagePath;
         this.description = description;
     }
 
     // Constructor đầy đủ
-    public MenuItem(int id, String name, double price, String category, String imagePath,
+    public MenuItem(int id, String name, Money price, String category, String imagePath,
                     String description, boolean isAvailable, int preparationTime) {
         this.id = id;
         this.name = name;
-        this.price = price;
+        this.price = price != null ? price : Money.ZERO;
         this.category = category;
         this.imagePath = imagePath;
         this.description = description;
@@ -64,12 +66,12 @@ public class MenuItem {
         this.name = name;
     }
 
-    public double getPrice() {
+    public Money getPrice() {
         return price;
     }
 
-    public void setPrice(double price) {
-        this.price = price;
+    public void setPrice(Money price) {
+        this.price = price != null ? price : Money.ZERO;
     }
 
     public String getCategory() {
@@ -150,14 +152,14 @@ public class MenuItem {
      * Format giá tiền với VNĐ
      */
     public String getFormattedPrice() {
-        return String.format("%,.0f VNĐ", price);
+        return price.format();
     }
 
     /**
      * Kiểm tra có phải món VIP không (giá > 200k)
      */
     public boolean isVipItem() {
-        return price > 200000;
+        return price.isGreaterThan(VIP_THRESHOLD);
     }
 
     /**
@@ -199,7 +201,7 @@ public class MenuItem {
     /**
      * Tạo menu item mặc định với thông tin cơ bản
      */
-    public static MenuItem createBasicItem(String name, double price, String category) {
+    public static MenuItem createBasicItem(String name, Money price, String category) {
         MenuItem item = new MenuItem();
         item.setName(name);
         item.setPrice(price);
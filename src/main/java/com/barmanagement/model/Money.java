@@ -0,0 +1,224 @@
+package com.barmanagement.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Số tiền VND lưu bằng một long đếm đơn vị nhỏ nhất (1/100 VND, cùng đơn vị với RevenueAggregator).
+ *
+ * Thay cho việc trộn double (MenuItem/OrderItem) với BigDecimal (Order): cộng, nhân số lượng,
+ * giảm giá và VAT đều là phép tính số nguyên chính xác (làm tròn HALF_UP). Bất biến.
+ *
+ * Khi cộng dồn nhiều dòng, dùng các hàm static trên long (sum, percentOfMinor...) để
+ * không tạo object trung gian; chỉ tạo một Money cho kết quả cuối.
+ */
+public final class Money implements Comparable<Money> {
+
+    /** Số chữ số thập phân của đơn vị nhỏ nhất */
+    public static final int SCALE = 2;
+    public static final long MINOR_PER_VND = 100;
+
+    /** Thuế VAT mặc định (%) */
+    public static final double VAT_PERCENT = 10;
+
+    public static final Money ZERO = new Money(0);
+
+    private final long minor;
+
+    private Money(long minor) {
+        this.minor = minor;
+    }
+
+    // ===== Tạo =====
+
+    public static Money ofMinor(long minor) {
+        return minor == 0 ? ZERO : new Money(minor);
+    }
+
+    /** Số tiền nguyên VND */
+    public static Money of(long vnd) {
+        return ofMinor(Math.multiplyExact(vnd, MINOR_PER_VND));
+    }
+
+    /** Từ giá trị DECIMAL; null = 0 */
+    public static Money of(BigDecimal amount) {
+        if (amount == null) return ZERO;
+        return ofMinor(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    /** Từ chuỗi người dùng nhập ("120000", "120000.5") */
+    public static Money parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new NumberFormatException("Empty amount");
+        }
+        return of(new BigDecimal(text.trim()));
+    }
+
+    /** Đọc thẳng cột DECIMAL */
+    public static Money read(ResultSet rs, String column) throws SQLException {
+        return of(rs.getBigDecimal(column));
+    }
+
+    /** Ghi vào tham số DECIMAL */
+    public void write(PreparedStatement ps, int index) throws SQLException {
+        ps.setBigDecimal(index, toBigDecimal());
+    }
+
+    // ===== Phép tính =====
+
+    public long getMinor() {
+        return minor;
+    }
+
+    public Money plus(Money other) {
+        return other.minor == 0 ? this : ofMinor(Math.addExact(minor, other.minor));
+    }
+
+    public Money minus(Money other) {
+        return other.minor == 0 ? this : ofMinor(Math.subtractExact(minor, other.minor));
+    }
+
+    public Money times(int quantity) {
+        return quantity == 1 ? this : ofMinor(Math.multiplyExact(minor, (long) quantity));
+    }
+
+    /** percent% của số tiền này (percent có tối đa 2 chữ số thập phân, như cột discount_percent) */
+    public Money percent(double percent) {
+        return ofMinor(percentOfMinor(minor, percent));
+    }
+
+    /** Số tiền sau khi giảm percent% */
+    public Money afterDiscount(double percent) {
+        return ofMinor(minor - percentOfMinor(minor, percent));
+    }
+
+    public Money vat() {
+        return percent(VAT_PERCENT);
+    }
+
+    /** Không âm */
+    public Money atLeastZero() {
+        return minor < 0 ? ZERO : this;
+    }
+
+    public boolean isZero() {
+        return minor == 0;
+    }
+
+    public boolean isPositive() {
+        return minor > 0;
+    }
+
+    public boolean isGreaterThan(Money other) {
+        return minor > other.minor;
+    }
+
+    // ===== Hàm trên long (không tạo object) =====
+
+    /** percent% của một số tiền tính bằng đơn vị nhỏ nhất, làm tròn HALF_UP */
+    public static long percentOfMinor(long minor, double percent) {
+        long hundredthsOfPercent = Math.round(percent * 100);
+        return divideRoundHalfUp(Math.multiplyExact(minor, hundredthsOfPercent), 100 * 100);
+    }
+
+    /**
+     * Tính ngược số tiền gốc từ số tiền đã giảm percent% (total = gốc * (1 - percent/100))
+     */
+    public static long grossUpMinor(long discountedMinor, double percent) {
+        long hundredthsOfPercent = Math.round(percent * 100);
+        long remaining = 100 * 100 - hundredthsOfPercent;
+        if (remaining <= 0) return discountedMinor;
+        return divideRoundHalfUp(Math.multiplyExact(discountedMinor, 100 * 100), remaining);
+    }
+
+    /** Chia làm tròn HALF_UP (đối xứng với số âm), divisor > 0 */
+    public static long divideRoundHalfUp(long dividend, long divisor) {
+        long q = dividend / divisor;
+        long r = dividend % divisor;
+        if (Math.abs(r) * 2 >= divisor) {
+            q += dividend < 0 ? -1 : 1;
+        }
+        return q;
+    }
+
+    /** Cộng dồn số tiền (đơn vị nhỏ nhất) của các phần tử, chỉ tạo một Money cho kết quả */
+    public static <T> Money sum(Iterable<T> items, ToLongFunction<T> minorOf) {
+        long total = 0;
+        for (T item : items) {
+            total = Math.addExact(total, minorOf.applyAsLong(item));
+        }
+        return ofMinor(total);
+    }
+
+    // ===== Chuyển đổi / hiển thị =====
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    /** Chỉ dùng cho biểu đồ / thống kê hiển thị, không dùng để tính tiền */
+    public double toDouble() {
+        return minor / (double) MINOR_PER_VND;
+    }
+
+    /** Làm tròn về VND nguyên */
+    public long toVnd() {
+        return divideRoundHalfUp(minor, MINOR_PER_VND);
+    }
+
+    /** "1.234.567 VNĐ" */
+    public String format() {
+        return formatMinor(minor);
+    }
+
+    /** Như {@link #format()} nhưng cho giá trị long, không tạo Money */
+    public static String formatMinor(long minor) {
+        StringBuilder sb = new StringBuilder(24);
+        appendVnd(sb, divideRoundHalfUp(minor, MINOR_PER_VND));
+        return sb.append(" VNĐ").toString();
+    }
+
+    /** Số VND nguyên có dấu chấm phân cách hàng nghìn (kiểu vi-VN), không qua NumberFormat */
+    public static StringBuilder appendVnd(StringBuilder sb, long vnd) {
+        if (vnd < 0) {
+            sb.append('-');
+            if (vnd == Long.MIN_VALUE) {
+                return sb.append(Long.toString(vnd).substring(1));
+            }
+            vnd = -vnd;
+        }
+        String digits = Long.toString(vnd);
+        int firstGroup = digits.length() % 3;
+        if (firstGroup == 0) firstGroup = 3;
+        sb.append(digits, 0, firstGroup);
+        for (int i = firstGroup; i < digits.length(); i += 3) {
+            sb.append('.').append(digits, i, i + 3);
+        }
+        return sb;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minor, other.minor);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Money && ((Money) obj).minor == minor;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minor);
+    }
+
+    /** Dạng số thập phân thuần (dùng cho JSON/CSV), ví dụ "120000.00" */
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -1,10 +1,7 @@
 package com.barmanagement.model;
 
-import java.math.BigDecimal;
 import java.sql.Timestamp;
-import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
-import java.util.Locale;
 
 /**
  * Order model - ENHANCED VERSION
@@ -17,22 +14,17 @@ public class Order {
     private Timestamp completedTime;
     private String status;
     private String notes;
-    private BigDecimal totalAmount;
+    private Money totalAmount;
     private double discountPercent; // Phần trăm giảm giá (0-100)
     private int createdBy;
 
     // Formatters
-    private static final NumberFormat currencyFormatter = NumberFormat.getInstance(new Locale("vi", "VN"));
     private static final SimpleDateFormat dateTimeFormatter = new SimpleDateFormat("dd/MM/yyyy HH:mm");
     private static final SimpleDateFormat timeOnlyFormatter = new SimpleDateFormat("HH:mm");
 
-    static {
-        currencyFormatter.setMaximumFractionDigits(0);
-    }
-
     // Constructors
     public Order() {
-        this.totalAmount = BigDecimal.ZERO;
+        this.totalAmount = Money.ZERO;
         this.status = "pending";
         this.orderTime = new Timestamp(System.currentTimeMillis());
         this.createdBy = 1; // Default admin user
@@ -43,7 +35,7 @@ public class Order {
         this.tableId = tableId;
         this.orderTime = orderTime;
         this.status = status;
-        this.totalAmount = BigDecimal.ZERO;
+        this.totalAmount = Money.ZERO;
         this.createdBy = 1;
     }
 
@@ -107,12 +99,12 @@ public class Order {
         this.notes = notes;
     }
 
-    public BigDecimal getTotalAmount() {
-        return totalAmount != null ? totalAmount : BigDecimal.ZERO;
+    public Money getTotalAmount() {
+        return totalAmount != null ? totalAmount : Money.ZERO;
     }
 
-    public void setTotalAmount(BigDecimal totalAmount) {
-        this.totalAmount = totalAmount != null ? totalAmount : BigDecimal.ZERO;
+    public void setTotalAmount(Money totalAmount) {
+        this.totalAmount = totalAmount != null ? totalAmount : Money.ZERO;
     }
 
     public double getDiscountPercent() {
@@ -133,7 +125,7 @@ public class Order {
 
     // Utility methods for formatting
     public String getFormattedTotal() {
-        return currencyFormatter.format(getTotalAmount()) + " VNĐ";
+        return getTotalAmount().format();
     }
 
     /**
@@ -141,30 +133,30 @@ public class Order {
      * Lưu ý: total_amount trong database đã là tiền sau giảm giá
      * Cần tính ngược lại để có số tiền gốc
      */
-    public BigDecimal getDiscountAmount() {
+    public Money getDiscountAmount() {
         if (discountPercent <= 0) {
-            return BigDecimal.ZERO;
+            return Money.ZERO;
         }
         // Tính ngược từ total_amount (đã giảm giá) để có số tiền gốc
-        BigDecimal originalAmount = getTotalAmount().divide(BigDecimal.ONE.subtract(BigDecimal.valueOf(discountPercent / 100.0)), 2, BigDecimal.ROUND_HALF_UP);
-        return originalAmount.subtract(getTotalAmount());
+        long total = getTotalAmount().getMinor();
+        return Money.ofMinor(Money.grossUpMinor(total, discountPercent) - total);
     }
 
     /**
      * Tính tổng tiền gốc (trước giảm giá)
      */
-    public BigDecimal getOriginalAmount() {
+    public Money getOriginalAmount() {
         if (discountPercent <= 0) {
             return getTotalAmount();
         }
         // Tính ngược từ total_amount (đã giảm giá) để có số tiền gốc
-        return getTotalAmount().divide(BigDecimal.ONE.subtract(BigDecimal.valueOf(discountPercent / 100.0)), 2, BigDecimal.ROUND_HALF_UP);
+        return Money.ofMinor(Money.grossUpMinor(getTotalAmount().getMinor(), discountPercent));
     }
 
     /**
      * Tính tổng tiền sau khi giảm giá (chính là total_amount)
      */
-    public BigDecimal getFinalAmount() {
+    public Money getFinalAmount() {
         return getTotalAmount();
     }
 
@@ -172,14 +164,14 @@ public class Order {
      * Format số tiền giảm giá
      */
     public String getFormattedDiscountAmount() {
-        return currencyFormatter.format(getDiscountAmount()) + " VNĐ";
+        return getDiscountAmount().format();
     }
 
     /**
      * Format tổng tiền cuối cùng
      */
     public String getFormattedFinalAmount() {
-        return currencyFormatter.format(getFinalAmount()) + " VNĐ";
+        return getFinalAmount().format();
     }
 
     public String getFormattedOrderTime() {
@@ -271,7 +263,7 @@ public class Order {
 
     // Additional utility methods
     public double getTotalAmountAsDouble() {
-        return getTotalAmount().doubleValue();
+        return getTotalAmount().toDouble();
     }
 
     public String getTableDisplayName() {
@@ -279,7 +271,7 @@ public class Order {
     }
 
     public boolean hasItems() {
-        return getTotalAmount().compareTo(BigDecimal.ZERO) > 0;
+        return getTotalAmount().isPositive();
     }
 
     public String getOrderSummary() {
@@ -1,15 +1,11 @@
 package com.barmanagement.model;
 
-import java.text.NumberFormat;
-import java.util.Locale;
-
 public class OrderItem {
     private int id;
     private int orderId;
     private int menuItemId;
     private int quantity;
-    private double price;                // Đơn giá lấy từ menu_items khi JOIN
-    private double subtotal;             // THÊM MỚI - để cache calculation hoặc set từ DAO
+    private Money price = Money.ZERO;    // Đơn giá (order_items.price) - thành tiền luôn = price x quantity
 
     // Thông tin mở rộng từ MenuItem (không lưu DB, chỉ để hiển thị)
     private String menuItemName;
@@ -17,12 +13,7 @@ public class OrderItem {
     private String category;
     private String description;
 
-    // Formatter cho tiền tệ
-    private static final NumberFormat currencyFormatter = NumberFormat.getInstance(new Locale("vi", "VN"));
-
-    static {
-        currencyFormatter.setMaximumFractionDigits(0);
-    }
+    private static final Money VIP_THRESHOLD = Money.of(200000);
 
     // Constructors
     public OrderItem() {}
@@ -33,28 +24,26 @@ public class OrderItem {
         this.quantity = quantity;
     }
 
-    public OrderItem(int id, int orderId, int menuItemId, int quantity, double price) {
+    public OrderItem(int id, int orderId, int menuItemId, int quantity, Money price) {
         this.id = id;
         this.orderId = orderId;
         this.menuItemId = menuItemId;
         this.quantity = quantity;
-        this.price = price;
-        this.subtotal = price * quantity; // Auto calculate
+        setPrice(price);
     }
 
     // Constructor đầy đủ với thông tin MenuItem
-    public OrderItem(int id, int orderId, int menuItemId, int quantity, double price,
+    public OrderItem(int id, int orderId, int menuItemId, int quantity, Money price,
                      String menuItemName, String imagePath, String category, String description) {
         this.id = id;
         this.orderId = orderId;
         this.menuItemId = menuItemId;
         this.quantity = quantity;
-        this.price = price;
+        setPrice(price);
         this.menuItemName = menuItemName;
         this.imagePath = imagePath;
         this.category = category;
         this.description = description;
-        this.subtotal = price * quantity; // Auto calculate
     }
 
     // Basic getters and setters
@@ -88,22 +77,14 @@ public class OrderItem {
 
     public void setQuantity(int quantity) {
         this.quantity = quantity;
-        // Tự động update subtotal nếu đã có price
-        if (this.price > 0) {
-            this.subtotal = this.price * quantity;
-        }
     }
 
-    public double getPrice() {
+    public Money getPrice() {
         return price;
     }
 
-    public void setPrice(double price) {
-        this.price = price;
-        // Tự động update subtotal nếu đã có quantity
-        if (this.quantity > 0) {
-            this.subtotal = price * this.quantity;
-        }
+    public void setPrice(Money price) {
+        this.price = price != null ? price : Money.ZERO;
     }
 
     // Extended properties getters and setters
@@ -150,24 +131,18 @@ public class OrderItem {
     // Calculated properties
 
     /**
-     * Tính thành tiền (quantity * price)
-     * Ưu tiên subtotal đã được set, nếu không thì tính toán
+     * Thành tiền (price x quantity) tính bằng đơn vị nhỏ nhất - không tạo object,
+     * dùng khi cộng dồn nhiều dòng: Money.sum(items, OrderItem::getSubtotalMinor)
      */
-    public double getSubtotal() {
-        // Nếu subtotal đã được set (từ DAO hoặc manual), dùng nó
-        if (subtotal > 0) {
-            return subtotal;
-        }
-        // Nếu không, tính toán từ price * quantity
-        return price * quantity;
+    public long getSubtotalMinor() {
+        return Math.multiplyExact(price.getMinor(), (long) quantity);
     }
 
     /**
-     * Set subtotal trực tiếp (dùng bởi DAO hoặc manual calculation)
-     * THÊM MỚI - Method này cần thiết cho PaymentController và DAO
+     * Tính thành tiền (quantity * price)
      */
-    public void setSubtotal(double subtotal) {
-        this.subtotal = subtotal;
+    public Money getSubtotal() {
+        return Money.ofMinor(getSubtotalMinor());
     }
 
     /**
@@ -191,14 +166,14 @@ public class OrderItem {
      * Format đơn giá với VNĐ
      */
     public String getFormattedPrice() {
-        return currencyFormatter.format(price) + " VNĐ";
+        return price.format();
     }
 
     /**
      * Format thành tiền với VNĐ
      */
     public String getFormattedSubtotal() {
-        return currencyFormatter.format(getSubtotal()) + " VNĐ";
+        return Money.formatMinor(getSubtotalMinor());
     }
 
     /**
@@ -226,7 +201,7 @@ public class OrderItem {
      * Kiểm tra có phải item VIP không (giá > 200k)
      */
     public boolean isVipItem() {
-        return price > 200000;
+        return price.isGreaterThan(VIP_THRESHOLD);
     }
 
     /**
@@ -267,13 +242,11 @@ public class OrderItem {
      * Cập nhật thông tin từ MenuItem
      */
     public void updateFromMenuItem(MenuItem menuItem) {
-        this.price = menuItem.getPrice();
+        setPrice(menuItem.getPrice());
         this.menuItemName = menuItem.getName();
         this.imagePath = menuItem.getImagePath();
         this.category = menuItem.getCategory();
         this.description = menuItem.getDescription();
-        // Update subtotal với giá mới
-        this.subtotal = this.price * this.quantity;
     }
 
     /**
@@ -281,8 +254,6 @@ public class OrderItem {
      */
     public void increaseQuantity(int amount) {
         this.quantity += amount;
-        // Update subtotal
-        this.subtotal = this.price * this.quantity;
     }
 
     /**
@@ -290,22 +261,20 @@ public class OrderItem {
      */
     public void decreaseQuantity(int amount) {
         this.quantity = Math.max(0, this.quantity - amount);
-        // Update subtotal
-        this.subtotal = this.price * this.quantity;
     }
 
     /**
      * Kiểm tra có hợp lệ không
      */
     public boolean isValid() {
-        return menuItemId > 0 && quantity > 0 && price >= 0;
+        return menuItemId > 0 && quantity > 0 && price.getMinor() >= 0;
     }
 
     // toString method for debugging
     @Override
     public String toString() {
-        return String.format("OrderItem{id=%d, orderId=%d, menuItemId=%d, quantity=%d, price=%.0f, subtotal=%.0f, name='%s'}",
-                id, orderId, menuItemId, quantity, price, subtotal, menuItemName);
+        return String.format("OrderItem{id=%d, orderId=%d, menuItemId=%d, quantity=%d, price=%s, subtotal=%s, name='%s'}",
+                id, orderId, menuItemId, quantity, price, getSubtotal(), menuItemName);
     }
 
     // equals and hashCode for collections
@@ -322,70 +291,35 @@ public class OrderItem {
         return Integer.hashCode(id);
     }
 
-    // Utility methods for calculations
+    // Utility methods for calculations - số nguyên chính xác, làm tròn HALF_UP
 
     /**
-     * Tính % discount nếu có (cho future use)
+     * Tính số tiền giảm theo % (cho future use)
      */
-    public double getDiscountAmount(double discountPercent) {
-        return getSubtotal() * discountPercent / 100;
+    public Money getDiscountAmount(double discountPercent) {
+        return Money.ofMinor(Money.percentOfMinor(getSubtotalMinor(), discountPercent));
     }
 
     /**
      * Tính thành tiền sau discount
      */
-    public double getSubtotalAfterDiscount(double discountPercent) {
-        return getSubtotal() - getDiscountAmount(discountPercent);
+    public Money getSubtotalAfterDiscount(double discountPercent) {
+        long subtotal = getSubtotalMinor();
+        return Money.ofMinor(subtotal - Money.percentOfMinor(subtotal, discountPercent));
     }
 
     /**
      * Tính thuế VAT (10%)
      */
-    public double getVATAmount() {
-        return getSubtotal() * 0.1;
+    public Money getVATAmount() {
+        return Money.ofMinor(Money.percentOfMinor(getSubtotalMinor(), Money.VAT_PERCENT));
     }
 
     /**
      * Tính tổng tiền bao gồm VAT
      */
-    public double getTotalWithVAT() {
-        return getSubtotal() + getVATAmount();
-    }
-
-    // THÊM MỚI: Các utility methods cho business logic
-
-    /**
-     * Reset subtotal để force recalculation
-     */
-    public void resetSubtotal() {
-        this.subtotal = 0;
-    }
-
-    /**
-     * Force recalculate subtotal từ price và quantity hiện tại
-     */
-    public void recalculateSubtotal() {
-        this.subtotal = this.price * this.quantity;
-    }
-
-    /**
-     * Kiểm tra subtotal có được set manually hay không
-     */
-    public boolean hasManualSubtotal() {
-        return subtotal > 0 && subtotal != (price * quantity);
-    }
-
-    /**
-     * Lấy giá trị subtotal tính toán (không dùng cache)
-     */
-    public double getCalculatedSubtotal() {
-        return price * quantity;
-    }
-
-    /**
-     * So sánh subtotal manual vs calculated
-     */
-    public double getSubtotalDifference() {
-        return subtotal - getCalculatedSubtotal();
+    public Money getTotalWithVAT() {
+        long subtotal = getSubtotalMinor();
+        return Money.ofMinor(subtotal + Money.percentOfMinor(subtotal, Money.VAT_PERCENT));
     }
-}
\ No newline at end of file
+}
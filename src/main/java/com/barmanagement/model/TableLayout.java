@@ -0,0 +1,25 @@
+package com.barmanagement.model;
+
+/**
+ * Vị trí của một bàn trên sơ đồ (bảng table_layout), tọa độ góc trên-trái tính bằng pixel.
+ */
+public class TableLayout {
+    private int tableId;
+    private double x;
+    private double y;
+
+    public TableLayout() {}
+
+    public TableLayout(int tableId, double x, double y) {
+        this.tableId = tableId;
+        this.x = x;
+        this.y = y;
+    }
+
+    public int getTableId() { return tableId; }
+    public void setTableId(int tableId) { this.tableId = tableId; }
+    public double getX() { return x; }
+    public void setX(double x) { this.x = x; }
+    public double getY() { return y; }
+    public void setY(double y) { this.y = y; }
+}
@@ -0,0 +1,274 @@
+package com.barmanagement.util;
+
+import com.barmanagement.config.DatabaseConfig;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Dịch vụ mật khẩu dùng chung cho đăng nhập, tạo tài khoản và công cụ migration.
+ *
+ * Hash mới là PBKDF2-HMAC-SHA256 dạng "pbkdf2-sha256$số_vòng$salt$hash" (Base64 không padding).
+ * Tham số nằm ngay trong chuỗi hash, nên tăng auth.pbkdf2.iterations không làm hỏng hash cũ:
+ * hash yếu hơn cấu hình, hoặc định dạng cũ (SHA-256 có salt của PasswordUtils, SHA-256 hex, mật khẩu thô),
+ * vẫn đăng nhập được và được băm lại ngay lúc đăng nhập ({@link Verification#needsRehash()}).
+ * Mọi phép so sánh đều chạy với thời gian hằng (MessageDigest.isEqual).
+ *
+ * Hiệu chỉnh số vòng theo máy thu ngân:
+ *   java com.barmanagement.util.CredentialService --calibrate [msMụcTiêu=250] [--samples 10]
+ */
+public final class CredentialService {
+
+    private static final Log LOG = Log.get(CredentialService.class);
+
+    public static final String PREFIX = "pbkdf2-sha256";
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+    private static final int MIN_ITERATIONS = 10_000;
+    // Chặn hash bị sửa tay với số vòng vô lý (mỗi lần đăng nhập sẽ treo)
+    private static final int MAX_ITERATIONS = 50_000_000;
+    static final int DEFAULT_ITERATIONS = 600_000;
+
+    /** Định dạng của mật khẩu đang lưu */
+    public enum Scheme {
+        PBKDF2,
+        /** PasswordUtils.hashPassword cũ: Base64(salt 16 byte + SHA-256) */
+        LEGACY_SALTED_SHA256,
+        /** PasswordUtils.hashPasswordSimple cũ: SHA-256 hex, không salt */
+        LEGACY_SHA256_HEX,
+        PLAINTEXT
+    }
+
+    public enum Verification {
+        INVALID, VALID, VALID_NEEDS_REHASH;
+
+        public boolean isValid() {
+            return this != INVALID;
+        }
+
+        public boolean needsRehash() {
+            return this == VALID_NEEDS_REHASH;
+        }
+    }
+
+    private static final CredentialService INSTANCE =
+            new CredentialService(DatabaseConfig.get().getInt("auth.pbkdf2.iterations", DEFAULT_ITERATIONS));
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+    // Hash mẫu để tài khoản không tồn tại tốn cùng thời gian kiểm tra (không lộ tên đăng nhập)
+    private volatile String dummyHash;
+
+    public CredentialService(int iterations) {
+        this.iterations = Math.max(MIN_ITERATIONS, Math.min(iterations, MAX_ITERATIONS));
+    }
+
+    public static CredentialService get() {
+        return INSTANCE;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /** Băm mật khẩu với salt ngẫu nhiên và số vòng hiện tại */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return format(iterations, salt, pbkdf2(password, salt, iterations, HASH_BYTES));
+    }
+
+    /** Kiểm tra mật khẩu với giá trị đang lưu (mọi định dạng cũ lẫn mới) */
+    public Verification verify(String password, String stored) {
+        if (password == null || stored == null || stored.isEmpty()) {
+            return Verification.INVALID;
+        }
+        boolean matches;
+        switch (scheme(stored)) {
+            case PBKDF2:
+                return verifyPbkdf2(password, stored);
+            case LEGACY_SALTED_SHA256:
+                byte[] saltAndHash = Base64.getDecoder().decode(stored);
+                MessageDigest salted = sha256();
+                salted.update(saltAndHash, 0, 16);
+                byte[] expected = new byte[saltAndHash.length - 16];
+                System.arraycopy(saltAndHash, 16, expected, 0, expected.length);
+                matches = MessageDigest.isEqual(expected, salted.digest(password.getBytes(StandardCharsets.UTF_8)));
+                break;
+            case LEGACY_SHA256_HEX:
+                byte[] digest = sha256().digest(password.getBytes(StandardCharsets.UTF_8));
+                matches = MessageDigest.isEqual(toHex(digest).getBytes(StandardCharsets.US_ASCII),
+                        stored.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+                break;
+            default:
+                matches = MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                        stored.getBytes(StandardCharsets.UTF_8));
+        }
+        return matches ? Verification.VALID_NEEDS_REHASH : Verification.INVALID;
+    }
+
+    /** Tốn đúng thời gian của một lần kiểm tra thật; gọi khi không tìm thấy tài khoản */
+    public void verifyDummy(String password) {
+        String hash = dummyHash;
+        if (hash == null) {
+            hash = hash("dummy-password");
+            dummyHash = hash;
+        }
+        verify(password != null ? password : "", hash);
+    }
+
+    /** Nhận dạng định dạng của giá trị cột password */
+    public static Scheme scheme(String stored) {
+        if (stored.startsWith(PREFIX + "$")) {
+            return Scheme.PBKDF2;
+        }
+        if (stored.length() == 64 && isHex(stored)) {
+            return Scheme.LEGACY_SHA256_HEX;
+        }
+        if (stored.length() == 64) {
+            try {
+                if (Base64.getDecoder().decode(stored).length == 48) {
+                    return Scheme.LEGACY_SALTED_SHA256;
+                }
+            } catch (IllegalArgumentException e) {
+                // không phải Base64
+            }
+        }
+        return Scheme.PLAINTEXT;
+    }
+
+    private Verification verifyPbkdf2(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        int storedIterations;
+        byte[] salt;
+        byte[] expected;
+        try {
+            if (parts.length != 4) throw new IllegalArgumentException("expected 4 fields");
+            storedIterations = Integer.parseInt(parts[1]);
+            salt = Base64.getDecoder().decode(parts[2]);
+            expected = Base64.getDecoder().decode(parts[3]);
+            if (storedIterations < 1 || storedIterations > MAX_ITERATIONS || salt.length == 0 || expected.length == 0) {
+                throw new IllegalArgumentException("parameters out of range");
+            }
+        } catch (IllegalArgumentException e) {
+            LOG.warn("⚠️ Malformed password hash: {}", e.getMessage());
+            return Verification.INVALID;
+        }
+
+        byte[] actual = pbkdf2(password, salt, storedIterations, expected.length);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return Verification.INVALID;
+        }
+        boolean outdated = storedIterations < iterations || salt.length < SALT_BYTES || expected.length < HASH_BYTES;
+        return outdated ? Verification.VALID_NEEDS_REHASH : Verification.VALID;
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations, int length) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static String format(int iterations, byte[] salt, byte[] hash) {
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static boolean isHex(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.digit(s.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    // ===== Benchmark / hiệu chỉnh =====
+
+    /**
+     * Đo độ trễ kiểm tra mật khẩu (chính là phần chậm của đăng nhập) và đề xuất số vòng
+     * để một lần kiểm tra tốn khoảng msMụcTiêu trên máy đang chạy.
+     */
+    public static void main(String[] args) {
+        double targetMs = 250;
+        int samples = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--calibrate":
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        targetMs = Double.parseDouble(args[++i]);
+                    }
+                    break;
+                case "--samples":
+                    samples = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        System.out.println("=== PASSWORD HASH CALIBRATION (target " + targetMs + "ms per login) ===");
+        // Làm nóng JIT trước khi đo
+        CredentialService probe = new CredentialService(MIN_ITERATIONS);
+        for (int i = 0; i < 20; i++) {
+            probe.verify("warmup", probe.hash("warmup"));
+        }
+
+        // Ước lượng từ một điểm đo rồi đo lại ở giá trị ước lượng và chỉnh tỉ lệ (chi phí tuyến tính theo số vòng)
+        int recommended = 100_000;
+        for (int pass = 0; pass < 3; pass++) {
+            double ms = measure(new CredentialService(recommended), 3).getPercentileMillis(50);
+            recommended = roundIterations(recommended * targetMs / ms);
+        }
+
+        CredentialService configured = get();
+        System.out.println(String.format("Configured  auth.pbkdf2.iterations=%-9d %s",
+                configured.getIterations(), measure(configured, samples).getSummary()));
+        CredentialService tuned = new CredentialService(recommended);
+        System.out.println(String.format("Recommended auth.pbkdf2.iterations=%-9d %s",
+                recommended, measure(tuned, samples).getSummary()));
+        System.out.println("Set the recommended value in db.properties; existing hashes are upgraded at next login.");
+        Log.flush();
+    }
+
+    private static int roundIterations(double iterations) {
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, Math.round(iterations / 10_000) * 10_000));
+    }
+
+    private static LatencyHistogram measure(CredentialService service, int samples) {
+        LatencyHistogram histogram = new LatencyHistogram("verify");
+        String stored = service.hash("calibration-password");
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            service.verify("calibration-password", stored);
+            histogram.recordNanos(System.nanoTime() - start);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,66 @@
+package com.barmanagement.util;
+
+import java.util.Objects;
+
+/**
+ * Sự kiện thay đổi dữ liệu gửi qua {@link DashboardEventBus}.
+ * Hai sự kiện cùng kind + key trong một cửa sổ gộp được coi là một (giữ bản mới nhất).
+ */
+public final class DashboardEvent {
+
+    public enum Kind {
+        PAYMENT_COMPLETED,
+        ORDER_STATUS_CHANGED,
+        TABLE_STATUS_CHANGED,
+        MENU_CHANGED
+    }
+
+    private final Kind kind;
+    private final Object key;
+    private final Object detail;
+    private final long timestamp;
+
+    private DashboardEvent(Kind kind, Object key, Object detail) {
+        this.kind = Objects.requireNonNull(kind);
+        this.key = key;
+        this.detail = detail;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public static DashboardEvent paymentCompleted(int orderId, Object amount) {
+        return new DashboardEvent(Kind.PAYMENT_COMPLETED, orderId, amount);
+    }
+
+    public static DashboardEvent orderStatusChanged(int orderId, String status) {
+        return new DashboardEvent(Kind.ORDER_STATUS_CHANGED, orderId, status);
+    }
+
+    public static DashboardEvent tableStatusChanged(int tableId, String status) {
+        return new DashboardEvent(Kind.TABLE_STATUS_CHANGED, tableId, status);
+    }
+
+    /** Menu thay đổi (thêm/sửa/xóa món) - không phân biệt món nào */
+    public static DashboardEvent menuChanged() {
+        return new DashboardEvent(Kind.MENU_CHANGED, null, null);
+    }
+
+    public Kind getKind() { return kind; }
+
+    /** Id đối tượng bị thay đổi (orderId, tableId...), null nếu không có */
+    public Object getKey() { return key; }
+
+    /** Thông tin thêm (số tiền, trạng thái mới...) */
+    public Object getDetail() { return detail; }
+
+    public long getTimestamp() { return timestamp; }
+
+    /** Khóa dùng để gộp sự kiện trùng */
+    Object coalesceKey() {
+        return key == null ? kind : kind + ":" + key;
+    }
+
+    @Override
+    public String toString() {
+        return kind + (key != null ? "#" + key : "") + (detail != null ? " (" + detail + ")" : "");
+    }
+}
@@ -0,0 +1,201 @@
+package com.barmanagement.util;
+
+import com.barmanagement.config.DatabaseConfig;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bus sự kiện cho dashboard và các màn hình cần làm mới khi dữ liệu thay đổi.
+ * Thay cho DashboardUpdateUtil (mỗi sự kiện = một lần làm mới toàn bộ trên FX thread).
+ *
+ * - Sự kiện trong cùng cửa sổ gộp (events.coalesceWindowMs, mặc định 300ms) được gom thành một lô,
+ *   sự kiện trùng kind + key chỉ giữ bản mới nhất.
+ * - Một thread lập lịch duy nhất phát lô; mỗi listener nhận tối đa một lô mỗi cửa sổ.
+ * - Listener chỉ đăng ký các Kind nó cần.
+ * - Hàng chờ có giới hạn (events.maxPending), tràn thì bỏ sự kiện và đếm vào "dropped".
+ *
+ * Ví dụ: subscription = DashboardEventBus.subscribe(EnumSet.of(Kind.PAYMENT_COMPLETED), events -> refresh());
+ */
+public final class DashboardEventBus {
+
+    private static final Log LOG = Log.get(DashboardEventBus.class);
+
+    /** Đăng ký nhận sự kiện; gọi {@link #unsubscribe()} khi màn hình đóng */
+    public static final class Subscription {
+        private final Set<DashboardEvent.Kind> kinds;
+        private final Consumer<List<DashboardEvent>> listener;
+        private final boolean onFxThread;
+
+        private Subscription(Set<DashboardEvent.Kind> kinds, Consumer<List<DashboardEvent>> listener, boolean onFxThread) {
+            this.kinds = kinds;
+            this.listener = listener;
+            this.onFxThread = onFxThread;
+        }
+
+        public void unsubscribe() {
+            if (SUBSCRIPTIONS.remove(this)) {
+                LOG.debug("📋 Removed dashboard event subscription. Total: {}", SUBSCRIPTIONS.size());
+            }
+        }
+    }
+
+    private static final CopyOnWriteArrayList<Subscription> SUBSCRIPTIONS = new CopyOnWriteArrayList<>();
+
+    private static final long WINDOW_MS = Math.max(0, DatabaseConfig.get().getLong("events.coalesceWindowMs", 300));
+    private static final int MAX_PENDING = Math.max(1, DatabaseConfig.get().getInt("events.maxPending", 1024));
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "dashboard-events");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Guarded by LOCK
+    private static final Object LOCK = new Object();
+    private static Map<Object, DashboardEvent> pending = new LinkedHashMap<>();
+    private static boolean flushScheduled;
+
+    private static final AtomicLong published = new AtomicLong();
+    private static final AtomicLong merged = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong batches = new AtomicLong();
+    private static final AtomicLong deliveries = new AtomicLong();
+
+    private DashboardEventBus() {
+    }
+
+    /**
+     * Đăng ký listener cho các kind cho trước, listener chạy trên FX thread.
+     */
+    public static Subscription subscribe(Set<DashboardEvent.Kind> kinds, Consumer<List<DashboardEvent>> listener) {
+        return subscribe(kinds, listener, true);
+    }
+
+    /**
+     * @param onFxThread false: chạy luôn trên thread của bus (listener không được chạm UI)
+     */
+    public static Subscription subscribe(Set<DashboardEvent.Kind> kinds, Consumer<List<DashboardEvent>> listener,
+                                         boolean onFxThread) {
+        Set<DashboardEvent.Kind> copy = kinds == null || kinds.isEmpty()
+                ? EnumSet.allOf(DashboardEvent.Kind.class) : EnumSet.copyOf(kinds);
+        Subscription subscription = new Subscription(copy, listener, onFxThread);
+        SUBSCRIPTIONS.add(subscription);
+        LOG.debug("📋 Registered dashboard event subscription {}. Total: {}", copy, SUBSCRIPTIONS.size());
+        return subscription;
+    }
+
+    /** Gửi sự kiện; an toàn khi gọi từ bất kỳ thread nào, không bao giờ chặn */
+    public static void publish(DashboardEvent event) {
+        if (event == null) return;
+        published.incrementAndGet();
+
+        synchronized (LOCK) {
+            Object key = event.coalesceKey();
+            if (pending.containsKey(key)) {
+                pending.remove(key); // đưa xuống cuối để giữ thứ tự theo lần thay đổi mới nhất
+                pending.put(key, event);
+                merged.incrementAndGet();
+            } else if (pending.size() >= MAX_PENDING) {
+                dropped.incrementAndGet();
+                return;
+            } else {
+                pending.put(key, event);
+            }
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                SCHEDULER.schedule(DashboardEventBus::flush, WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static void flush() {
+        List<DashboardEvent> batch;
+        synchronized (LOCK) {
+            batch = new ArrayList<>(pending.values());
+            pending = new LinkedHashMap<>();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) return;
+        batches.incrementAndGet();
+
+        for (Subscription subscription : SUBSCRIPTIONS) {
+            List<DashboardEvent> events = new ArrayList<>();
+            for (DashboardEvent e : batch) {
+                if (subscription.kinds.contains(e.getKind())) {
+                    events.add(e);
+                }
+            }
+            if (events.isEmpty()) continue;
+
+            List<DashboardEvent> delivered = Collections.unmodifiableList(events);
+            Runnable task = () -> {
+                try {
+                    subscription.listener.accept(delivered);
+                } catch (Exception ex) {
+                    LOG.error("❌ Error in dashboard event listener", ex);
+                }
+            };
+            deliveries.incrementAndGet();
+            if (subscription.onFxThread) {
+                Platform.runLater(task);
+            } else {
+                task.run();
+            }
+        }
+    }
+
+    // ===== Metrics =====
+
+    /** Số sự kiện đang chờ phát (sau khi gộp) */
+    public static int getQueueDepth() {
+        synchronized (LOCK) {
+            return pending.size();
+        }
+    }
+
+    public static long getPublishedCount() {
+        return published.get();
+    }
+
+    /** Số sự kiện bị gộp vào sự kiện trùng trong cùng cửa sổ */
+    public static long getMergedCount() {
+        return merged.get();
+    }
+
+    /** Số sự kiện bị bỏ vì hàng chờ đầy */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public static long getBatchCount() {
+        return batches.get();
+    }
+
+    public static long getDeliveryCount() {
+        return deliveries.get();
+    }
+
+    public static int getSubscriberCount() {
+        return SUBSCRIPTIONS.size();
+    }
+
+    public static String getStatsSummary() {
+        return String.format("events: published=%d, merged=%d, dropped=%d, batches=%d, deliveries=%d, pending=%d, subscribers=%d",
+                getPublishedCount(), getMergedCount(), getDroppedCount(), getBatchCount(),
+                getDeliveryCount(), getQueueDepth(), getSubscriberCount());
+    }
+}
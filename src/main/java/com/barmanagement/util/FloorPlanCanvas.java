@@ -0,0 +1,395 @@
+package com.barmanagement.util;
+
+import com.barmanagement.config.DatabaseConfig;
+import com.barmanagement.model.Table;
+import com.barmanagement.model.TableLayout;
+import javafx.geometry.VPos;
+import javafx.scene.Cursor;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Sơ đồ bàn vẽ trên một Canvas duy nhất (thay cho mỗi bàn một StackPane 6 node).
+ *
+ * - Vị trí bàn lấy từ table_layout; bàn chưa có vị trí được xếp tự động theo lưới (floorPlan.autoColumns).
+ * - Click được tra qua chỉ mục không gian dạng lưới ô (không duyệt toàn bộ bàn).
+ * - Đổi trạng thái chỉ xóa và vẽ lại vùng của bàn đó (và bàn chồng lên vùng đó nếu có).
+ * - Giữ Ctrl/Cmd và kéo để di chuyển bàn; vị trí mới được báo qua {@link #setOnTableMoved}.
+ */
+public class FloorPlanCanvas extends Pane {
+
+    /** Nhận click vào bàn */
+    public interface TableClickHandler {
+        void onTableClicked(int tableId, MouseButton button);
+    }
+
+    /** Nhận vị trí mới sau khi kéo bàn */
+    public interface TableMoveHandler {
+        void onTableMoved(TableLayout layout);
+    }
+
+    // Kích thước một bàn kể cả ghế
+    public static final double TABLE_WIDTH = 110;
+    public static final double TABLE_HEIGHT = 90;
+
+    private static final double HGAP = 50;
+    private static final double VGAP = 40;
+    private static final double MARGIN = 10;
+    private static final double DIRTY_PAD = 2; // viền trắng 2px
+    private static final double SNAP = 10;
+    private static final double INDEX_CELL = 128;
+
+    private static final int AUTO_COLUMNS = Math.max(1, DatabaseConfig.get().getInt("floorPlan.autoColumns", 4));
+    private static final Font LABEL_FONT = Font.font("System", FontWeight.BOLD, 12);
+
+    private static final class Entry {
+        final int id;
+        String name;
+        String status;
+        double x;
+        double y;
+
+        Entry(int id) {
+            this.id = id;
+        }
+
+        boolean contains(double px, double py) {
+            return px >= x && px < x + TABLE_WIDTH && py >= y && py < y + TABLE_HEIGHT;
+        }
+
+        boolean intersects(double rx, double ry, double rw, double rh) {
+            return x < rx + rw && x + TABLE_WIDTH > rx && y < ry + rh && y + TABLE_HEIGHT > ry;
+        }
+    }
+
+    private final Canvas canvas = new Canvas();
+
+    // Thứ tự vẽ = thứ tự bàn
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>();
+    private final Map<Integer, TableLayout> savedLayouts = new HashMap<>();
+    private final Map<Long, List<Entry>> index = new HashMap<>();
+
+    private TableClickHandler onTableClicked;
+    private TableMoveHandler onTableMoved;
+
+    private Entry dragging;
+    private double dragOffsetX;
+    private double dragOffsetY;
+    private boolean dragged;
+
+    private long fullRedraws;
+    private long tableRedraws;
+
+    public FloorPlanCanvas() {
+        getChildren().add(canvas);
+        canvas.setOnMouseMoved(this::handleMouseMoved);
+        canvas.setOnMousePressed(this::handleMousePressed);
+        canvas.setOnMouseDragged(this::handleMouseDragged);
+        canvas.setOnMouseReleased(this::handleMouseReleased);
+        canvas.setOnMouseClicked(this::handleMouseClicked);
+    }
+
+    public void setOnTableClicked(TableClickHandler handler) {
+        this.onTableClicked = handler;
+    }
+
+    public void setOnTableMoved(TableMoveHandler handler) {
+        this.onTableMoved = handler;
+    }
+
+    /** Vị trí đã lưu; áp dụng ở lần {@link #setTables} tiếp theo */
+    public void setSavedLayouts(Map<Integer, TableLayout> layouts) {
+        savedLayouts.clear();
+        if (layouts != null) {
+            savedLayouts.putAll(layouts);
+        }
+    }
+
+    /** Dựng lại toàn bộ sơ đồ (dùng khi thêm/xóa/đổi tên bàn) */
+    public void setTables(List<Table> tables) {
+        entries.clear();
+
+        double savedBottom = 0;
+        for (Table t : tables) {
+            TableLayout l = savedLayouts.get(t.getId());
+            if (l != null) {
+                savedBottom = Math.max(savedBottom, l.getY() + TABLE_HEIGHT + VGAP);
+            }
+        }
+
+        // Bàn chưa có vị trí xếp theo lưới, bên dưới các bàn đã đặt vị trí
+        int autoIndex = 0;
+        for (Table t : tables) {
+            Entry e = new Entry(t.getId());
+            e.name = t.getTableName();
+            e.status = t.getStatus();
+            TableLayout l = savedLayouts.get(t.getId());
+            if (l != null) {
+                e.x = Math.max(0, l.getX());
+                e.y = Math.max(0, l.getY());
+            } else {
+                e.x = MARGIN + (autoIndex % AUTO_COLUMNS) * (TABLE_WIDTH + HGAP);
+                e.y = MARGIN + savedBottom + (autoIndex / AUTO_COLUMNS) * (TABLE_HEIGHT + VGAP);
+                autoIndex++;
+            }
+            entries.put(e.id, e);
+        }
+
+        rebuildIndex();
+        redrawAll();
+    }
+
+    /**
+     * Cập nhật theo danh sách bàn mới: nếu vẫn là các bàn cũ (cùng id, cùng tên)
+     * thì chỉ vẽ lại bàn đổi trạng thái, ngược lại dựng lại toàn bộ.
+     */
+    public void updateTables(List<Table> tables) {
+        boolean sameTables = tables.size() == entries.size();
+        if (sameTables) {
+            for (Table t : tables) {
+                Entry e = entries.get(t.getId());
+                if (e == null || !Objects.equals(e.name, t.getTableName())) {
+                    sameTables = false;
+                    break;
+                }
+            }
+        }
+
+        if (!sameTables) {
+            setTables(tables);
+            return;
+        }
+        for (Table t : tables) {
+            updateStatus(t.getId(), t.getStatus());
+        }
+    }
+
+    /** Đổi trạng thái một bàn; không đổi thì không vẽ gì */
+    public void updateStatus(int tableId, String status) {
+        Entry e = entries.get(tableId);
+        if (e == null || Objects.equals(e.status, status)) return;
+        e.status = status;
+        redrawRegion(e.x - DIRTY_PAD, e.y - DIRTY_PAD, TABLE_WIDTH + 2 * DIRTY_PAD, TABLE_HEIGHT + 2 * DIRTY_PAD);
+    }
+
+    /** Id bàn tại điểm (tọa độ canvas), -1 nếu không có */
+    public int tableAt(double x, double y) {
+        Entry e = hitTest(x, y);
+        return e != null ? e.id : -1;
+    }
+
+    public long getFullRedrawCount() {
+        return fullRedraws;
+    }
+
+    public long getTableRedrawCount() {
+        return tableRedraws;
+    }
+
+    // ===== Vẽ =====
+
+    private void redrawAll() {
+        double width = MARGIN;
+        double height = MARGIN;
+        for (Entry e : entries.values()) {
+            width = Math.max(width, e.x + TABLE_WIDTH + MARGIN);
+            height = Math.max(height, e.y + TABLE_HEIGHT + MARGIN);
+        }
+        canvas.setWidth(width);
+        canvas.setHeight(height);
+        setPrefSize(width, height);
+        setMinSize(width, height);
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, width, height);
+        for (Entry e : entries.values()) {
+            drawTable(gc, e);
+        }
+        fullRedraws++;
+    }
+
+    /** Xóa một vùng rồi vẽ lại các bàn giao với vùng đó, theo đúng thứ tự vẽ */
+    private void redrawRegion(double rx, double ry, double rw, double rh) {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.save();
+        gc.beginPath();
+        gc.rect(rx, ry, rw, rh);
+        gc.clip();
+        gc.clearRect(rx, ry, rw, rh);
+        for (Entry e : entries.values()) {
+            if (e.intersects(rx, ry, rw, rh)) {
+                drawTable(gc, e);
+                tableRedraws++;
+            }
+        }
+        gc.restore();
+    }
+
+    private void drawTable(GraphicsContext gc, Entry e) {
+        double cx = e.x + TABLE_WIDTH / 2;
+        double cy = e.y + TABLE_HEIGHT / 2;
+
+        // Ghế trên/dưới/trái/phải
+        gc.setFill(Color.web(getChairColorByStatus(e.status)));
+        gc.fillRoundRect(cx - 12.5, cy - 45, 25, 15, 5, 5);
+        gc.fillRoundRect(cx - 12.5, cy + 30, 25, 15, 5, 5);
+        gc.fillRoundRect(cx - 55, cy - 12.5, 15, 25, 5, 5);
+        gc.fillRoundRect(cx + 40, cy - 12.5, 15, 25, 5, 5);
+
+        // Mặt bàn
+        gc.setFill(Color.web(getTableColorByStatus(e.status)));
+        gc.fillRoundRect(cx - 40, cy - 30, 80, 60, 10, 10);
+        gc.setStroke(Color.WHITE);
+        gc.setLineWidth(2);
+        gc.strokeRoundRect(cx - 40, cy - 30, 80, 60, 10, 10);
+
+        // Tên bàn
+        gc.setFill(Color.WHITE);
+        gc.setFont(LABEL_FONT);
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        gc.fillText(e.name != null ? e.name : "Bàn " + e.id, cx, cy, 76);
+    }
+
+    private static String getTableColorByStatus(String status) {
+        if (status == null) return "#4CAF50";
+        switch (status) {
+            case "empty": return "#4CAF50";
+            case "occupied": return "#f44336";
+            case "reserved": return "#FF9800";
+            case "ordering": return "#9C27B0";
+            default: return "#4CAF50";
+        }
+    }
+
+    private static String getChairColorByStatus(String status) {
+        if (status == null) return "#455A64";
+        switch (status) {
+            case "empty": return "#2E7D32";
+            case "occupied": return "#B71C1C";
+            case "reserved": return "#E65100";
+            case "ordering": return "#4A148C";
+            default: return "#455A64";
+        }
+    }
+
+    // ===== Chỉ mục không gian =====
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private void rebuildIndex() {
+        index.clear();
+        for (Entry e : entries.values()) {
+            addToIndex(e);
+        }
+    }
+
+    private void addToIndex(Entry e) {
+        int x0 = (int) Math.floor(e.x / INDEX_CELL);
+        int x1 = (int) Math.floor((e.x + TABLE_WIDTH) / INDEX_CELL);
+        int y0 = (int) Math.floor(e.y / INDEX_CELL);
+        int y1 = (int) Math.floor((e.y + TABLE_HEIGHT) / INDEX_CELL);
+        for (int cx = x0; cx <= x1; cx++) {
+            for (int cy = y0; cy <= y1; cy++) {
+                index.computeIfAbsent(cellKey(cx, cy), k -> new ArrayList<>(2)).add(e);
+            }
+        }
+    }
+
+    private void removeFromIndex(Entry e) {
+        index.values().removeIf(list -> {
+            list.remove(e);
+            return list.isEmpty();
+        });
+    }
+
+    /** Bàn vẽ sau nằm trên, nên lấy bàn cuối cùng chứa điểm */
+    private Entry hitTest(double x, double y) {
+        List<Entry> candidates = index.get(cellKey((int) Math.floor(x / INDEX_CELL), (int) Math.floor(y / INDEX_CELL)));
+        if (candidates == null) return null;
+        Entry hit = null;
+        for (Entry e : candidates) {
+            if (e.contains(x, y)) {
+                hit = e;
+            }
+        }
+        return hit;
+    }
+
+    // ===== Chuột =====
+
+    private void handleMouseMoved(MouseEvent event) {
+        canvas.setCursor(hitTest(event.getX(), event.getY()) != null ? Cursor.HAND : Cursor.DEFAULT);
+    }
+
+    private void handleMousePressed(MouseEvent event) {
+        dragged = false;
+        dragging = null;
+        if (event.getButton() != MouseButton.PRIMARY || !event.isShortcutDown()) return;
+
+        Entry e = hitTest(event.getX(), event.getY());
+        if (e != null) {
+            dragging = e;
+            dragOffsetX = event.getX() - e.x;
+            dragOffsetY = event.getY() - e.y;
+        }
+    }
+
+    private void handleMouseDragged(MouseEvent event) {
+        if (dragging == null) return;
+        double nx = Math.max(0, Math.round((event.getX() - dragOffsetX) / SNAP) * SNAP);
+        double ny = Math.max(0, Math.round((event.getY() - dragOffsetY) / SNAP) * SNAP);
+        if (nx == dragging.x && ny == dragging.y) return;
+
+        double oldX = dragging.x;
+        double oldY = dragging.y;
+        removeFromIndex(dragging);
+        dragging.x = nx;
+        dragging.y = ny;
+        addToIndex(dragging);
+        dragged = true;
+
+        if (nx + TABLE_WIDTH + MARGIN > canvas.getWidth() || ny + TABLE_HEIGHT + MARGIN > canvas.getHeight()) {
+            redrawAll();
+        } else {
+            redrawRegion(oldX - DIRTY_PAD, oldY - DIRTY_PAD, TABLE_WIDTH + 2 * DIRTY_PAD, TABLE_HEIGHT + 2 * DIRTY_PAD);
+            redrawRegion(nx - DIRTY_PAD, ny - DIRTY_PAD, TABLE_WIDTH + 2 * DIRTY_PAD, TABLE_HEIGHT + 2 * DIRTY_PAD);
+        }
+    }
+
+    private void handleMouseReleased(MouseEvent event) {
+        if (dragging != null && dragged) {
+            TableLayout layout = new TableLayout(dragging.id, dragging.x, dragging.y);
+            savedLayouts.put(layout.getTableId(), layout);
+            if (onTableMoved != null) {
+                onTableMoved.onTableMoved(layout);
+            }
+        }
+        dragging = null;
+    }
+
+    private void handleMouseClicked(MouseEvent event) {
+        // Nhả chuột sau khi kéo bàn không tính là click
+        if (dragged || !event.isStillSincePress()) return;
+        Entry e = hitTest(event.getX(), event.getY());
+        if (e != null && onTableClicked != null) {
+            onTableClicked.onTableClicked(e.id, event.getButton());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.barmanagement.util;
+
+import com.barmanagement.dao.AsyncDAO;
+import javafx.application.Platform;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Helper chuyển kết quả từ thread DB về FX Application Thread.
+ *
+ * FxAsync.load(() -> dao.findAll(), list -> table.setItems(...), this::showError);
+ */
+public final class FxAsync {
+
+    private static final Log LOG = Log.get(FxAsync.class);
+
+    private FxAsync() {
+    }
+
+    /**
+     * Chạy truy vấn trên thread DB, gọi onSuccess / onError trên FX thread.
+     * Nếu future bị hủy thì không gọi callback nào.
+     */
+    public static <T> CompletableFuture<T> load(AsyncDAO.SqlCallable<T> query,
+                                                Consumer<T> onSuccess,
+                                                Consumer<Throwable> onError) {
+        CompletableFuture<T> future = AsyncDAO.supply(query);
+        deliver(future, onSuccess, onError);
+        return future;
+    }
+
+    /** Gắn callback FX cho một future có sẵn */
+    public static <T> void deliver(CompletableFuture<T> future,
+                                   Consumer<T> onSuccess,
+                                   Consumer<Throwable> onError) {
+        future.whenComplete((result, error) -> runOnFx(() -> {
+            if (future.isCancelled()) return;
+            if (error == null) {
+                onSuccess.accept(result);
+            } else if (onError != null) {
+                onError.accept(unwrap(error));
+            } else {
+                LOG.error("❌ Unhandled async error", unwrap(error));
+            }
+        }));
+    }
+
+    /** Chạy ngay nếu đang ở FX thread, ngược lại đưa vào Platform.runLater */
+    public static void runOnFx(Runnable action) {
+        if (Platform.isFxApplicationThread()) {
+            action.run();
+        } else {
+            Platform.runLater(action);
+        }
+    }
+
+    /** Bỏ lớp CompletionException/ExecutionException để lấy lỗi gốc (SQLException...) */
+    public static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    public static boolean isCancellation(Throwable t) {
+        return unwrap(t) instanceof CancellationException;
+    }
+}
@@ -0,0 +1,328 @@
+package com.barmanagement.util;
+
+import com.barmanagement.config.DatabaseConfig;
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.event.EventTarget;
+import javafx.scene.Node;
+import javafx.scene.control.Labeled;
+import javafx.scene.input.InputEvent;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.stage.Window;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Watchdog cho FX Application Thread.
+ *
+ * Một thread nền cứ fx.watchdog.intervalMs lại gửi một "nhịp" bằng Platform.runLater và đo thời gian
+ * đến khi nhịp được chạy (độ trễ pulse). Nếu nhịp chờ quá fx.watchdog.stallThresholdMs, FX thread
+ * đang bị chặn (JDBC, showAndWait trong runLater...): watchdog chụp stack trace của FX thread cùng
+ * sự kiện nhập liệu gần nhất (click/phím) đã kích hoạt nó, ghi vào báo cáo xoay vòng
+ * (fx.watchdog.reportSize bản ghi) và tăng bộ đếm của ca làm việc hiện tại.
+ */
+public final class FxStallWatchdog {
+
+    private static final Log LOG = Log.get(FxStallWatchdog.class);
+
+    /** Một lần FX thread bị chặn */
+    public static final class StallRecord {
+        private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("dd/MM HH:mm:ss");
+
+        private final LocalDateTime startedAt;
+        private final String trigger;
+        private final String stackTrace;
+        private final long startNanos;
+        private volatile long durationMillis = -1;
+
+        private StallRecord(LocalDateTime startedAt, long startNanos, String trigger, String stackTrace) {
+            this.startedAt = startedAt;
+            this.startNanos = startNanos;
+            this.trigger = trigger;
+            this.stackTrace = stackTrace;
+        }
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        /** Thời gian bị chặn; nếu FX thread vẫn chưa chạy lại thì tính đến hiện tại */
+        public long getDurationMillis() {
+            long d = durationMillis;
+            return d >= 0 ? d : (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        public boolean isOngoing() {
+            return durationMillis < 0;
+        }
+
+        public String getTrigger() {
+            return trigger;
+        }
+
+        public String getStackTrace() {
+            return stackTrace;
+        }
+
+        @Override
+        public String toString() {
+            return startedAt.format(TIME_FORMAT) + " - " + getDurationMillis() + "ms"
+                    + (isOngoing() ? " (đang bị chặn)" : "") + " - " + trigger;
+        }
+    }
+
+    private static final FxStallWatchdog INSTANCE = new FxStallWatchdog();
+
+    private static final int MAX_STACK_FRAMES = 40;
+
+    private final boolean enabled;
+    private final long intervalMs;
+    private final long stallThresholdNanos;
+    private final int reportSize;
+
+    private final LatencyHistogram pulseLatency = new LatencyHistogram("fx.pulse");
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Thread fxThread;
+    /** nanoTime lúc gửi nhịp đang chờ; 0 = không có nhịp nào đang chờ */
+    private volatile long pendingSince;
+    private final AtomicReference<StallRecord> currentStall = new AtomicReference<>();
+
+    // Guarded by report
+    private final Deque<StallRecord> report = new ArrayDeque<>();
+
+    private final AtomicLong totalStalls = new AtomicLong();
+    private final AtomicLong shiftStalls = new AtomicLong();
+    private final AtomicLong shiftStallMillis = new AtomicLong();
+    private volatile String shiftUser;
+    private volatile LocalDateTime shiftStartedAt = LocalDateTime.now();
+
+    private volatile String lastInput = "(chưa có)";
+    private volatile long lastInputNanos;
+
+    private boolean started;
+
+    private FxStallWatchdog() {
+        DatabaseConfig config = DatabaseConfig.get();
+        this.enabled = config.getBoolean("fx.watchdog.enabled", true);
+        this.intervalMs = Math.max(10, config.getLong("fx.watchdog.intervalMs", 100));
+        this.stallThresholdNanos = Math.max(intervalMs, config.getLong("fx.watchdog.stallThresholdMs", 500)) * 1_000_000L;
+        this.reportSize = Math.max(1, config.getInt("fx.watchdog.reportSize", 20));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fx-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static FxStallWatchdog get() {
+        return INSTANCE;
+    }
+
+    /** Gọi một lần khi ứng dụng khởi động (từ bất kỳ thread nào) */
+    public synchronized void start() {
+        if (started || !enabled) return;
+        started = true;
+        Platform.runLater(() -> {
+            fxThread = Thread.currentThread();
+            trackInputEvents();
+        });
+        scheduler.scheduleWithFixedDelay(this::check, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        LOG.info("✅ FX watchdog started (stall threshold {}ms)", stallThresholdNanos / 1_000_000);
+    }
+
+    public synchronized void stop() {
+        scheduler.shutdownNow();
+        started = false;
+    }
+
+    // ===== Ca làm việc =====
+
+    /** Bắt đầu ca mới (sau khi đăng nhập): chốt số liệu ca trước và đếm lại từ 0 */
+    public void startShift(String user) {
+        if (shiftUser != null) {
+            endShift();
+        }
+        shiftUser = user;
+        shiftStartedAt = LocalDateTime.now();
+        shiftStalls.set(0);
+        shiftStallMillis.set(0);
+        pulseLatency.reset();
+    }
+
+    /** Kết thúc ca (đăng xuất): log số liệu của ca */
+    public void endShift() {
+        if (enabled) {
+            LOG.info("📊 {}", getShiftSummary());
+        }
+        shiftUser = null;
+    }
+
+    public long getShiftStallCount() {
+        return shiftStalls.get();
+    }
+
+    public long getTotalStallCount() {
+        return totalStalls.get();
+    }
+
+    public String getShiftSummary() {
+        return String.format("FX shift %s since %s: stalls=%d, blocked=%dms, %s",
+                shiftUser != null ? shiftUser : "-", shiftStartedAt.format(StallRecord.TIME_FORMAT),
+                shiftStalls.get(), shiftStallMillis.get(), pulseLatency.getSummary());
+    }
+
+    public LatencyHistogram getPulseLatencyHistogram() {
+        return pulseLatency;
+    }
+
+    /** Các lần bị chặn gần nhất, mới nhất trước */
+    public List<StallRecord> getReport() {
+        synchronized (report) {
+            return new ArrayList<>(report);
+        }
+    }
+
+    // ===== Nội bộ =====
+
+    /** Chạy trên thread watchdog */
+    private void check() {
+        try {
+            long since = pendingSince;
+            long now = System.nanoTime();
+            if (since == 0) {
+                pendingSince = now;
+                Platform.runLater(this::pulse);
+                return;
+            }
+            Thread fx = fxThread;
+            if (fx == null || now - since < stallThresholdNanos || currentStall.get() != null) {
+                return;
+            }
+
+            StackTraceElement[] frames = fx.getStackTrace();
+            String stack = formatStack(frames);
+            StallRecord stall = new StallRecord(LocalDateTime.now(), since, describeTrigger(frames, now), stack);
+            if (!currentStall.compareAndSet(null, stall)) return;
+            if (pendingSince != since) {
+                // FX thread vừa chạy lại trong lúc chụp stack
+                currentStall.compareAndSet(stall, null);
+                return;
+            }
+
+            totalStalls.incrementAndGet();
+            shiftStalls.incrementAndGet();
+            synchronized (report) {
+                report.addFirst(stall);
+                while (report.size() > reportSize) {
+                    report.removeLast();
+                }
+            }
+            LOG.atWarn()
+                    .with("thresholdMs", stallThresholdNanos / 1_000_000)
+                    .with("trigger", stall.getTrigger())
+                    .log("🧊 FX thread blocked\n" + stack);
+        } catch (Throwable t) {
+            // Không để lỗi làm dừng lịch chạy của watchdog
+            LOG.error("FX stall watchdog check failed", t);
+        }
+    }
+
+    /** Chạy trên FX thread */
+    private void pulse() {
+        long since = pendingSince;
+        long latency = System.nanoTime() - since;
+        pendingSince = 0;
+        pulseLatency.recordNanos(latency);
+
+        StallRecord stall = currentStall.getAndSet(null);
+        if (stall != null) {
+            stall.durationMillis = latency / 1_000_000;
+            shiftStallMillis.addAndGet(stall.durationMillis);
+            LOG.atInfo().with("blockedMs", stall.durationMillis).log("✅ FX thread resumed");
+        }
+    }
+
+    private String describeTrigger(StackTraceElement[] frames, long now) {
+        // Frame ngoài cùng của ứng dụng là handler đã nhận sự kiện, frame trong cùng là nơi đang chờ
+        String entry = null;
+        String blockedAt = null;
+        for (StackTraceElement frame : frames) {
+            if (frame.getClassName().startsWith("com.barmanagement.")) {
+                if (blockedAt == null) blockedAt = shortFrame(frame);
+                entry = shortFrame(frame);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        if (entry != null) {
+            sb.append(entry);
+            if (!entry.equals(blockedAt)) sb.append(" → ").append(blockedAt);
+        } else {
+            sb.append(frames.length > 0 ? shortFrame(frames[0]) : "?");
+        }
+        if (lastInputNanos != 0) {
+            sb.append(" (last input: ").append(lastInput).append(", ")
+                    .append((now - lastInputNanos) / 1_000_000).append("ms ago)");
+        }
+        return sb.toString();
+    }
+
+    private static String shortFrame(StackTraceElement frame) {
+        String cls = frame.getClassName();
+        return cls.substring(cls.lastIndexOf('.') + 1) + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+    }
+
+    private static String formatStack(StackTraceElement[] frames) {
+        StringBuilder sb = new StringBuilder();
+        int n = Math.min(frames.length, MAX_STACK_FRAMES);
+        for (int i = 0; i < n; i++) {
+            sb.append("\tat ").append(frames[i]).append('\n');
+        }
+        if (frames.length > n) {
+            sb.append("\t... ").append(frames.length - n).append(" more\n");
+        }
+        return sb.toString();
+    }
+
+    /** Ghi lại click/phím gần nhất trên mọi cửa sổ để biết sự kiện nào gây ra lần bị chặn */
+    private void trackInputEvents() {
+        Window.getWindows().forEach(this::track);
+        Window.getWindows().addListener((ListChangeListener<Window>) change -> {
+            while (change.next()) {
+                change.getAddedSubList().forEach(this::track);
+            }
+        });
+    }
+
+    private void track(Window window) {
+        window.addEventFilter(MouseEvent.MOUSE_RELEASED, this::onInput);
+        window.addEventFilter(KeyEvent.KEY_PRESSED, this::onInput);
+    }
+
+    private void onInput(InputEvent event) {
+        lastInput = event.getEventType() + " on " + describe(event.getTarget());
+        lastInputNanos = System.nanoTime();
+    }
+
+    private static String describe(EventTarget target) {
+        String name = target.getClass().getSimpleName();
+        if (target instanceof Labeled && ((Labeled) target).getText() != null) {
+            return name + " '" + ((Labeled) target).getText() + "'";
+        }
+        if (target instanceof Node && ((Node) target).getId() != null) {
+            return name + "#" + ((Node) target).getId();
+        }
+        return name;
+    }
+}
@@ -0,0 +1,346 @@
+package com.barmanagement.util;
+
+import com.barmanagement.config.DatabaseConfig;
+import com.barmanagement.model.MenuItem;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache ảnh món ăn cho các lưới menu.
+ *
+ * - Ảnh được giải mã ở thread nền đúng kích thước hiển thị (60px, 80px...), không giải mã ảnh gốc trên FX thread.
+ * - Ảnh thu nhỏ được lưu PNG trong ImageStoreUtil.getAppMenuImageDir()/.thumbs nên lần chạy sau chỉ phải đọc file nhỏ.
+ * - Image đã giải mã giữ trong LRU giới hạn theo dung lượng pixel (imageCache.maxBytes, mặc định 32MB).
+ * - Dùng chung một ảnh placeholder.
+ *
+ * Sau khi ấm cache, vẽ lại lưới menu không giải mã ảnh nào.
+ */
+public final class ImageCache {
+
+    private static final Log LOG = Log.get(ImageCache.class);
+
+    private static final String[] PLACEHOLDER_RESOURCES = {
+            "/images/menu/default.png",
+            "/images/menu/Snack.png",
+            "/images/menu/CocaCola.png",
+            "/images/bar-logo.png"
+    };
+
+    /** Khóa ảnh đang mong đợi của một ImageView, để kết quả tải chậm không ghi đè ảnh mới hơn */
+    private static final String VIEW_KEY = ImageCache.class.getName() + ".key";
+
+    private static final long MAX_BYTES = Math.max(1L << 20,
+            DatabaseConfig.get().getLong("imageCache.maxBytes", 32L * 1024 * 1024));
+
+    // Guarded by LRU
+    private static final LinkedHashMap<String, Image> LRU = new LinkedHashMap<>(64, 0.75f, true);
+    private static long currentBytes;
+
+    private static final Map<String, CompletableFuture<Image>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private static final ExecutorService DECODER = Executors.newFixedThreadPool(2, new java.util.concurrent.ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "image-decoder-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        }
+    });
+
+    private static volatile Image placeholder;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong thumbnailsWritten = new AtomicLong();
+
+    private ImageCache() {
+    }
+
+    // ===== API =====
+
+    /**
+     * Gán ảnh cho ImageView: có sẵn trong cache thì gán ngay, chưa có thì gán placeholder
+     * rồi thay bằng ảnh thật khi giải mã xong. Gọi trên FX thread.
+     */
+    public static void load(ImageView view, String imagePath, int size) {
+        if (imagePath == null || imagePath.isEmpty()) {
+            view.getProperties().remove(VIEW_KEY);
+            view.setImage(getPlaceholder());
+            return;
+        }
+
+        String key = key(imagePath, size);
+        view.getProperties().put(VIEW_KEY, key);
+
+        Image cached = getCached(key);
+        if (cached != null) {
+            view.setImage(cached);
+            return;
+        }
+
+        view.setImage(getPlaceholder());
+        request(imagePath, size).thenAccept(image -> Platform.runLater(() -> {
+            if (key.equals(view.getProperties().get(VIEW_KEY))) {
+                view.setImage(image != null ? image : getPlaceholder());
+            }
+        }));
+    }
+
+    /** Giải mã trước ảnh của các món (ví dụ ngay sau khi tải menu) */
+    public static void prefetch(Collection<MenuItem> items, int size) {
+        for (MenuItem item : items) {
+            String path = item.getImagePath();
+            if (path != null && !path.isEmpty() && getCached(key(path, size)) == null) {
+                request(path, size);
+            }
+        }
+    }
+
+    /** Ảnh placeholder dùng chung, chỉ tải một lần */
+    public static Image getPlaceholder() {
+        Image p = placeholder;
+        if (p == null) {
+            synchronized (ImageCache.class) {
+                p = placeholder;
+                if (p == null) {
+                    p = loadPlaceholder();
+                    placeholder = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /** Bỏ ảnh của một đường dẫn khỏi bộ nhớ (ví dụ khi đổi ảnh món) */
+    public static void invalidate(String imagePath) {
+        if (imagePath == null) return;
+        String prefix = imagePath + "@";
+        synchronized (LRU) {
+            LRU.entrySet().removeIf(e -> {
+                if (!e.getKey().startsWith(prefix)) return false;
+                currentBytes -= bytesOf(e.getValue());
+                return true;
+            });
+        }
+    }
+
+    public static void clear() {
+        synchronized (LRU) {
+            LRU.clear();
+            currentBytes = 0;
+        }
+    }
+
+    // ===== Metrics =====
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    public static String getStatsSummary() {
+        synchronized (LRU) {
+            return String.format("images: entries=%d, bytes=%dKB/%dKB, hits=%d, misses=%d, thumbnailsWritten=%d",
+                    LRU.size(), currentBytes / 1024, MAX_BYTES / 1024, hits.get(), misses.get(), thumbnailsWritten.get());
+        }
+    }
+
+    // ===== Nội bộ =====
+
+    private static String key(String imagePath, int size) {
+        return imagePath + "@" + size;
+    }
+
+    private static Image getCached(String key) {
+        synchronized (LRU) {
+            Image image = LRU.get(key);
+            if (image != null) {
+                hits.incrementAndGet();
+            }
+            return image;
+        }
+    }
+
+    private static void putCached(String key, Image image) {
+        long bytes = bytesOf(image);
+        synchronized (LRU) {
+            Image old = LRU.put(key, image);
+            if (old != null) currentBytes -= bytesOf(old);
+            currentBytes += bytes;
+
+            var it = LRU.entrySet().iterator();
+            while (currentBytes > MAX_BYTES && it.hasNext()) {
+                var eldest = it.next();
+                if (eldest.getKey().equals(key)) continue;
+                currentBytes -= bytesOf(eldest.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private static long bytesOf(Image image) {
+        return (long) Math.max(1, image.getWidth()) * (long) Math.max(1, image.getHeight()) * 4;
+    }
+
+    /** Một lần giải mã cho mỗi khóa, các lời gọi trùng dùng chung future */
+    private static CompletableFuture<Image> request(String imagePath, int size) {
+        String key = key(imagePath, size);
+        return IN_FLIGHT.computeIfAbsent(key, k -> {
+            misses.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Image image = decode(imagePath, size);
+                    if (image != null) {
+                        putCached(k, image);
+                    }
+                    return image;
+                } catch (Exception e) {
+                    LOG.warn("⚠️ Cannot load image {}: {}", imagePath, e.getMessage());
+                    return null;
+                } finally {
+                    IN_FLIGHT.remove(k);
+                }
+            }, DECODER);
+        });
+    }
+
+    private static Image decode(String imagePath, int size) throws IOException {
+        File asFile = new File(imagePath);
+        boolean isFile = asFile.isAbsolute() && asFile.exists();
+        String resourcePath = imagePath.startsWith("/") ? imagePath : "/images/menu/" + imagePath;
+
+        // Tên thumbnail đổi khi file gốc đổi (mtime), ảnh trong JAR thì cố định
+        String version = isFile ? String.valueOf(asFile.lastModified()) : "res";
+        Path thumb = thumbnailDir().resolve(sha1(imagePath + "|" + version) + "_" + size + ".png");
+
+        if (Files.exists(thumb)) {
+            Image image = new Image(thumb.toUri().toString());
+            if (!image.isError()) {
+                return image;
+            }
+        }
+
+        // Tạo thumbnail từ ảnh gốc
+        BufferedImage source;
+        if (isFile) {
+            source = ImageIO.read(asFile);
+        } else {
+            try (InputStream in = ImageCache.class.getResourceAsStream(resourcePath)) {
+                source = in != null ? ImageIO.read(in) : null;
+            }
+        }
+
+        if (source != null) {
+            BufferedImage scaled = scale(source, size);
+            Path tmp = Files.createTempFile(thumb.getParent(), "thumb", ".tmp");
+            try {
+                ImageIO.write(scaled, "png", tmp.toFile());
+                Files.move(tmp, thumb, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                thumbnailsWritten.incrementAndGet();
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            Image image = new Image(thumb.toUri().toString());
+            if (!image.isError()) {
+                return image;
+            }
+        }
+
+        // ImageIO không đọc được định dạng này: để JavaFX giải mã thẳng ở kích thước đích
+        String url = isFile ? asFile.toURI().toString() : resourceUrl(resourcePath);
+        if (url == null) return null;
+        Image image = new Image(url, size, size, true, true);
+        return image.isError() ? null : image;
+    }
+
+    /** Thu nhỏ giữ tỉ lệ để cạnh dài nhất = size (ảnh nhỏ hơn thì giữ nguyên) */
+    private static BufferedImage scale(BufferedImage source, int size) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        double ratio = Math.min(1.0, (double) size / Math.max(w, h));
+        int tw = Math.max(1, (int) Math.round(w * ratio));
+        int th = Math.max(1, (int) Math.round(h * ratio));
+
+        BufferedImage out = new BufferedImage(tw, th, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.drawImage(source, 0, 0, tw, th, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    private static Path thumbnailDir() throws IOException {
+        Path dir = ImageStoreUtil.getAppMenuImageDir().resolve(".thumbs");
+        Files.createDirectories(dir);
+        return dir;
+    }
+
+    private static String resourceUrl(String resourcePath) {
+        var url = ImageCache.class.getResource(resourcePath);
+        return url != null ? url.toExternalForm() : null;
+    }
+
+    private static Image loadPlaceholder() {
+        for (String path : PLACEHOLDER_RESOURCES) {
+            String url = resourceUrl(path);
+            if (url == null) continue;
+            try {
+                Image img = new Image(url, 128, 128, true, true);
+                if (!img.isError()) {
+                    return img;
+                }
+            } catch (Exception e) {
+                // Continue to next fallback
+            }
+        }
+        return null;
+    }
+
+    private static String sha1(String s) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(s.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(s.hashCode());
+        }
+    }
+}
@@ -0,0 +1,1000 @@
+package com.barmanagement.util;
+
+import com.barmanagement.config.DatabaseConfig;
+import com.barmanagement.model.Money;
+import com.barmanagement.model.Order;
+import com.barmanagement.util.UniversalInvoiceGenerator.InvoiceFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Kho lưu hóa đơn dạng segment chỉ ghi nối (append-only), thay cho mỗi hóa đơn một file rời.
+ *
+ * - Mỗi hóa đơn là một bản ghi nén (Deflate) chứa dữ liệu gốc của {@link InvoiceView} chứ không phải
+ *   bản đã render, nên xuất lại được ra mọi định dạng hiện có (TXT/JSON/HTML/CSV).
+ * - Segment đạt invoice.archive.segmentMb thì mở segment mới. File index ghi nối (mã đơn, segment, offset,
+ *   ngày) được nạp vào bộ nhớ khi mở, nên tra theo mã đơn hay theo ngày không phải quét file.
+ * - Đọc qua memory-map: mở lại / in lại một hóa đơn là một lần nhảy tới offset rồi giải nén.
+ * - In lại đơn đã có chỉ ghi thêm bản mới, bản cũ thành rác; {@link #compact()} chép bản mới nhất sang
+ *   segment mới (xếp theo ngày) và bỏ segment cũ.
+ * - Khi mở: bản ghi cuối segment chưa kịp vào index được nạp lại, bản ghi ghi dở (mất điện) bị cắt bỏ.
+ *
+ * Chạy: java com.barmanagement.util.InvoiceArchive --stats
+ *       | --compact
+ *       | --export ORDER_ID [--format TXT|JSON|HTML|CSV] [--out file]
+ *       | --export (--month yyyy-MM | --from yyyy-MM-dd --to yyyy-MM-dd) [--format ...] [--out file.zip|thu_muc]
+ */
+public final class InvoiceArchive implements Closeable {
+
+    private static final Log LOG = Log.get(InvoiceArchive.class);
+
+    private static final int SEGMENT_MAGIC = 0x424D4953;   // "BMIS"
+    private static final int INDEX_MAGIC = 0x424D4949;     // "BMII"
+    private static final int RECORD_MAGIC = 0x494E5652;    // "INVR"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int SEGMENT_HEADER = 8;           // magic, version
+    private static final int INDEX_HEADER = 12;            // magic, version, segment đầu tiên còn dùng
+    private static final int INDEX_ENTRY = 24;             // orderId, segment, offset, dateKey
+    // magic, orderId, dateKey, độ dài gốc, độ dài nén, crc32 của phần nén
+    private static final int RECORD_HEADER = 28;
+
+    /** dateKey của hóa đơn không có thời gian */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final String INDEX_FILE = "invoices.idx";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+
+    private static final Comparator<Entry> BY_DATE = Comparator.<Entry>comparingLong(e -> e.dateKey)
+            .thenComparingInt(e -> e.orderId);
+
+    private static volatile InvoiceArchive instance;
+
+    /** Vị trí một hóa đơn trong kho */
+    public static final class Entry {
+        public final int orderId;
+        final int segment;
+        final long offset;
+        /** Giờ địa phương của đơn tính bằng giây (không phụ thuộc múi giờ), NO_TIME nếu không có */
+        final long dateKey;
+
+        private Entry(int orderId, int segment, long offset, long dateKey) {
+            this.orderId = orderId;
+            this.segment = segment;
+            this.offset = offset;
+            this.dateKey = dateKey;
+        }
+
+        /** null nếu đơn không có thời gian */
+        public LocalDateTime getOrderDateTime() {
+            return dateKey == NO_TIME ? null : LocalDateTime.ofEpochSecond(dateKey, 0, ZoneOffset.UTC);
+        }
+    }
+
+    /** Số liệu kho */
+    public static final class Stats {
+        public final int segments;
+        public final int liveInvoices;
+        /** Gồm cả các bản đã bị in lại thay thế (rác chờ compact) */
+        public final long records;
+        public final long bytes;
+
+        private Stats(int segments, int liveInvoices, long records, long bytes) {
+            this.segments = segments;
+            this.liveInvoices = liveInvoices;
+            this.records = records;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("segments=%d, invoices=%d, superseded=%d, size=%.1fMB",
+                    segments, liveInvoices, records - liveInvoices, bytes / (1024.0 * 1024.0));
+        }
+    }
+
+    private static final class Segment {
+        final int number;
+        final Path path;
+        final FileChannel channel;
+        // Guarded by archive lock
+        long size;
+        private volatile MappedByteBuffer mapped;
+
+        private Segment(int number, Path path, FileChannel channel, long size) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+
+        static Segment create(Path path, int number) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER).putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION);
+            header.flip();
+            writeFully(channel, header, 0);
+            return new Segment(number, path, channel, SEGMENT_HEADER);
+        }
+
+        static Segment open(Path path, int number) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long size = channel.size();
+                if (size < SEGMENT_HEADER) {
+                    // Segment mới tạo nhưng chưa kịp ghi header
+                    ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER).putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION);
+                    header.flip();
+                    channel.truncate(0);
+                    writeFully(channel, header, 0);
+                    return new Segment(number, path, channel, SEGMENT_HEADER);
+                }
+                ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER);
+                readFully(channel, header, 0);
+                if (header.getInt(0) != SEGMENT_MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                    throw new IOException("Not an invoice segment: " + path);
+                }
+                return new Segment(number, path, channel, size);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /** Vùng [offset, offset + length) qua memory-map; map lại khi segment đang ghi đã dài thêm */
+        ByteBuffer read(long offset, int length) throws IOException {
+            long end = offset + length;
+            if (offset < SEGMENT_HEADER || length < 0 || end > size) {
+                throw new IOException("Record outside segment " + path.getFileName() + " at " + offset);
+            }
+            MappedByteBuffer m = mapped;
+            if (m == null || end > m.capacity()) {
+                synchronized (this) {
+                    m = mapped;
+                    if (m == null || end > m.capacity()) {
+                        m = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                        mapped = m;
+                    }
+                }
+            }
+            return m.slice((int) offset, length);
+        }
+
+        void close() {
+            mapped = null;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("⚠️ Cannot close segment {}: {}", path.getFileName(), e.getMessage());
+            }
+        }
+    }
+
+    private final Path dir;
+    private final Path indexPath;
+    private final long maxSegmentBytes;
+    private final boolean fsync;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final Map<Integer, Entry> byOrder = new HashMap<>();
+    private final TreeSet<Entry> byDate = new TreeSet<>(BY_DATE);
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private FileChannel indexChannel;
+    private int firstSegment = 1;
+    private long records;
+    private boolean closed;
+
+    private InvoiceArchive(Path dir, long maxSegmentBytes, boolean fsync) {
+        this.dir = dir;
+        this.indexPath = dir.resolve(INDEX_FILE);
+        // Offset trong segment được map bằng int
+        this.maxSegmentBytes = Math.max(64 * 1024, Math.min(maxSegmentBytes, Integer.MAX_VALUE));
+        this.fsync = fsync;
+    }
+
+    public static boolean isEnabled() {
+        return DatabaseConfig.get().getBoolean("invoice.archive.enabled", true);
+    }
+
+    /** Kho mặc định của ứng dụng (mở lần đầu khi dùng) */
+    public static InvoiceArchive get() throws IOException {
+        InvoiceArchive archive = instance;
+        if (archive == null) {
+            synchronized (InvoiceArchive.class) {
+                archive = instance;
+                if (archive == null) {
+                    DatabaseConfig config = DatabaseConfig.get();
+                    archive = open(defaultDirectory(),
+                            config.getLong("invoice.archive.segmentMb", 64) * 1024 * 1024,
+                            config.getBoolean("invoice.archive.fsync", false));
+                    instance = archive;
+                }
+            }
+        }
+        return archive;
+    }
+
+    public static Path defaultDirectory() {
+        String configured = DatabaseConfig.get().getString("invoice.archive.dir", "");
+        if (!configured.isEmpty()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), "Documents", "BarManager", "Invoices", "archive");
+    }
+
+    public static InvoiceArchive open(Path dir, long maxSegmentBytes, boolean fsync) throws IOException {
+        InvoiceArchive archive = new InvoiceArchive(dir, maxSegmentBytes, fsync);
+        try {
+            archive.load();
+        } catch (IOException | RuntimeException e) {
+            archive.close();
+            throw e;
+        }
+        return archive;
+    }
+
+    // ===== Ghi =====
+
+    /** Lưu một hóa đơn; đơn đã có thì bản mới thay bản cũ */
+    public Entry append(InvoiceView view) throws IOException {
+        long dateKey = dateKey(view.orderDateTime);
+        byte[] raw = encode(view, dateKey);
+        byte[] stored = compress(raw);
+        CRC32 crc = new CRC32();
+        crc.update(stored);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + stored.length)
+                .putInt(RECORD_MAGIC)
+                .putInt(view.orderId)
+                .putLong(dateKey)
+                .putInt(raw.length)
+                .putInt(stored.length)
+                .putInt((int) crc.getValue())
+                .put(stored);
+        record.flip();
+
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            Segment segment = activeSegment(record.remaining());
+            long offset = segment.size;
+            writeFully(segment.channel, record, offset);
+            segment.size += RECORD_HEADER + stored.length;
+
+            Entry entry = new Entry(view.orderId, segment.number, offset, dateKey);
+            appendIndex(entry);
+            if (fsync) {
+                segment.channel.force(false);
+                indexChannel.force(false);
+            }
+            put(entry);
+            return entry;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ===== Đọc =====
+
+    /** Hóa đơn mới nhất của đơn, null nếu chưa lưu */
+    public InvoiceView read(int orderId) throws IOException {
+        byte[] raw;
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            Entry entry = byOrder.get(orderId);
+            if (entry == null) return null;
+            raw = readRecord(entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return decode(raw);
+    }
+
+    public boolean contains(int orderId) {
+        lock.readLock().lock();
+        try {
+            return byOrder.containsKey(orderId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Các hóa đơn có thời gian đơn trong [from, toInclusive], xếp theo thời gian */
+    public List<Entry> findByDate(LocalDate from, LocalDate toInclusive) {
+        Entry low = new Entry(Integer.MIN_VALUE, 0, 0, dateKey(from.atStartOfDay()));
+        Entry high = new Entry(Integer.MIN_VALUE, 0, 0, dateKey(toInclusive.plusDays(1).atStartOfDay()));
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(byDate.subSet(low, true, high, false));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Đọc hóa đơn theo kết quả của {@link #findByDate}; null nếu đơn đã được lưu lại ở chỗ khác */
+    public InvoiceView read(Entry entry) throws IOException {
+        byte[] raw;
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            Entry current = byOrder.get(entry.orderId);
+            if (current == null) return null;
+            raw = readRecord(current);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return decode(raw);
+    }
+
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(segments.size(), byOrder.size(), records, totalBytes());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ===== Compaction =====
+
+    /**
+     * Chép bản mới nhất của mỗi hóa đơn sang segment mới (xếp theo ngày, nên xuất theo khoảng ngày đọc tuần tự),
+     * thay index bằng một lần đổi tên nguyên tử rồi xóa segment cũ. Chặn ghi trong lúc chạy.
+     */
+    public Stats compact() throws IOException {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            Stats before = new Stats(segments.size(), byOrder.size(), records, totalBytes());
+            int firstNew = segments.isEmpty() ? firstSegment : segments.lastKey() + 1;
+            TreeMap<Integer, Segment> newSegments = new TreeMap<>();
+            List<Entry> newEntries = new ArrayList<>(byDate.size());
+            Path tmpIndex = dir.resolve(INDEX_FILE + ".tmp");
+
+            try {
+                Segment out = null;
+                for (Entry entry : byDate) {
+                    Segment source = segments.get(entry.segment);
+                    int length = RECORD_HEADER + source.read(entry.offset, RECORD_HEADER).getInt(20);
+                    if (out == null || (out.size + length > maxSegmentBytes && out.size > SEGMENT_HEADER)) {
+                        int number = out == null ? firstNew : out.number + 1;
+                        out = Segment.create(segmentPath(number), number);
+                        newSegments.put(number, out);
+                    }
+                    long offset = out.size;
+                    writeFully(out.channel, source.read(entry.offset, length), offset);
+                    out.size += length;
+                    newEntries.add(new Entry(entry.orderId, out.number, offset, entry.dateKey));
+                }
+                for (Segment segment : newSegments.values()) {
+                    segment.channel.force(true);
+                }
+                writeIndexFile(tmpIndex, firstNew, newEntries);
+                indexChannel.close();
+                Files.move(tmpIndex, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                for (Segment segment : newSegments.values()) {
+                    segment.close();
+                    Files.deleteIfExists(segment.path);
+                }
+                Files.deleteIfExists(tmpIndex);
+                if (!indexChannel.isOpen()) {
+                    indexChannel = openIndexForAppend();
+                }
+                throw e;
+            }
+
+            List<Segment> old = new ArrayList<>(segments.values());
+            segments.clear();
+            segments.putAll(newSegments);
+            firstSegment = firstNew;
+            byOrder.clear();
+            byDate.clear();
+            records = 0;
+            for (Entry entry : newEntries) {
+                put(entry);
+            }
+            indexChannel = openIndexForAppend();
+            for (Segment segment : old) {
+                deleteSegment(segment);
+            }
+
+            Stats after = new Stats(segments.size(), byOrder.size(), records, totalBytes());
+            LOG.atInfo()
+                    .with("invoices", after.liveInvoices)
+                    .with("removedRecords", before.records - after.records)
+                    .with("bytesBefore", before.bytes)
+                    .with("bytesAfter", after.bytes)
+                    .with("latencyMs", (System.nanoTime() - start) / 1_000_000)
+                    .log("🗜️ Invoice archive compacted");
+            return after;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            if (indexChannel != null) {
+                try {
+                    indexChannel.close();
+                } catch (IOException e) {
+                    LOG.warn("⚠️ Cannot close invoice index: {}", e.getMessage());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ===== Mở kho / khôi phục =====
+
+    private void load() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+
+        List<Entry> indexed = new ArrayList<>();
+        boolean rebuild = !Files.exists(indexPath);
+        if (!rebuild) {
+            try {
+                firstSegment = readIndexFile(indexed);
+            } catch (IOException e) {
+                LOG.warn("⚠️ Invoice index unreadable, rebuilding from segments: {}", e.getMessage());
+                indexed.clear();
+                rebuild = true;
+            }
+        }
+
+        for (Path path : listSegmentFiles()) {
+            int number = segmentNumber(path);
+            if (!rebuild && number < firstSegment) {
+                // Segment cũ còn sót lại sau compaction (ví dụ bị khóa trên Windows lúc xóa)
+                Files.deleteIfExists(path);
+                continue;
+            }
+            segments.put(number, Segment.open(path, number));
+        }
+
+        List<Entry> recovered = new ArrayList<>();
+        if (rebuild) {
+            firstSegment = segments.isEmpty() ? 1 : segments.firstKey();
+            for (Segment segment : segments.values()) {
+                scan(segment, SEGMENT_HEADER, segment == segments.lastEntry().getValue(), recovered);
+            }
+            writeIndexFile(indexPath, firstSegment, recovered);
+            indexChannel = openIndexForAppend();
+            for (Entry entry : recovered) {
+                put(entry);
+            }
+        } else {
+            indexChannel = openIndexForAppend();
+            long tailStart = SEGMENT_HEADER;
+            Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+            for (Entry entry : indexed) {
+                Segment segment = segments.get(entry.segment);
+                if (segment == null || entry.offset + RECORD_HEADER > segment.size) {
+                    LOG.warn("⚠️ Invoice index entry for order {} points outside the archive, dropped", entry.orderId);
+                    continue;
+                }
+                put(entry);
+                if (segment == last) {
+                    tailStart = Math.max(tailStart, entry.offset + RECORD_HEADER + recordStoredLength(segment, entry.offset));
+                }
+            }
+            // Bản ghi đã vào segment nhưng chưa kịp vào index
+            if (last != null && tailStart < last.size) {
+                scan(last, tailStart, true, recovered);
+                for (Entry entry : recovered) {
+                    appendIndex(entry);
+                    put(entry);
+                }
+            }
+        }
+
+        LOG.atInfo()
+                .with("dir", dir)
+                .with("segments", segments.size())
+                .with("invoices", byOrder.size())
+                .with("recovered", recovered.size())
+                .with("latencyMs", (System.nanoTime() - start) / 1_000_000)
+                .log("✅ Invoice archive opened");
+    }
+
+    /**
+     * Đọc tuần tự các bản ghi từ offset; dừng ở bản ghi hỏng đầu tiên.
+     * Ở segment cuối, phần hỏng là bản ghi ghi dở nên được cắt bỏ để ghi tiếp đúng vị trí.
+     */
+    private void scan(Segment segment, long from, boolean truncateTail, List<Entry> out) throws IOException {
+        long pos = from;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        while (pos + RECORD_HEADER <= segment.size) {
+            header.clear();
+            readFully(segment.channel, header, pos);
+            int magic = header.getInt(0);
+            int storedLength = header.getInt(20);
+            if (magic != RECORD_MAGIC || storedLength < 0 || pos + RECORD_HEADER + storedLength > segment.size) {
+                break;
+            }
+            ByteBuffer stored = ByteBuffer.allocate(storedLength);
+            readFully(segment.channel, stored, pos + RECORD_HEADER);
+            CRC32 crc = new CRC32();
+            stored.flip();
+            crc.update(stored);
+            if ((int) crc.getValue() != header.getInt(24)) {
+                break;
+            }
+            out.add(new Entry(header.getInt(4), segment.number, pos, header.getLong(8)));
+            pos += RECORD_HEADER + storedLength;
+        }
+        if (pos < segment.size) {
+            if (truncateTail) {
+                LOG.warn("⚠️ Truncating {} incomplete bytes at the end of {}", segment.size - pos, segment.path.getFileName());
+                segment.channel.truncate(pos);
+                segment.size = pos;
+            } else {
+                LOG.warn("⚠️ Corrupt invoice record in {} at {}, rest of segment skipped", segment.path.getFileName(), pos);
+            }
+        }
+    }
+
+    private int readIndexFile(List<Entry> out) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < INDEX_HEADER || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid index size " + size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            readFully(channel, buffer, 0);
+            buffer.flip();
+            if (buffer.getInt() != INDEX_MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not an invoice index");
+            }
+            int first = buffer.getInt();
+            // Entry cuối ghi dở (nếu có) bị bỏ qua, openIndexForAppend cắt đi
+            while (buffer.remaining() >= INDEX_ENTRY) {
+                out.add(new Entry(buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getLong()));
+            }
+            return first;
+        }
+    }
+
+    private void writeIndexFile(Path path, int first, List<Entry> entries) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER + entries.size() * INDEX_ENTRY)
+                    .putInt(INDEX_MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(first);
+            for (Entry entry : entries) {
+                putEntry(buffer, entry);
+            }
+            buffer.flip();
+            writeFully(channel, buffer, 0);
+            channel.force(true);
+        }
+    }
+
+    private FileChannel openIndexForAppend() throws IOException {
+        FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.WRITE);
+        long size = channel.size();
+        long valid = INDEX_HEADER + (size - INDEX_HEADER) / INDEX_ENTRY * INDEX_ENTRY;
+        if (valid < size) {
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+        return channel;
+    }
+
+    private void appendIndex(Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY);
+        putEntry(buffer, entry);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            indexChannel.write(buffer);
+        }
+    }
+
+    private static void putEntry(ByteBuffer buffer, Entry entry) {
+        buffer.putInt(entry.orderId).putInt(entry.segment).putLong(entry.offset).putLong(entry.dateKey);
+    }
+
+    // ===== Helpers =====
+
+    private void put(Entry entry) {
+        Entry previous = byOrder.put(entry.orderId, entry);
+        if (previous != null) {
+            byDate.remove(previous);
+        }
+        byDate.add(entry);
+        records++;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Invoice archive is closed");
+        }
+    }
+
+    private Segment activeSegment(int recordLength) throws IOException {
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (last != null && (last.size + recordLength <= maxSegmentBytes || last.size == SEGMENT_HEADER)) {
+            return last;
+        }
+        int number = last == null ? firstSegment : last.number + 1;
+        Segment segment = Segment.create(segmentPath(number), number);
+        segments.put(number, segment);
+        return segment;
+    }
+
+    private byte[] readRecord(Entry entry) throws IOException {
+        Segment segment = segments.get(entry.segment);
+        if (segment == null) {
+            throw new IOException("Missing segment " + entry.segment + " for order " + entry.orderId);
+        }
+        ByteBuffer header = segment.read(entry.offset, RECORD_HEADER);
+        if (header.getInt(0) != RECORD_MAGIC || header.getInt(4) != entry.orderId) {
+            throw new IOException("Corrupt invoice record for order " + entry.orderId);
+        }
+        int rawLength = header.getInt(16);
+        ByteBuffer stored = segment.read(entry.offset + RECORD_HEADER, header.getInt(20));
+        CRC32 crc = new CRC32();
+        crc.update(stored.duplicate());
+        if ((int) crc.getValue() != header.getInt(24)) {
+            throw new IOException("Checksum mismatch for order " + entry.orderId);
+        }
+        return decompress(stored, rawLength);
+    }
+
+    private int recordStoredLength(Segment segment, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        readFully(segment.channel, header, offset);
+        return header.getInt(20);
+    }
+
+    private long totalBytes() {
+        long bytes = 0;
+        for (Segment segment : segments.values()) {
+            bytes += segment.size;
+        }
+        return bytes;
+    }
+
+    private void deleteSegment(Segment segment) {
+        segment.close();
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            // Windows không cho xóa file đang được map; lần mở sau sẽ xóa
+            LOG.warn("⚠️ Cannot delete old segment {} yet: {}", segment.path.getFileName(), e.getMessage());
+        }
+    }
+
+    private Path segmentPath(int number) {
+        return dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private List<Path> listSegmentFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                if (segmentNumber(path) > 0) {
+                    files.add(path);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static int segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static long dateKey(LocalDateTime time) {
+        return time == null ? NO_TIME : time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) throw new IOException("Unexpected end of file");
+            position += n;
+        }
+    }
+
+    // ===== Mã hóa bản ghi =====
+
+    private static byte[] encode(InvoiceView view, long dateKey) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(view.orderId);
+        out.writeInt(view.tableId);
+        out.writeLong(dateKey);
+        writeNullable(out, view.status);
+        out.writeDouble(view.discountPercent);
+        out.writeLong(minor(view.finalAmount));
+        out.writeInt(view.lines.size());
+        for (InvoiceView.Line line : view.lines) {
+            writeNullable(out, line.name);
+            out.writeInt(line.quantity);
+            out.writeLong(minor(line.price));
+            out.writeLong(minor(line.subtotal));
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static InvoiceView decode(byte[] raw) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        int orderId = in.readInt();
+        int tableId = in.readInt();
+        long dateKey = in.readLong();
+        String status = readNullable(in);
+        Timestamp time = dateKey == NO_TIME ? null
+                : Timestamp.valueOf(LocalDateTime.ofEpochSecond(dateKey, 0, ZoneOffset.UTC));
+
+        Order order = new Order(orderId, tableId, time, status);
+        order.setDiscountPercent(in.readDouble());
+        order.setTotalAmount(Money.ofMinor(in.readLong()));
+
+        int count = in.readInt();
+        List<InvoiceView.Line> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = readNullable(in);
+            int quantity = in.readInt();
+            Money price = Money.ofMinor(in.readLong());
+            Money subtotal = Money.ofMinor(in.readLong());
+            lines.add(new InvoiceView.Line(name, quantity, price, subtotal));
+        }
+        return new InvoiceView(order, lines);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static long minor(Money money) {
+        return money != null ? money.getMinor() : 0;
+    }
+
+    private static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            byte[] chunk = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(ByteBuffer stored, int rawLength) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(stored);
+            byte[] raw = new byte[rawLength];
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, n, rawLength - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += read;
+            }
+            if (n != rawLength) {
+                throw new IOException("Invoice record truncated (" + n + "/" + rawLength + " bytes)");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt invoice record", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // ===== Công cụ dòng lệnh =====
+
+    /** Tên file khi xuất, cùng kiểu với hóa đơn rời trước đây */
+    static String exportFileName(int orderId, LocalDateTime time, InvoiceFormat format) {
+        return String.format("HoaDon_Order%d_%s.%s", orderId,
+                time != null ? time.format(FILE_TIME_FORMAT) : "unknown",
+                UniversalInvoiceGenerator.getFileExtension(format));
+    }
+
+    public static void main(String[] args) throws Exception {
+        String command = null;
+        Integer orderId = null;
+        LocalDate from = null;
+        LocalDate to = null;
+        InvoiceFormat format = InvoiceFormat.TXT;
+        File out = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--stats":
+                case "--compact":
+                    command = args[i];
+                    break;
+                case "--export":
+                    command = args[i];
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        orderId = Integer.parseInt(args[++i]);
+                    }
+                    break;
+                case "--month":
+                    YearMonth month = YearMonth.parse(args[++i]);
+                    from = month.atDay(1);
+                    to = month.atEndOfMonth();
+                    break;
+                case "--from":
+                    from = LocalDate.parse(args[++i]);
+                    break;
+                case "--to":
+                    to = LocalDate.parse(args[++i]);
+                    break;
+                case "--format":
+                    format = InvoiceFormat.valueOf(args[++i].toUpperCase());
+                    if (format == InvoiceFormat.AUTO) format = InvoiceFormat.TXT;
+                    break;
+                case "--out":
+                    out = new File(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (command == null || ("--export".equals(command) && orderId == null && (from == null || to == null))) {
+            System.out.println("Usage: InvoiceArchive --stats | --compact"
+                    + " | --export ORDER_ID [--format TXT|JSON|HTML|CSV] [--out file]"
+                    + " | --export (--month yyyy-MM | --from yyyy-MM-dd --to yyyy-MM-dd) [--format ...] [--out file.zip|dir]");
+            return;
+        }
+
+        InvoiceArchive archive = get();
+        try {
+            switch (command) {
+                case "--stats":
+                    System.out.println("📦 " + archive.dir + ": " + archive.stats());
+                    break;
+                case "--compact":
+                    System.out.println("Before: " + archive.stats());
+                    System.out.println("After:  " + archive.compact());
+                    break;
+                default:
+                    if (orderId != null) {
+                        exportOne(archive, orderId, format, out);
+                    } else {
+                        exportRange(archive, from, to, format, out);
+                    }
+            }
+        } finally {
+            archive.close();
+            Log.flush();
+        }
+    }
+
+    private static void exportOne(InvoiceArchive archive, int orderId, InvoiceFormat format, File out) throws IOException {
+        InvoiceView view = archive.read(orderId);
+        if (view == null) {
+            System.out.println("⚠️ Order #" + orderId + " is not in the archive");
+            return;
+        }
+        if (out == null) {
+            out = new File(exportFileName(orderId, view.orderDateTime, format));
+        }
+        try (Writer writer = Files.newBufferedWriter(out.toPath(), StandardCharsets.UTF_8)) {
+            new UniversalInvoiceGenerator().writeInvoice(view, format, writer);
+        }
+        System.out.println("✅ " + out.getAbsolutePath());
+    }
+
+    private static void exportRange(InvoiceArchive archive, LocalDate from, LocalDate to,
+                                    InvoiceFormat format, File out) throws IOException {
+        if (out == null) {
+            out = new File("Archive_" + from + "_" + to + ".zip");
+        }
+        UniversalInvoiceGenerator generator = new UniversalInvoiceGenerator();
+        List<Entry> entries = archive.findByDate(from, to);
+        int exported = 0;
+        boolean zip = out.getName().toLowerCase().endsWith(".zip");
+
+        if (zip) {
+            File parent = out.getAbsoluteFile().getParentFile();
+            if (parent != null) Files.createDirectories(parent.toPath());
+            try (ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(out))) {
+                Writer writer = new OutputStreamWriter(zipOut, StandardCharsets.UTF_8);
+                for (Entry entry : entries) {
+                    InvoiceView view = archive.read(entry);
+                    if (view == null) continue;
+                    zipOut.putNextEntry(new ZipEntry(exportFileName(view.orderId, view.orderDateTime, format)));
+                    generator.writeInvoice(view, format, writer);
+                    zipOut.closeEntry();
+                    exported++;
+                }
+            }
+        } else {
+            Files.createDirectories(out.toPath());
+            for (Entry entry : entries) {
+                InvoiceView view = archive.read(entry);
+                if (view == null) continue;
+                File file = new File(out, exportFileName(view.orderId, view.orderDateTime, format));
+                try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                    generator.writeInvoice(view, format, writer);
+                }
+                exported++;
+            }
+        }
+        System.out.println("✅ Exported " + exported + " invoices -> " + out.getAbsolutePath());
+    }
+}
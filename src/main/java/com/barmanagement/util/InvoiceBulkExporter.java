@@ -0,0 +1,250 @@
+package com.barmanagement.util;
+
+import com.barmanagement.dao.OrderDAO;
+import com.barmanagement.dao.TimeRange;
+import com.barmanagement.model.Order;
+import com.barmanagement.model.OrderItem;
+import com.barmanagement.util.UniversalInvoiceGenerator.InvoiceFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Xuất lại hàng loạt hóa đơn của các đơn đã thanh toán trong một khoảng ngày.
+ *
+ * Đơn + món được đọc dạng stream ({@link OrderDAO#streamPaidOrdersWithItems}) và chia cho nhiều thread
+ * render bằng {@link UniversalInvoiceGenerator}. Số đơn đang chờ/đang render bị giới hạn (2 x số thread)
+ * nên bộ nhớ không tăng theo độ dài khoảng ngày. Kết quả là một file .zip hoặc một thư mục.
+ *
+ * Chạy: java com.barmanagement.util.InvoiceBulkExporter --month 2025-09 [--format TXT|JSON|HTML|CSV]
+ *       [--out Export.zip | --out thu_muc] [--threads N]
+ *   hoặc --from 2025-09-01 --to 2025-09-30 thay cho --month (cả hai ngày được tính)
+ */
+public class InvoiceBulkExporter {
+
+    private static final Log LOG = Log.get(InvoiceBulkExporter.class);
+
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+
+    /** Báo tiến độ; được gọi từ các thread render */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    /** Kết quả một lần xuất */
+    public static final class Result {
+        public final int exported;
+        public final int failed;
+        public final long elapsedMillis;
+        public final File output;
+
+        private Result(int exported, int failed, long elapsedMillis, File output) {
+            this.exported = exported;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+            this.output = output;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("exported=%d, failed=%d, %dms -> %s", exported, failed, elapsedMillis, output);
+        }
+    }
+
+    private final OrderDAO orderDAO = new OrderDAO();
+    private final InvoiceFormat format;
+    private final int threads;
+
+    private final UniversalInvoiceGenerator generator = new UniversalInvoiceGenerator();
+
+    public InvoiceBulkExporter(InvoiceFormat format, int threads) {
+        this.format = format == InvoiceFormat.AUTO ? InvoiceFormat.TXT : format;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Xuất hóa đơn của các đơn thanh toán trong range.
+     *
+     * @param output file kết thúc bằng ".zip" để ghi một file nén, ngược lại là thư mục đích
+     */
+    public Result export(TimeRange range, File output, ProgressListener listener)
+            throws SQLException, IOException, InterruptedException {
+        long start = System.nanoTime();
+        int total = orderDAO.countPaidOrders(range);
+        boolean zip = output.getName().toLowerCase().endsWith(".zip");
+
+        File parent = zip ? output.getAbsoluteFile().getParentFile() : output;
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicReference<IOException> zipError = new AtomicReference<>();
+        Semaphore inFlight = new Semaphore(threads * 2);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "invoice-export");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try (ZipOutputStream zipOut = zip ? new ZipOutputStream(new FileOutputStream(output)) : null) {
+            try {
+                orderDAO.streamPaidOrdersWithItems(range, (order, items) -> {
+                    if (zipError.get() != null) {
+                        throw new InterruptedException("Zip output failed");
+                    }
+                    inFlight.acquire();
+                    pool.execute(() -> {
+                        try {
+                            if (zipOut != null) {
+                                renderToZip(order, items, zipOut);
+                            } else {
+                                renderToDirectory(order, items, output);
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            failed.incrementAndGet();
+                            LOG.atError().with("orderId", order.getId()).cause(e).log("❌ Invoice export failed");
+                            if (zipOut != null && e instanceof IOException) {
+                                zipError.compareAndSet(null, (IOException) e);
+                            }
+                        } finally {
+                            inFlight.release();
+                            int n = done.incrementAndGet();
+                            if (listener != null) {
+                                listener.onProgress(n, Math.max(n, total));
+                            }
+                        }
+                    });
+                });
+            } catch (InterruptedException e) {
+                if (zipError.get() == null) throw e;
+            } finally {
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            if (zipError.get() != null) {
+                throw zipError.get();
+            }
+        }
+
+        Result result = new Result(done.get() - failed.get(), failed.get(),
+                (System.nanoTime() - start) / 1_000_000, output);
+        LOG.atInfo()
+                .with("range", range)
+                .with("format", format)
+                .with("threads", threads)
+                .with("exported", result.exported)
+                .with("failed", result.failed)
+                .with("latencyMs", result.elapsedMillis)
+                .log("📦 Bulk invoice export finished");
+        return result;
+    }
+
+    private void renderToZip(Order order, List<OrderItem> items, ZipOutputStream zipOut) throws IOException {
+        // Render ngoài khóa, chỉ ghi entry là tuần tự
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        render(order, items, buffer);
+        synchronized (zipOut) {
+            zipOut.putNextEntry(new ZipEntry(fileName(order)));
+            buffer.writeTo(zipOut);
+            zipOut.closeEntry();
+        }
+    }
+
+    private void renderToDirectory(Order order, List<OrderItem> items, File dir) throws IOException {
+        try (OutputStream out = new FileOutputStream(new File(dir, fileName(order)))) {
+            render(order, items, out);
+        }
+    }
+
+    private void render(Order order, List<OrderItem> items, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        generator.writeInvoice(order, items, format, writer);
+        writer.flush();
+    }
+
+    /** Tên file cố định theo đơn, nên xuất lại sẽ ghi đè thay vì tạo bản trùng */
+    private String fileName(Order order) {
+        String time = order.getOrderTime() != null
+                ? order.getOrderTime().toLocalDateTime().format(FILE_TIME_FORMAT) : "unknown";
+        return String.format("HoaDon_Order%d_%s.%s", order.getId(), time,
+                UniversalInvoiceGenerator.getFileExtension(format));
+    }
+
+    public static void main(String[] args) throws Exception {
+        LocalDate from = null;
+        LocalDate to = null;
+        InvoiceFormat format = InvoiceFormat.TXT;
+        File out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--month":
+                    YearMonth month = YearMonth.parse(args[++i]);
+                    from = month.atDay(1);
+                    to = month.atEndOfMonth();
+                    break;
+                case "--from":
+                    from = LocalDate.parse(args[++i]);
+                    break;
+                case "--to":
+                    to = LocalDate.parse(args[++i]);
+                    break;
+                case "--format":
+                    format = InvoiceFormat.valueOf(args[++i].toUpperCase());
+                    break;
+                case "--out":
+                    out = new File(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (from == null || to == null) {
+            System.out.println("Usage: InvoiceBulkExporter (--month yyyy-MM | --from yyyy-MM-dd --to yyyy-MM-dd)"
+                    + " [--format TXT|JSON|HTML|CSV] [--out file.zip|dir] [--threads N]");
+            return;
+        }
+        if (out == null) {
+            File invoicesDir = new File(new File(new File(System.getProperty("user.home"), "Documents"), "BarManager"), "Invoices");
+            out = new File(invoicesDir, "Export_" + from + "_" + to + ".zip");
+        }
+
+        AtomicInteger lastPercent = new AtomicInteger(-1);
+        Result result = new InvoiceBulkExporter(format, threads).export(TimeRange.days(from, to), out, (done, total) -> {
+            int percent = total == 0 ? 100 : done * 100 / total;
+            int last = lastPercent.get();
+            if (percent / 5 > last / 5 && lastPercent.compareAndSet(last, percent)) {
+                System.out.printf("... %d/%d (%d%%)%n", done, total, percent);
+            }
+        });
+        System.out.println((result.failed == 0 ? "✅ " : "⚠️ ") + result);
+        Log.flush();
+    }
+}
@@ -1,45 +1,76 @@
 package com.barmanagement.util;
 
+import com.barmanagement.model.Money;
 import com.barmanagement.model.Order;
 import com.barmanagement.model.OrderItem;
 import com.barmanagement.model.MenuItem;
 import com.barmanagement.dao.MenuItemDAO;
 
 import com.itextpdf.kernel.font.PdfFont;
-import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
 import com.itextpdf.layout.Document;
 import com.itextpdf.layout.element.*;
+import com.itextpdf.layout.properties.HorizontalAlignment;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
 
 import java.awt.Desktop;
 import java.io.File;
 import java.io.IOException;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.Locale;
 
 /**
  * Invoice Generator - Tạo PDF hóa đơn đẹp với font chữ tiếng Việt
+ *
+ * ENHANCED: Font lấy từ {@link PdfResourceCache} (parse một lần), header vẽ sẵn vị trí và
+ * bố cục cột cố định nên mỗi hóa đơn chỉ còn phần dữ liệu của đơn. An toàn đa luồng.
  */
 public class InvoiceGenerator {
+
+    private static final Log LOG = Log.get(InvoiceGenerator.class);
     
-    private final NumberFormat currencyFormatter = NumberFormat.getInstance(Locale.forLanguageTag("vi-VN"));
-    private final SimpleDateFormat dateFormatter = new SimpleDateFormat("dd/MM/yyyy HH:mm");
-    
-    public InvoiceGenerator() {
-        currencyFormatter.setMaximumFractionDigits(0);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+
+    // Bố cục cột cố định
+    private static final float[] INFO_COLUMNS = {1, 1};
+    private static final float[] ITEM_COLUMNS = {3, 1, 2, 2};
+    private static final float[] TOTAL_COLUMNS = {2, 1};
+    private static final String[] ITEM_HEADERS = {"Ten mon", "SL", "Don gia", "Thanh tien"};
+
+    // Header: vùng rộng bằng trang A4 trừ lề mặc định (36pt mỗi bên) của Document
+    private static final String TITLE = "BAR MANAGER";
+    private static final String SUBTITLE = "HOA DON THANH TOAN";
+    private static final float TITLE_SIZE = 24;
+    private static final float SUBTITLE_SIZE = 18;
+    private static final float HEADER_WIDTH = PageSize.A4.getWidth() - 72;
+    private static final float HEADER_HEIGHT = 56;
+
+    /** Vị trí chữ header, đo từ FontProgram đã cache một lần cho mọi hóa đơn */
+    private static final class HeaderLayout {
+        static final float TITLE_X = centered(TITLE, TITLE_SIZE);
+        static final float SUBTITLE_X = centered(SUBTITLE, SUBTITLE_SIZE);
+
+        private static float centered(String text, float size) {
+            return (HEADER_WIDTH - PdfResourceCache.textWidth(PdfResourceCache.boldProgram(), text, size)) / 2;
+        }
     }
+
+    private final MenuItemDAO menuDAO = new MenuItemDAO();
     
     /**
      * Tạo file PDF hóa đơn mà không tự động mở
      */
     public File generateInvoice(Order order, List<OrderItem> orderItems) {
         if (order == null || orderItems == null || orderItems.isEmpty()) {
-            System.err.println("❌ Lỗi: Order hoặc OrderItems không hợp lệ");
+            LOG.error("❌ Lỗi: Order hoặc OrderItems không hợp lệ");
             return null;
         }
         
@@ -50,16 +81,14 @@ public class InvoiceGenerator {
             // Tạo PDF
             generateInvoicePDF(order, orderItems, invoiceFile.getAbsolutePath());
             
-            System.out.println("✅ Đã tạo hóa đơn PDF: " + invoiceFile.getAbsolutePath());
+            LOG.info("✅ Đã tạo hóa đơn PDF: {}", invoiceFile.getAbsolutePath());
             return invoiceFile;
             
         } catch (IOException e) {
-            System.err.println("❌ Lỗi tạo file PDF: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("❌ Lỗi tạo file PDF", e);
             return null;
         } catch (Exception e) {
-            System.err.println("❌ Lỗi tạo hóa đơn: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("❌ Lỗi tạo hóa đơn", e);
             return null;
         }
     }
@@ -69,7 +98,7 @@ public class InvoiceGenerator {
      */
     public void generateAndOpenInvoice(Order order, List<OrderItem> orderItems) {
         if (order == null || orderItems == null || orderItems.isEmpty()) {
-            System.err.println("❌ Lỗi: Order hoặc OrderItems không hợp lệ");
+            LOG.error("❌ Lỗi: Order hoặc OrderItems không hợp lệ");
             return;
         }
         
@@ -84,18 +113,16 @@ public class InvoiceGenerator {
             boolean opened = tryOpenPDF(invoiceFile);
             
             if (opened) {
-                System.out.println("✅ Đã tạo và mở hóa đơn PDF: " + invoiceFile.getName());
+                LOG.debug("✅ Đã tạo và mở hóa đơn PDF: {}", invoiceFile.getName());
             } else {
-                System.out.println("✅ Đã tạo hóa đơn PDF: " + invoiceFile.getAbsolutePath());
-                System.out.println("📁 Vui lòng mở file thủ công từ: " + invoiceFile.getParent());
+                LOG.info("✅ Đã tạo hóa đơn PDF: {}", invoiceFile.getAbsolutePath());
+                LOG.debug("📁 Vui lòng mở file thủ công từ: {}", invoiceFile.getParent());
             }
             
         } catch (IOException e) {
-            System.err.println("❌ Lỗi tạo file PDF: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("❌ Lỗi tạo file PDF", e);
         } catch (Exception e) {
-            System.err.println("❌ Lỗi tạo hóa đơn: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("❌ Lỗi tạo hóa đơn", e);
         }
     }
     
@@ -113,7 +140,7 @@ public class InvoiceGenerator {
         }
         
         // Tạo tên file với timestamp
-        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new java.util.Date());
+        String timestamp = LocalDateTime.now().format(FILE_TIME_FORMAT);
         String fileName = String.format("HoaDon_Order%d_%s.pdf", orderId, timestamp);
         
         return new File(invoicesDir, fileName);
@@ -132,7 +159,7 @@ public class InvoiceGenerator {
                     return true;
                 }
             } catch (Exception e) {
-                System.err.println("Không thể mở PDF bằng Desktop API: " + e.getMessage());
+                LOG.error("Không thể mở PDF bằng Desktop API: {}", e.getMessage());
             }
         }
         
@@ -142,7 +169,7 @@ public class InvoiceGenerator {
                 Runtime.getRuntime().exec("cmd /c start \"\" \"" + pdfFile.getAbsolutePath() + "\"");
                 return true;
             } catch (Exception e) {
-                System.err.println("Không thể mở PDF bằng Windows command: " + e.getMessage());
+                LOG.error("Không thể mở PDF bằng Windows command: {}", e.getMessage());
             }
         }
         
@@ -152,7 +179,7 @@ public class InvoiceGenerator {
                 Runtime.getRuntime().exec("open \"" + pdfFile.getAbsolutePath() + "\"");
                 return true;
             } catch (Exception e) {
-                System.err.println("Không thể mở PDF bằng macOS command: " + e.getMessage());
+                LOG.error("Không thể mở PDF bằng macOS command: {}", e.getMessage());
             }
         }
         
@@ -162,7 +189,7 @@ public class InvoiceGenerator {
                 Runtime.getRuntime().exec("xdg-open \"" + pdfFile.getAbsolutePath() + "\"");
                 return true;
             } catch (Exception e) {
-                System.err.println("Không thể mở PDF bằng Linux command: " + e.getMessage());
+                LOG.error("Không thể mở PDF bằng Linux command: {}", e.getMessage());
             }
         }
         
@@ -177,28 +204,15 @@ public class InvoiceGenerator {
         PdfDocument pdf = new PdfDocument(writer);
         Document document = new Document(pdf);
         
-        // Thiết lập font - sử dụng font mặc định với encoding UTF-8
-        PdfFont font = PdfFontFactory.createFont(com.itextpdf.io.font.constants.StandardFonts.HELVETICA, "UTF-8");
-        PdfFont boldFont = PdfFontFactory.createFont(com.itextpdf.io.font.constants.StandardFonts.HELVETICA_BOLD, "UTF-8");
+        // PdfFont gắn với một PdfDocument nên tạo mỗi hóa đơn, nhưng từ FontProgram đã parse sẵn
+        PdfFont font = PdfResourceCache.regularFont();
+        PdfFont boldFont = PdfResourceCache.boldFont();
         
         // Header - Logo và tên bar
-        Paragraph title = new Paragraph("BAR MANAGER")
-                .setFont(boldFont)
-                .setFontSize(24)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(5);
-        
-        Paragraph subtitle = new Paragraph("HOA DON THANH TOAN")
-                .setFont(boldFont)
-                .setFontSize(18)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(20);
-        
-        document.add(title);
-        document.add(subtitle);
+        document.add(createHeader(pdf, boldFont));
         
         // Thông tin đơn hàng
-        Table infoTable = new Table(UnitValue.createPercentArray(new float[]{1, 1}));
+        Table infoTable = new Table(UnitValue.createPercentArray(INFO_COLUMNS));
         infoTable.setWidth(UnitValue.createPercentValue(100));
         infoTable.setMarginBottom(20);
         
@@ -211,7 +225,7 @@ public class InvoiceGenerator {
                 .setFont(font)
                 .setFontSize(11)
                 .setMarginTop(5));
-        leftCell.add(new Paragraph("Thoi gian: " + dateFormatter.format(order.getOrderTime()))
+        leftCell.add(new Paragraph("Thoi gian: " + formatTime(order))
                 .setFont(font)
                 .setFontSize(11)
                 .setMarginTop(5));
@@ -247,46 +261,23 @@ public class InvoiceGenerator {
         document.add(itemsTitle);
         
         // Bảng chi tiết món ăn
-        Table itemsTable = new Table(UnitValue.createPercentArray(new float[]{3, 1, 2, 2}));
+        Table itemsTable = new Table(UnitValue.createPercentArray(ITEM_COLUMNS));
         itemsTable.setWidth(UnitValue.createPercentValue(100));
         itemsTable.setMarginBottom(20);
         
         // Header của bảng
-        Cell headerCell1 = new Cell().add(new Paragraph("Ten mon").setFont(boldFont).setFontSize(11));
-        Cell headerCell2 = new Cell().add(new Paragraph("SL").setFont(boldFont).setFontSize(11));
-        Cell headerCell3 = new Cell().add(new Paragraph("Don gia").setFont(boldFont).setFontSize(11));
-        Cell headerCell4 = new Cell().add(new Paragraph("Thanh tien").setFont(boldFont).setFontSize(11));
-        
-        itemsTable.addHeaderCell(headerCell1);
-        itemsTable.addHeaderCell(headerCell2);
-        itemsTable.addHeaderCell(headerCell3);
-        itemsTable.addHeaderCell(headerCell4);
+        for (String header : ITEM_HEADERS) {
+            itemsTable.addHeaderCell(new Cell().add(new Paragraph(header).setFont(boldFont).setFontSize(11)));
+        }
         
         // Thêm các món ăn
-        MenuItemDAO menuDAO = new MenuItemDAO();
-        double totalAmount = 0;
+        long totalMinor = 0;
         
         for (OrderItem item : orderItems) {
             if (item == null) continue;
             
             try {
-                MenuItem menuItem = null;
-                String itemName = "Món không xác định";
-                
-                // Thử lấy tên món từ database
-                try {
-                    menuItem = menuDAO.findById(item.getMenuItemId());
-                    if (menuItem != null && menuItem.getName() != null) {
-                        itemName = menuItem.getName();
-                    }
-                } catch (Exception e) {
-                    System.err.println("Không thể load menu item ID " + item.getMenuItemId() + ": " + e.getMessage());
-                }
-                
-                // Fallback: sử dụng display name nếu có
-                if (itemName.equals("Món không xác định") && item.getDisplayName() != null) {
-                    itemName = item.getDisplayName();
-                }
+                String itemName = resolveItemName(item);
                 
                 Cell nameCell = new Cell().add(new Paragraph(itemName).setFont(font).setFontSize(10));
                 Cell qtyCell = new Cell().add(new Paragraph("x" + item.getQuantity()).setFont(font).setFontSize(10));
@@ -298,11 +289,10 @@ public class InvoiceGenerator {
                 itemsTable.addCell(priceCell);
                 itemsTable.addCell(totalCell);
                 
-                totalAmount += item.getSubtotal();
+                totalMinor += item.getSubtotalMinor();
                 
             } catch (Exception e) {
-                System.err.println("Lỗi xử lý order item: " + e.getMessage());
-                e.printStackTrace();
+                LOG.error("Lỗi xử lý order item", e);
             }
         }
         
@@ -313,11 +303,11 @@ public class InvoiceGenerator {
         document.add(new Paragraph(" ").setMarginBottom(10));
         
         // Tổng cộng
-        Table totalTable = new Table(UnitValue.createPercentArray(new float[]{2, 1}));
+        Table totalTable = new Table(UnitValue.createPercentArray(TOTAL_COLUMNS));
         totalTable.setWidth(UnitValue.createPercentValue(100));
         
         Cell totalLabelCell = new Cell().add(new Paragraph("TONG CONG:").setFont(boldFont).setFontSize(16));
-        Cell totalValueCell = new Cell().add(new Paragraph(formatCurrency(totalAmount)).setFont(boldFont).setFontSize(16));
+        Cell totalValueCell = new Cell().add(new Paragraph(Money.formatMinor(totalMinor)).setFont(boldFont).setFontSize(16));
         
         totalTable.addCell(totalLabelCell);
         totalTable.addCell(totalValueCell);
@@ -341,79 +331,54 @@ public class InvoiceGenerator {
     }
     
     /**
-     * Format tiền tệ
+     * NEW: Header vẽ thẳng lên XObject ở vị trí tính sẵn, thay cho hai Paragraph phải dàn trang lại mỗi lần
+     * (XObject thuộc về một PdfDocument nên vẫn tạo theo hóa đơn)
      */
-    private String formatCurrency(double amount) {
-        return currencyFormatter.format(amount) + " VNĐ";
-    }
-    
-    /**
-     * Format tiền tệ cho BigDecimal
-     */
-    private String formatCurrency(java.math.BigDecimal amount) {
-        return currencyFormatter.format(amount) + " VNĐ";
+    private Image createHeader(PdfDocument pdf, PdfFont boldFont) {
+        PdfFormXObject header = new PdfFormXObject(new Rectangle(HEADER_WIDTH, HEADER_HEIGHT));
+        new PdfCanvas(header, pdf)
+                .beginText()
+                .setFontAndSize(boldFont, TITLE_SIZE)
+                .moveText(HeaderLayout.TITLE_X, 33)
+                .showText(TITLE)
+                .endText()
+                .beginText()
+                .setFontAndSize(boldFont, SUBTITLE_SIZE)
+                .moveText(HeaderLayout.SUBTITLE_X, 5)
+                .showText(SUBTITLE)
+                .endText();
+        return new Image(header)
+                .setHorizontalAlignment(HorizontalAlignment.CENTER)
+                .setMarginBottom(20);
     }
     
     /**
-     * Tạo font tiếng Việt với fallback
+     * FIXED: Dùng tên món đã có trên OrderItem, chỉ tra database khi thiếu (tránh một query mỗi món)
      */
-    private PdfFont createVietnameseFont() {
-        // Danh sách font ưu tiên cho tiếng Việt
-        String[] fontNames = {
-            "Arial",           // Windows
-            "Helvetica",       // macOS/Linux
-            "Liberation Sans", // Linux
-            "DejaVu Sans",     // Linux
-            "Tahoma",          // Windows
-            "Verdana"          // Windows
-        };
-        
-        for (String fontName : fontNames) {
-            try {
-                return PdfFontFactory.createFont(fontName, "UTF-8");
-            } catch (Exception e) {
-                // Thử font tiếp theo
-                continue;
-            }
+    private String resolveItemName(OrderItem item) {
+        if (item.getMenuItemName() != null) {
+            return item.getMenuItemName();
         }
-        
-        // Fallback: sử dụng font mặc định
         try {
-            return PdfFontFactory.createFont();
+            MenuItem menuItem = menuDAO.findById(item.getMenuItemId());
+            if (menuItem != null && menuItem.getName() != null) {
+                return menuItem.getName();
+            }
         } catch (Exception e) {
-            throw new RuntimeException("Không thể tạo font", e);
+            LOG.error("Không thể load menu item ID {}: {}", item.getMenuItemId(), e.getMessage());
         }
+        return "Món không xác định";
+    }
+    
+    private String formatTime(Order order) {
+        return order.getOrderTime() != null ? order.getOrderTime().toLocalDateTime().format(DATE_FORMAT) : "";
     }
     
     /**
-     * Tạo font bold tiếng Việt với fallback
+     * Format tiền tệ
      */
-    private PdfFont createVietnameseBoldFont() {
-        // Danh sách font bold ưu tiên cho tiếng Việt
-        String[] fontNames = {
-            "Arial-Bold",           // Windows
-            "Helvetica-Bold",       // macOS/Linux
-            "Liberation Sans Bold", // Linux
-            "DejaVu Sans Bold",     // Linux
-            "Tahoma-Bold",          // Windows
-            "Verdana-Bold"          // Windows
-        };
-        
-        for (String fontName : fontNames) {
-            try {
-                return PdfFontFactory.createFont(fontName, "UTF-8");
-            } catch (Exception e) {
-                // Thử font tiếp theo
-                continue;
-            }
-        }
-        
-        // Fallback: sử dụng font mặc định
-        try {
-            return PdfFontFactory.createFont();
-        } catch (Exception e) {
-            throw new RuntimeException("Không thể tạo font bold", e);
-        }
+    private String formatCurrency(Money amount) {
+        return amount.format();
     }
     
     /**
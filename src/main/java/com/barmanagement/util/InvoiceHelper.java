@@ -4,6 +4,9 @@ import com.barmanagement.model.Order;
 import com.barmanagement.model.OrderItem;
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Invoice Helper - Class tiện ích để tạo hóa đơn dễ dàng
@@ -11,6 +14,14 @@ import java.util.List;
 public class InvoiceHelper {
     
     private static final UniversalInvoiceGenerator generator = new UniversalInvoiceGenerator();
+    private static final InvoiceGenerator pdfGenerator = new InvoiceGenerator();
+    
+    // Một thread nền cho PDF: không chặn FX thread lúc thanh toán, hóa đơn ra theo thứ tự
+    private static final ExecutorService PDF_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "invoice-pdf");
+        t.setDaemon(true);
+        return t;
+    });
     
     /**
      * Tạo hóa đơn với định dạng tự động (khuyến nghị)
@@ -33,6 +44,13 @@ public class InvoiceHelper {
         generator.generateAndOpenInvoice(order, orderItems);
     }
     
+    /**
+     * NEW: In lại hóa đơn đã lưu trong kho theo mã đơn
+     */
+    public static boolean reprintInvoice(int orderId) {
+        return generator.reopenAndOpenInvoice(orderId);
+    }
+    
     /**
      * Tạo hóa đơn TEXT (hoạt động trên mọi máy)
      */
@@ -61,6 +79,14 @@ public class InvoiceHelper {
         return generator.generateInvoice(order, orderItems, UniversalInvoiceGenerator.InvoiceFormat.CSV);
     }
     
+    /**
+     * NEW: Tạo hóa đơn PDF ở thread nền (font/bố cục đã cache, không chặn FX thread).
+     * Future trả về null nếu tạo thất bại; dùng {@link FxAsync#deliver} để cập nhật UI.
+     */
+    public static CompletableFuture<File> createPdfInvoiceAsync(Order order, List<OrderItem> orderItems) {
+        return CompletableFuture.supplyAsync(() -> pdfGenerator.generateInvoice(order, orderItems), PDF_EXECUTOR);
+    }
+    
     /**
      * Kiểm tra xem có thể tạo hóa đơn không
      */
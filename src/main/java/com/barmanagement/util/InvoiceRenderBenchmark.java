@@ -0,0 +1,107 @@
+package com.barmanagement.util;
+
+import com.barmanagement.model.Money;
+import com.barmanagement.model.Order;
+import com.barmanagement.model.OrderItem;
+import com.barmanagement.util.UniversalInvoiceGenerator.InvoiceFormat;
+
+import java.io.Writer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Micro-benchmark đo số hóa đơn render được mỗi giây cho từng định dạng,
+ * với một thread và với nhiều thread dùng chung một UniversalInvoiceGenerator.
+ * Hóa đơn giả (không cần database), ghi vào Writer bỏ đi để chỉ đo phần render.
+ *
+ * Chạy: java com.barmanagement.util.InvoiceRenderBenchmark [invoices] [threads] [itemsPerInvoice]
+ * (mặc định 20000 hóa đơn, số thread = số core, 8 món mỗi hóa đơn).
+ */
+public class InvoiceRenderBenchmark {
+
+    private static final int WARMUP = 5000;
+
+    public static void main(String[] args) throws Exception {
+        int invoices = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int itemsPerInvoice = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        UniversalInvoiceGenerator generator = new UniversalInvoiceGenerator();
+        List<OrderItem> items = sampleItems(itemsPerInvoice);
+        Order plain = sampleOrder(0, items);
+        Order discounted = sampleOrder(10, items);
+
+        System.out.println("=== INVOICE RENDER BENCHMARK (" + invoices + " invoices, "
+                + itemsPerInvoice + " items, " + threads + " threads) ===");
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (InvoiceFormat format : InvoiceFormat.values()) {
+                if (format == InvoiceFormat.AUTO) continue;
+
+                render(generator, format, plain, discounted, items, WARMUP);
+                double single = invoicesPerSecond(() -> render(generator, format, plain, discounted, items, invoices), invoices);
+                double parallel = invoicesPerSecond(() -> {
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (int t = 0; t < threads; t++) {
+                        futures.add(pool.submit(() -> {
+                            render(generator, format, plain, discounted, items, invoices / threads);
+                            return null;
+                        }));
+                    }
+                    for (Future<?> f : futures) {
+                        f.get();
+                    }
+                }, invoices / threads * threads);
+
+                System.out.printf("%-5s 1 thread: %,10.0f invoices/s | %d threads: %,10.0f invoices/s%n",
+                        format, single, threads, parallel);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Log.flush();
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        void run() throws Exception;
+    }
+
+    private static double invoicesPerSecond(Run run, int count) throws Exception {
+        long start = System.nanoTime();
+        run.run();
+        return count / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void render(UniversalInvoiceGenerator generator, InvoiceFormat format,
+                               Order plain, Order discounted, List<OrderItem> items, int count) throws Exception {
+        Writer sink = Writer.nullWriter();
+        for (int i = 0; i < count; i++) {
+            generator.writeInvoice((i & 1) == 0 ? plain : discounted, items, format, sink);
+        }
+    }
+
+    private static Order sampleOrder(double discountPercent, List<OrderItem> items) {
+        Order order = new Order(1234, 5, new Timestamp(System.currentTimeMillis()), "paid");
+        Money total = Money.sum(items, OrderItem::getSubtotalMinor);
+        order.setDiscountPercent(discountPercent);
+        order.setTotalAmount(total.afterDiscount(discountPercent));
+        return order;
+    }
+
+    private static List<OrderItem> sampleItems(int count) {
+        String[] names = {"Bia Heineken", "Mojito", "Khoai tây chiên", "Cocktail <Signature>", "Nước cam"};
+        List<OrderItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            OrderItem item = new OrderItem(i + 1, 1234, i + 1, 1 + i % 3, Money.of(25_000 + 5_000L * (i % 7)));
+            item.setMenuItemName(names[i % names.length]);
+            items.add(item);
+        }
+        return items;
+    }
+}
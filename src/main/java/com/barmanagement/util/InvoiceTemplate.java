@@ -0,0 +1,243 @@
+package com.barmanagement.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Template hóa đơn được biên dịch một lần, render nhiều lần (an toàn đa luồng).
+ *
+ * Cú pháp (tập con của Mustache):
+ * - {{field}}, {{field:-25}} căn trái 25 ký tự, {{field:12}} căn phải 12 ký tự,
+ *   {{field|mặc định}} khi giá trị null
+ * - {{#items}}...{{/items}} lặp qua các dòng món; bên trong dùng được trường của dòng và của hóa đơn
+ * - {{#discount}}...{{/discount}} chỉ khi có giảm giá, {{^discount}}...{{/discount}} khi không có
+ *
+ * Tên trường được tra lúc biên dịch (sai tên báo lỗi ngay khi nạp template), nên lúc render
+ * chỉ còn nối chuỗi vào Appendable. Escape (HTML/CSV) áp dụng cho giá trị, không cho phần chữ cố định.
+ */
+public final class InvoiceTemplate {
+
+    /** Escape giá trị theo định dạng đích */
+    @FunctionalInterface
+    public interface Escaper {
+        String escape(String value);
+
+        Escaper NONE = value -> value;
+
+        Escaper HTML = value -> {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '&' || c == '<' || c == '>' || c == '"' || c == '\'') {
+                    return value.replace("&", "&amp;")
+                            .replace("<", "&lt;")
+                            .replace(">", "&gt;")
+                            .replace("\"", "&quot;")
+                            .replace("'", "&#39;");
+                }
+            }
+            return value;
+        };
+
+        Escaper CSV = value -> value.indexOf('"') < 0 ? value : value.replace("\"", "\"\"");
+    }
+
+    private static final Map<String, Function<InvoiceView, Object>> INVOICE_FIELDS = new HashMap<>();
+    private static final Map<String, Function<InvoiceView.Line, Object>> LINE_FIELDS = new HashMap<>();
+
+    static {
+        INVOICE_FIELDS.put("orderId", v -> v.orderId);
+        INVOICE_FIELDS.put("tableId", v -> v.tableId);
+        INVOICE_FIELDS.put("orderTime", v -> v.orderTime);
+        INVOICE_FIELDS.put("status", v -> v.status);
+        INVOICE_FIELDS.put("statusText", v -> v.statusText);
+        INVOICE_FIELDS.put("discountPercent", InvoiceView::getDiscountPercentText);
+        INVOICE_FIELDS.put("discountLabel", v -> "GIAM GIA (" + v.getDiscountPercentText() + "%):");
+        INVOICE_FIELDS.put("originalAmount", v -> v.originalAmount);
+        INVOICE_FIELDS.put("originalAmountFormatted", v -> v.originalAmount.format());
+        INVOICE_FIELDS.put("discountAmount", v -> v.discountAmount);
+        INVOICE_FIELDS.put("discountAmountFormatted", v -> v.discountAmount.format());
+        INVOICE_FIELDS.put("negativeDiscountFormatted", v -> "-" + v.discountAmount.format());
+        INVOICE_FIELDS.put("finalAmount", v -> v.finalAmount);
+        INVOICE_FIELDS.put("finalAmountFormatted", v -> v.finalAmount.format());
+        INVOICE_FIELDS.put("total", v -> v.total);
+        INVOICE_FIELDS.put("totalFormatted", v -> v.total.format());
+
+        LINE_FIELDS.put("name", l -> l.name);
+        LINE_FIELDS.put("quantity", l -> l.quantity);
+        LINE_FIELDS.put("price", l -> l.price);
+        LINE_FIELDS.put("priceFormatted", l -> l.price.format());
+        LINE_FIELDS.put("subtotal", l -> l.subtotal);
+        LINE_FIELDS.put("subtotalFormatted", l -> l.subtotal.format());
+    }
+
+    private interface Node {
+        void render(InvoiceView view, InvoiceView.Line line, Appendable out) throws IOException;
+    }
+
+    private final String name;
+    private final Node[] nodes;
+
+    private InvoiceTemplate(String name, Node[] nodes) {
+        this.name = name;
+        this.nodes = nodes;
+    }
+
+    /** Nạp và biên dịch template từ classpath, ví dụ "/templates/invoice.html" */
+    public static InvoiceTemplate load(String resource, Escaper escaper) {
+        try (InputStream in = InvoiceTemplate.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Invoice template not found: " + resource);
+            }
+            return compile(resource, new String(in.readAllBytes(), StandardCharsets.UTF_8), escaper);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read invoice template " + resource, e);
+        }
+    }
+
+    /**
+     * Biên dịch template. Xuống dòng trong template được đổi sang xuống dòng của hệ điều hành.
+     */
+    public static InvoiceTemplate compile(String name, String source, Escaper escaper) {
+        int[] pos = {0};
+        List<Node> nodes = parse(name, source.replace("\r\n", "\n"), pos, null, false, escaper);
+        return new InvoiceTemplate(name, nodes.toArray(new Node[0]));
+    }
+
+    public void render(InvoiceView view, Appendable out) throws IOException {
+        renderAll(nodes, view, null, out);
+    }
+
+    @Override
+    public String toString() {
+        return "InvoiceTemplate[" + name + "]";
+    }
+
+    private static void renderAll(Node[] nodes, InvoiceView view, InvoiceView.Line line, Appendable out) throws IOException {
+        for (Node node : nodes) {
+            node.render(view, line, out);
+        }
+    }
+
+    // ===== Biên dịch =====
+
+    private static List<Node> parse(String name, String src, int[] pos, String section, boolean inItems, Escaper escaper) {
+        List<Node> nodes = new ArrayList<>();
+        while (pos[0] < src.length()) {
+            int open = src.indexOf("{{", pos[0]);
+            if (open < 0) {
+                nodes.add(literal(src.substring(pos[0])));
+                pos[0] = src.length();
+                break;
+            }
+            int close = src.indexOf("}}", open);
+            if (close < 0) {
+                throw new IllegalArgumentException(name + ": unclosed tag at " + open);
+            }
+            String tag = src.substring(open + 2, close).trim();
+            int textEnd = open;
+            int next = close + 2;
+
+            // Thẻ section đứng một mình trên dòng: bỏ cả dòng, không để lại dòng trống
+            if (tag.startsWith("#") || tag.startsWith("^") || tag.startsWith("/")) {
+                int lineStart = src.lastIndexOf('\n', open - 1) + 1;
+                int lineEnd = src.indexOf('\n', next);
+                if (lineEnd < 0) lineEnd = src.length();
+                if (lineStart >= pos[0] && src.substring(lineStart, open).isBlank()
+                        && src.substring(next, lineEnd).isBlank()) {
+                    textEnd = lineStart;
+                    next = Math.min(lineEnd + 1, src.length());
+                }
+            }
+            if (textEnd > pos[0]) {
+                nodes.add(literal(src.substring(pos[0], textEnd)));
+            }
+            pos[0] = next;
+
+            if (tag.startsWith("/")) {
+                if (!tag.substring(1).equals(section)) {
+                    throw new IllegalArgumentException(name + ": unexpected {{" + tag + "}} at " + open);
+                }
+                return nodes;
+            }
+            if (tag.startsWith("#") || tag.startsWith("^")) {
+                String key = tag.substring(1);
+                boolean inverted = tag.charAt(0) == '^';
+                if ("items".equals(key) && !inverted) {
+                    Node[] body = parse(name, src, pos, key, true, escaper).toArray(new Node[0]);
+                    nodes.add((view, line, out) -> {
+                        for (InvoiceView.Line l : view.lines) {
+                            renderAll(body, view, l, out);
+                        }
+                    });
+                } else if ("discount".equals(key)) {
+                    Node[] body = parse(name, src, pos, key, inItems, escaper).toArray(new Node[0]);
+                    nodes.add((view, line, out) -> {
+                        if (view.hasDiscount() != inverted) {
+                            renderAll(body, view, line, out);
+                        }
+                    });
+                } else {
+                    throw new IllegalArgumentException(name + ": unknown section {{" + tag + "}}");
+                }
+                continue;
+            }
+            nodes.add(variable(name, tag, inItems, escaper));
+        }
+        if (section != null) {
+            throw new IllegalArgumentException(name + ": missing {{/" + section + "}}");
+        }
+        return nodes;
+    }
+
+    private static Node literal(String text) {
+        String nativeText = text.replace("\n", System.lineSeparator());
+        return (view, line, out) -> out.append(nativeText);
+    }
+
+    private static Node variable(String name, String tag, boolean inItems, Escaper escaper) {
+        String defaultValue = null;
+        int bar = tag.indexOf('|');
+        if (bar >= 0) {
+            defaultValue = tag.substring(bar + 1);
+            tag = tag.substring(0, bar);
+        }
+        int width = 0;
+        int colon = tag.indexOf(':');
+        if (colon >= 0) {
+            width = Integer.parseInt(tag.substring(colon + 1).trim());
+            tag = tag.substring(0, colon);
+        }
+        String key = tag.trim();
+
+        Function<InvoiceView.Line, Object> lineField = inItems ? LINE_FIELDS.get(key) : null;
+        Function<InvoiceView, Object> invoiceField = INVOICE_FIELDS.get(key);
+        if (lineField == null && invoiceField == null) {
+            throw new IllegalArgumentException(name + ": unknown field {{" + key + "}}"
+                    + (LINE_FIELDS.containsKey(key) ? " outside {{#items}}" : ""));
+        }
+
+        String fallback = defaultValue != null ? escaper.escape(defaultValue) : "";
+        int pad = Math.abs(width);
+        boolean left = width < 0;
+        return (view, line, out) -> {
+            Object value = lineField != null ? lineField.apply(line) : invoiceField.apply(view);
+            String text = value != null ? escaper.escape(value.toString()) : fallback;
+            if (!left) padTo(out, pad - text.length());
+            out.append(text);
+            if (left) padTo(out, pad - text.length());
+        };
+    }
+
+    private static void padTo(Appendable out, int spaces) throws IOException {
+        for (int i = 0; i < spaces; i++) {
+            out.append(' ');
+        }
+    }
+}
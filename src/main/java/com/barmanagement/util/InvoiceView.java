@@ -0,0 +1,87 @@
+package com.barmanagement.util;
+
+import com.barmanagement.model.Money;
+import com.barmanagement.model.Order;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dữ liệu của một hóa đơn đã tính sẵn (tên món đã sửa encoding, tiền đã format, tổng đã cộng)
+ * để mọi định dạng render từ cùng một bản, không tính lại từng trường. Bất biến, an toàn đa luồng.
+ */
+public final class InvoiceView {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    /** Một dòng món */
+    public static final class Line {
+        /** null nếu không tìm được tên món */
+        public final String name;
+        public final int quantity;
+        public final Money price;
+        public final Money subtotal;
+
+        public Line(String name, int quantity, Money price, Money subtotal) {
+            this.name = name;
+            this.quantity = quantity;
+            this.price = price;
+            this.subtotal = subtotal;
+        }
+    }
+
+    public final int orderId;
+    public final int tableId;
+    /** null nếu đơn không có thời gian */
+    public final LocalDateTime orderDateTime;
+    public final String orderTime;
+    public final String status;
+    public final String statusText;
+    public final List<Line> lines;
+    public final double discountPercent;
+    public final Money originalAmount;
+    public final Money discountAmount;
+    public final Money finalAmount;
+    /** Tổng các dòng món */
+    public final Money total;
+
+    public InvoiceView(Order order, List<Line> lines) {
+        this.orderId = order.getId();
+        this.tableId = order.getTableId();
+        this.orderDateTime = order.getOrderTime() != null ? order.getOrderTime().toLocalDateTime() : null;
+        this.orderTime = orderDateTime != null ? orderDateTime.format(DATE_FORMAT) : "";
+        this.status = order.getStatus();
+        this.statusText = statusText(order.getStatus());
+        this.lines = Collections.unmodifiableList(lines);
+        this.discountPercent = order.getDiscountPercent();
+        this.originalAmount = order.getOriginalAmount();
+        this.discountAmount = order.getDiscountAmount();
+        this.finalAmount = order.getFinalAmount();
+        long totalMinor = 0;
+        for (Line line : lines) {
+            totalMinor += line.subtotal.getMinor();
+        }
+        this.total = Money.ofMinor(totalMinor);
+    }
+
+    public boolean hasDiscount() {
+        return discountPercent > 0;
+    }
+
+    /** Phần trăm giảm giá làm tròn, ví dụ "10" */
+    public String getDiscountPercentText() {
+        return String.format("%.0f", discountPercent);
+    }
+
+    private static String statusText(String status) {
+        if (status == null) return "";
+        switch (status) {
+            case "pending": return "Chờ xử lý";
+            case "completed": return "Đã hoàn thành";
+            case "paid": return "Đã thanh toán";
+            default: return status;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.barmanagement.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram độ trễ dạng log-linear (mỗi lũy thừa của 2 chia 8 ô, sai số tối đa ~12.5%),
+ * ghi nhận không khóa nên có thể gọi record() từ nhiều thread.
+ * Giá trị lưu theo micro-giây; percentile trả về cận trên của ô chứa nó.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKETS = 8;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (64 - 4) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Ghi nhận một mẫu tính bằng nano-giây (ví dụ System.nanoTime() - start) */
+    public void recordNanos(long nanos) {
+        recordMicros(Math.max(0, nanos / 1_000));
+    }
+
+    public void recordMicros(long micros) {
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    private static int bucketIndex(long v) {
+        if (v < LINEAR_BUCKETS) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) ((v >>> (exp - 3)) & (SUB_BUCKETS - 1));
+        return LINEAR_BUCKETS + (exp - 4) * SUB_BUCKETS + sub;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < LINEAR_BUCKETS) return index;
+        int exp = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int sub = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + sub) << (exp - 3);
+        return lower + (1L << (exp - 3)) - 1;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalMicros.sum() / 1000.0 / n;
+    }
+
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /** @param percentile 0-100, ví dụ 99.0 */
+    public double getPercentileMillis(double percentile) {
+        long n = count.sum();
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(percentile / 100.0 * n);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /** Xóa số liệu (ví dụ khi bắt đầu ca mới) */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalMicros.reset();
+        maxMicros.set(0);
+    }
+
+    public String getSummary() {
+        return String.format("%s: n=%d, mean=%.2fms, p50=%.2fms, p90=%.2fms, p99=%.2fms, max=%.2fms",
+                name, getCount(), getMeanMillis(), getPercentileMillis(50), getPercentileMillis(90),
+                getPercentileMillis(99), getMaxMillis());
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
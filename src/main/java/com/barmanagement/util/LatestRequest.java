@@ -0,0 +1,55 @@
+package com.barmanagement.util;
+
+import com.barmanagement.dao.AsyncDAO;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Giữ tối đa một truy vấn "mới nhất" cho một vùng UI (ví dụ: đơn hàng của bàn đang chọn).
+ * Gửi yêu cầu mới sẽ hủy yêu cầu cũ; kết quả của yêu cầu đã bị thay thế sẽ bị bỏ qua
+ * kể cả khi JDBC đã chạy xong, nên người dùng đổi bàn liên tục không bị hiển thị nhầm dữ liệu.
+ */
+public final class LatestRequest<T> {
+
+    private CompletableFuture<T> inFlight;
+    private long generation;
+
+    /**
+     * @param onSuccess chạy trên FX thread, chỉ khi đây vẫn là yêu cầu mới nhất
+     * @param onError   chạy trên FX thread, chỉ khi đây vẫn là yêu cầu mới nhất
+     */
+    public synchronized CompletableFuture<T> submit(AsyncDAO.SqlCallable<T> query,
+                                                    Consumer<T> onSuccess,
+                                                    Consumer<Throwable> onError) {
+        cancel();
+        long myGeneration = ++generation;
+        CompletableFuture<T> future = AsyncDAO.supply(query);
+        inFlight = future;
+        FxAsync.deliver(future,
+                result -> {
+                    if (isCurrent(myGeneration)) onSuccess.accept(result);
+                },
+                error -> {
+                    if (isCurrent(myGeneration) && onError != null) onError.accept(error);
+                });
+        return future;
+    }
+
+    /** Hủy yêu cầu đang chạy (nếu có) */
+    public synchronized void cancel() {
+        if (inFlight != null && !inFlight.isDone()) {
+            inFlight.cancel(true);
+        }
+        inFlight = null;
+        generation++;
+    }
+
+    public synchronized boolean isBusy() {
+        return inFlight != null && !inFlight.isDone();
+    }
+
+    private synchronized boolean isCurrent(long gen) {
+        return generation == gen;
+    }
+}
@@ -0,0 +1,452 @@
+package com.barmanagement.util;
+
+import com.barmanagement.config.DatabaseConfig;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logging nhẹ cho ứng dụng, thay cho System.out.println trong DAO / controller / util.
+ *
+ * - Kiểm tra level trước: log.debug("Đơn #{} có {} món", id, n) không dựng chuỗi khi DEBUG tắt,
+ *   và atDebug() trả về event rỗng dùng chung nên không tốn gì.
+ * - Trường có cấu trúc: log.atInfo().with("orderId", id).with("latencyMs", ms).log("Order paid")
+ *   in ra "Order paid orderId=12 latencyMs=4".
+ * - Ghi bất đồng bộ: bản ghi vào ring buffer (log.bufferSize) và một thread nền ghi theo lô ra
+ *   console, nên FX thread không chờ I/O. Buffer đầy thì bỏ bản ghi DEBUG/INFO (có đếm), WARN/ERROR
+ *   thì ghi đồng bộ để không mất.
+ * - Level: log.level (mặc định INFO) và log.level.&lt;package hoặc class&gt;=DEBUG trong db.properties,
+ *   đổi lúc chạy bằng {@link #setRootLevel} / {@link #setLevel}.
+ */
+public final class Log {
+
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    /** Một bản ghi có trường cấu trúc; lấy bằng {@link #at(Level)} */
+    public interface Event {
+        Event with(String key, long value);
+
+        Event with(String key, Object value);
+
+        Event cause(Throwable t);
+
+        void log(String message);
+    }
+
+    private static final Map<String, Log> LOGGERS = new ConcurrentHashMap<>();
+    private static final Map<String, Level> OVERRIDES = new ConcurrentHashMap<>();
+    private static volatile Level rootLevel;
+
+    private static final boolean ASYNC;
+    private static final BlockingQueue<Record> BUFFER;
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final int BATCH_SIZE = 256;
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final Event NOOP = new Event() {
+        @Override
+        public Event with(String key, long value) {
+            return this;
+        }
+
+        @Override
+        public Event with(String key, Object value) {
+            return this;
+        }
+
+        @Override
+        public Event cause(Throwable t) {
+            return this;
+        }
+
+        @Override
+        public void log(String message) {
+        }
+    };
+
+    static {
+        DatabaseConfig config = DatabaseConfig.get();
+        rootLevel = parseLevel(config.getString("log.level", "INFO"), Level.INFO);
+        for (Map.Entry<String, String> e : config.getWithPrefix("log.level.").entrySet()) {
+            OVERRIDES.put(e.getKey(), parseLevel(e.getValue(), rootLevel));
+        }
+        ASYNC = config.getBoolean("log.async", true);
+        BUFFER = new ArrayBlockingQueue<>(Math.max(64, config.getInt("log.bufferSize", 8192)));
+        if (ASYNC) {
+            Thread writer = new Thread(Log::writeLoop, "log-writer");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+        }
+    }
+
+    private final String name;
+    private final String shortName;
+    private volatile int threshold;
+
+    private Log(String name) {
+        this.name = name;
+        this.shortName = name.substring(name.lastIndexOf('.') + 1);
+        this.threshold = effectiveLevel(name).ordinal();
+    }
+
+    public static Log get(Class<?> owner) {
+        return LOGGERS.computeIfAbsent(owner.getName(), Log::new);
+    }
+
+    // ===== Level lúc chạy =====
+
+    public static Level getRootLevel() {
+        return rootLevel;
+    }
+
+    public static void setRootLevel(Level level) {
+        rootLevel = level;
+        refreshThresholds();
+    }
+
+    /** Level riêng cho một package hoặc class (theo tiền tố tên); null = bỏ cấu hình riêng */
+    public static void setLevel(String prefix, Level level) {
+        if (level == null) {
+            OVERRIDES.remove(prefix);
+        } else {
+            OVERRIDES.put(prefix, level);
+        }
+        refreshThresholds();
+    }
+
+    public static long getDroppedCount() {
+        return DROPPED.get();
+    }
+
+    private static void refreshThresholds() {
+        for (Log log : LOGGERS.values()) {
+            log.threshold = effectiveLevel(log.name).ordinal();
+        }
+    }
+
+    /** Cấu hình có tiền tố dài nhất khớp với tên logger thắng */
+    private static Level effectiveLevel(String name) {
+        Level level = rootLevel;
+        int best = -1;
+        for (Map.Entry<String, Level> e : OVERRIDES.entrySet()) {
+            String prefix = e.getKey();
+            if (prefix.length() > best && (name.equals(prefix) || name.startsWith(prefix + "."))) {
+                best = prefix.length();
+                level = e.getValue();
+            }
+        }
+        return level;
+    }
+
+    private static Level parseLevel(String text, Level def) {
+        try {
+            return Level.valueOf(text.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Log level không hợp lệ: " + text);
+            return def;
+        }
+    }
+
+    // ===== Kiểm tra level =====
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    public boolean isTraceEnabled() {
+        return isEnabled(Level.TRACE);
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public boolean isInfoEnabled() {
+        return isEnabled(Level.INFO);
+    }
+
+    // ===== Ghi log =====
+
+    public Event at(Level level) {
+        return isEnabled(level) ? new StructuredEvent(this, level) : NOOP;
+    }
+
+    public Event atDebug() {
+        return at(Level.DEBUG);
+    }
+
+    public Event atInfo() {
+        return at(Level.INFO);
+    }
+
+    public Event atWarn() {
+        return at(Level.WARN);
+    }
+
+    public Event atError() {
+        return at(Level.ERROR);
+    }
+
+    public void trace(String message, Object... args) {
+        if (isEnabled(Level.TRACE)) emit(Level.TRACE, message, args, null, null);
+    }
+
+    public void debug(String message) {
+        if (isEnabled(Level.DEBUG)) emit(Level.DEBUG, message, null, null, null);
+    }
+
+    public void debug(String template, Object arg) {
+        if (isEnabled(Level.DEBUG)) emit(Level.DEBUG, template, new Object[]{arg}, null, null);
+    }
+
+    public void debug(String template, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) emit(Level.DEBUG, template, new Object[]{arg1, arg2}, null, null);
+    }
+
+    public void debug(String template, Object... args) {
+        if (isEnabled(Level.DEBUG)) emit(Level.DEBUG, template, args, null, null);
+    }
+
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) emit(Level.INFO, message, null, null, null);
+    }
+
+    public void info(String template, Object arg) {
+        if (isEnabled(Level.INFO)) emit(Level.INFO, template, new Object[]{arg}, null, null);
+    }
+
+    public void info(String template, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) emit(Level.INFO, template, new Object[]{arg1, arg2}, null, null);
+    }
+
+    public void info(String template, Object... args) {
+        if (isEnabled(Level.INFO)) emit(Level.INFO, template, args, null, null);
+    }
+
+    public void warn(String message) {
+        if (isEnabled(Level.WARN)) emit(Level.WARN, message, null, null, null);
+    }
+
+    public void warn(String message, Throwable t) {
+        if (isEnabled(Level.WARN)) emit(Level.WARN, message, null, null, t);
+    }
+
+    public void warn(String template, Object... args) {
+        if (isEnabled(Level.WARN)) emit(Level.WARN, template, args, null, null);
+    }
+
+    public void error(String message) {
+        if (isEnabled(Level.ERROR)) emit(Level.ERROR, message, null, null, null);
+    }
+
+    public void error(String message, Throwable t) {
+        if (isEnabled(Level.ERROR)) emit(Level.ERROR, message, null, null, t);
+    }
+
+    public void error(String template, Object... args) {
+        if (isEnabled(Level.ERROR)) emit(Level.ERROR, template, args, null, null);
+    }
+
+    // ===== Nội bộ =====
+
+    private static final class StructuredEvent implements Event {
+        private final Log log;
+        private final Level level;
+        private final List<Object> fields = new ArrayList<>(8);
+        private Throwable cause;
+
+        StructuredEvent(Log log, Level level) {
+            this.log = log;
+            this.level = level;
+        }
+
+        @Override
+        public Event with(String key, long value) {
+            fields.add(key);
+            fields.add(Long.toString(value));
+            return this;
+        }
+
+        @Override
+        public Event with(String key, Object value) {
+            fields.add(key);
+            fields.add(snapshot(value));
+            return this;
+        }
+
+        @Override
+        public Event cause(Throwable t) {
+            this.cause = t;
+            return this;
+        }
+
+        @Override
+        public void log(String message) {
+            log.emit(level, message, null, fields.toArray(), cause);
+        }
+    }
+
+    /** Bản ghi đã chốt giá trị, định dạng trên thread ghi */
+    private static final class Record {
+        final long timeMillis = System.currentTimeMillis();
+        final String thread = Thread.currentThread().getName();
+        final Level level;
+        final String logger;
+        final String template;
+        final Object[] args;
+        final Object[] fields;
+        final Throwable cause;
+
+        Record(Level level, String logger, String template, Object[] args, Object[] fields, Throwable cause) {
+            this.level = level;
+            this.logger = logger;
+            this.template = template;
+            this.args = args;
+            this.fields = fields;
+            this.cause = cause;
+        }
+    }
+
+    private void emit(Level level, String template, Object[] args, Object[] fields, Throwable cause) {
+        Throwable t = cause;
+        if (args != null) {
+            // Như SLF4J: Throwable cuối danh sách tham số là nguyên nhân
+            if (t == null && args.length > 0 && args[args.length - 1] instanceof Throwable) {
+                t = (Throwable) args[args.length - 1];
+            }
+            for (int i = 0; i < args.length; i++) {
+                args[i] = snapshot(args[i]);
+            }
+        }
+        Record record = new Record(level, shortName, template, args, fields, t);
+        if (ASYNC && BUFFER.offer(record)) {
+            return;
+        }
+        if (ASYNC && level.ordinal() < Level.WARN.ordinal()) {
+            DROPPED.incrementAndGet();
+            return;
+        }
+        write(record);
+    }
+
+    /** Giá trị bất biến giữ nguyên; object khác chuyển thành chuỗi ngay (có thể bị sửa trước khi ghi) */
+    private static Object snapshot(Object value) {
+        if (value == null || value instanceof String || value instanceof Number
+                || value instanceof Boolean || value instanceof Character || value instanceof Enum
+                || value instanceof Throwable) {
+            return value;
+        }
+        return String.valueOf(value);
+    }
+
+    private static void writeLoop() {
+        List<Record> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            try {
+                Record first = BUFFER.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                BUFFER.drainTo(batch, BATCH_SIZE - 1);
+                writeBatch(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable t) {
+                batch.clear();
+                t.printStackTrace();
+            }
+        }
+    }
+
+    /** Ghi nốt mọi bản ghi đang chờ (gọi khi thoát) */
+    public static void flush() {
+        List<Record> batch = new ArrayList<>(BATCH_SIZE);
+        while (BUFFER.drainTo(batch, BATCH_SIZE) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private static synchronized void writeBatch(List<Record> batch) {
+        StringBuilder out = new StringBuilder(4096);
+        StringBuilder err = new StringBuilder(1024);
+        for (Record r : batch) {
+            format(r, r.level.ordinal() >= Level.WARN.ordinal() ? err : out);
+        }
+        long dropped = DROPPED.getAndSet(0);
+        if (dropped > 0) {
+            err.append("⚠️ log buffer full, dropped ").append(dropped).append(" records\n");
+        }
+        print(System.out, out);
+        print(System.err, err);
+    }
+
+    private static synchronized void write(Record record) {
+        StringBuilder sb = new StringBuilder(256);
+        format(record, sb);
+        print(record.level.ordinal() >= Level.WARN.ordinal() ? System.err : System.out, sb);
+    }
+
+    private static void print(PrintStream stream, StringBuilder sb) {
+        if (sb.length() == 0) return;
+        stream.print(sb);
+        stream.flush();
+    }
+
+    private static void format(Record r, StringBuilder sb) {
+        TIME_FORMAT.formatTo(Instant.ofEpochMilli(r.timeMillis), sb);
+        sb.append(' ').append(r.level.name());
+        for (int i = r.level.name().length(); i < 5; i++) sb.append(' ');
+        sb.append(" [").append(r.thread).append("] ").append(r.logger).append(" - ");
+        appendMessage(sb, r.template, r.args);
+        if (r.fields != null) {
+            for (int i = 0; i + 1 < r.fields.length; i += 2) {
+                sb.append(' ').append(r.fields[i]).append('=').append(r.fields[i + 1]);
+            }
+        }
+        sb.append('\n');
+        if (r.cause != null) {
+            StringWriter trace = new StringWriter();
+            r.cause.printStackTrace(new PrintWriter(trace));
+            sb.append(trace);
+        }
+    }
+
+    /** Thay lần lượt mỗi "{}" bằng một tham số */
+    private static void appendMessage(StringBuilder sb, String template, Object[] args) {
+        if (template == null) {
+            sb.append("null");
+            return;
+        }
+        if (args == null || args.length == 0) {
+            sb.append(template);
+            return;
+        }
+        int argIndex = 0;
+        int start = 0;
+        int pos;
+        while (argIndex < args.length && (pos = template.indexOf("{}", start)) >= 0) {
+            sb.append(template, start, pos).append(args[argIndex++]);
+            start = pos + 2;
+        }
+        sb.append(template, start, template.length());
+    }
+}
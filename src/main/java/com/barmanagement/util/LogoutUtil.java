@@ -12,6 +12,8 @@ import java.io.IOException;
  * Utility class for handling logout functionality across all controllers
  */
 public class LogoutUtil {
+
+    private static final Log LOG = Log.get(LogoutUtil.class);
     
     /**
      * Shows a confirmation dialog for logout and handles the logout process
@@ -41,6 +43,7 @@ public class LogoutUtil {
      * @param sourceNode The node that triggered the logout
      */
     private static void performLogout(Node sourceNode) {
+        FxStallWatchdog.get().endShift();
         try {
             // Get the current stage
             Stage currentStage = (Stage) sourceNode.getScene().getWindow();
@@ -55,7 +58,7 @@ public class LogoutUtil {
             currentStage.show();
             
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.error("❌ Cannot open login screen", e);
             // Fallback: show error message
             Alert errorAlert = new Alert(Alert.AlertType.ERROR);
             errorAlert.setTitle("Lỗi");
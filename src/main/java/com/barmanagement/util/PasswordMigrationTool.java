@@ -4,167 +4,188 @@ import com.barmanagement.config.JDBCConfig;
 import com.barmanagement.controller.PasswordUtils;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 /**
  * Tool to automatically migrate all plain text passwords to hashed passwords
  * Run this ONCE to convert existing plain text passwords to hashed format
+ *
+ * ENHANCED: Each row is classified by {@link CredentialService#scheme}; only plain text passwords are
+ * rewritten, hashed in parallel and written with batched UPDATEs (one transaction per batch).
+ * Legacy SHA-256 hashes and PBKDF2 hashes below the configured cost cannot be upgraded without the
+ * password, so they are only reported and get upgraded at the user's next login.
+ *
+ * Usage: java com.barmanagement.util.PasswordMigrationTool [--yes] [--batch-size N]
  */
 public class PasswordMigrationTool {
 
+    private static final Log LOG = Log.get(PasswordMigrationTool.class);
+
+    private static final String SELECT_SQL =
+            "SELECT id, username, password FROM users WHERE password IS NOT NULL AND password != ''";
+
+    // Only overwrite the value we read, in case the user logged in (and was rehashed) meanwhile
+    private static final String UPDATE_SQL = "UPDATE users SET password = ? WHERE id = ? AND password = ?";
+
+    private static final int DEFAULT_BATCH_SIZE = 50;
+
+    private static final class UserRow {
+        final int id;
+        final String username;
+        final String password;
+        String newHash;
+
+        UserRow(int id, String username, String password) {
+            this.id = id;
+            this.username = username;
+            this.password = password;
+        }
+    }
+
     public static void main(String[] args) {
+        boolean skipConfirm = false;
+        int batchSize = DEFAULT_BATCH_SIZE;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--yes":
+                    skipConfirm = true;
+                    break;
+                case "--batch-size":
+                    batchSize = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
         System.out.println("=== PASSWORD MIGRATION TOOL ===");
         System.out.println("This tool will hash all plain text passwords in the database.");
         System.out.println("WARNING: This operation cannot be undone!");
 
-        // Confirm before proceeding
-        Scanner scanner = new Scanner(System.in);
-        System.out.print("Do you want to continue? (yes/no): ");
-        String confirm = scanner.nextLine().trim().toLowerCase();
+        if (!skipConfirm) {
+            // Confirm before proceeding
+            Scanner scanner = new Scanner(System.in);
+            System.out.print("Do you want to continue? (yes/no): ");
+            String confirm = scanner.nextLine().trim().toLowerCase();
 
-        if (!confirm.equals("yes") && !confirm.equals("y")) {
-            System.out.println("Operation cancelled.");
-            return;
+            if (!confirm.equals("yes") && !confirm.equals("y")) {
+                System.out.println("Operation cancelled.");
+                return;
+            }
         }
 
         try {
-            migratePasswords();
+            migratePasswords(batchSize);
             System.out.println("✅ Password migration completed successfully!");
         } catch (Exception e) {
             System.err.println("❌ Error during migration: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Password migration failed", e);
+        } finally {
+            Log.flush();
         }
     }
 
     /**
      * Main migration logic
      */
-    private static void migratePasswords() throws SQLException {
-        Connection conn = null;
-        try {
-            // Connect to database
-            conn = DriverManager.getConnection(
-                    JDBCConfig.CONNECTION_URL,
-                    JDBCConfig.USERNAME,
-                    JDBCConfig.PASSWORD
-            );
+    private static void migratePasswords(int batchSize) throws SQLException {
+        CredentialService credentials = CredentialService.get();
+        long start = System.nanoTime();
 
-            System.out.println("🔌 Connected to database successfully");
+        try (Connection conn = DriverManager.getConnection(
+                JDBCConfig.CONNECTION_URL,
+                JDBCConfig.USERNAME,
+                JDBCConfig.PASSWORD)) {
 
-            // Step 1: Check if passwords are already hashed
-            if (arePasswordsAlreadyHashed(conn)) {
-                System.out.println("ℹ️ Passwords appear to already be hashed. Migration not needed.");
-                return;
-            }
+            System.out.println("🔌 Connected to database successfully");
 
-            // Step 2: Get all users with plain text passwords
-            String selectSQL = "SELECT id, username, password FROM users WHERE password IS NOT NULL AND password != ''";
+            // Step 1: Classify every stored password
+            List<UserRow> plainText = new ArrayList<>();
+            int upToDate = 0;
+            int upgradeOnLogin = 0;
+            int total = 0;
 
-            try (PreparedStatement selectStmt = conn.prepareStatement(selectSQL);
+            try (PreparedStatement selectStmt = conn.prepareStatement(SELECT_SQL);
                  ResultSet rs = selectStmt.executeQuery()) {
-
-                int totalUsers = 0;
-                int successCount = 0;
-                int errorCount = 0;
-
-                System.out.println("🔄 Starting password migration...");
-
-                // Step 3: Process each user
                 while (rs.next()) {
-                    totalUsers++;
-                    int userId = rs.getInt("id");
-                    String username = rs.getString("username");
-                    String plainPassword = rs.getString("password");
-
-                    try {
-                        // Hash the plain text password
-                        String hashedPassword = PasswordUtils.hashPassword(plainPassword);
-
-                        if (hashedPassword != null) {
-                            // Update the password in database
-                            updateUserPassword(conn, userId, hashedPassword);
-                            successCount++;
-                            System.out.println("✅ User '" + username + "' (ID: " + userId + ") - Password hashed successfully");
-                        } else {
-                            errorCount++;
-                            System.err.println("❌ User '" + username + "' (ID: " + userId + ") - Failed to hash password");
-                        }
-
-                    } catch (Exception e) {
-                        errorCount++;
-                        System.err.println("❌ User '" + username + "' (ID: " + userId + ") - Error: " + e.getMessage());
+                    total++;
+                    UserRow row = new UserRow(rs.getInt("id"), rs.getString("username"), rs.getString("password"));
+                    CredentialService.Scheme scheme = CredentialService.scheme(row.password);
+                    if (scheme == CredentialService.Scheme.PLAINTEXT) {
+                        plainText.add(row);
+                    } else if (scheme == CredentialService.Scheme.PBKDF2 && !isOutdated(row.password, credentials)) {
+                        upToDate++;
+                    } else {
+                        upgradeOnLogin++;
                     }
                 }
-
-                // Step 4: Show results
-                System.out.println("\n=== MIGRATION RESULTS ===");
-                System.out.println("Total users processed: " + totalUsers);
-                System.out.println("Successfully migrated: " + successCount);
-                System.out.println("Errors: " + errorCount);
-
-                if (errorCount > 0) {
-                    System.out.println("⚠️ Some users had errors. Please check the logs above.");
-                }
             }
 
-        } finally {
-            if (conn != null && !conn.isClosed()) {
-                conn.close();
-                System.out.println("🔌 Database connection closed");
+            System.out.println("Users: " + total + " | plain text: " + plainText.size()
+                    + " | up to date: " + upToDate + " | upgraded at next login: " + upgradeOnLogin);
+            if (plainText.isEmpty()) {
+                System.out.println("ℹ️ No plain text passwords. Migration not needed.");
+                return;
             }
-        }
-    }
-
-    /**
-     * Check if passwords are already hashed by examining their format
-     */
-    private static boolean arePasswordsAlreadyHashed(Connection conn) throws SQLException {
-        String sql = "SELECT password FROM users WHERE password IS NOT NULL AND password != '' LIMIT 5";
-
-        try (PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                String password = rs.getString("password");
+            System.out.println("🔄 Hashing " + plainText.size() + " passwords ("
+                    + credentials.getIterations() + " PBKDF2 iterations, batches of " + batchSize + ")...");
+
+            // Step 2: Hash each batch in parallel, then write it in one transaction
+            int successCount = 0;
+            int skippedCount = 0;
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement updateStmt = conn.prepareStatement(UPDATE_SQL)) {
+                for (int from = 0; from < plainText.size(); from += batchSize) {
+                    List<UserRow> batch = plainText.subList(from, Math.min(from + batchSize, plainText.size()));
+                    batch.parallelStream().forEach(row -> row.newHash = credentials.hash(row.password));
+
+                    for (UserRow row : batch) {
+                        updateStmt.setString(1, row.newHash);
+                        updateStmt.setInt(2, row.id);
+                        updateStmt.setString(3, row.password);
+                        updateStmt.addBatch();
+                    }
+                    int[] results = updateStmt.executeBatch();
+                    conn.commit();
 
-                // Check if password looks like Base64 encoded hash
-                // Hashed passwords should be much longer (typically 60+ characters)
-                if (password.length() > 50 && isValidBase64(password)) {
-                    return true; // At least one password is already hashed
+                    for (int i = 0; i < results.length; i++) {
+                        if (results[i] == 0) {
+                            skippedCount++;
+                            System.out.println("⚠️ User '" + batch.get(i).username + "' changed during migration, skipped");
+                        } else {
+                            successCount++;
+                        }
+                    }
+                    System.out.println("✅ " + (from + batch.size()) + "/" + plainText.size() + " processed");
                 }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
-        }
 
-        return false; // Passwords appear to be plain text
-    }
-
-    /**
-     * Update a user's password in the database
-     */
-    private static void updateUserPassword(Connection conn, int userId, String hashedPassword) throws SQLException {
-        String updateSQL = "UPDATE users SET password = ? WHERE id = ?";
-
-        try (PreparedStatement updateStmt = conn.prepareStatement(updateSQL)) {
-            updateStmt.setString(1, hashedPassword);
-            updateStmt.setInt(2, userId);
-
-            int rowsAffected = updateStmt.executeUpdate();
-
-            if (rowsAffected != 1) {
-                throw new SQLException("Expected to update 1 row, but updated " + rowsAffected + " rows");
-            }
+            // Step 3: Show results
+            System.out.println("\n=== MIGRATION RESULTS ===");
+            System.out.println("Total users: " + total);
+            System.out.println("Successfully migrated: " + successCount);
+            System.out.println("Skipped (changed meanwhile): " + skippedCount);
+            System.out.println("Time: " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        } finally {
+            System.out.println("🔌 Database connection closed");
         }
     }
 
-    /**
-     * Simple check to see if a string could be valid Base64
-     */
-    private static boolean isValidBase64(String str) {
+    /** PBKDF2 hash weaker than the configured cost (only checks the stored parameters, not the password) */
+    private static boolean isOutdated(String storedHash, CredentialService credentials) {
+        String[] parts = storedHash.split("\\$");
         try {
-            java.util.Base64.getDecoder().decode(str);
+            return parts.length != 4 || Integer.parseInt(parts[1]) < credentials.getIterations();
+        } catch (NumberFormatException e) {
             return true;
-        } catch (IllegalArgumentException e) {
-            return false;
         }
     }
 
@@ -0,0 +1,130 @@
+package com.barmanagement.util;
+
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.TrueTypeFont;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.io.font.otf.Glyph;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Cache font cho hóa đơn PDF (iText), dùng chung cho mọi hóa đơn và mọi thread.
+ *
+ * Việc tốn kém là dò danh sách font hệ thống và parse file font: làm đúng một lần (lazy, thread-safe)
+ * và giữ FontProgram đã parse. PdfFont gắn với một PdfDocument nên vẫn tạo cho từng hóa đơn,
+ * nhưng chỉ là lớp bọc quanh FontProgram có sẵn nên gần như không tốn gì.
+ * Ưu tiên font TrueType có dấu tiếng Việt; không có thì dùng Helvetica chuẩn (không nhúng).
+ */
+public final class PdfResourceCache {
+
+    private static final Log LOG = Log.get(PdfResourceCache.class);
+
+    private static final String[] REGULAR_FONT_FILES = {
+            "C:/Windows/Fonts/arial.ttf",
+            "C:/Windows/Fonts/tahoma.ttf",
+            "/System/Library/Fonts/Supplemental/Arial.ttf",
+            "/Library/Fonts/Arial.ttf",
+            "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf",
+            "/usr/share/fonts/truetype/liberation/LiberationSans-Regular.ttf",
+            "/usr/share/fonts/dejavu/DejaVuSans.ttf"
+    };
+
+    private static final String[] BOLD_FONT_FILES = {
+            "C:/Windows/Fonts/arialbd.ttf",
+            "C:/Windows/Fonts/tahomabd.ttf",
+            "/System/Library/Fonts/Supplemental/Arial Bold.ttf",
+            "/Library/Fonts/Arial Bold.ttf",
+            "/usr/share/fonts/truetype/dejavu/DejaVuSans-Bold.ttf",
+            "/usr/share/fonts/truetype/liberation/LiberationSans-Bold.ttf",
+            "/usr/share/fonts/dejavu/DejaVuSans-Bold.ttf"
+    };
+
+    private PdfResourceCache() {
+    }
+
+    // Lazy holder: font được dò + parse ở lần dùng đầu tiên, JVM đảm bảo chỉ một lần
+    private static final class Fonts {
+        static final FontProgram REGULAR = load(REGULAR_FONT_FILES, StandardFonts.HELVETICA);
+        static final FontProgram BOLD = load(BOLD_FONT_FILES, StandardFonts.HELVETICA_BOLD);
+    }
+
+    public static FontProgram regularProgram() {
+        return Fonts.REGULAR;
+    }
+
+    public static FontProgram boldProgram() {
+        return Fonts.BOLD;
+    }
+
+    /** Font thường cho một PdfDocument (tạo mỗi hóa đơn, không parse lại) */
+    public static PdfFont regularFont() {
+        return createFont(Fonts.REGULAR);
+    }
+
+    /** Font đậm cho một PdfDocument (tạo mỗi hóa đơn, không parse lại) */
+    public static PdfFont boldFont() {
+        return createFont(Fonts.BOLD);
+    }
+
+    /** Độ rộng chuỗi (point) tính từ FontProgram, dùng để dàn trang cố định một lần */
+    public static float textWidth(FontProgram program, String text, float fontSize) {
+        int units = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            Glyph glyph = program.getGlyph(codePoint);
+            if (glyph != null) {
+                units += glyph.getWidth();
+            }
+            i += Character.charCount(codePoint);
+        }
+        return units * fontSize / 1000f;
+    }
+
+    /** Nạp font ở thread nền lúc khởi động để hóa đơn đầu tiên không phải chờ */
+    public static void warmUpAsync() {
+        Thread t = new Thread(() -> {
+            long start = System.nanoTime();
+            FontProgram regular = regularProgram();
+            FontProgram bold = boldProgram();
+            LOG.atInfo()
+                    .with("regular", regular.getFontNames().getFontName())
+                    .with("bold", bold.getFontNames().getFontName())
+                    .with("latencyMs", (System.nanoTime() - start) / 1_000_000)
+                    .log("✅ PDF fonts loaded");
+        }, "pdf-font-warmup");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static PdfFont createFont(FontProgram program) {
+        if (program instanceof TrueTypeFont) {
+            // Nhúng subset, Identity-H để hiển thị đúng tiếng Việt
+            return PdfFontFactory.createFont(program, PdfEncodings.IDENTITY_H,
+                    PdfFontFactory.EmbeddingStrategy.PREFER_EMBEDDED);
+        }
+        return PdfFontFactory.createFont(program, PdfEncodings.WINANSI,
+                PdfFontFactory.EmbeddingStrategy.PREFER_NOT_EMBEDDED);
+    }
+
+    private static FontProgram load(String[] candidates, String standardFallback) {
+        for (String path : candidates) {
+            if (!new File(path).isFile()) continue;
+            try {
+                return FontProgramFactory.createFont(path);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("⚠️ Cannot load font {}: {}", path, e.getMessage());
+            }
+        }
+        try {
+            LOG.warn("⚠️ No TrueType font found, PDF invoices fall back to {} (no Vietnamese diacritics)", standardFallback);
+            return FontProgramFactory.createFont(standardFallback);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load standard font " + standardFallback, e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.barmanagement.util;
+
+import com.barmanagement.dao.ConnectionProvider;
+import com.barmanagement.dao.QueryInstrumentation;
+import com.barmanagement.dao.QueryInstrumentation.StatementStats;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.util.function.Function;
+
+/**
+ * Cửa sổ chẩn đoán truy vấn: các câu SQL tốn tổng thời gian nhiều nhất theo {@link QueryInstrumentation},
+ * kèm độ trễ lấy kết nối, số liệu pool và các lần FX thread bị chặn ({@link FxStallWatchdog}).
+ * Cho phép đổi level của {@link Log} lúc chạy.
+ */
+public final class QueryDiagnosticsView {
+
+    private static final int TOP_LIMIT = 50;
+
+    private QueryDiagnosticsView() {
+    }
+
+    public static void show(Window owner) {
+        Stage stage = new Stage();
+        if (owner != null) {
+            stage.initOwner(owner);
+        }
+        stage.setTitle("Chẩn đoán truy vấn");
+
+        TableView<StatementStats> table = new TableView<>();
+        table.getColumns().add(column("SQL", 380, s -> s.getLatency().getName()));
+        table.getColumns().add(column("Gọi từ", 200, StatementStats::getLastCaller));
+        table.getColumns().add(column("Số lần", 70, StatementStats::getCount));
+        table.getColumns().add(column("Tổng (ms)", 90, s -> String.format("%.1f", s.getTotalMillis())));
+        table.getColumns().add(column("TB (ms)", 70, s -> String.format("%.2f", s.getLatency().getMeanMillis())));
+        table.getColumns().add(column("p95 (ms)", 70, s -> String.format("%.2f", s.getLatency().getPercentileMillis(95))));
+        table.getColumns().add(column("Max (ms)", 70, s -> String.format("%.2f", s.getLatency().getMaxMillis())));
+        table.getColumns().add(column("Dòng", 70, StatementStats::getRows));
+        table.getColumns().add(column("N+1", 50, StatementStats::getNPlusOneHits));
+        table.setRowFactory(tv -> new TableRow<StatementStats>() {
+            @Override
+            protected void updateItem(StatementStats item, boolean empty) {
+                super.updateItem(item, empty);
+                setTooltip(item == null || empty ? null : new Tooltip(item.getSql()));
+                setStyle(item != null && !empty && item.getNPlusOneHits() > 0 ? "-fx-background-color: #ffe0b2;" : "");
+            }
+        });
+        VBox.setVgrow(table, Priority.ALWAYS);
+
+        ListView<FxStallWatchdog.StallRecord> stalls = new ListView<>();
+        stalls.setPrefHeight(120);
+        stalls.setCellFactory(lv -> new ListCell<FxStallWatchdog.StallRecord>() {
+            @Override
+            protected void updateItem(FxStallWatchdog.StallRecord item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(item == null || empty ? null : item.toString());
+                setTooltip(item == null || empty ? null : new Tooltip(item.getStackTrace()));
+            }
+        });
+
+        Label summary = new Label();
+        summary.setWrapText(true);
+
+        Runnable refresh = () -> {
+            table.setItems(FXCollections.observableArrayList(QueryInstrumentation.getTopByTotalTime(TOP_LIMIT)));
+            stalls.setItems(FXCollections.observableArrayList(FxStallWatchdog.get().getReport()));
+            summary.setText(QueryInstrumentation.getConnectLatencyHistogram().getSummary()
+                    + "\n" + ConnectionProvider.get().getStatsSummary()
+                    + "\n" + FxStallWatchdog.get().getShiftSummary());
+        };
+
+        Button refreshButton = new Button("🔄 Làm mới");
+        refreshButton.setOnAction(e -> refresh.run());
+        Button resetButton = new Button("🗑 Xóa số liệu");
+        resetButton.setOnAction(e -> {
+            QueryInstrumentation.reset();
+            refresh.run();
+        });
+        Button closeButton = new Button("✕ Đóng");
+        closeButton.setOnAction(e -> stage.close());
+
+        // Đổi level log lúc chạy, ví dụ bật DEBUG khi đang điều tra sự cố
+        ComboBox<Log.Level> logLevel = new ComboBox<>(FXCollections.observableArrayList(Log.Level.values()));
+        logLevel.setValue(Log.getRootLevel());
+        logLevel.setOnAction(e -> Log.setRootLevel(logLevel.getValue()));
+
+        HBox buttons = new HBox(10, new Label("Log level:"), logLevel, refreshButton, resetButton, closeButton);
+        buttons.setAlignment(Pos.CENTER_RIGHT);
+
+        Label disabled = new Label(QueryInstrumentation.isEnabled()
+                ? "" : "⚠️ query.instrumentation=false - không có số liệu truy vấn");
+
+        VBox root = new VBox(10, disabled, table, new Label("🧊 FX thread bị chặn gần đây"), stalls, summary, buttons);
+        root.setPadding(new Insets(15));
+
+        refresh.run();
+        stage.setScene(new Scene(root, 1100, 750));
+        stage.show();
+    }
+
+    private static <T> TableColumn<StatementStats, T> column(String title, double width, Function<StatementStats, T> value) {
+        TableColumn<StatementStats, T> column = new TableColumn<>(title);
+        column.setPrefWidth(width);
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(value.apply(cell.getValue())));
+        return column;
+    }
+}
@@ -13,6 +13,8 @@ import java.io.IOException;
  */
 public class SceneUtil {
 
+    private static final Log LOG = Log.get(SceneUtil.class);
+
     /**
      * Mở scene mới từ file FXML
      *
@@ -27,7 +29,7 @@ public class SceneUtil {
             stage.setScene(new Scene(root));
             stage.centerOnScreen();
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.error("❌ Cannot open scene " + fxmlPath, e);
         }
     }
 }
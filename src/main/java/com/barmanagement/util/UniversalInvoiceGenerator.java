@@ -5,32 +5,52 @@ import com.barmanagement.model.OrderItem;
 import com.barmanagement.model.MenuItem;
 import com.barmanagement.dao.MenuItemDAO;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
 import java.awt.Desktop;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
 /**
  * Universal Invoice Generator - Tạo hóa đơn đa định dạng, hoạt động trên mọi máy
  * Hỗ trợ: TXT, JSON, HTML, CSV
+ * ENHANCED: TXT/HTML/CSV render từ template biên dịch sẵn (resources/templates/invoice.*),
+ * JSON ghi bằng Jackson streaming; thread-safe, dùng chung được một instance.
+ * ENHANCED: Hóa đơn được lưu vào {@link InvoiceArchive} (invoice.archive.enabled); file để mở/in
+ * chỉ là bản tạm, mở lại đơn cũ thì render lại từ kho.
  */
 public class UniversalInvoiceGenerator {
+
+    private static final Log LOG = Log.get(UniversalInvoiceGenerator.class);
+    
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    
+    // Layout được biên dịch một lần khi nạp class; mọi đối tượng dùng chung đều bất biến / thread-safe
+    private static final InvoiceTemplate TEXT_TEMPLATE = InvoiceTemplate.load("/templates/invoice.txt", InvoiceTemplate.Escaper.NONE);
+    private static final InvoiceTemplate HTML_TEMPLATE = InvoiceTemplate.load("/templates/invoice.html", InvoiceTemplate.Escaper.HTML);
+    private static final InvoiceTemplate CSV_TEMPLATE = InvoiceTemplate.load("/templates/invoice.csv", InvoiceTemplate.Escaper.CSV);
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
     
-    private final NumberFormat currencyFormatter = NumberFormat.getInstance(Locale.forLanguageTag("vi-VN"));
-    private final SimpleDateFormat dateFormatter = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-    private final SimpleDateFormat fileDateFormatter = new SimpleDateFormat("yyyyMMdd_HHmmss");
+    // Buffer dùng lại theo thread; buffer lớn bất thường thì bỏ để không giữ bộ nhớ
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+    
+    // Thư mục tạm chứa bản mở/in của hóa đơn đã lưu vào kho
+    private static File viewDir;
     
     public enum InvoiceFormat {
         TXT, JSON, HTML, CSV, AUTO
     }
     
-    public UniversalInvoiceGenerator() {
-        currencyFormatter.setMaximumFractionDigits(0);
-    }
-    
     /**
      * Tạo hóa đơn với định dạng tự động (phù hợp với hệ điều hành)
      */
@@ -44,40 +64,98 @@ public class UniversalInvoiceGenerator {
      */
     public File generateInvoice(Order order, List<OrderItem> orderItems, InvoiceFormat format) {
         if (order == null || orderItems == null || orderItems.isEmpty()) {
-            System.err.println("❌ Lỗi: Order hoặc OrderItems không hợp lệ");
+            LOG.error("❌ Lỗi: Order hoặc OrderItems không hợp lệ");
             return null;
         }
         
         try {
-            File invoiceFile = createInvoiceFile(order.getId(), format);
+            InvoiceView view = buildView(order, orderItems);
+            File invoiceFile;
             
-            switch (format) {
-                case TXT:
-                    generateTextInvoice(order, orderItems, invoiceFile);
-                    break;
-                case JSON:
-                    generateJsonInvoice(order, orderItems, invoiceFile);
-                    break;
-                case HTML:
-                    generateHtmlInvoice(order, orderItems, invoiceFile);
-                    break;
-                case CSV:
-                    generateCsvInvoice(order, orderItems, invoiceFile);
-                    break;
-                default:
-                    generateTextInvoice(order, orderItems, invoiceFile);
+            if (InvoiceArchive.isEnabled()) {
+                InvoiceArchive.get().append(view);
+                invoiceFile = createViewFile(order.getId(), format);
+            } else {
+                invoiceFile = createInvoiceFile(order.getId(), format);
+            }
+            
+            try (Writer out = Files.newBufferedWriter(invoiceFile.toPath(), StandardCharsets.UTF_8)) {
+                writeInvoice(view, format, out);
             }
             
-            System.out.println("✅ Đã tạo hóa đơn " + format + ": " + invoiceFile.getAbsolutePath());
+            LOG.info("✅ Đã tạo hóa đơn {}: {}", format, invoiceFile.getAbsolutePath());
             return invoiceFile;
             
         } catch (Exception e) {
-            System.err.println("❌ Lỗi tạo hóa đơn: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("❌ Lỗi tạo hóa đơn", e);
             return null;
         }
     }
     
+    /**
+     * NEW: Ghi hóa đơn ra Writer bất kỳ (file, bộ nhớ, entry trong file zip).
+     * ENHANCED: an toàn khi gọi đồng thời từ nhiều thread (template biên dịch sẵn, không còn SimpleDateFormat).
+     */
+    public void writeInvoice(Order order, List<OrderItem> orderItems, InvoiceFormat format, Writer out) throws IOException {
+        writeInvoice(buildView(order, orderItems), format, out);
+    }
+    
+    /**
+     * Ghi hóa đơn từ dữ liệu đã dựng sẵn (dùng lại một InvoiceView cho nhiều định dạng)
+     */
+    public void writeInvoice(InvoiceView view, InvoiceFormat format, Writer out) throws IOException {
+        switch (format) {
+            case JSON:
+                writeJsonInvoice(view, out);
+                break;
+            case HTML:
+                renderTemplate(HTML_TEMPLATE, view, out);
+                break;
+            case CSV:
+                renderTemplate(CSV_TEMPLATE, view, out);
+                break;
+            default:
+                renderTemplate(TEXT_TEMPLATE, view, out);
+        }
+        out.flush();
+    }
+    
+    /**
+     * NEW: Mở lại hóa đơn đã lưu trong kho (không cần đơn/món từ database), null nếu không có
+     */
+    public File reopenInvoice(int orderId, InvoiceFormat format) {
+        if (format == InvoiceFormat.AUTO) {
+            format = detectBestFormat();
+        }
+        try {
+            InvoiceView view = InvoiceArchive.get().read(orderId);
+            if (view == null) {
+                LOG.warn("⚠️ Không tìm thấy hóa đơn của đơn #{} trong kho", orderId);
+                return null;
+            }
+            File invoiceFile = createViewFile(orderId, format);
+            try (Writer out = Files.newBufferedWriter(invoiceFile.toPath(), StandardCharsets.UTF_8)) {
+                writeInvoice(view, format, out);
+            }
+            return invoiceFile;
+        } catch (Exception e) {
+            LOG.error("❌ Lỗi mở lại hóa đơn #{}: {}", orderId, e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * NEW: Mở lại và hiển thị hóa đơn đã lưu (in lại)
+     */
+    public boolean reopenAndOpenInvoice(int orderId) {
+        File invoiceFile = reopenInvoice(orderId, InvoiceFormat.AUTO);
+        if (invoiceFile == null) {
+            return false;
+        }
+        openFile(invoiceFile);
+        return true;
+    }
+    
     /**
      * Tạo và mở hóa đơn
      */
@@ -117,17 +195,30 @@ public class UniversalInvoiceGenerator {
             invoicesDir.mkdirs();
         }
         
-        String timestamp = fileDateFormatter.format(new java.util.Date());
+        String timestamp = LocalDateTime.now().format(FILE_DATE_FORMAT);
         String extension = getFileExtension(format);
         String fileName = String.format("HoaDon_Order%d_%s.%s", orderId, timestamp, extension);
         
         return new File(invoicesDir, fileName);
     }
     
+    /**
+     * NEW: File tạm để mở/in hóa đơn khi đã lưu vào kho (ghi đè theo mã đơn, xóa khi thoát)
+     */
+    private static synchronized File createViewFile(int orderId, InvoiceFormat format) throws IOException {
+        if (viewDir == null || !viewDir.isDirectory()) {
+            viewDir = Files.createTempDirectory("barmanager-invoices").toFile();
+            viewDir.deleteOnExit();
+        }
+        File file = new File(viewDir, String.format("HoaDon_Order%d.%s", orderId, getFileExtension(format)));
+        file.deleteOnExit();
+        return file;
+    }
+    
     /**
      * Lấy extension file theo định dạng
      */
-    private String getFileExtension(InvoiceFormat format) {
+    public static String getFileExtension(InvoiceFormat format) {
         switch (format) {
             case TXT: return "txt";
             case JSON: return "json";
@@ -138,354 +229,90 @@ public class UniversalInvoiceGenerator {
     }
     
     /**
-     * Tạo hóa đơn định dạng TEXT
+     * Hóa đơn TEXT / HTML / CSV: render template đã biên dịch vào buffer của thread
      */
-    private void generateTextInvoice(Order order, List<OrderItem> orderItems, File file) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(file, StandardCharsets.UTF_8))) {
-            // Header
-            writer.println("=".repeat(50));
-            writer.println("           BAR MANAGER");
-            writer.println("        HOA DON THANH TOAN");
-            writer.println("=".repeat(50));
-            writer.println();
-            
-            // Thông tin đơn hàng
-            writer.println("Don hang: #" + order.getId());
-            writer.println("Ban: " + order.getTableId());
-            writer.println("Thoi gian: " + dateFormatter.format(order.getOrderTime()));
-            writer.println("Trang thai: " + getStatusText(order.getStatus()));
-            writer.println();
-            
-            // Đường kẻ
-            writer.println("-".repeat(50));
-            writer.println();
-            
-            // Chi tiết món ăn
-            writer.println("CHI TIET MON AN:");
-            writer.println();
-            writer.printf("%-25s %6s %12s %12s%n", "Ten mon", "SL", "Don gia", "Thanh tien");
-            writer.println("-".repeat(50));
-            
-            MenuItemDAO menuDAO = new MenuItemDAO();
-            double totalAmount = 0;
-            
-            for (OrderItem item : orderItems) {
-                if (item == null) continue;
-                
-                String itemName = "Mon khong xac dinh";
-                
-                // Ưu tiên tên từ OrderItem trước (đã được set sẵn)
-                if (item.getMenuItemName() != null && !item.getMenuItemName().trim().isEmpty()) {
-                    itemName = fixVietnameseEncoding(item.getMenuItemName());
-                } else {
-                    // Fallback: lấy từ database
-                    try {
-                        MenuItem menuItem = menuDAO.findById(item.getMenuItemId());
-                        if (menuItem != null && menuItem.getName() != null && !menuItem.getName().trim().isEmpty()) {
-                            itemName = fixVietnameseEncoding(menuItem.getName());
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Không thể load menu item ID " + item.getMenuItemId() + ": " + e.getMessage());
-                    }
-                }
-                
-                writer.printf("%-25s %6d %12s %12s%n", 
-                    itemName, 
-                    item.getQuantity(),
-                    formatCurrency(item.getPrice()),
-                    formatCurrency(item.getSubtotal())
-                );
-                
-                totalAmount += item.getSubtotal();
-            }
-            
-            writer.println("-".repeat(50));
-            
-            // Hiển thị tổng cộng và giảm giá
-            if (order.getDiscountPercent() > 0) {
-                // Hiển thị tổng cộng (trước giảm giá)
-                writer.printf("%-25s %6s %12s %12s%n", "TONG CONG:", "", "", formatCurrency(order.getOriginalAmount().doubleValue()));
-                
-                // Hiển thị giảm giá
-                writer.printf("%-25s %6s %12s %12s%n", 
-                    "GIAM GIA (" + String.format("%.0f", order.getDiscountPercent()) + "%):", 
-                    "", "", 
-                    "-" + formatCurrency(order.getDiscountAmount().doubleValue()));
-                writer.println("-".repeat(50));
-                writer.printf("%-25s %6s %12s %12s%n", "THANH TOAN:", "", "", formatCurrency(order.getFinalAmount().doubleValue()));
-            } else {
-                // Không có giảm giá, hiển thị tổng cộng bình thường
-                writer.printf("%-25s %6s %12s %12s%n", "TONG CONG:", "", "", formatCurrency(totalAmount));
-            }
-            writer.println();
-            
-            // Footer
-            writer.println("=".repeat(50));
-            writer.println("Cam on quy khach da su dung dich vu!");
-            writer.println("Bar Manager - He thong quan ly quan bar");
-            writer.println("=".repeat(50));
+    private void renderTemplate(InvoiceTemplate template, InvoiceView view, Writer out) throws IOException {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        template.render(view, buffer);
+        out.append(buffer);
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            BUFFER.remove();
         }
     }
     
     /**
-     * Tạo hóa đơn định dạng JSON
+     * Hóa đơn JSON: ghi bằng Jackson JsonGenerator (stream, không dựng cây đối tượng)
      */
-    private void generateJsonInvoice(Order order, List<OrderItem> orderItems, File file) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(file, StandardCharsets.UTF_8))) {
-            writer.println("{");
-            writer.println("  \"invoice\": {");
-            writer.println("    \"orderId\": " + order.getId() + ",");
-            writer.println("    \"tableId\": " + order.getTableId() + ",");
-            writer.println("    \"orderTime\": \"" + dateFormatter.format(order.getOrderTime()) + "\",");
-            writer.println("    \"status\": \"" + order.getStatus() + "\",");
-            writer.println("    \"statusText\": \"" + getStatusText(order.getStatus()) + "\",");
-            writer.println("    \"items\": [");
-            
-            MenuItemDAO menuDAO = new MenuItemDAO();
-            double totalAmount = 0;
-            
-            for (int i = 0; i < orderItems.size(); i++) {
-                OrderItem item = orderItems.get(i);
-                if (item == null) continue;
-                
-                String itemName = "Mon khong xac dinh";
-                
-                // Ưu tiên tên từ OrderItem trước (đã được set sẵn)
-                if (item.getMenuItemName() != null && !item.getMenuItemName().trim().isEmpty()) {
-                    itemName = fixVietnameseEncoding(item.getMenuItemName());
-                } else {
-                    // Fallback: lấy từ database
-                    try {
-                        MenuItem menuItem = menuDAO.findById(item.getMenuItemId());
-                        if (menuItem != null && menuItem.getName() != null && !menuItem.getName().trim().isEmpty()) {
-                            itemName = fixVietnameseEncoding(menuItem.getName());
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Không thể load menu item ID " + item.getMenuItemId() + ": " + e.getMessage());
-                    }
-                }
-                
-                writer.println("      {");
-                writer.println("        \"name\": \"" + escapeJson(itemName) + "\",");
-                writer.println("        \"quantity\": " + item.getQuantity() + ",");
-                writer.println("        \"price\": " + item.getPrice() + ",");
-                writer.println("        \"subtotal\": " + item.getSubtotal());
-                writer.print("      }");
-                
-                if (i < orderItems.size() - 1) {
-                    writer.println(",");
-                } else {
-                    writer.println();
-                }
-                
-                totalAmount += item.getSubtotal();
+    private void writeJsonInvoice(InvoiceView view, Writer out) throws IOException {
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+            json.useDefaultPrettyPrinter();
+            json.writeStartObject();
+            json.writeObjectFieldStart("invoice");
+            json.writeNumberField("orderId", view.orderId);
+            json.writeNumberField("tableId", view.tableId);
+            json.writeStringField("orderTime", view.orderTime);
+            json.writeStringField("status", view.status);
+            json.writeStringField("statusText", view.statusText);
+            json.writeArrayFieldStart("items");
+            for (InvoiceView.Line line : view.lines) {
+                json.writeStartObject();
+                json.writeStringField("name", line.name != null ? line.name : "Mon khong xac dinh");
+                json.writeNumberField("quantity", line.quantity);
+                json.writeNumberField("price", line.price.toBigDecimal());
+                json.writeNumberField("subtotal", line.subtotal.toBigDecimal());
+                json.writeEndObject();
             }
-            
-            writer.println("    ],");
-            if (order.getDiscountPercent() > 0) {
-                writer.println("    \"originalAmount\": " + order.getOriginalAmount() + ",");
-                writer.println("    \"originalAmountFormatted\": \"" + formatCurrency(order.getOriginalAmount().doubleValue()) + "\",");
-                writer.println("    \"discountPercent\": " + order.getDiscountPercent() + ",");
-                writer.println("    \"discountAmount\": " + order.getDiscountAmount() + ",");
-                writer.println("    \"discountAmountFormatted\": \"" + order.getFormattedDiscountAmount() + "\",");
-                writer.println("    \"finalAmount\": " + order.getFinalAmount() + ",");
-                writer.println("    \"finalAmountFormatted\": \"" + order.getFormattedFinalAmount() + "\"");
+            json.writeEndArray();
+            if (view.hasDiscount()) {
+                json.writeNumberField("originalAmount", view.originalAmount.toBigDecimal());
+                json.writeStringField("originalAmountFormatted", view.originalAmount.format());
+                json.writeNumberField("discountPercent", view.discountPercent);
+                json.writeNumberField("discountAmount", view.discountAmount.toBigDecimal());
+                json.writeStringField("discountAmountFormatted", view.discountAmount.format());
+                json.writeNumberField("finalAmount", view.finalAmount.toBigDecimal());
+                json.writeStringField("finalAmountFormatted", view.finalAmount.format());
             } else {
-                writer.println("    \"totalAmount\": " + totalAmount + ",");
-                writer.println("    \"totalAmountFormatted\": \"" + formatCurrency(totalAmount) + "\"");
+                json.writeNumberField("totalAmount", view.total.toBigDecimal());
+                json.writeStringField("totalAmountFormatted", view.total.format());
             }
-            writer.println("  }");
-            writer.println("}");
+            json.writeEndObject();
+            json.writeEndObject();
         }
+        out.write(System.lineSeparator());
     }
     
     /**
-     * Tạo hóa đơn định dạng HTML
+     * Dựng dữ liệu hóa đơn một lần: sửa encoding tên món, lấy tên từ database nếu thiếu
      */
-    private void generateHtmlInvoice(Order order, List<OrderItem> orderItems, File file) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(file, StandardCharsets.UTF_8))) {
-            writer.println("<!DOCTYPE html>");
-            writer.println("<html lang='vi'>");
-            writer.println("<head>");
-            writer.println("    <meta charset='UTF-8'>");
-            writer.println("    <meta name='viewport' content='width=device-width, initial-scale=1.0'>");
-            writer.println("    <title>Hóa đơn #" + order.getId() + "</title>");
-            writer.println("    <style>");
-            writer.println("        body { font-family: Arial, sans-serif; margin: 20px; }");
-            writer.println("        .header { text-align: center; border-bottom: 2px solid #333; padding-bottom: 10px; }");
-            writer.println("        .info { margin: 20px 0; }");
-            writer.println("        table { width: 100%; border-collapse: collapse; margin: 20px 0; }");
-            writer.println("        th, td { border: 1px solid #ddd; padding: 8px; text-align: left; }");
-            writer.println("        th { background-color: #f2f2f2; }");
-            writer.println("        .total { font-weight: bold; font-size: 18px; }");
-            writer.println("        .footer { text-align: center; margin-top: 30px; border-top: 1px solid #333; padding-top: 10px; }");
-            writer.println("    </style>");
-            writer.println("</head>");
-            writer.println("<body>");
-            
-            // Header
-            writer.println("    <div class='header'>");
-            writer.println("        <h1>BAR MANAGER</h1>");
-            writer.println("        <h2>HÓA ĐƠN THANH TOÁN</h2>");
-            writer.println("    </div>");
-            
-            // Thông tin đơn hàng
-            writer.println("    <div class='info'>");
-            writer.println("        <p><strong>Đơn hàng:</strong> #" + order.getId() + "</p>");
-            writer.println("        <p><strong>Bàn:</strong> " + order.getTableId() + "</p>");
-            writer.println("        <p><strong>Thời gian:</strong> " + dateFormatter.format(order.getOrderTime()) + "</p>");
-            writer.println("        <p><strong>Trạng thái:</strong> " + getStatusText(order.getStatus()) + "</p>");
-            writer.println("    </div>");
-            
-            // Bảng chi tiết
-            writer.println("    <table>");
-            writer.println("        <thead>");
-            writer.println("            <tr>");
-            writer.println("                <th>Tên món</th>");
-            writer.println("                <th>Số lượng</th>");
-            writer.println("                <th>Đơn giá</th>");
-            writer.println("                <th>Thành tiền</th>");
-            writer.println("            </tr>");
-            writer.println("        </thead>");
-            writer.println("        <tbody>");
+    InvoiceView buildView(Order order, List<OrderItem> orderItems) {
+        List<InvoiceView.Line> lines = new ArrayList<>(orderItems.size());
+        MenuItemDAO menuDAO = null;
+        
+        for (OrderItem item : orderItems) {
+            if (item == null) continue;
             
-            MenuItemDAO menuDAO = new MenuItemDAO();
-            double totalAmount = 0;
+            String itemName = null;
             
-            for (OrderItem item : orderItems) {
-                if (item == null) continue;
-                
-                String itemName = "Món không xác định";
-                
-                // Ưu tiên tên từ OrderItem trước (đã được set sẵn)
-                if (item.getMenuItemName() != null && !item.getMenuItemName().trim().isEmpty()) {
-                    itemName = fixVietnameseEncoding(item.getMenuItemName());
-                } else {
-                    // Fallback: lấy từ database
-                    try {
-                        MenuItem menuItem = menuDAO.findById(item.getMenuItemId());
-                        if (menuItem != null && menuItem.getName() != null && !menuItem.getName().trim().isEmpty()) {
-                            itemName = fixVietnameseEncoding(menuItem.getName());
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Không thể load menu item ID " + item.getMenuItemId() + ": " + e.getMessage());
-                    }
-                }
-                
-                writer.println("            <tr>");
-                writer.println("                <td>" + escapeHtml(itemName) + "</td>");
-                writer.println("                <td>" + item.getQuantity() + "</td>");
-                writer.println("                <td>" + formatCurrency(item.getPrice()) + "</td>");
-                writer.println("                <td>" + formatCurrency(item.getSubtotal()) + "</td>");
-                writer.println("            </tr>");
-                
-                totalAmount += item.getSubtotal();
-            }
-            
-            writer.println("        </tbody>");
-            writer.println("        <tfoot>");
-            if (order.getDiscountPercent() > 0) {
-                writer.println("            <tr class='total'>");
-                writer.println("                <td colspan='3'>TỔNG CỘNG:</td>");
-                writer.println("                <td>" + formatCurrency(order.getOriginalAmount().doubleValue()) + "</td>");
-                writer.println("            </tr>");
-                writer.println("            <tr class='discount'>");
-                writer.println("                <td colspan='3'>GIẢM GIÁ (" + String.format("%.0f", order.getDiscountPercent()) + "%):</td>");
-                writer.println("                <td>-" + order.getFormattedDiscountAmount() + "</td>");
-                writer.println("            </tr>");
-                writer.println("            <tr class='final-total'>");
-                writer.println("                <td colspan='3'>THÀNH TIỀN:</td>");
-                writer.println("                <td>" + order.getFormattedFinalAmount() + "</td>");
-                writer.println("            </tr>");
+            // Ưu tiên tên từ OrderItem trước (đã được set sẵn)
+            if (item.getMenuItemName() != null && !item.getMenuItemName().trim().isEmpty()) {
+                itemName = fixVietnameseEncoding(item.getMenuItemName());
             } else {
-                writer.println("            <tr class='total'>");
-                writer.println("                <td colspan='3'>TỔNG CỘNG:</td>");
-                writer.println("                <td>" + formatCurrency(totalAmount) + "</td>");
-                writer.println("            </tr>");
-            }
-            
-            // Hiển thị giảm giá nếu có
-            if (order.getDiscountPercent() > 0) {
-                writer.println("            <tr>");
-                writer.println("                <td colspan='3'>GIẢM GIÁ (" + String.format("%.0f", order.getDiscountPercent()) + "%):</td>");
-                writer.println("                <td style='color: red;'>-" + formatCurrency(order.getDiscountAmount().doubleValue()) + "</td>");
-                writer.println("            </tr>");
-                writer.println("            <tr class='total' style='border-top: 2px solid #333;'>");
-                writer.println("                <td colspan='3'><strong>THANH TOÁN:</strong></td>");
-                writer.println("                <td><strong>" + formatCurrency(order.getFinalAmount().doubleValue()) + "</strong></td>");
-                writer.println("            </tr>");
-            }
-            
-            writer.println("        </tfoot>");
-            writer.println("    </table>");
-            
-            // Footer
-            writer.println("    <div class='footer'>");
-            writer.println("        <p>Cảm ơn quý khách đã sử dụng dịch vụ!</p>");
-            writer.println("        <p>Bar Manager - Hệ thống quản lý quán bar</p>");
-            writer.println("    </div>");
-            
-            writer.println("</body>");
-            writer.println("</html>");
-        }
-    }
-    
-    /**
-     * Tạo hóa đơn định dạng CSV
-     */
-    private void generateCsvInvoice(Order order, List<OrderItem> orderItems, File file) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(file, StandardCharsets.UTF_8))) {
-            // Header
-            writer.println("BAR MANAGER - HOA DON THANH TOAN");
-            writer.println("Don hang,#" + order.getId());
-            writer.println("Ban," + order.getTableId());
-            writer.println("Thoi gian," + dateFormatter.format(order.getOrderTime()));
-            writer.println("Trang thai," + getStatusText(order.getStatus()));
-            writer.println();
-            
-            // Chi tiết món ăn
-            writer.println("Ten mon,So luong,Don gia,Thanh tien");
-            
-            MenuItemDAO menuDAO = new MenuItemDAO();
-            double totalAmount = 0;
-            
-            for (OrderItem item : orderItems) {
-                if (item == null) continue;
-                
-                String itemName = "Mon khong xac dinh";
-                
-                // Ưu tiên tên từ OrderItem trước (đã được set sẵn)
-                if (item.getMenuItemName() != null && !item.getMenuItemName().trim().isEmpty()) {
-                    itemName = fixVietnameseEncoding(item.getMenuItemName());
-                } else {
-                    // Fallback: lấy từ database
-                    try {
-                        MenuItem menuItem = menuDAO.findById(item.getMenuItemId());
-                        if (menuItem != null && menuItem.getName() != null && !menuItem.getName().trim().isEmpty()) {
-                            itemName = fixVietnameseEncoding(menuItem.getName());
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Không thể load menu item ID " + item.getMenuItemId() + ": " + e.getMessage());
+                // Fallback: lấy từ database
+                try {
+                    if (menuDAO == null) menuDAO = new MenuItemDAO();
+                    MenuItem menuItem = menuDAO.findById(item.getMenuItemId());
+                    if (menuItem != null && menuItem.getName() != null && !menuItem.getName().trim().isEmpty()) {
+                        itemName = fixVietnameseEncoding(menuItem.getName());
                     }
+                } catch (Exception e) {
+                    LOG.error("Không thể load menu item ID {}: {}", item.getMenuItemId(), e.getMessage());
                 }
-                
-                writer.println("\"" + itemName + "\"," + 
-                             item.getQuantity() + "," + 
-                             item.getPrice() + "," + 
-                             item.getSubtotal());
-                
-                totalAmount += item.getSubtotal();
             }
             
-            writer.println();
-            if (order.getDiscountPercent() > 0) {
-                writer.println("TONG CONG,," + order.getOriginalAmount() + "," + order.getOriginalAmount());
-                writer.println("GIAM GIA (" + String.format("%.0f", order.getDiscountPercent()) + "%),," + order.getDiscountAmount() + "," + order.getDiscountAmount());
-                writer.println("THANH TOAN,," + order.getFinalAmount() + "," + order.getFinalAmount());
-            } else {
-                writer.println("TONG CONG,," + totalAmount + "," + totalAmount);
-            }
+            lines.add(new InvoiceView.Line(itemName, item.getQuantity(), item.getPrice(), item.getSubtotal()));
         }
+        return new InvoiceView(order, lines);
     }
     
     /**
@@ -503,7 +330,7 @@ public class UniversalInvoiceGenerator {
                     opened = true;
                 }
             } catch (Exception e) {
-                System.err.println("Không thể mở file bằng Desktop API: " + e.getMessage());
+                LOG.error("Không thể mở file bằng Desktop API: {}", e.getMessage());
             }
         }
         
@@ -520,46 +347,15 @@ public class UniversalInvoiceGenerator {
                 }
                 opened = true;
             } catch (Exception e) {
-                System.err.println("Không thể mở file bằng command: " + e.getMessage());
+                LOG.error("Không thể mở file bằng command: {}", e.getMessage());
             }
         }
         
         if (!opened) {
-            System.out.println("📁 Vui lòng mở file thủ công: " + file.getAbsolutePath());
+            LOG.debug("📁 Vui lòng mở file thủ công: {}", file.getAbsolutePath());
         }
     }
     
-    /**
-     * Escape JSON string
-     */
-    private String escapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\"", "\\\"")
-                 .replace("\\", "\\\\")
-                 .replace("\n", "\\n")
-                 .replace("\r", "\\r")
-                 .replace("\t", "\\t");
-    }
-    
-    /**
-     * Escape HTML string
-     */
-    private String escapeHtml(String str) {
-        if (str == null) return "";
-        return str.replace("&", "&amp;")
-                 .replace("<", "&lt;")
-                 .replace(">", "&gt;")
-                 .replace("\"", "&quot;")
-                 .replace("'", "&#39;");
-    }
-    
-    /**
-     * Format tiền tệ
-     */
-    private String formatCurrency(double amount) {
-        return currencyFormatter.format(amount) + " VNĐ";
-    }
-    
     /**
      * Sửa lỗi encoding tiếng Việt
      */
@@ -582,16 +378,4 @@ public class UniversalInvoiceGenerator {
             .replace("inh", "ình")  // inh -> ình
             .replace("anh", "ành");  // anh -> ành
     }
-    
-    /**
-     * Chuyển đổi trạng thái order
-     */
-    private String getStatusText(String status) {
-        switch (status) {
-            case "pending": return "Chờ xử lý";
-            case "completed": return "Đã hoàn thành";
-            case "paid": return "Đã thanh toán";
-            default: return status;
-        }
-    }
 }
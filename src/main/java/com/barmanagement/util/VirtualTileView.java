@@ -0,0 +1,165 @@
+package com.barmanagement.util;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lưới thẻ ảo hóa: dựa trên ListView, mỗi dòng chứa tối đa N thẻ (N tính theo bề rộng).
+ * Chỉ các dòng đang hiển thị mới có node; thẻ được tái sử dụng khi cuộn hoặc khi lọc.
+ *
+ * Nguồn dữ liệu thường là một FilteredList: đổi bộ lọc chỉ cần setPredicate(...),
+ * lưới tự tính lại số dòng mà không tạo lại thẻ nào.
+ *
+ * Thẻ được dùng lại cho nhiều món khác nhau, nên handler (click, hover) phải đọc món hiện tại
+ * qua node.getUserData() (được gán trước khi gọi TileFactory.update).
+ */
+public class VirtualTileView<T> extends ListView<VirtualTileView.Row> {
+
+    /** Tạo và cập nhật một thẻ */
+    public interface TileFactory<T> {
+        /** Tạo node thẻ rỗng (chỉ gọi khi cần thêm thẻ mới) */
+        Node create();
+
+        /** Đổ dữ liệu của item vào thẻ đã có */
+        void update(Node tile, T item);
+    }
+
+    /** Một dòng của lưới: chỉ là chỉ số phần tử đầu tiên, không giữ node */
+    public static final class Row {
+        final int start;
+
+        Row(int start) {
+            this.start = start;
+        }
+    }
+
+    private static final double SCROLLBAR_ALLOWANCE = 20;
+
+    private final ObservableList<T> source;
+    private final TileFactory<T> factory;
+    private final double tileWidth;
+    private final double hgap;
+    private final int fixedColumns;
+    private int columns = 1;
+
+    /**
+     * @param source       danh sách thẻ (thường là FilteredList)
+     * @param tileWidth    bề rộng một thẻ, dùng để tính số cột
+     * @param tileHeight   chiều cao một thẻ (dòng có chiều cao cố định để cuộn nhanh)
+     * @param hgap         khoảng cách giữa các thẻ (ngang và dọc)
+     * @param fixedColumns số cột cố định; 0 = tự tính theo bề rộng
+     */
+    public VirtualTileView(ObservableList<T> source, double tileWidth, double tileHeight, double hgap,
+                           int fixedColumns, TileFactory<T> factory) {
+        this.source = source;
+        this.factory = factory;
+        this.tileWidth = tileWidth;
+        this.hgap = hgap;
+        this.fixedColumns = fixedColumns;
+        this.columns = fixedColumns > 0 ? fixedColumns : 1;
+
+        setFixedCellSize(tileHeight + hgap);
+        setFocusTraversable(false);
+        setStyle("-fx-background-color: transparent; -fx-control-inner-background: transparent; " +
+                "-fx-background-insets: 0; -fx-padding: 0;");
+        setCellFactory(lv -> new TileRowCell());
+
+        source.addListener((ListChangeListener<T>) c -> rebuildRows());
+        if (fixedColumns <= 0) {
+            widthProperty().addListener((obs, oldW, newW) -> {
+                int newColumns = computeColumns(newW.doubleValue());
+                if (newColumns != columns) {
+                    columns = newColumns;
+                    rebuildRows();
+                }
+            });
+        }
+        rebuildRows();
+    }
+
+    /** Vẽ lại dữ liệu các thẻ đang hiển thị (ví dụ khi đổi món đang chọn) */
+    public void refreshTiles() {
+        refresh();
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    private int computeColumns(double width) {
+        double usable = width - SCROLLBAR_ALLOWANCE + hgap;
+        return Math.max(1, (int) Math.floor(usable / (tileWidth + hgap)));
+    }
+
+    /** Chỉ tạo các đối tượng Row nhỏ; node của thẻ không bị tạo lại */
+    private void rebuildRows() {
+        int size = source.size();
+        int rowCount = (size + columns - 1) / columns;
+        List<Row> rows = new ArrayList<>(rowCount);
+        for (int r = 0; r < rowCount; r++) {
+            rows.add(new Row(r * columns));
+        }
+        if (getItems() == null) {
+            setItems(FXCollections.observableArrayList(rows));
+        } else {
+            getItems().setAll(rows);
+        }
+    }
+
+    private final class TileRowCell extends ListCell<Row> {
+        private final HBox box = new HBox(hgap);
+        private final List<Node> tiles = new ArrayList<>();
+
+        TileRowCell() {
+            box.setAlignment(fixedColumns == 1 ? Pos.CENTER_LEFT : Pos.TOP_LEFT);
+            setStyle("-fx-background-color: transparent; -fx-padding: 0 0 " + hgap + " 0;");
+            setText(null);
+            setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+            // Dòng luôn rộng bằng viewport, không kéo giãn ListView theo chiều ngang
+            setPrefWidth(0);
+            box.prefWidthProperty().bind(widthProperty());
+        }
+
+        @Override
+        protected void updateItem(Row row, boolean empty) {
+            super.updateItem(row, empty);
+            if (empty || row == null) {
+                setGraphic(null);
+                return;
+            }
+
+            while (tiles.size() < columns) {
+                Node tile = factory.create();
+                if (fixedColumns == 1) {
+                    HBox.setHgrow(tile, javafx.scene.layout.Priority.ALWAYS);
+                }
+                tiles.add(tile);
+                box.getChildren().add(tile);
+            }
+
+            for (int i = 0; i < tiles.size(); i++) {
+                Node tile = tiles.get(i);
+                int index = row.start + i;
+                boolean used = i < columns && index < source.size();
+                tile.setVisible(used);
+                tile.setManaged(used);
+                if (used) {
+                    T item = source.get(index);
+                    tile.setUserData(item);
+                    factory.update(tile, item);
+                }
+            }
+            setGraphic(box);
+        }
+    }
+}
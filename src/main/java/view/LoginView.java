@@ -1,22 +1,57 @@
 package view;
 
 
+import com.barmanagement.dao.RevenueAggregator;
+import com.barmanagement.dao.SalesRollupDAO;
+import com.barmanagement.dao.SchemaMigrator;
+import com.barmanagement.util.FxStallWatchdog;
+import com.barmanagement.util.Log;
+import com.barmanagement.util.PdfResourceCache;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.SQLException;
 
 public class LoginView extends Application {
+
+    private static final Log LOG = Log.get(LoginView.class);
+
     private double xOffset = 0;
     private double yOffset = 0;
 
     @Override
     public void start(Stage stage) throws IOException {
+        // Áp dụng migration và kiểm tra index trước khi cho đăng nhập
+        try {
+            SchemaMigrator.get().migrateAndVerify();
+        } catch (SQLException e) {
+            LOG.error("❌ Database preparation failed", e);
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Lỗi cơ sở dữ liệu");
+            alert.setHeaderText("Không thể chuẩn bị cơ sở dữ liệu");
+            alert.setContentText(e.getMessage());
+            alert.showAndWait();
+            Platform.exit();
+            return;
+        }
+
+        // Nạp số liệu doanh thu hôm nay ở nền trong lúc người dùng đăng nhập
+        RevenueAggregator.get().start();
+
+        // Theo dõi FX thread bị chặn (độ trễ pulse, stack trace khi treo)
+        FxStallWatchdog.get().start();
+
+        // Nạp font PDF ở nền để hóa đơn đầu tiên không phải chờ parse font
+        PdfResourceCache.warmUpAsync();
+
         String fxmlFileName = "login.fxml";
 
         // Create a File object for the FXML file
@@ -42,5 +77,8 @@ public class LoginView extends Application {
         });
 
         stage.show();
+
+        // V4 tạo bảng rollup rỗng: dựng lại từ lịch sử ở nền sau khi cửa sổ đăng nhập đã hiện
+        SalesRollupDAO.backfillIfMissingAsync();
     }
 }
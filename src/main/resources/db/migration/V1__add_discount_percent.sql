@@ -0,0 +1,10 @@
+-- Thêm cột discount_percent vào bảng orders (trước đây chạy tay bằng add_discount_column.sql)
+-- Nếu cột đã có, lỗi "Duplicate column" được bỏ qua.
+
+ALTER TABLE orders
+ADD COLUMN discount_percent DECIMAL(5,2) DEFAULT 0.00
+COMMENT 'Phần trăm giảm giá (0-100)';
+
+UPDATE orders
+SET discount_percent = 0.00
+WHERE discount_percent IS NULL;
@@ -0,0 +1,8 @@
+-- Bảng table_layout lưu vị trí bàn trên sơ đồ (trước đây chạy tay bằng add_table_layout.sql)
+
+CREATE TABLE IF NOT EXISTS table_layout (
+    table_id INT NOT NULL PRIMARY KEY,
+    pos_x DOUBLE NOT NULL DEFAULT 0,
+    pos_y DOUBLE NOT NULL DEFAULT 0,
+    CONSTRAINT fk_table_layout_table FOREIGN KEY (table_id) REFERENCES tables(id) ON DELETE CASCADE
+) COMMENT 'Tọa độ góc trên-trái của bàn trên sơ đồ (pixel)';
@@ -0,0 +1,19 @@
+-- Index cho các truy vấn nóng. Index đã tồn tại (trùng tên) được bỏ qua.
+
+-- Danh sách đơn theo trạng thái, mới nhất trước (dashboard, màn hình thanh toán)
+CREATE INDEX idx_orders_status_time ON orders (status, order_time);
+
+-- Đơn đang mở của một bàn (OrderDAO.findPendingByTable, existsPaidTodayByTable)
+CREATE INDEX idx_orders_table_status_time ON orders (table_id, status, order_time);
+
+-- Thanh toán của một đơn
+CREATE INDEX idx_payments_order ON payments (order_id);
+
+-- Doanh thu theo khoảng thời gian (RevenueDAO, RevenueAggregator)
+CREATE INDEX idx_payments_time ON payments (payment_time);
+
+-- Món của một đơn; gộp món trùng trong đơn
+CREATE INDEX idx_order_items_order_menu ON order_items (order_id, menu_item_id);
+
+-- Doanh thu theo ngày
+CREATE INDEX idx_revenue_date ON revenue (date);
@@ -0,0 +1,21 @@
+-- Bảng tổng hợp doanh thu, được cập nhật trong cùng transaction thanh toán (OrderDAO.processPayment).
+-- Dựng lại từ lịch sử: java com.barmanagement.dao.SalesRollupDAO --rebuild
+
+-- Doanh thu (sau giảm giá) và số lần thanh toán theo giờ
+CREATE TABLE IF NOT EXISTS sales_hourly (
+    sale_date DATE NOT NULL,
+    sale_hour TINYINT NOT NULL,
+    revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+    payment_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date, sale_hour)
+);
+
+-- Số lượng / doanh thu (giá món, trước giảm giá) theo món và ngày thanh toán
+CREATE TABLE IF NOT EXISTS item_sales_daily (
+    sale_date DATE NOT NULL,
+    menu_item_id INT NOT NULL,
+    quantity INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+    order_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date, menu_item_id)
+);
@@ -0,0 +1,9 @@
+-- Hash PBKDF2 lưu kèm tham số ("pbkdf2-sha256$số_vòng$salt$hash", ~90 ký tự, dài hơn khi tăng tham số)
+-- nên cột password cần đủ rộng cho mọi định dạng hiện tại và sau này.
+-- MODIFY định nghĩa lại toàn bộ cột, nên phải ghi lại đủ thuộc tính (NOT NULL).
+
+-- Dòng NULL (không đăng nhập được) làm MODIFY ... NOT NULL lỗi ở strict mode
+UPDATE users SET password = '' WHERE password IS NULL;
+
+ALTER TABLE users
+MODIFY COLUMN password VARCHAR(255) NOT NULL;